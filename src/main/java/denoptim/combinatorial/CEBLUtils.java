@@ -19,6 +19,12 @@
 package denoptim.combinatorial;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
 
@@ -221,10 +227,42 @@ public class CEBLUtils
 
     protected static void serializeCheckPoint(CEBLParameters settings) 
             throws DENOPTIMException
+    {
+        serializeCheckPoint(settings.getCheckPoint(), 
+                settings.getCheckPointName());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Store the checkpoint in a text file with json format. The file is first
+     * written under a temporary name and then renamed to the given pathname, 
+     * so that the checkpoint file is never found in a partially written state.
+     * @param chk the checkpoint to store.
+     * @param pathname the pathname of the checkpoint file.
+     */
+
+    protected static void serializeCheckPoint(CheckPoint chk, String pathname) 
+            throws DENOPTIMException
     {
         Gson writer = new GsonBuilder().setPrettyPrinting().create();
-        DenoptimIO.writeData(settings.getCheckPointName(), writer.toJson(
-                settings.getCheckPoint()), false);
+        String tmpPathname = pathname + ".tmp";
+        DenoptimIO.writeData(tmpPathname, writer.toJson(chk), false);
+        Path tmp = Paths.get(tmpPathname);
+        Path target = Paths.get(pathname);
+        try
+        {
+            try
+            {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new DENOPTIMException("Could not store checkpoint file '" 
+                    + pathname + "'.", e);
+        }
     }
 
 //------------------------------------------------------------------------------
@@ -229,6 +229,32 @@ public class CheckPoint
         rootId = val;
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     * @return a copy of this checkpoint that does not share any mutable
+     * field with this one.
+     */
+
+    @Override
+    public CheckPoint clone()
+    {
+        CheckPoint c = new CheckPoint();
+        c.level = level;
+        c.unqVrtId = unqVrtId;
+        c.unqGraphId = unqGraphId;
+        c.unqMolId = unqMolId;
+        c.rootId = rootId;
+        c.graphId = graphId;
+        if (nextIds != null)
+        {
+            c.nextIds = new ArrayList<Integer>(nextIds);
+        } else {
+            c.nextIds = null;
+        }
+        return c;
+    }
+
 //-----------------------------------------------------------------------------
    
     @Override
@@ -25,10 +25,15 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
@@ -40,6 +45,7 @@ import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.fragspace.FragsCombination;
 import denoptim.fragspace.FragsCombinationIterator;
 import denoptim.fragspace.IdFragmentAndAP;
+import denoptim.graph.APClass;
 import denoptim.graph.DGraph;
 import denoptim.graph.Vertex;
 import denoptim.graph.Vertex.BBType;
@@ -69,11 +75,29 @@ public class CombinatorialExplorerByLayer
      */
     final ArrayList<GraphBuildingTask> submitted;
 
+    /**
+     * Tracker of the completion of the submitted subtasks.
+     */
+    final TaskCompletionTracker tracker;
+
     /**
      * Asynchronous tasks manager 
      */
     final ThreadPoolExecutor tpe;
 
+    /**
+     * Executor writing checkpoint files without blocking the thread that 
+     * submits subtasks.
+     */
+    private final ExecutorService chkPtWriter;
+
+    /**
+     * Latest checkpoint waiting to be written to file. Older checkpoints that
+     * have not yet been written when a newer one is made are never written.
+     */
+    private final AtomicReference<CheckPoint> pendingChkPt = 
+            new AtomicReference<CheckPoint>();
+
     /**
      * Verbosity level
      */
@@ -132,6 +156,16 @@ public class CombinatorialExplorerByLayer
         
         futures = new ArrayList<>();
         submitted = new ArrayList<>();
+        tracker = new TaskCompletionTracker();
+        chkPtWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "CEBL-checkpoint-writer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
 
         tpe = new ThreadPoolExecutor(settings.getNumberOfCPU(),
                 settings.getNumberOfCPU(),
@@ -204,6 +238,7 @@ public class CombinatorialExplorerByLayer
     {
         cleanup(tpe, futures, submitted);
         tpe.shutdown();
+        stopCheckPointWriter();
     }
 
 //------------------------------------------------------------------------------
@@ -216,17 +251,11 @@ public class CombinatorialExplorerByLayer
 
     private boolean subtaskHasException()
     {
-        boolean hasException = false;
-        for (GraphBuildingTask tsk : submitted)
+        boolean hasException = tracker.hasException();
+        if (hasException)
         {
-            if (tsk.foundException())
-            {
-                hasException = true;
-                thrownByTask = tsk.getException();
-                break;
-            }
+            thrownByTask = tracker.getException();
         }
-
         return hasException;
     }
 
@@ -239,61 +268,90 @@ public class CombinatorialExplorerByLayer
 
     private boolean allTasksCompleted()
     {
-        boolean allDone = true;
-        for (GraphBuildingTask tsk : submitted)
-        {
-            if (!tsk.isCompleted())
-            {
-                allDone = false;
-                break;
-            }
-        }
-
-        return allDone;
+        return tracker.allCompleted();
     }
 
 //------------------------------------------------------------------------------
 
     /**
      * Identify the task preceding the earliest non-completed task and use it to
-     * create a checkpoint file
+     * create a checkpoint file. The checkpoint is updated immediately, but the
+     * file is written asynchronously.
      */
 
     private void makeCheckPoint() throws DENOPTIMException
     {
-        for (int i=0; i<submitted.size(); i++)
+        GraphBuildingTask tsk = tracker.getLatestSafelyCompletedTask();
+        if (tsk == null)
         {
-            GraphBuildingTask tsk = submitted.get(i);
-            int idToChkPt = -1;
-            boolean storeChkPt = false;
-            if (!tsk.isCompleted() && i>0)
-            {
-                if (submitted.get(i-1).isCompleted())
+            return;
+        }
+        CheckPoint chk = settings.getCheckPoint();
+        chk.setSafelyCompletedGraphId(tsk.getGraphId());
+        chk.setRootId(tsk.getRootId());
+        chk.setNextIds(tsk.getNextIds());
+        chk.setLevel(tsk.getLevel());
+        chk.setUnqVrtId(GraphUtils.getUniqueVertexIndex());
+        chk.setUnqGraphId(GraphUtils.getUniqueGraphIndex());
+        chk.setUnqMolId(GraphUtils.getUniqueMoleculeIndex());
+        
+        // Only one writing job can be queued: it will write whatever is the 
+        // latest checkpoint at the time it runs.
+        if (pendingChkPt.getAndSet(chk.clone()) != null)
+        {
+            return;
+        }
+        try
+        {
+            chkPtWriter.submit(new Runnable() {
+                @Override
+                public void run()
                 {
-                    // The last completed task preceeding the first uncompleted
-                    idToChkPt = i-1;
-                    storeChkPt = true;
+                    CheckPoint toWrite = pendingChkPt.getAndSet(null);
+                    if (toWrite == null)
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        CEBLUtils.serializeCheckPoint(toWrite, 
+                                settings.getCheckPointName());
+                    } catch (DENOPTIMException e) {
+                        settings.getLogger().log(Level.WARNING, "Could not "
+                                + "write checkpoint file: " + e.getMessage());
+                    }
                 }
-            }
-            else if (tsk.isCompleted() && (i==submitted.size()-1))
+            });
+        } catch (RejectedExecutionException e) {
+            // The writer has been stopped: write synchronously
+            CheckPoint toWrite = pendingChkPt.getAndSet(null);
+            if (toWrite != null)
             {
-                idToChkPt = i;
-                storeChkPt = true;
+                CEBLUtils.serializeCheckPoint(toWrite, 
+                        settings.getCheckPointName());
             }
-            if (storeChkPt)
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stops the asynchronous writer of checkpoint files waiting for any
+     * pending checkpoint to be written.
+     */
+
+    private void stopCheckPointWriter()
+    {
+        chkPtWriter.shutdown();
+        try
+        {
+            if (!chkPtWriter.awaitTermination(60, TimeUnit.SECONDS))
             {
-                tsk = submitted.get(idToChkPt);
-                CheckPoint chk = settings.getCheckPoint();
-                chk.setSafelyCompletedGraphId(tsk.getGraphId());
-                chk.setRootId(tsk.getRootId());
-                chk.setNextIds(tsk.getNextIds());
-                chk.setLevel(tsk.getLevel());
-                chk.setUnqVrtId(GraphUtils.getUniqueVertexIndex());
-                chk.setUnqGraphId(GraphUtils.getUniqueGraphIndex());
-                chk.setUnqMolId(GraphUtils.getUniqueMoleculeIndex());
-                CEBLUtils.serializeCheckPoint(settings);
-                break;
+                settings.getLogger().log(Level.WARNING, "Timeout while "
+                        + "waiting for checkpoint file to be written.");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -323,6 +381,22 @@ public class CombinatorialExplorerByLayer
      */
 
     public void run() throws DENOPTIMException
+    {
+        // The threads doing the work are created from now on, so they 
+        // inherit the scope of the APClasses of the fragment space.
+        APClass.Scope previousScope = APClass.Scope.setActive(
+                fsSettings.getAPClassScope());
+        try
+        {
+            runExploration();
+        } finally {
+            APClass.Scope.setActive(previousScope);
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    private void runExploration() throws DENOPTIMException
     {
         String msg = "";
         StopWatch watch = new StopWatch();
@@ -537,6 +611,7 @@ public class CombinatorialExplorerByLayer
 
         // shutdown thread pool
         tpe.shutdown();
+        stopCheckPointWriter();
 
         // closing messages
         watch.stop();
@@ -699,6 +774,7 @@ public class CombinatorialExplorerByLayer
 
                     ArrayList<Integer> nextIds = fcf.getNextIds();
                     task.setNextIds(nextIds);
+                    task.setCompletionTracker(tracker);
 
                     submitted.add(task);
                     futures.add(tpe.submit(task));
@@ -789,12 +865,14 @@ public class CombinatorialExplorerByLayer
             {
                 cleanup(tpe, futures, submitted);
                 tpe.shutdown();
+                stopCheckPointWriter();
                 throw dex;
             }
             catch (Exception ex)
             {
                 cleanup(tpe, futures, submitted);
                 tpe.shutdown();
+                stopCheckPointWriter();
                 throw new DENOPTIMException(ex);
             }
 
@@ -872,6 +950,7 @@ public class CombinatorialExplorerByLayer
         }
 
         submitted.clear();
+        tracker.reset();
 
         tpe.getQueue().clear();
     }
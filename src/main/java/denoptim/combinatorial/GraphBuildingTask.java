@@ -103,6 +103,16 @@ public class GraphBuildingTask extends FitnessTask
      */
     private FragmentSpace fragSpace;
     
+    /**
+     * Tracker to be notified upon completion, if any.
+     */
+    private TaskCompletionTracker tracker = null;
+    
+    /**
+     * Index of this task in the tracker to be notified upon completion.
+     */
+    private int idxInTracker = -1;
+    
 //------------------------------------------------------------------------------
    
     /**
@@ -203,6 +213,20 @@ public class GraphBuildingTask extends FitnessTask
             this.nextIds.add(i);
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Registers this task in the given tracker, which will be notified when
+     * this task completes or throws an exception.
+     * @param tracker the tracker to notify.
+     */
+
+    public void setCompletionTracker(TaskCompletionTracker tracker)
+    {
+        this.tracker = tracker;
+        this.idxInTracker = tracker.register(this);
+    }
+
 //------------------------------------------------------------------------------
    
     /**
@@ -231,6 +255,8 @@ public class GraphBuildingTask extends FitnessTask
             if (!fitnessSettings.make3dTree())
             {
             	tb3d.setAlignBBsIn3D(false);
+            } else {
+                tb3d.setAssemblyCache(fitnessSettings.getAssemblyCache());
             }
 
             // Extend graph as requested
@@ -455,10 +481,18 @@ public class GraphBuildingTask extends FitnessTask
             // and store it as a property of the present task
             hasException = true;
             thrownExc = t;
+            if (tracker != null)
+            {
+                tracker.notifyException(this, idxInTracker, t);
+            }
             throw new Exception(t);
         }
 
         completed = true;
+        if (tracker != null)
+        {
+            tracker.notifyCompleted(this, idxInTracker);
+        }
         return "PASS";
     }
     
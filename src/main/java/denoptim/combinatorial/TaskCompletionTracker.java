@@ -0,0 +1,186 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2019 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.combinatorial;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+
+/**
+ * Keeps track of the completion of {@link GraphBuildingTask}s in the order
+ * they have been submitted. Tasks register upon submission and notify this
+ * tracker upon completion. The tracker maintains a low-watermark, i.e., the
+ * number of tasks that have been completed and that are preceded only by
+ * completed tasks. This allows to identify the latest safely completed task
+ * in constant time, no matter how many tasks have been submitted.
+ */
+
+public class TaskCompletionTracker
+{
+    /**
+     * Registered tasks in order of submission.
+     */
+    private final List<GraphBuildingTask> tasks =
+            new ArrayList<GraphBuildingTask>();
+
+    /**
+     * Flags for tasks that have been completed but are not yet below the
+     * watermark because some preceding task is still running.
+     */
+    private final BitSet completedAhead = new BitSet();
+
+    /**
+     * Number of leading tasks that are all completed.
+     */
+    private int watermark = 0;
+
+    /**
+     * The first exception notified by any of the registered tasks.
+     */
+    private Throwable thrownByTask = null;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Registers a task and returns its position in the order of submission.
+     * @param task the task to register.
+     * @return the index to be used when notifying the completion.
+     */
+    public synchronized int register(GraphBuildingTask task)
+    {
+        tasks.add(task);
+        return tasks.size() - 1;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Notifies the completion of the task with the given index and moves the
+     * watermark forward as much as possible.
+     * @param task the task that has been completed.
+     * @param idx the index returned upon registration of the task.
+     */
+    public synchronized void notifyCompleted(GraphBuildingTask task, int idx)
+    {
+        if (!isRegistered(task, idx))
+        {
+            return;
+        }
+        completedAhead.set(idx);
+        while (completedAhead.get(watermark))
+        {
+            completedAhead.clear(watermark);
+            watermark++;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Notifies that the task with the given index has terminated with an
+     * exception. Such task is never considered completed.
+     * @param task the task that has thrown the exception.
+     * @param idx the index returned upon registration of the task.
+     * @param t the exception.
+     */
+    public synchronized void notifyException(GraphBuildingTask task, int idx,
+            Throwable t)
+    {
+        if (isRegistered(task, idx) && thrownByTask == null)
+        {
+            thrownByTask = t;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the given task is the one registered with
+     * the given index since the latest reset.
+     */
+    private boolean isRegistered(GraphBuildingTask task, int idx)
+    {
+        return idx >= 0 && idx < tasks.size() && tasks.get(idx) == task;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the latest completed task of which all the preceding tasks are
+     * also completed, or <code>null</code> if no such task exists.
+     */
+    public synchronized GraphBuildingTask getLatestSafelyCompletedTask()
+    {
+        if (watermark == 0)
+        {
+            return null;
+        }
+        return tasks.get(watermark-1);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if all registered tasks are completed.
+     */
+    public synchronized boolean allCompleted()
+    {
+        return watermark == tasks.size();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if any registered task has notified an
+     * exception.
+     */
+    public synchronized boolean hasException()
+    {
+        return thrownByTask != null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the first exception notified by any of the registered tasks, or
+     * <code>null</code>.
+     */
+    public synchronized Throwable getException()
+    {
+        return thrownByTask;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Forgets all registered tasks. Tasks registered before the reset can
+     * still notify this tracker, but their notifications are ignored.
+     */
+    public synchronized void reset()
+    {
+        tasks.clear();
+        completedAhead.clear();
+        watermark = 0;
+        thrownByTask = null;
+    }
+
+//------------------------------------------------------------------------------
+
+}
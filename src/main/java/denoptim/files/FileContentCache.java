@@ -0,0 +1,119 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.files;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Thread-safe cache of objects parsed from files, indexed by the absolute
+ * pathname of the file. An entry is considered stale, and the file is parsed
+ * again, when the modification time or the size of the file differ from
+ * those the file had when the entry was made.
+ *
+ * @param <T> the type of object parsed from the files.
+ */
+
+public class FileContentCache<T>
+{
+    /**
+     * Parses the content of a file.
+     * @param <T> the type of object parsed from the file.
+     */
+    @FunctionalInterface
+    public interface Parser<T>
+    {
+        public T parse(File file) throws DENOPTIMException;
+    }
+
+    /**
+     * An object parsed from a file, and the state of the file before parsing.
+     */
+    private static class Entry<T>
+    {
+        final T content;
+        final long lastModified;
+        final long size;
+
+        Entry(T content, long lastModified, long size)
+        {
+            this.content = content;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The entries indexed by absolute pathname.
+     */
+    private final Map<String,Entry<T>> entries =
+            new ConcurrentHashMap<String,Entry<T>>();
+
+    /**
+     * The parser used to make new entries.
+     */
+    private final Parser<T> parser;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param parser the parser used whenever a file has to be parsed.
+     */
+    public FileContentCache(Parser<T> parser)
+    {
+        this.parser = parser;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the object parsed from the given file, parsing the file only if
+     * it has never been parsed or if it has changed since it was parsed.
+     * Two threads asking for the same changed file may both parse it, but
+     * since parsing the same file content gives equivalent objects, either
+     * result can be kept.
+     * @param file the file.
+     * @return the object parsed from the file.
+     * @throws DENOPTIMException if the parser fails.
+     */
+    public T get(File file) throws DENOPTIMException
+    {
+        String key = file.getAbsolutePath();
+        // The state is taken before parsing so that changes made while
+        // parsing make the entry stale.
+        long lastModified = file.lastModified();
+        long size = file.length();
+        Entry<T> entry = entries.get(key);
+        if (entry != null && entry.lastModified == lastModified
+                && entry.size == size)
+        {
+            return entry.content;
+        }
+        T content = parser.parse(file);
+        entries.put(key, new Entry<T>(content, lastModified, size));
+        return content;
+    }
+
+//------------------------------------------------------------------------------
+
+}
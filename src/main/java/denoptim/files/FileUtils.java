@@ -300,6 +300,28 @@ public class FileUtils
         }
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Delete all files in a folder, but not the folder itself nor any 
+     * subfolder. Meant to recycle scratch folders.
+     *
+     * @param path the pathname of the folder.
+     * @throws DENOPTIMException
+     */
+    public static void deleteFilesInFolder(String path)
+            throws DENOPTIMException {
+        File[] listOfFiles = new File(path).listFiles();
+        if (listOfFiles == null) {
+            return;
+        }
+        for (File file : listOfFiles) {
+            if (file.isFile()) {
+                deleteFile(file.getAbsolutePath());
+            }
+        }
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -24,6 +24,7 @@ import java.util.List;
 
 import denoptim.exception.DENOPTIMException;
 import denoptim.files.FileUtils;
+import denoptim.molecularmodeling.ThreeDimAssemblyCache;
 import denoptim.programs.RunTimeParameters;
 
 /**
@@ -95,6 +96,19 @@ public class FitnessParameters extends RunTimeParameters
      * Flag recording that we have explicitly expressed the choice of checkPreFitnessUID
      */
     private boolean checkPreFitnessUIDFromInput = false;
+    
+    /**
+     * Maximum number of building block placements kept in the cache used
+     * when building 3d-tree models. The cache is used only if this value is
+     * positive, which is not the default.
+     */
+    private int assemblyCacheSize = 0;
+    
+    /**
+     * Cache of building block placements shared by all the builders of 
+     * 3d-tree models, or <code>null</code> if no such cache is to be used.
+     */
+    private ThreeDimAssemblyCache assemblyCache = null;
 
     
 //------------------------------------------------------------------------------
@@ -142,6 +156,18 @@ public class FitnessParameters extends RunTimeParameters
     	return make3DTrees;
     }
 
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return the cache of building block placements to be used when making 
+     * tree-like 3d molecular models, or <code>null</code> if no such cache 
+     * is to be used.
+     */
+    public ThreeDimAssemblyCache getAssemblyCache()
+    {
+        return assemblyCache;
+    }
+
 //------------------------------------------------------------------------------
     
     /**
@@ -232,6 +258,19 @@ public class FitnessParameters extends RunTimeParameters
                 checkPreFitnessUID = readYesNoTrueFalse(value);
                 checkPreFitnessUIDFromInput = true;
                 break;
+                
+            case "3DTREECACHESIZE=":
+                try
+                {
+                    assemblyCacheSize = Integer.parseInt(value);
+                }
+                catch (Throwable t)
+                {
+                    msg = "Unable to understand value " + key + "'" + value
+                            + "'";
+                    throw new DENOPTIMException(msg);
+                }
+                break;
     
             default:
                  msg = "Keyword " + key + " is not a known fitness-related "
@@ -266,6 +305,11 @@ public class FitnessParameters extends RunTimeParameters
     	}
     	if (!checkPreFitnessUIDFromInput && useExternalFitness)
     	    checkPreFitnessUID = false;
+    	
+    	if (assemblyCacheSize > 0)
+    	    assemblyCache = new ThreeDimAssemblyCache(assemblyCacheSize);
+    	else
+    	    assemblyCache = null;
     	    
     	processOtherParameters();
     }
@@ -0,0 +1,350 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragmenter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.matchers.Expr;
+import org.openscience.cdk.isomorphism.matchers.QueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.QueryBond;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smarts.Smarts;
+
+import denoptim.programs.fragmenter.CuttingRule;
+import denoptim.utils.ManySMARTSQuery;
+import denoptim.utils.MoleculeUtils;
+
+/**
+ * Matches the SMARTS queries of a list of {@link CuttingRule}s against
+ * molecules. SMARTS queries are compiled only once per thread and reused for
+ * any molecule processed by that thread. Moreover, each rule is analyzed to
+ * find which elements and which bond orders must be present in a molecule for
+ * the rule to have any chance to match the molecule. Rules that cannot match
+ * a molecule are thus skipped without running any SMARTS matching.
+ * <p>Instances are shared by all the users of the same list of cutting rules,
+ * see {@link #getInstance(List)}.</p>
+ */
+
+public class CuttingRulesMatcher
+{
+    /**
+     * Whole SMARTS of each rule indexed by rule name, in the order of the
+     * rules.
+     */
+    private final Map<String,String> smartsByRule;
+
+    /**
+     * Requirements on the elements: for each rule, one set of possible atomic
+     * numbers for each atom in the SMARTS query that is restricted to specific
+     * elements.
+     */
+    private final Map<String,List<BitSet>> elementsByRule;
+
+    /**
+     * Requirements on the bond orders: for each rule, one set of possible
+     * numeric bond orders for each bond in the SMARTS query that is restricted
+     * to specific bond orders other than single.
+     */
+    private final Map<String,List<BitSet>> bondOrdersByRule;
+
+    /**
+     * Patterns compiled by each thread.
+     */
+    private final ThreadLocal<Map<String,Pattern>> compiled =
+            ThreadLocal.withInitial(() -> new HashMap<String,Pattern>());
+
+    /**
+     * Maximum number of shared instances kept in {@link #instances}.
+     */
+    private static final int MAXINSTANCES = 10;
+
+    /**
+     * Instances shared by all the users of the same list of cutting rules,
+     * indexed by an immutable copy of the list, so that changes made by the
+     * callers to their own lists do not alter the keys. The least recently
+     * used instance is forgotten when there are more than
+     * {@link #MAXINSTANCES} instances.
+     */
+    private static final Map<List<CuttingRule>,CuttingRulesMatcher> instances =
+            Collections.synchronizedMap(
+                    new LinkedHashMap<List<CuttingRule>,CuttingRulesMatcher>(
+                            16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<List<CuttingRule>,CuttingRulesMatcher> eldest)
+                {
+                    return size() > MAXINSTANCES;
+                }
+            });
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor. Use {@link #getInstance(List)} to share the instance among
+     * all the users of the same list of rules.
+     * @param rules the cutting rules.
+     */
+    public CuttingRulesMatcher(List<CuttingRule> rules)
+    {
+        smartsByRule = new LinkedHashMap<String,String>();
+        elementsByRule = new HashMap<String,List<BitSet>>();
+        bondOrdersByRule = new HashMap<String,List<BitSet>>();
+        for (CuttingRule rule : rules)
+        {
+            String smarts = rule.getWholeSMARTSRule();
+            smartsByRule.put(rule.getName(), smarts);
+            analyzeQuery(rule.getName(), smarts);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the matcher for the given list of cutting rules. The matcher
+     * is created upon the first request and then shared. The matcher reflects
+     * the content of the list at the time of the request: changing the list
+     * afterwards does not change the matcher, and a later request with the
+     * changed list gets the matcher of the new content.
+     * @param rules the cutting rules.
+     * @return the matcher of the given rules.
+     */
+    public static CuttingRulesMatcher getInstance(List<CuttingRule> rules)
+    {
+        synchronized (instances)
+        {
+            List<CuttingRule> key = List.copyOf(rules);
+            CuttingRulesMatcher matcher = instances.get(key);
+            if (matcher == null)
+            {
+                matcher = new CuttingRulesMatcher(key);
+                instances.put(key, matcher);
+            }
+            return matcher;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Parses the SMARTS query and collects the requirements that a molecule
+     * must satisfy to be matched by the query. If the query cannot be parsed
+     * no requirement is recorded, and the problem will be reported when
+     * trying to match the query.
+     */
+    private void analyzeQuery(String ruleName, String smarts)
+    {
+        List<BitSet> elements = new ArrayList<BitSet>();
+        List<BitSet> bondOrders = new ArrayList<BitSet>();
+        QueryAtomContainer query = new QueryAtomContainer(
+                SilentChemObjectBuilder.getInstance());
+        boolean parsed = false;
+        try
+        {
+            parsed = Smarts.parse(query, smarts);
+        } catch (Throwable t) {
+            parsed = false;
+        }
+        if (parsed)
+        {
+            for (IAtom atm : query.atoms())
+            {
+                if (!(atm instanceof QueryAtom))
+                    continue;
+                BitSet options = getPossibleValues(
+                        ((QueryAtom) atm).getExpression(), true);
+                if (options != null)
+                    elements.add(options);
+            }
+            for (IBond bnd : query.bonds())
+            {
+                if (!(bnd instanceof QueryBond))
+                    continue;
+                BitSet options = getPossibleValues(
+                        ((QueryBond) bnd).getExpression(), false);
+                // Single bonds are virtually always present
+                if (options != null && !options.get(1))
+                    bondOrders.add(options);
+            }
+        }
+        elementsByRule.put(ruleName, elements);
+        bondOrdersByRule.put(ruleName, bondOrders);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Finds the values of atomic number (for atoms) or numeric bond order (for
+     * bonds) that can satisfy a query expression.
+     * @param expr the query expression.
+     * @param forAtom use <code>true</code> for atom expressions and
+     * <code>false</code> for bond expressions.
+     * @return the set of values that can satisfy the expression, or
+     * <code>null</code> if the expression does not restrict such values.
+     */
+    private static BitSet getPossibleValues(Expr expr, boolean forAtom)
+    {
+        if (expr == null)
+            return null;
+        BitSet result = null;
+        switch (expr.type())
+        {
+            case ELEMENT:
+            case ALIPHATIC_ELEMENT:
+            case AROMATIC_ELEMENT:
+                if (forAtom)
+                {
+                    result = new BitSet();
+                    result.set(expr.value());
+                }
+                break;
+
+            case ORDER:
+            case ALIPHATIC_ORDER:
+                if (!forAtom)
+                {
+                    result = new BitSet();
+                    result.set(expr.value());
+                }
+                break;
+
+            case AND:
+            {
+                BitSet left = getPossibleValues(expr.left(), forAtom);
+                BitSet right = getPossibleValues(expr.right(), forAtom);
+                if (left == null)
+                {
+                    result = right;
+                } else if (right == null) {
+                    result = left;
+                } else {
+                    left.and(right);
+                    result = left;
+                }
+                break;
+            }
+
+            case OR:
+            {
+                BitSet left = getPossibleValues(expr.left(), forAtom);
+                BitSet right = getPossibleValues(expr.right(), forAtom);
+                if (left != null && right != null)
+                {
+                    left.or(right);
+                    result = left;
+                }
+                break;
+            }
+
+            case FALSE:
+                result = new BitSet();
+                break;
+
+            default:
+                // Any other expression does not restrict the values.
+                result = null;
+                break;
+        }
+        return result;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects the SMARTS queries of the rules that can possibly match the
+     * given molecule, i.e., of those rules whose required elements and bond
+     * orders are all present in the molecule.
+     * @param mol the molecule.
+     * @return the SMARTS queries indexed by rule name.
+     */
+    public Map<String,String> getCandidateQueries(IAtomContainer mol)
+    {
+        // WARNING: same assumptions on implicit H count and bond orders as in
+        // the SMARTS matching!
+        MoleculeUtils.setZeroImplicitHydrogensToAllAtoms(mol);
+        MoleculeUtils.ensureNoUnsetBondOrdersSilent(mol);
+
+        BitSet molElements = new BitSet();
+        for (IAtom atm : mol.atoms())
+        {
+            Integer z = atm.getAtomicNumber();
+            molElements.set(z == null ? 0 : z);
+        }
+        BitSet molBondOrders = new BitSet();
+        for (IBond bnd : mol.bonds())
+        {
+            if (bnd.getOrder() != null)
+                molBondOrders.set(bnd.getOrder().numeric());
+        }
+
+        Map<String,String> candidates = new LinkedHashMap<String,String>();
+        for (Map.Entry<String,String> entry : smartsByRule.entrySet())
+        {
+            String ruleName = entry.getKey();
+            if (!allIntersect(elementsByRule.get(ruleName), molElements))
+                continue;
+            if (!allIntersect(bondOrdersByRule.get(ruleName), molBondOrders))
+                continue;
+            candidates.put(ruleName, entry.getValue());
+        }
+        return candidates;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static boolean allIntersect(List<BitSet> requirements,
+            BitSet available)
+    {
+        for (BitSet options : requirements)
+        {
+            if (!options.intersects(available))
+                return false;
+        }
+        return true;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Matches the SMARTS queries of the rules that can possibly match the
+     * given molecule using the patterns compiled by the current thread.
+     * @param mol the molecule.
+     * @return the results of the matching.
+     */
+    public ManySMARTSQuery match(IAtomContainer mol)
+    {
+        return new ManySMARTSQuery(mol, getCandidateQueries(mol),
+                compiled.get());
+    }
+
+//------------------------------------------------------------------------------
+
+}
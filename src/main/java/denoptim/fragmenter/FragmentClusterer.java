@@ -2,11 +2,15 @@ package denoptim.fragmenter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.vecmath.Point3d;
 
@@ -70,6 +74,13 @@ public class FragmentClusterer
      */
     private Logger logger;
     
+    /**
+     * RMSD thresholds of the clusters, together with the centroid geometry
+     * they have been calculated for.
+     */
+    private Map<DynamicCentroidCluster,CachedThreshold> thresholds =
+            new HashMap<DynamicCentroidCluster,CachedThreshold>();
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -208,8 +219,6 @@ public class FragmentClusterer
     {
         boolean somethingMoved = false;
         
-        SuperPositionSVD svd = new SuperPositionSVD(false);
-        
         Set<DynamicCentroidCluster> toRemoveClusters = 
                 new HashSet<DynamicCentroidCluster>();
         for (int i=0; i<clusters.size(); i++)
@@ -226,43 +235,50 @@ public class FragmentClusterer
             
             ClusterableFragment centroidI = 
                     (ClusterableFragment) clusterI.getCentroid();
+            double[] coordsCentroidI = centroidI.getPoint();
             
             // Define a distance (RMSD upon superposition) for discriminating
             // this geometry from the others.
-            SummaryStatistics refRMSDStats = getRMSDStatsOfNoisyDistorsions(
-                    centroidI.getPoint(),
-                    settings.getSizeUnimodalPop(),
-                    settings.getMaxNoiseUnimodalPop());
-            double rmsdThreshold = refRMSDStats.getMean() 
-                    + settings.getFactorForSDOnStatsOfUnimodalPop() 
-                    * refRMSDStats.getStandardDeviation();
+            double rmsdThreshold = getRMSDThreshold(clusterI, coordsCentroidI);
             
+            // Collect the data of the clusters to compare with cluster I. 
+            // Centroids are updated here because that changes the clusters.
+            List<Integer> idxsJ = new ArrayList<Integer>();
+            List<double[]> coordsCentroidsJ = new ArrayList<double[]>();
             for (int j=i+1; j<clusters.size(); j++)
             {
-                DynamicCentroidCluster clusterJ = 
-                        clusters.get(j);
-                
+                DynamicCentroidCluster clusterJ = clusters.get(j);
                 if (toRemoveClusters.contains(clusterJ))
                     continue;
-                
-                //TODO: consider re-aligning to test alternative mappings. This
-                // because the mapping is done once against the first item in 
-                // the sample, but to distinguish sample members N!=1 and M!=1
-                // a different mapping (i.e., a different isomorphism) might be
-                // preferable.
-                // Essentially, this means "get rid of the assumption that one 
-                // isomorphism is suitable to align all members of the sample.
-                
-                ClusterableFragment centroidJ = (ClusterableFragment) 
-                        clusterJ.getCentroid();
-                
-                Point3d[] ptsCentroidI = ClusterableFragment.convertToPointArray(
-                        centroidI.getPoint());
-                Point3d[] ptsCentroidJ = ClusterableFragment.convertToPointArray(
-                        centroidJ.getPoint());
-                svd.superposeAndTransform(ptsCentroidI, ptsCentroidJ);
-                double rmsd = CalcPoint.rmsd(ptsCentroidI, ptsCentroidJ);
-                if (rmsd < rmsdThreshold)
+                idxsJ.add(j);
+                coordsCentroidsJ.add(clusterJ.getCentroid().getPoint());
+            }
+            
+            //TODO: consider re-aligning to test alternative mappings. This
+            // because the mapping is done once against the first item in 
+            // the sample, but to distinguish sample members N!=1 and M!=1
+            // a different mapping (i.e., a different isomorphism) might be
+            // preferable.
+            // Essentially, this means "get rid of the assumption that one 
+            // isomorphism is suitable to align all members of the sample.
+            
+            // The comparison of I with each J does not depend on what happens
+            // to any other J, so we do all comparisons in parallel...
+            List<MergeProposal> proposals = IntStream.range(0, idxsJ.size())
+                    .parallel()
+                    .mapToObj(k -> proposeChanges(coordsCentroidI, 
+                            coordsCentroidsJ.get(k), 
+                            clusters.get(idxsJ.get(k)).getPoints(),
+                            rmsdThreshold))
+                    .collect(Collectors.toList());
+            
+            // ...and then we apply the changes in the original order.
+            for (int k=0; k<idxsJ.size(); k++)
+            {
+                int j = idxsJ.get(k);
+                DynamicCentroidCluster clusterJ = clusters.get(j);
+                MergeProposal proposal = proposals.get(k);
+                if (proposal.merge)
                 {
                     somethingMoved = true;
                     toRemoveClusters.add(clusterJ);
@@ -270,44 +286,35 @@ public class FragmentClusterer
                     {
                         logger.log(Level.FINEST,"Merging cluster " + j + " into "
                                 + "cluster " + i + " (RMSD " 
-                                + String.format("%.4f", rmsd) + "<"
+                                + String.format("%.4f", proposal.rmsd) + "<"
                                 + String.format("%.4f", rmsdThreshold) + ").");
                     }
-                    for (ClusterableFragment pointJ : clusterJ.getPoints())
+                    for (int m=0; m<proposal.points.size(); m++)
                     {
-                        Point3d[] ptsPointJ = ClusterableFragment.convertToPointArray(
-                                pointJ.getPoint());
-                        svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
-                        pointJ.setCoordsVector(ptsPointJ);
+                        ClusterableFragment pointJ = proposal.points.get(m);
+                        pointJ.setCoordsVector(proposal.newCoords.get(m));
                         clusterI.addPoint(pointJ);
                     }
                 } else {
-                    // J looks like a cluster distinct from I. Try to move members
+                    // J looks like a cluster distinct from I. Move members
                     Set<ClusterableFragment> toRemoveFromJ = 
                             new HashSet<ClusterableFragment>();
-                    for (ClusterableFragment pointJ : clusterJ.getPoints())
+                    for (int m=0; m<proposal.points.size(); m++)
                     {
-                        
-                        Point3d[] ptsPointJ = ClusterableFragment.convertToPointArray(
-                                pointJ.getPoint());
-                        svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
-                        double rmsdJ = CalcPoint.rmsd(ptsCentroidJ, ptsPointJ);
-                        svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
-                        double rmsdI = CalcPoint.rmsd(ptsCentroidI, ptsPointJ);
-                        if (rmsdI < rmsdJ)
+                        ClusterableFragment pointJ = proposal.points.get(m);
+                        somethingMoved = true;
+                        pointJ.setCoordsVector(proposal.newCoords.get(m));
+                        clusterI.addPoint(pointJ);
+                        toRemoveFromJ.add(pointJ);
+                        if (logger!=null)
                         {
-                            somethingMoved = true;
-                            pointJ.setCoordsVector(ptsPointJ);
-                            clusterI.addPoint(pointJ);
-                            toRemoveFromJ.add(pointJ);
-                            if (logger!=null)
-                            {
-                                logger.log(Level.FINEST,"Moving one fragment "
-                                        + "from cluster " + j + " to "
-                                        + "cluster " + i + " (RMSD " 
-                                        + String.format("%.4f", rmsd) + ">="
-                                        + String.format("%.4f", rmsdThreshold) + ").");
-                            }
+                            logger.log(Level.FINEST,"Moving one fragment "
+                                    + "from cluster " + j + " to "
+                                    + "cluster " + i + " (RMSD " 
+                                    + String.format("%.4f", proposal.rmsd) 
+                                    + ">="
+                                    + String.format("%.4f", rmsdThreshold) 
+                                    + ").");
                         }
                     }
                     clusterJ.removeAll(toRemoveFromJ);
@@ -318,10 +325,147 @@ public class FragmentClusterer
         }
         
         clusters.removeAll(toRemoveClusters);
+        thresholds.keySet().retainAll(clusters);
         
         return somethingMoved;
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Changes to a cluster J that result from the comparison with a cluster I.
+     * Either the entire cluster J is to be merged into cluster I, or some of 
+     * the members of J are to be moved into cluster I.
+     */
+    private static class MergeProposal
+    {
+        /**
+         * RMSD between the centroids of clusters I and J.
+         */
+        double rmsd;
+        
+        /**
+         * <code>true</code> if the entire cluster J is to be merged into I.
+         */
+        boolean merge = false;
+        
+        /**
+         * The members of cluster J that are to be added to cluster I.
+         */
+        List<ClusterableFragment> points = new ArrayList<ClusterableFragment>();
+        
+        /**
+         * The coordinates, aligned to the centroid of I, of the members that 
+         * are to be added to cluster I.
+         */
+        List<Point3d[]> newCoords = new ArrayList<Point3d[]>();
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Compares cluster J with cluster I to find out which members of J should
+     * be moved to cluster I. Does not change any cluster, so it can be run
+     * in parallel for different J.
+     * @param coordsCentroidI coordinates of the centroid of cluster I.
+     * @param coordsCentroidJ coordinates of the centroid of cluster J.
+     * @param pointsJ members of cluster J.
+     * @param rmsdThreshold the RMSD threshold for merging cluster J into 
+     * cluster I.
+     * @return the proposed changes.
+     */
+    private static MergeProposal proposeChanges(double[] coordsCentroidI, 
+            double[] coordsCentroidJ, List<ClusterableFragment> pointsJ,
+            double rmsdThreshold)
+    {
+        MergeProposal proposal = new MergeProposal();
+        
+        SuperPositionSVD svd = new SuperPositionSVD(false);
+        Point3d[] ptsCentroidI = ClusterableFragment.convertToPointArray(
+                coordsCentroidI);
+        Point3d[] ptsCentroidJ = ClusterableFragment.convertToPointArray(
+                coordsCentroidJ);
+        svd.superposeAndTransform(ptsCentroidI, ptsCentroidJ);
+        proposal.rmsd = CalcPoint.rmsd(ptsCentroidI, ptsCentroidJ);
+        if (proposal.rmsd < rmsdThreshold)
+        {
+            proposal.merge = true;
+            for (ClusterableFragment pointJ : pointsJ)
+            {
+                Point3d[] ptsPointJ = ClusterableFragment.convertToPointArray(
+                        pointJ.getPoint());
+                svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
+                proposal.points.add(pointJ);
+                proposal.newCoords.add(ptsPointJ);
+            }
+        } else {
+            for (ClusterableFragment pointJ : pointsJ)
+            {
+                Point3d[] ptsPointJ = ClusterableFragment.convertToPointArray(
+                        pointJ.getPoint());
+                svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
+                double rmsdJ = CalcPoint.rmsd(ptsCentroidJ, ptsPointJ);
+                svd.superposeAndTransform(ptsCentroidI, ptsPointJ);
+                double rmsdI = CalcPoint.rmsd(ptsCentroidI, ptsPointJ);
+                if (rmsdI < rmsdJ)
+                {
+                    proposal.points.add(pointJ);
+                    proposal.newCoords.add(ptsPointJ);
+                }
+            }
+        }
+        return proposal;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Gets the RMSD threshold for merging other clusters into the given 
+     * cluster. The threshold depends only on the coordinates of the 
+     * centroid, so it is recalculated only when such coordinates change.
+     * @param cluster the cluster.
+     * @param coordsCentroid the current coordinates of the centroid of the 
+     * cluster.
+     * @return the RMSD threshold.
+     */
+    private double getRMSDThreshold(DynamicCentroidCluster cluster, 
+            double[] coordsCentroid)
+    {
+        CachedThreshold cached = thresholds.get(cluster);
+        if (cached != null && Arrays.equals(cached.coords, coordsCentroid))
+        {
+            return cached.value;
+        }
+        SummaryStatistics refRMSDStats = getRMSDStatsOfNoisyDistorsions(
+                coordsCentroid,
+                settings.getSizeUnimodalPop(),
+                settings.getMaxNoiseUnimodalPop());
+        double rmsdThreshold = refRMSDStats.getMean() 
+                + settings.getFactorForSDOnStatsOfUnimodalPop() 
+                * refRMSDStats.getStandardDeviation();
+        thresholds.put(cluster, new CachedThreshold(
+                Arrays.copyOf(coordsCentroid, coordsCentroid.length), 
+                rmsdThreshold));
+        return rmsdThreshold;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * RMSD threshold calculated for a specific centroid geometry.
+     */
+    private static class CachedThreshold
+    {
+        final double[] coords;
+        final double value;
+        
+        CachedThreshold(double[] coords, double value)
+        {
+            this.coords = coords;
+            this.value = value;
+        }
+    }
+    
 //------------------------------------------------------------------------------
    
     /**
@@ -0,0 +1,246 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragmenter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.files.FileFormat;
+import denoptim.fragmenter.StreamingFragmenterTask.StreamedResult;
+import denoptim.graph.Vertex;
+import denoptim.io.DenoptimIO;
+
+/**
+ * Single writer collecting the results produced by
+ * {@link StreamingFragmenterTask}s into one file. Results can be written as
+ * soon as they are available, or in the order of the input structures.
+ * Any pre-existing output file is overwritten.
+ */
+
+public class FragmenterResultsWriter implements Runnable
+{
+    /**
+     * Source of results.
+     */
+    private BlockingQueue<StreamedResult> results;
+
+    /**
+     * Number of producers that will signal the end of their stream.
+     */
+    private int numProducers;
+
+    /**
+     * Flag requesting to write results in the order of the input.
+     */
+    private boolean ordered;
+
+    /**
+     * The file where results are written.
+     */
+    private File output;
+
+    /**
+     * Flag shared among all components of the streaming pipeline.
+     */
+    private AtomicBoolean abort;
+
+    /**
+     * Number of results accumulated before writing them to file.
+     */
+    private int maxBufferSize = 2000;
+
+    /**
+     * Number of entries written to file.
+     */
+    private int numWritten = 0;
+
+    /**
+     * Exception thrown while writing, if any.
+     */
+    private Throwable thrownExc = null;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructs a writer.
+     * @param results the source of results.
+     * @param numProducers the number of producers that will signal the end of
+     * their stream. The writer terminates once all of them have done so.
+     * @param ordered use <code>true</code> to write the results in the same
+     * order as the input structures.
+     * @param output the file where to write the results. Any existing file 
+     * is replaced.
+     * @param abort flag shared with all components of the pipeline. It is
+     * set to <code>true</code> if this writer fails.
+     */
+    public FragmenterResultsWriter(BlockingQueue<StreamedResult> results,
+            int numProducers, boolean ordered, File output, AtomicBoolean abort)
+    {
+        this.results = results;
+        this.numProducers = numProducers;
+        this.ordered = ordered;
+        this.output = output;
+        this.abort = abort;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Override
+    public void run()
+    {
+        List<IAtomContainer> structures = new ArrayList<IAtomContainer>();
+        List<Vertex> fragments = new ArrayList<Vertex>();
+        TreeMap<Integer,StreamedResult> waiting =
+                new TreeMap<Integer,StreamedResult>();
+        int nextIndex = 0;
+        int ended = 0;
+        try
+        {
+            // We append to the output, so we must start from an empty file
+            Files.deleteIfExists(output.toPath());
+        } catch (IOException e) {
+            thrownExc = e;
+            abort.set(true);
+        }
+        try
+        {
+            while (ended < numProducers)
+            {
+                StreamedResult result = results.poll(
+                        StreamingFragmenterTask.POLLINGTIME,
+                        TimeUnit.MILLISECONDS);
+                if (result == null)
+                {
+                    // Aborted producers might never signal their end
+                    if (abort.get())
+                        break;
+                    continue;
+                }
+                if (result.endOfStream)
+                {
+                    ended++;
+                    continue;
+                }
+                if (ordered)
+                {
+                    waiting.put(result.index, result);
+                    while (waiting.containsKey(nextIndex))
+                    {
+                        collect(waiting.remove(nextIndex), structures,
+                                fragments);
+                        nextIndex++;
+                    }
+                } else {
+                    collect(result, structures, fragments);
+                }
+                if (structures.size() + fragments.size() >= maxBufferSize)
+                {
+                    flush(structures, fragments);
+                }
+            }
+            // Results that are still waiting for a preceding one that will
+            // never come, e.g., because a producer has failed.
+            for (StreamedResult result : waiting.values())
+            {
+                collect(result, structures, fragments);
+            }
+            flush(structures, fragments);
+        } catch (InterruptedException e) {
+            thrownExc = e;
+            abort.set(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private void collect(StreamedResult result,
+            List<IAtomContainer> structures, List<Vertex> fragments)
+    {
+        structures.addAll(result.structures);
+        fragments.addAll(result.fragments);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Appends the content of the buffers to the output file and clears the
+     * buffers. After a failure, the buffers are only cleared, so that the
+     * producers are never blocked by this writer.
+     */
+    private void flush(List<IAtomContainer> structures, List<Vertex> fragments)
+    {
+        if (thrownExc == null)
+        {
+            try
+            {
+                if (structures.size() > 0)
+                {
+                    DenoptimIO.writeSDFFile(output.getAbsolutePath(),
+                            structures, true);
+                }
+                if (fragments.size() > 0)
+                {
+                    DenoptimIO.writeVertexesToFile(output, FileFormat.VRTXSDF,
+                            fragments, true);
+                }
+                numWritten += structures.size() + fragments.size();
+            } catch (DENOPTIMException e) {
+                thrownExc = e;
+                abort.set(true);
+            }
+        }
+        structures.clear();
+        fragments.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of entries written to the output file.
+     */
+    public int getNumberOfWrittenEntries()
+    {
+        return numWritten;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the exception that prevented writing results, or
+     * <code>null</code> if no such exception occurred.
+     */
+    public Throwable getException()
+    {
+        return thrownExc;
+    }
+
+//------------------------------------------------------------------------------
+
+}
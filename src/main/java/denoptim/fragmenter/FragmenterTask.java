@@ -64,7 +64,7 @@ public class FragmenterTask extends Task
     /**
      * Logger for this task.
      */
-    private Logger logger = null;
+    protected Logger logger = null;
     
     /**
      * Pathname to thread-specific log.
@@ -93,21 +93,9 @@ public class FragmenterTools
                             + input + ". Cannot compare formula with elemental"
                             + "analysis.");
                 }
-                String formula = mol.getProperty(DENOPTIMConstants.FORMULASTR)
-                        .toString();
-                
-                if (FormulaUtils.compareFormulaAndElementalAnalysis(formula, 
-                        mol, logger))
+                if (checkElementalAnalysisAgainstFormula(mol, index, logger))
                 {
                     buffer.add(mol);
-                } else {
-                    if (logger!=null)
-                    {
-                        logger.log(Level.INFO,"Inconsistency between elemental "
-                                + "analysis of structure and molecular formula."
-                                + " Rejecting structure " + index + ": " 
-                                + mol.getTitle());
-                    }
                 }
                 
                 // If max buffer size is reached, then bump to file
@@ -129,6 +117,45 @@ public class FragmenterTools
         }
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Analyzes the composition of one chemical structure as compared to the 
+     * molecular formula declared in the {@link DENOPTIMConstants#FORMULASTR} 
+     * property of such structure.
+     * @param mol the structure to analyze.
+     * @param index the index of the structure. Used only for logging.
+     * @param logger a task-dedicated logger where we print messages for the 
+     * user.
+     * @return <code>true</code> if the declared formula matches the 
+     * composition of the chemical representation.
+     */
+    public static boolean checkElementalAnalysisAgainstFormula(
+            IAtomContainer mol, int index, Logger logger)
+    {
+        if (mol.getProperty(DENOPTIMConstants.FORMULASTR)==null)
+        {
+            throw new Error("Property '" + DENOPTIMConstants.FORMULASTR 
+                    + "' not found in molecule " + index + ". Cannot compare "
+                    + "formula with elemental analysis.");
+        }
+        String formula = mol.getProperty(DENOPTIMConstants.FORMULASTR)
+                .toString();
+        if (FormulaUtils.compareFormulaAndElementalAnalysis(formula, mol, 
+                logger))
+        {
+            return true;
+        }
+        if (logger!=null)
+        {
+            logger.log(Level.INFO,"Inconsistency between elemental "
+                    + "analysis of structure and molecular formula."
+                    + " Rejecting structure " + index + ": " 
+                    + mol.getTitle());
+        }
+        return false;
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -150,13 +177,7 @@ public class FragmenterTools
         IteratingSDFReader reader = new IteratingSDFReader(fis, 
                 DefaultChemObjectBuilder.getInstance());
 
-        int i = -1;
-        Map<String, String> smartsMap = new HashMap<String, String>();
-        for (String s : smarts)
-        {
-            i++;
-            smartsMap.put("prefilter-"+i, s);
-        }
+        Map<String, String> smartsMap = getPreFilterSMARTSMap(smarts);
         
         int index = -1;
         int maxBufferSize = 2000;
@@ -170,30 +191,9 @@ public class FragmenterTools
                     logger.log(Level.FINE,"Prefiltering structure " + index);
                 }
                 IAtomContainer mol = reader.next();
-                
-                ManySMARTSQuery msq = new ManySMARTSQuery(mol, smartsMap);
-                if (msq.hasProblems())
-                {
-                    String msg = "WARNING! Problems while searching for "
-                            + "specific atoms/bonds using SMARTS: " 
-                            + msq.getMessage();
-                    throw new DENOPTIMException(msg,msq.getProblem());
-                }
-                Map<String, Mappings> allMatches = msq.getAllMatches();
-                
-                if (allMatches.size()==0)
+                if (passesPreFilter(mol, index, smartsMap, logger))
                 {
                     buffer.add(mol);
-                } else {
-                    String hits = "";
-                    for (String s : allMatches.keySet())
-                        hits = hits + DenoptimIO.NL + smartsMap.get(s);
-                    if (logger!=null)
-                    {
-                        logger.log(Level.INFO,"Found match for " + hits
-                                + "Rejecting structure " + index + ": " 
-                                + mol.getTitle());
-                    }
                 }
                 
                 // If max buffer size is reached, then bump to file
@@ -214,6 +214,69 @@ public class FragmenterTools
         }
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects SMARTS queries in the map format needed to evaluate them
+     * with {@link #passesPreFilter(IAtomContainer, int, Map, Logger)}.
+     * @param smarts the queries leading to rejection.
+     * @return the map of queries.
+     */
+    public static Map<String, String> getPreFilterSMARTSMap(Set<String> smarts)
+    {
+        int i = -1;
+        Map<String, String> smartsMap = new HashMap<String, String>();
+        for (String s : smarts)
+        {
+            i++;
+            smartsMap.put("prefilter-"+i, s);
+        }
+        return smartsMap;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Checks if one chemical structure matches any of the given SMARTS 
+     * queries.
+     * @param mol the structure to analyze.
+     * @param index the index of the structure. Used only for logging.
+     * @param smartsMap the queries leading to rejection.
+     * @param logger a task-dedicated logger where we print messages for the 
+     * user.
+     * @return <code>true</code> if none of the queries matches the structure, 
+     * i.e., the structure should be kept.
+     * @throws DENOPTIMException
+     */
+    public static boolean passesPreFilter(IAtomContainer mol, int index,
+            Map<String, String> smartsMap, Logger logger) 
+                    throws DENOPTIMException
+    {
+        ManySMARTSQuery msq = new ManySMARTSQuery(mol, smartsMap);
+        if (msq.hasProblems())
+        {
+            String msg = "WARNING! Problems while searching for "
+                    + "specific atoms/bonds using SMARTS: " 
+                    + msq.getMessage();
+            throw new DENOPTIMException(msg,msq.getProblem());
+        }
+        Map<String, Mappings> allMatches = msq.getAllMatches();
+        if (allMatches.size()==0)
+        {
+            return true;
+        }
+        String hits = "";
+        for (String s : allMatches.keySet())
+            hits = hits + DenoptimIO.NL + smartsMap.get(s);
+        if (logger!=null)
+        {
+            logger.log(Level.INFO,"Found match for " + hits
+                    + "Rejecting structure " + index + ": " 
+                    + mol.getTitle());
+        }
+        return false;
+    }
+    
 //-----------------------------------------------------------------------------
     
     /**
@@ -254,38 +317,10 @@ public class FragmenterTools
                     logger.log(Level.FINE,"Fragmenting structure " + index);
                 }
                 IAtomContainer mol = iterator.next();
-                String molName = "noname-mol" + index;
-                if (mol.getTitle()!=null && !mol.getTitle().isBlank())
-                    molName = mol.getTitle();
                 
-                // Generate the fragments
-                ArrayList<Vertex> fragments = fragmentation(mol, 
-                        settings.getCuttingRules(), 
-                        logger);
-                if (logger!=null)
-                {
-                    logger.log(Level.FINE,"Fragmentation produced " 
-                            + fragments.size() + " fragments.");
-                }
-                totalProd += fragments.size();
-                
-                // Post-fragmentation processing of fragments
                 ArrayList<Vertex> keptFragments = new ArrayList<Vertex>();
-                int fragCounter = 0;
-                for (Vertex frag : fragments)
-                {
-                    // Add metadata
-                    String fragIdStr = "From_" + molName + "_" + fragCounter;
-                    frag.setProperty("cdk:Title", fragIdStr);
-                    fragCounter++;
-                    manageFragmentCollection(frag, fragCounter, settings,
-                            keptFragments, logger);
-                }
-                if (logger!=null)
-                {
-                    logger.log(Level.FINE,"Fragments surviving post-"
-                            + "processing: " + keptFragments.size());
-                }
+                totalProd += fragmentation(mol, index, settings, keptFragments, 
+                        logger);
                 totalKept += keptFragments.size();
                 if (!settings.doManageIsomorphicFamilies() && totalKept>0)
                 {
@@ -319,6 +354,68 @@ public class FragmenterTools
         return true;
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Chops one chemical structure by applying the cutting rules defined in the
+     * settings, and performs the post-fragmentation processing of the 
+     * resulting fragments (see 
+     * {@link #manageFragmentCollection(Vertex, int, FragmenterParameters, 
+     * List, Logger)}).
+     * @param mol the structure to chop.
+     * @param index the index of the structure. Used to name the fragments
+     * when the structure has no title, and for logging.
+     * @param settings configurations including cutting rules and filtration 
+     * criteria.
+     * @param keptFragments collector of the fragments that survive the 
+     * post-fragmentation processing.
+     * @param logger where to direct log messages.
+     * @return the number of fragments produced before any post-fragmentation
+     * processing.
+     * @throws DENOPTIMException
+     * @throws IllegalArgumentException
+     * @throws UndetectedFileFormatException
+     * @throws IOException
+     */
+    public static int fragmentation(IAtomContainer mol, int index,
+            FragmenterParameters settings, List<Vertex> keptFragments,
+            Logger logger) throws DENOPTIMException, IllegalArgumentException,
+                UndetectedFileFormatException, IOException
+    {
+        String molName = "noname-mol" + index;
+        if (mol.getTitle()!=null && !mol.getTitle().isBlank())
+            molName = mol.getTitle();
+        
+        // Generate the fragments
+        ArrayList<Vertex> fragments = fragmentation(mol, 
+                settings.getCuttingRules(), 
+                logger);
+        if (logger!=null)
+        {
+            logger.log(Level.FINE,"Fragmentation produced " 
+                    + fragments.size() + " fragments.");
+        }
+        
+        // Post-fragmentation processing of fragments
+        int sizeBefore = keptFragments.size();
+        int fragCounter = 0;
+        for (Vertex frag : fragments)
+        {
+            // Add metadata
+            String fragIdStr = "From_" + molName + "_" + fragCounter;
+            frag.setProperty("cdk:Title", fragIdStr);
+            fragCounter++;
+            manageFragmentCollection(frag, fragCounter, settings,
+                    keptFragments, logger);
+        }
+        if (logger!=null)
+        {
+            logger.log(Level.FINE,"Fragments surviving post-"
+                    + "processing: " + (keptFragments.size() - sizeBefore));
+        }
+        return fragments.size();
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -608,19 +705,14 @@ public class FragmenterTools
     static Map<String, ArrayList<MatchedBond>> getMatchingBondsAllInOne(
             IAtomContainer mol, List<CuttingRule> rules, Logger logger)
     {
-        // Collect all SMARTS queries
-        Map<String,String> smarts = new HashMap<String,String>();
-        for (CuttingRule rule : rules)
-        {
-            smarts.put(rule.getName(),rule.getWholeSMARTSRule());
-        }
-
         // Prepare a data structure for the return value
         Map<String, ArrayList<MatchedBond>> bondsMatchingRules = 
                 new HashMap<String, ArrayList<MatchedBond>>();
 
-        // Get all the matches to the SMARTS queries
-        ManySMARTSQuery msq = new ManySMARTSQuery(mol, smarts);
+        // Get all the matches to the SMARTS queries. The compiled queries are 
+        // shared by all molecules processed with the same list of rules, and
+        // rules that cannot match this molecule are skipped.
+        ManySMARTSQuery msq = CuttingRulesMatcher.getInstance(rules).match(mol);
         if (msq.hasProblems())
         {
             if (logger!=null)
@@ -796,28 +888,33 @@ public class FragmenterTools
          // -> reject the rest.
         if (settings.doManageIsomorphicFamilies())
         {
-            synchronized (settings.MANAGEMWSLOTSSLOCK)
+            String mwSlotID = getMWSlotIdentifier(frag, 
+                    settings.getMWSlotSize());
+            IsomorphicFamilyIndex.MWSlot mwSlot = 
+                    settings.getIsomorphicFamilyIndex().getSlot(mwSlotID);
+            
+            // Only threads dealing with the same MW slot wait for each other
+            synchronized (mwSlot)
             {
-                String mwSlotID = getMWSlotIdentifier(frag, 
-                        settings.getMWSlotSize());
-
                 File mwFileUnq = settings.getMWSlotFileNameUnqFrags(
                         mwSlotID);
                 File mwFileAll = settings.getMWSlotFileNameAllFrags(
                         mwSlotID);
                 
-                // Compare this fragment with previously seen ones
-                Vertex unqVersion = null;
-                if (mwFileUnq.exists())
+                // Fragments left on file by previous runs are imported once.
+                for (Vertex known : mwSlot.initialize(mwFileUnq))
                 {
-                    ArrayList<Vertex> knownFrags = 
-                            DenoptimIO.readVertexes(mwFileUnq,BBType.UNDEFINED);
-                    unqVersion = knownFrags.stream()
-                        .filter(knownFrag -> 
-                            ((Fragment)frag).isIsomorphicTo(knownFrag))
-                        .findAny()
-                        .orElse(null);
+                    Object isoFamID = known.getProperty(
+                            DENOPTIMConstants.ISOMORPHICFAMILYID);
+                    if (isoFamID != null)
+                    {
+                        settings.getIsomorphsCount().putIfAbsent(
+                                isoFamID.toString(), 1);
+                    }
                 }
+                
+                // Compare this fragment with previously seen ones
+                Vertex unqVersion = mwSlot.findIsomorph((Fragment) frag);
                 if (unqVersion!=null)
                 {
                     // Identify this unique fragment
@@ -865,6 +962,7 @@ public class FragmenterTools
                             DENOPTIMConstants.ISOMORPHICFAMILYID,
                             isoFamID);
                     settings.getIsomorphsCount().put(isoFamID, 1);
+                    mwSlot.add((Fragment) frag);
                     DenoptimIO.writeVertexToFile(mwFileUnq, 
                             FileFormat.VRTXSDF, frag, true);
                     DenoptimIO.writeVertexToFile(mwFileAll, 
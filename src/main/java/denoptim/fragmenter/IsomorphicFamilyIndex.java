@@ -0,0 +1,164 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragmenter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.graph.Fragment;
+import denoptim.graph.Vertex;
+import denoptim.graph.Vertex.BBType;
+import denoptim.io.DenoptimIO;
+
+/**
+ * In-memory index of the unique fragments (i.e., the first member of each
+ * isomorphic family) collected in a fragmentation process. Fragments are
+ * grouped by molecular weight slot, and, within each slot, by the
+ * isomorphism invariant (see {@link Fragment#getIsomorphismInvariant()}), so
+ * that the expensive isomorphism check is run only among fragments that have
+ * a chance to be isomorphic. Each MW slot is meant to be used by one thread
+ * at the time: synchronize on the object returned by
+ * {@link #getSlot(String)}. Threads working on different MW slots do not
+ * wait for each other.
+ */
+
+public class IsomorphicFamilyIndex
+{
+    /**
+     * The MW slots indexed by their identifier.
+     */
+    private final Map<String,MWSlot> slots =
+            new ConcurrentHashMap<String,MWSlot>();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collection of the unique fragments belonging to one MW slot.
+     */
+    public static class MWSlot
+    {
+        /**
+         * Unique fragments grouped by isomorphism invariant.
+         */
+        private final Map<String,List<Vertex>> buckets =
+                new HashMap<String,List<Vertex>>();
+
+        /**
+         * Flag recording that we have already imported any fragment that was
+         * found in the file of unique fragments of this slot.
+         */
+        private boolean initialized = false;
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * Imports the fragments that are already present in the file of
+         * unique fragments of this slot. Does something only the first time
+         * it is called, so the file is never read more than once.
+         * @param mwFileUnq the file collecting the unique fragments of this
+         * MW slot.
+         * @return the imported fragments.
+         * @throws DENOPTIMException
+         */
+        public List<Vertex> initialize(File mwFileUnq)
+                throws DENOPTIMException
+        {
+            List<Vertex> imported = new ArrayList<Vertex>();
+            if (initialized)
+                return imported;
+            initialized = true;
+            if (mwFileUnq.exists())
+            {
+                imported = DenoptimIO.readVertexes(mwFileUnq,
+                        BBType.UNDEFINED);
+                for (Vertex v : imported)
+                {
+                    if (v instanceof Fragment)
+                        add((Fragment) v);
+                }
+            }
+            return imported;
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * Searches this slot for a unique fragment that is isomorphic to the
+         * given one.
+         * @param frag the fragment to search for.
+         * @return the isomorphic unique fragment, or <code>null</code> if no
+         * such fragment is found.
+         */
+        public Vertex findIsomorph(Fragment frag)
+        {
+            List<Vertex> bucket = buckets.get(frag.getIsomorphismInvariant());
+            if (bucket == null)
+                return null;
+            for (Vertex known : bucket)
+            {
+                if (frag.isIsomorphicTo(known))
+                    return known;
+            }
+            return null;
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * Adds a unique fragment to this slot.
+         * @param frag the fragment to add.
+         */
+        public void add(Fragment frag)
+        {
+            buckets.computeIfAbsent(frag.getIsomorphismInvariant(),
+                    k -> new ArrayList<Vertex>()).add(frag);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the MW slot with the given identifier, which is created if not
+     * already present.
+     * @param mwSlotID the identifier of the MW slot.
+     * @return the MW slot.
+     */
+    public MWSlot getSlot(String mwSlotID)
+    {
+        return slots.computeIfAbsent(mwSlotID, k -> new MWSlot());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Removes all MW slots from this index.
+     */
+    public void clear()
+    {
+        slots.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+}
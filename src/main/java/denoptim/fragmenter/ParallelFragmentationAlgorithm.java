@@ -28,8 +28,12 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -43,7 +47,10 @@ import org.openscience.cdk.io.iterator.IteratingSDFReader;
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.files.FileFormat;
+import denoptim.fragmenter.StreamingFragmenterTask.StreamedResult;
+import denoptim.fragmenter.StreamingFragmenterTask.StreamedStructure;
 import denoptim.io.DenoptimIO;
+import denoptim.io.IteractingAtomContainerReader;
 import denoptim.programs.RunTimeParameters.ParametersType;
 import denoptim.programs.fragmenter.FragmenterParameters;
 import denoptim.task.ParallelAsynchronousTaskExecutor;
@@ -68,6 +75,46 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
      * All settings controlling the tasks executed by this class.
      */
     private FragmenterParameters settings = null;
+    
+    /**
+     * Queue of structures read from the input, when streaming the input.
+     */
+    private BlockingQueue<StreamedStructure> streamedInput;
+    
+    /**
+     * Queue of results, when streaming the input.
+     */
+    private BlockingQueue<StreamedResult> streamedOutput;
+    
+    /**
+     * Flag used to stop all components of the streaming pipeline.
+     */
+    private AtomicBoolean abortStream = new AtomicBoolean(false);
+    
+    /**
+     * Thread reading the input, when streaming the input.
+     */
+    private Thread readerThread;
+    
+    /**
+     * Exception thrown by the reader of the input, if any.
+     */
+    private Throwable thrownByReader = null;
+    
+    /**
+     * Writer of results, when streaming the input.
+     */
+    private FragmenterResultsWriter writer;
+    
+    /**
+     * Thread running the writer of results.
+     */
+    private Thread writerThread;
+    
+    /**
+     * Capacity of the queues used when streaming, per parallel task.
+     */
+    private static final int QUEUESIZEPERTASK = 50;
 
     
 //-----------------------------------------------------------------------------
@@ -86,6 +133,12 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
 
     protected boolean doPreFlightOperations()
     {
+        if (settings.doStreamInput())
+        {
+            startStreaming();
+            return true;
+        }
+        
         // Split data in batches for parallelization
         
         // This is the collector of the mutating pathname to the file collecting
@@ -114,7 +167,13 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
             FragmenterTask task;
             try
             {
-                task = new FragmenterTask(structures[i], settings, i);
+                if (settings.doStreamInput())
+                {
+                    task = new StreamingFragmenterTask(streamedInput, 
+                            streamedOutput, abortStream, settings, i);
+                } else {
+                    task = new FragmenterTask(structures[i], settings, i);
+                }
             } catch (SecurityException | IOException e)
             {
                 throw new Error("Unable to start fragmentation thread.",e);
@@ -127,6 +186,24 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
 
     protected boolean doPostFlightOperations()
     {
+        if (settings.doStreamInput())
+        {
+            stopStreaming();
+            if (!settings.doManageIsomorphicFamilies())
+            {
+                // The writer has already collected all results
+                if (writer.getNumberOfWrittenEntries()==0)
+                {
+                    settings.getLogger().log(Level.INFO, "No results to "
+                            + "collect. All done.");
+                } else {
+                    settings.getLogger().log(Level.INFO, "Results "
+                            + "collected in file " + getStreamedResultsFile());
+                }
+                return true;
+            }
+        }
+        
         // Identify (and possibly collect) final results. The files collecting
         // results change depending on the task we have done, and on whether
         // we ran them in a parallelized fashion or not.
@@ -244,6 +321,157 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
         return true;
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the file where results are written when streaming the input.
+     */
+    private File getStreamedResultsFile()
+    {
+        if (settings.doFragmentation())
+        {
+            return new File(FragmenterTask.getFragmentsFileName(settings));
+        } else {
+            return new File(FragmenterTask.getResultsFileName(settings));
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Starts the reader of the input structures and the writer of results. 
+     * The reader feeds a bounded queue from which 
+     * {@link StreamingFragmenterTask}s take structures as soon as they are 
+     * ready to process them. The writer collects all results in one file.
+     */
+    private void startStreaming()
+    {
+        int numTasks = settings.getNumTasks();
+        streamedInput = new ArrayBlockingQueue<StreamedStructure>(
+                QUEUESIZEPERTASK * numTasks);
+        streamedOutput = new ArrayBlockingQueue<StreamedResult>(
+                QUEUESIZEPERTASK * numTasks);
+        
+        writer = new FragmenterResultsWriter(streamedOutput, numTasks, 
+                settings.doPreserveInputOrder(), getStreamedResultsFile(), 
+                abortStream);
+        writerThread = new Thread(writer, "FragmenterResultsWriter");
+        writerThread.start();
+        
+        readerThread = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    streamInputStructures();
+                } catch (Throwable t) {
+                    thrownByReader = t;
+                    abortStream.set(true);
+                }
+            }
+        }, "FragmenterInputReader");
+        readerThread.start();
+        
+        settings.getLogger().log(Level.INFO, "Streaming structures from '"
+                + settings.getStructuresFile() + "' to " + numTasks 
+                + " parallel tasks.");
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the input structures and sends them to the queue of structures 
+     * to process. Structures that are rejected upon reading are reported to 
+     * the writer as empty results, so that the writer can keep track of the 
+     * order of the input. Finally, sends one end-of-stream signal to each 
+     * parallel task.
+     * @throws Exception
+     */
+    private void streamInputStructures() throws Exception
+    {
+        IteractingAtomContainerReader reader = 
+                new IteractingAtomContainerReader(
+                        new File(settings.getStructuresFile()));
+        LinkedHashMap<String,String> formulae = settings.getFormulae();
+        int index = -1;
+        try
+        {
+            while (reader.hasNext() && !abortStream.get())
+            {
+                index++;
+                IAtomContainer mol = reader.next();
+                if (!prepareStructure(mol, index, settings, formulae))
+                {
+                    offerToStream(streamedOutput, new StreamedResult(index));
+                    continue;
+                }
+                offerToStream(streamedInput, new StreamedStructure(index, mol));
+            }
+        } finally {
+            reader.close();
+            for (int i=0; i<settings.getNumTasks(); i++)
+            {
+                offerToStream(streamedInput, new StreamedStructure(-1, null));
+            }
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds an item to a queue of the streaming pipeline waiting for space to 
+     * become available, unless the streaming is aborted.
+     * @return <code>true</code> if the item has been added.
+     * @throws InterruptedException
+     */
+    private <T> boolean offerToStream(BlockingQueue<T> queue, T item) 
+            throws InterruptedException
+    {
+        while (!queue.offer(item, StreamingFragmenterTask.POLLINGTIME, 
+                TimeUnit.MILLISECONDS))
+        {
+            if (abortStream.get())
+                return false;
+        }
+        return true;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Waits for the reader and the writer to terminate, and reports any 
+     * problem occurred in any component of the streaming pipeline.
+     */
+    private void stopStreaming()
+    {
+        try
+        {
+            readerThread.join();
+            writerThread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new Error("Interrupted while waiting for the streaming of "
+                    + "structures to terminate.", e);
+        }
+        if (thrownByReader != null)
+        {
+            throw new Error("Could not read structures from '" 
+                    + settings.getStructuresFile() + "'.", thrownByReader);
+        }
+        if (subtaskHasException())
+        {
+            throw new Error("Exception in fragmentation task.", 
+                    getExceptionFromSubTask());
+        }
+        if (writer.getException() != null)
+        {
+            throw new Error("Could not write results to '" 
+                    + getStreamedResultsFile() + "'.", writer.getException());
+        }
+    }
+    
 //------------------------------------------------------------------------------
     
     protected static List<File> getFilesCollectingIsomorphicFamilyChampions(
@@ -330,59 +558,9 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
                 index++;
                 buffersSize++;
                 IAtomContainer mol = reader.next();
-                
-                // Comply to requirements to write SDF files: unset bond orders 
-                // can only be used in query-type files. So types 4 and 8 are not
-                // expected to be found (but CSD uses them...)
-                try
-                {
-                    MoleculeUtils.setZeroImplicitHydrogensToAllAtoms(mol);
-                    MoleculeUtils.ensureNoUnsetBondOrders(mol);
-                } catch (CDKException e)
+                if (!prepareStructure(mol, index, settings, formulae))
                 {
-                    if (!settings.acceptUnsetToSingeBO())
-                    {
-                        settings.getLogger().log(Level.WARNING,"Some bond order "
-                                + "are unset and attempt to kekulize the "
-                                + "system has failed "
-                                + "for structure " + index + "."
-                                + "This hampers use of SMARTS queries, which "
-                                + "may very "
-                                + "not work as expected. Structure " + index 
-                                + " will "
-                                + "be rejected. You can avoid rejection by using "
-                                + "keyword " 
-                                + ParametersType.FRG_PARAMS.getKeywordRoot() 
-                                + "UNSETTOSINGLEBO, but you'll "
-                                + "still be using a peculiar connectivity "
-                                + "table were"
-                                + "many bonds are artificially markes as "
-                                + "single to "
-                                + "avoid use of 'UNSET' bond order. "
-                                + "Further details on the problem: " 
-                                + e.getMessage());
-                        continue;
-                    } else {
-                        settings.getLogger().log(Level.WARNING,"Failed "
-                                + "kekulization "
-                                + "for structure " + index 
-                                + " but UNSETTOSINGLEBO "
-                                + "keyword used. Forcing use of single bonds to "
-                                + "replace bonds with unset order.");
-                        for (IBond bnd : mol.bonds())
-                        {
-                            if (bnd.getOrder().equals(IBond.Order.UNSET)) 
-                            {
-                                bnd.setOrder(IBond.Order.SINGLE);
-                            }
-                        }
-                    }
-                }
-                
-                // It is convenient to place the formula in the atom container
-                if (formulae!=null && settings.doCheckFormula())
-                {
-                    getFormulaForMol(mol, index, formulae);
+                    continue;
                 }
                 
                 batches.get(batchId).add(mol);
@@ -448,6 +626,79 @@ public class ParallelFragmentationAlgorithm extends ParallelAsynchronousTaskExec
         }
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Prepares a structure read from the input for further processing: 
+     * ensures the structure can be written to SDF files and, if needed, 
+     * records the molecular formula in the property 
+     * {@link DENOPTIMConstants#FORMULASTR}.
+     * @param mol the structure to prepare. It is modified by this method.
+     * @param index the index of the structure in the input.
+     * @param settings settings we work with.
+     * @param formulae the molecular formulae, or <code>null</code>.
+     * @return <code>false</code> if the structure has to be rejected.
+     */
+    static boolean prepareStructure(IAtomContainer mol, int index, 
+            FragmenterParameters settings, 
+            LinkedHashMap<String,String> formulae)
+    {
+        // Comply to requirements to write SDF files: unset bond orders 
+        // can only be used in query-type files. So types 4 and 8 are not
+        // expected to be found (but CSD uses them...)
+        try
+        {
+            MoleculeUtils.setZeroImplicitHydrogensToAllAtoms(mol);
+            MoleculeUtils.ensureNoUnsetBondOrders(mol);
+        } catch (CDKException e)
+        {
+            if (!settings.acceptUnsetToSingeBO())
+            {
+                settings.getLogger().log(Level.WARNING,"Some bond order "
+                        + "are unset and attempt to kekulize the "
+                        + "system has failed "
+                        + "for structure " + index + "."
+                        + "This hampers use of SMARTS queries, which "
+                        + "may very "
+                        + "not work as expected. Structure " + index 
+                        + " will "
+                        + "be rejected. You can avoid rejection by using "
+                        + "keyword " 
+                        + ParametersType.FRG_PARAMS.getKeywordRoot() 
+                        + "UNSETTOSINGLEBO, but you'll "
+                        + "still be using a peculiar connectivity "
+                        + "table were"
+                        + "many bonds are artificially markes as "
+                        + "single to "
+                        + "avoid use of 'UNSET' bond order. "
+                        + "Further details on the problem: " 
+                        + e.getMessage());
+                return false;
+            } else {
+                settings.getLogger().log(Level.WARNING,"Failed "
+                        + "kekulization "
+                        + "for structure " + index 
+                        + " but UNSETTOSINGLEBO "
+                        + "keyword used. Forcing use of single bonds to "
+                        + "replace bonds with unset order.");
+                for (IBond bnd : mol.bonds())
+                {
+                    if (bnd.getOrder().equals(IBond.Order.UNSET)) 
+                    {
+                        bnd.setOrder(IBond.Order.SINGLE);
+                    }
+                }
+            }
+        }
+        
+        // It is convenient to place the formula in the atom container
+        if (formulae!=null && settings.doCheckFormula())
+        {
+            getFormulaForMol(mol, index, formulae);
+        }
+        return true;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -0,0 +1,332 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragmenter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.graph.Fragment;
+import denoptim.graph.Vertex;
+import denoptim.graph.Vertex.BBType;
+import denoptim.programs.fragmenter.FragmenterParameters;
+
+/**
+ * Task that takes structures from a queue shared with other tasks, performs
+ * the same steps of a {@link FragmenterTask} on each structure, and sends
+ * the results to a queue consumed by a single writer
+ * (see {@link FragmenterResultsWriter}). Since each task pulls a new
+ * structure only when it is done with the previous one, the load is
+ * balanced among parallel tasks even when the structures have very
+ * different size.
+ */
+
+public class StreamingFragmenterTask extends FragmenterTask
+{
+    /**
+     * Source of the structures to process.
+     */
+    private BlockingQueue<StreamedStructure> input;
+
+    /**
+     * Where we send the results of the processing of each structure.
+     */
+    private BlockingQueue<StreamedResult> output;
+
+    /**
+     * Flag shared among all components of the streaming pipeline. Once it is
+     * <code>true</code>, all components stop as soon as possible.
+     */
+    private AtomicBoolean abort;
+
+    /**
+     * SMARTS queries used for pre-filtering structures.
+     */
+    private Map<String, String> preFilterSMARTS;
+
+    /**
+     * Time (milliseconds) we wait for any queue before checking if the
+     * pipeline has been aborted.
+     */
+    static final long POLLINGTIME = 1000;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Structure read from the input and flowing through the streaming
+     * pipeline.
+     */
+    static class StreamedStructure
+    {
+        /**
+         * Position of the structure in the input.
+         */
+        final int index;
+
+        /**
+         * The structure, or <code>null</code> when this item only signals the
+         * end of the stream.
+         */
+        final IAtomContainer mol;
+
+        StreamedStructure(int index, IAtomContainer mol)
+        {
+            this.index = index;
+            this.mol = mol;
+        }
+
+        boolean isEndOfStream()
+        {
+            return mol == null;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Results obtained by processing one input structure.
+     */
+    static class StreamedResult
+    {
+        /**
+         * Position of the structure, from which this result has been produced,
+         * in the input.
+         */
+        final int index;
+
+        /**
+         * Structures to write as molecules.
+         */
+        final List<IAtomContainer> structures = new ArrayList<IAtomContainer>();
+
+        /**
+         * Fragments to write as vertexes.
+         */
+        final List<Vertex> fragments = new ArrayList<Vertex>();
+
+        /**
+         * Flag signaling that the producer of this result will not produce
+         * any more results.
+         */
+        final boolean endOfStream;
+
+        StreamedResult(int index)
+        {
+            this(index, false);
+        }
+
+        private StreamedResult(int index, boolean endOfStream)
+        {
+            this.index = index;
+            this.endOfStream = endOfStream;
+        }
+
+        static StreamedResult endOfStream()
+        {
+            return new StreamedResult(-1, true);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Create a task that processes structures from the given queue.
+     * @param input the source of the structures to process.
+     * @param output where to send results.
+     * @param abort flag shared with all components of the pipeline and used to
+     * stop the processing of the stream.
+     * @param settings the configuration of the task.
+     * @param id identifier of the thread running this task.
+     * @throws SecurityException
+     * @throws IOException
+     */
+    public StreamingFragmenterTask(BlockingQueue<StreamedStructure> input,
+            BlockingQueue<StreamedResult> output, AtomicBoolean abort,
+            FragmenterParameters settings, int id)
+                    throws SecurityException, IOException
+    {
+        super(null, settings, id);
+        this.input = input;
+        this.output = output;
+        this.abort = abort;
+        if (settings.doPreFilter())
+        {
+            preFilterSMARTS = FragmenterTools.getPreFilterSMARTSMap(
+                    settings.getPreFiltrationSMARTS());
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Processes structures until the end of the stream is found or the
+     * processing of the stream is aborted.
+     */
+
+    @Override
+    public Object call() throws Exception
+    {
+        int numProcessed = 0;
+        int totalProd = 0;
+        int totalKept = 0;
+        try
+        {
+            while (!abort.get())
+            {
+                StreamedStructure item = input.poll(POLLINGTIME,
+                        TimeUnit.MILLISECONDS);
+                if (item == null)
+                    continue;
+                if (item.isEndOfStream())
+                    break;
+
+                StreamedResult result = new StreamedResult(item.index);
+                int[] counts = process(item, result);
+                totalProd += counts[0];
+                totalKept += counts[1];
+                numProcessed++;
+
+                while (!output.offer(result, POLLINGTIME,
+                        TimeUnit.MILLISECONDS))
+                {
+                    if (abort.get())
+                        break;
+                }
+            }
+        } catch (Throwable t) {
+            hasException = true;
+            thrownExc = t;
+            abort.set(true);
+            throw new Exception(t);
+        } finally {
+            // The writer counts these to know when all tasks are done. If the
+            // pipeline is aborted the writer stops without waiting for them.
+            while (!output.offer(StreamedResult.endOfStream(), POLLINGTIME,
+                    TimeUnit.MILLISECONDS))
+            {
+                if (abort.get())
+                    break;
+            }
+
+            // We stop the logger's file handler to remove the lock file.
+            for (Handler h : logger.getHandlers())
+            {
+                if (h instanceof FileHandler) {
+                    logger.removeHandler(h);
+                    h.close();
+                }
+            }
+        }
+
+        if (settings.doFragmentation())
+        {
+            logger.log(Level.INFO,"Processed " + numProcessed + " structures "
+                    + "producing " + totalProd + " fragments, of which "
+                    + totalKept + " survived post-processing.");
+        } else {
+            logger.log(Level.INFO,"Processed " + numProcessed + " structures.");
+        }
+        logger.log(Level.INFO,"Fragmenter task " + id + " completed.");
+
+        completed = true;
+        return null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Performs all the steps that are requested by the settings on a
+     * single structure.
+     * @param item the structure to work with.
+     * @param result where to put the results.
+     * @return the number of fragments produced and that of fragments kept.
+     * @throws Exception
+     */
+    private int[] process(StreamedStructure item, StreamedResult result)
+            throws Exception
+    {
+        int[] counts = new int[] {0, 0};
+        IAtomContainer mol = item.mol;
+        logger.log(Level.FINE,"Processing structure " + item.index);
+
+        // Preliminary check for missing atoms by elemental analysis
+        if (settings.doCheckFormula())
+        {
+            if (!FragmenterTools.checkElementalAnalysisAgainstFormula(mol,
+                    item.index, logger))
+            {
+                return counts;
+            }
+        }
+
+        // Pre-fragmentation filter
+        if (settings.doPreFilter())
+        {
+            if (!FragmenterTools.passesPreFilter(mol, item.index,
+                    preFilterSMARTS, logger))
+            {
+                return counts;
+            }
+        }
+
+        // Fragmentation of structures
+        if (settings.doFragmentation())
+        {
+            List<Vertex> keptFragments = new ArrayList<Vertex>();
+            counts[0] = FragmenterTools.fragmentation(mol, item.index,
+                    settings, keptFragments, logger);
+            counts[1] = keptFragments.size();
+            // Members of isomorphic families are collected elsewhere
+            if (!settings.doManageIsomorphicFamilies())
+            {
+                result.fragments.addAll(keptFragments);
+            }
+            return counts;
+        }
+
+        if (settings.doFiltering())
+        {
+            // The input structures are meant to be fragments
+            List<Vertex> keptFragments = new ArrayList<Vertex>();
+            Vertex frag = new Fragment(mol, BBType.UNDEFINED);
+            FragmenterTools.manageFragmentCollection(frag, item.index, settings,
+                    keptFragments, logger);
+            if (!settings.doManageIsomorphicFamilies())
+            {
+                result.fragments.addAll(keptFragments);
+            }
+            return counts;
+        }
+
+        result.structures.add(mol);
+        return counts;
+    }
+
+//------------------------------------------------------------------------------
+
+}
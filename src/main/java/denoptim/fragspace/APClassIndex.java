@@ -0,0 +1,183 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import denoptim.graph.APClass;
+
+/**
+ * Index of the available attachment points (APs) of the fragments in a
+ * {@link FragmentSpace}. Each AP is given a slot, i.e., an integer
+ * identifying the pair (fragment, AP), and each {@link APClass} is
+ * associated with the set of slots of the APs having that class. Sets of
+ * slots are bit sets, so queries involving multiple APs can be answered by
+ * intersecting bit sets. The sets of slots compatible with a given
+ * {@link APClass} according to the compatibility matrix are cached until the
+ * index is changed.
+ */
+
+class APClassIndex
+{
+    /**
+     * Index of the fragment owning each slot. Slots of fragments that have
+     * been re-indexed are marked with -1.
+     */
+    private ArrayList<Integer> fragIdPerSlot = new ArrayList<Integer>();
+
+    /**
+     * Index of the AP, in the list of APs of its fragment, for each slot.
+     */
+    private ArrayList<Integer> apIdPerSlot = new ArrayList<Integer>();
+
+    /**
+     * Slots of the APs of each fragment.
+     */
+    private HashMap<Integer, BitSet> slotsPerFrag =
+            new HashMap<Integer, BitSet>();
+
+    /**
+     * Slots of the APs with each AP class.
+     */
+    private HashMap<APClass, BitSet> slotsPerAPClass =
+            new HashMap<APClass, BitSet>();
+
+    /**
+     * Slots of the APs that are compatible with a given AP class.
+     */
+    private HashMap<APClass, BitSet> compatibleSlots =
+            new HashMap<APClass, BitSet>();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds to the index the available APs of a fragment. If the fragment
+     * identifier is already in the index, the slots previously given to that
+     * fragment are dropped.
+     * @param fragId the index of the fragment in the library.
+     * @param classOfFreeAPs the APClass of each AP on the fragment, in the 
+     * order of the APs, or <code>null</code> for APs that are not available.
+     */
+    synchronized void addFragment(int fragId, List<APClass> classOfFreeAPs)
+    {
+        BitSet oldSlots = slotsPerFrag.get(fragId);
+        if (oldSlots != null)
+        {
+            for (BitSet slots : slotsPerAPClass.values())
+            {
+                slots.andNot(oldSlots);
+            }
+            for (int slot = oldSlots.nextSetBit(0); slot >= 0;
+                    slot = oldSlots.nextSetBit(slot+1))
+            {
+                fragIdPerSlot.set(slot, -1);
+            }
+        }
+
+        BitSet fragSlots = new BitSet();
+        for (int j=0; j<classOfFreeAPs.size(); j++)
+        {
+            APClass apc = classOfFreeAPs.get(j);
+            if (apc == null)
+                continue;
+
+            int slot = fragIdPerSlot.size();
+            fragIdPerSlot.add(fragId);
+            apIdPerSlot.add(j);
+            fragSlots.set(slot);
+
+            BitSet slots = slotsPerAPClass.get(apc);
+            if (slots == null)
+            {
+                slots = new BitSet();
+                slotsPerAPClass.put(apc, slots);
+            }
+            slots.set(slot);
+        }
+        slotsPerFrag.put(fragId, fragSlots);
+        compatibleSlots.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Forgets the sets of slots compatible with given AP classes. To be used
+     * when the compatibility matrix changes.
+     */
+    synchronized void clearCompatibility()
+    {
+        compatibleSlots.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the slots of the APs that have any of the AP classes compatible
+     * with the given one.
+     * @param apc the AP class the slots have to be compatible with.
+     * @param compatClasses the AP classes compatible with <code>apc</code>.
+     * @return a new bit set that can be modified by the caller.
+     */
+    synchronized BitSet getCompatibleSlots(APClass apc,
+            List<APClass> compatClasses)
+    {
+        BitSet result = compatibleSlots.get(apc);
+        if (result == null)
+        {
+            result = new BitSet();
+            for (APClass compClass : compatClasses)
+            {
+                BitSet slots = slotsPerAPClass.get(compClass);
+                if (slots != null)
+                    result.or(slots);
+            }
+            compatibleSlots.put(apc, result);
+        }
+        return (BitSet) result.clone();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param slot the slot.
+     * @return the index of the fragment owning the given slot.
+     */
+    synchronized int getFragmentId(int slot)
+    {
+        return fragIdPerSlot.get(slot);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param slot the slot.
+     * @return the index of the AP, in the list of APs of its fragment, for
+     * the given slot.
+     */
+    synchronized int getAPId(int slot)
+    {
+        return apIdPerSlot.get(slot);
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -34,7 +34,8 @@ import denoptim.graph.Vertex.BBType;
 /**
  * An utility class to encapsulate the search for an 
  * {@link AttachmentPoint}-{@link AttachmentPoint} mapping.
- * Ignores symmetry, which is a potential thing to improve.
+ * Mappings that differ only by the exchange of symmetric and free APs on the
+ * second vertex are considered only once (see {@link APMappingEnumerator}).
  * @author Marco Foscato
  */
 
@@ -56,13 +57,16 @@ public class APMapFinder
     private List<APMapping> allAPMappings = new ArrayList<APMapping>();
     
     /**
-     * Maximum number of combinations. This prevents combinatorial explosion, 
-     * but it is ignored if the constructor is required to screen all.
-     * Remember that the combinations are anyway randomized, so even with the 
-     * maximum limit on the number of combination to consider, there is no
-     * systematic exclusion of specific combinations.
+     * Number of pairings of APs that were not explored because equivalent, by
+     * symmetry, to pairings that have been explored.
      */
-    private static int maxCombs = 250;
+    private long symmetrySkippedPairings = 0;
+    
+    /**
+     * Flag recording that the search for mappings was truncated because of
+     * its size.
+     */
+    private boolean truncated = false;
     
     /**
      * Program-specific fragment space
@@ -290,95 +294,31 @@ public class APMapFinder
             }
         }
         
-        // Get all possible combinations of compatible AP pairs
-        int currentKey = 0;
         APMapping currentMapping = new APMapping();
         if (fixedRootAPs!=null)
         {
             currentMapping = fixedRootAPs.clone(); //shallow
         }
-        // We try the comprehensive approach, but if that is too demanding
-        // and gets stopped, then we run a series of simplified attempts
-        // to hit a decent combination with "lucky shots".
-        Boolean stopped = false;
         if (keys.size()>0)
         {
-            stopped = FragmentSpaceUtils.recursiveCombiner(keys, 
-                    currentKey, apCompatilities, currentMapping, allAPMappings, 
-                    screenAll, maxCombs);
-        } else {
-            // This would have been done by the recursive combiner
-            allAPMappings.add(currentMapping);
-        }
-        
-        // Purge according to lists of APs that needs a mapping
-        List<APMapping> toRemove = new ArrayList<APMapping>();
-        for (APMapping c : allAPMappings)
+            // Mappings are generated one by one, and if we do not need all of
+            // them, we stop at the first one. To make such choice random, the
+            // compatible APs are considered in random order.
+            APMappingEnumerator enumerator = new APMappingEnumerator(keys,
+                    apCompatilities, needyAPsA, needyAPsB, 
+                    screenAll ? null : fragSpace.getRandomizer());
+            enumerator.enumerate(currentMapping, (mapping) -> {
+                allAPMappings.add(mapping);
+                return screenAll;
+            });
+            symmetrySkippedPairings = enumerator.getSymmetrySkippedPairings();
+            truncated = enumerator.isTruncated();
+        } else if (currentMapping.containsAllKeys(needyAPsA)
+                && currentMapping.containsAllValues(needyAPsB))
         {
-            if (!c.containsAllKeys(needyAPsA))
-            {
-                toRemove.add(c);
-            }
-            if (!c.containsAllValues(needyAPsB))
-            {
-                toRemove.add(c);
-            }
+            allAPMappings.add(currentMapping);
         }
-        allAPMappings.removeAll(toRemove);
         
-        // If we where interrupted, we try to get a proper mapping again.
-        // This time we ignore all the possibilities and try a more direct 
-        // approach, which, however, cannot account for all possible combs.
-        if (stopped && allAPMappings.isEmpty())
-        {
-            for (int iTry = 0; iTry < maxCombs; iTry++)
-            {
-                APMapping apMap = new APMapping();
-                List<AttachmentPoint> used = 
-                        new ArrayList<AttachmentPoint>();
-                List<AttachmentPoint> availKeys = 
-                        new ArrayList<AttachmentPoint>();
-                availKeys.addAll(needyAPsA);
-                boolean abandon = false;
-                for (int jj=0; jj<needyAPsA.size(); jj++)
-                {
-                    AttachmentPoint ap = 
-                            fragSpace.getRandomizer().randomlyChooseOne(
-                                    availKeys);
-                    availKeys.remove(ap);
-                    List<AttachmentPoint> availPartners = 
-                            new ArrayList<AttachmentPoint>();
-                    availPartners.addAll(apCompatilities.get(ap));
-                    boolean done = false;
-                    for (int j=0; j<apCompatilities.get(ap).size(); j++)
-                    {
-                        AttachmentPoint chosenAvail = 
-                                fragSpace.getRandomizer().randomlyChooseOne(
-                                        availPartners);
-                        availPartners.remove(chosenAvail);
-                        if (used.contains(chosenAvail))
-                        {
-                            continue;
-                        }
-                        used.add(chosenAvail);
-                        apMap.put(ap,chosenAvail);
-                        done = true;
-                        break;
-                    }
-                    if (!done)
-                    {
-                        abandon = true;
-                        break;
-                    }
-                }
-                
-                if (!abandon)
-                {
-                    allAPMappings.add(apMap);
-                    break;
-                }
-            }
-        }
         if (allAPMappings.size() > 0)
             chosenAPMap = fragSpace.getRandomizer().randomlyChooseOne(
                     allAPMappings);
@@ -510,14 +450,41 @@ public class APMapFinder
      * {@link AttachmentPoint}-{@link AttachmentPoint} mapping 
      * found.
      * @return the collection of all AP mappings (can be empty, but not null)
-     * found. This is either the total amount of possible mappings or the 
-     * amount found before stopping to prevent combinatorial explosion.
+     * found. This is either the total amount of possible mappings, or only 
+     * the first mapping found if we were not asked to screen all mappings.
      */
     public List<APMapping> getAllAPMappings()
     {
         return allAPMappings;
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of pairings of APs that were not explored because 
+     * they would lead to mappings that are equivalent, by symmetry, 
+     * to mappings that have been considered. This is not the number of 
+     * mappings that were not generated.
+     * @return the number of pairings skipped by symmetry.
+     */
+    public long getSymmetrySkippedPairings()
+    {
+        return symmetrySkippedPairings;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return <code>true</code> if the search for mappings was stopped 
+     * because it exceeded {@link APMappingEnumerator#DEFAULTMAXNODES} partial
+     * mappings. Then, {@link #getAllAPMappings()} may not contain all 
+     * mappings, and no mapping may have been found even if some exists.
+     */
+    public boolean isSearchTruncated()
+    {
+        return truncated;
+    }
+    
 //------------------------------------------------------------------------------
 
 }
\ No newline at end of file
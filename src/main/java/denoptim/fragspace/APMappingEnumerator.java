@@ -0,0 +1,511 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import denoptim.graph.APMapping;
+import denoptim.graph.AttachmentPoint;
+import denoptim.graph.SymmetricSet;
+import denoptim.graph.Vertex;
+import denoptim.utils.Randomizer;
+
+/**
+ * Enumerates the {@link AttachmentPoint}-{@link AttachmentPoint} mappings
+ * that can be built by pairing each AP of a first list (the keys) with one of
+ * the APs of a second list (the values) that is compatible with it, i.e., a
+ * matching in the bipartite graph of the compatibilities.
+ * Mappings are generated one by one and handed to a consumer that can stop
+ * the enumeration at any time. Partial mappings that cannot satisfy the
+ * requirement of including given keys and values are discarded without
+ * being completed. Moreover, values that are symmetric, i.e., APs on the same
+ * vertex, belonging to the same {@link SymmetricSet}, and that are free and
+ * compatible with the same keys, are interchangeable, and only one of the
+ * mappings that differ by an exchange of such values is generated.
+ * The search can be limited to a maximum number of visited partial 
+ * mappings (see {@link #setMaxNodes(long)}). Whether the search has been 
+ * truncated by such limit is reported by {@link #isTruncated()}.
+ */
+
+public class APMappingEnumerator
+{
+    /**
+     * Default maximum number of partial mappings visited by one enumeration.
+     */
+    public static final long DEFAULTMAXNODES = 100000;
+    
+    /**
+     * The APs to map, in the order they are considered.
+     */
+    private final List<AttachmentPoint> keys;
+
+    /**
+     * The values that can be paired with each key. A <code>null</code> entry
+     * means that the key can be left out of the mapping.
+     */
+    private final List<List<AttachmentPoint>> options;
+
+    /**
+     * Flags identifying the keys that must be included in any mapping.
+     */
+    private final boolean[] keyIsNeedy;
+
+    /**
+     * The keys that must be included in any mapping.
+     */
+    private final Set<AttachmentPoint> needyKeys;
+
+    /**
+     * The values that must be included in any mapping.
+     */
+    private final Set<AttachmentPoint> needyValues;
+
+    /**
+     * Flags identifying the keys that cannot be left out of any mapping, 
+     * i.e., needy keys and keys that have no <code>null</code> option.
+     */
+    private final boolean[] keyMustBeMapped;
+
+    /**
+     * The keys that can be paired with each value.
+     */
+    private final Map<AttachmentPoint,BitSet> keysOfValue =
+            new HashMap<AttachmentPoint,BitSet>();
+
+    /**
+     * Values that are interchangeable with a given value and that must be
+     * used before it.
+     */
+    private final Map<AttachmentPoint,List<AttachmentPoint>> symPredecessors =
+            new HashMap<AttachmentPoint,List<AttachmentPoint>>();
+
+    /**
+     * Number of pairings not explored because equivalent by symmetry to
+     * pairings that have been explored. Each such pairing may correspond to 
+     * any number of mappings that are not generated.
+     */
+    private long symmetrySkippedPairings = 0;
+
+    /**
+     * Number of partial mappings abandoned because they could not be
+     * completed into a mapping satisfying the requirements.
+     */
+    private long prunedBranches = 0;
+
+    /**
+     * Maximum number of partial mappings to visit. Non-positive values mean
+     * no limit.
+     */
+    private long maxNodes = DEFAULTMAXNODES;
+
+    /**
+     * Number of partial mappings visited.
+     */
+    private long visitedNodes = 0;
+
+    /**
+     * Flag recording that the enumeration was stopped because the maximum 
+     * number of partial mappings to visit was reached.
+     */
+    private boolean truncated = false;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param keys the APs to map, in the order they have to be considered.
+     * @param possibilities the values that can be paired with each key. A
+     * <code>null</code> value means that the key can be left out of the
+     * mapping. Keys that are not in this map cannot be mapped.
+     * @param needyKeys keys that must be present in any mapping, or
+     * <code>null</code>.
+     * @param needyValues values that must be present in any mapping, or
+     * <code>null</code>.
+     * @param randomizer if not <code>null</code>, the order of the values
+     * that can be paired with each key is randomized so that the first
+     * mappings found are a random choice. Otherwise, values are considered in
+     * the order given by <code>possibilities</code>.
+     */
+    public APMappingEnumerator(List<AttachmentPoint> keys,
+            Map<AttachmentPoint,List<AttachmentPoint>> possibilities,
+            Collection<AttachmentPoint> needyKeys,
+            Collection<AttachmentPoint> needyValues,
+            Randomizer randomizer)
+    {
+        this.keys = new ArrayList<AttachmentPoint>(keys);
+        this.needyKeys = new HashSet<AttachmentPoint>();
+        if (needyKeys != null)
+            this.needyKeys.addAll(needyKeys);
+        this.needyValues = new HashSet<AttachmentPoint>();
+        if (needyValues != null)
+            this.needyValues.addAll(needyValues);
+
+        options = new ArrayList<List<AttachmentPoint>>();
+        keyIsNeedy = new boolean[keys.size()];
+        keyMustBeMapped = new boolean[keys.size()];
+        List<AttachmentPoint> allValues = new ArrayList<AttachmentPoint>();
+        for (int k=0; k<keys.size(); k++)
+        {
+            AttachmentPoint key = keys.get(k);
+            keyIsNeedy[k] = this.needyKeys.contains(key);
+            List<AttachmentPoint> opts = new ArrayList<AttachmentPoint>();
+            if (possibilities.containsKey(key))
+                opts.addAll(possibilities.get(key));
+            keyMustBeMapped[k] = keyIsNeedy[k] || !opts.contains(null);
+            if (randomizer != null)
+            {
+                for (int i=opts.size()-1; i>0; i--)
+                {
+                    int j = randomizer.nextInt(i+1);
+                    opts.set(i, opts.set(j, opts.get(i)));
+                }
+            }
+            options.add(opts);
+            for (AttachmentPoint value : opts)
+            {
+                if (value == null)
+                    continue;
+                BitSet bs = keysOfValue.get(value);
+                if (bs == null)
+                {
+                    bs = new BitSet();
+                    keysOfValue.put(value, bs);
+                    allValues.add(value);
+                }
+                bs.set(k);
+            }
+        }
+
+        for (AttachmentPoint value : allValues)
+        {
+            if (!isExchangeable(value))
+                continue;
+            Vertex owner = value.getOwner();
+            SymmetricSet ss = owner.getSymmetricAPs(value.getIndexInOwner());
+            if (ss == null)
+                continue;
+            List<AttachmentPoint> preds = new ArrayList<AttachmentPoint>();
+            for (Integer apIdx : ss.getList())
+            {
+                if (apIdx >= value.getIndexInOwner())
+                    continue;
+                AttachmentPoint other = owner.getAP(apIdx);
+                if (keysOfValue.containsKey(other)
+                        && isExchangeable(other)
+                        && Objects.equals(other.getAPClass(),
+                                value.getAPClass())
+                        && keysOfValue.get(other).equals(
+                                keysOfValue.get(value)))
+                {
+                    preds.add(other);
+                }
+            }
+            if (!preds.isEmpty())
+                symPredecessors.put(value, preds);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks if a value can be exchanged with symmetric ones without changing
+     * the meaning of a mapping.
+     */
+    private boolean isExchangeable(AttachmentPoint value)
+    {
+        return value.getOwner() != null && value.isAvailableThroughout()
+                && !needyValues.contains(value);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the maximum number of partial mappings that an enumeration can 
+     * visit. Default is {@value #DEFAULTMAXNODES}.
+     * @param maxNodes the maximum number of partial mappings. Use a 
+     * non-positive value to remove any limit.
+     */
+    public void setMaxNodes(long maxNodes)
+    {
+        this.maxNodes = maxNodes;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Generates the mappings one by one. Mappings are given to the consumer
+     * as independent (shallow) clones. Empty mappings are never generated.
+     * @param start the pairings that must be part of any mapping. The keys
+     * and values of this mapping should not be among those given to the
+     * constructor. This mapping is not changed.
+     * @param consumer the consumer of the mappings. It returns
+     * <code>false</code> to stop the enumeration.
+     * @return <code>false</code> if the enumeration was stopped by the
+     * consumer or because the maximum number of partial mappings to visit 
+     * was reached (see {@link #isTruncated()}).
+     */
+    public boolean enumerate(APMapping start, Predicate<APMapping> consumer)
+    {
+        visitedNodes = 0;
+        truncated = false;
+        APMapping mapping = new APMapping();
+        Set<AttachmentPoint> usedValues = new HashSet<AttachmentPoint>();
+        if (start != null)
+        {
+            mapping = start.clone();
+            usedValues.addAll(start.values());
+        }
+        return enumerate(0, mapping, usedValues, consumer);
+    }
+
+//------------------------------------------------------------------------------
+
+    private boolean enumerate(int depth, APMapping mapping,
+            Set<AttachmentPoint> usedValues, Predicate<APMapping> consumer)
+    {
+        visitedNodes++;
+        if (maxNodes > 0 && visitedNodes > maxNodes)
+        {
+            truncated = true;
+            return false;
+        }
+        
+        if (depth == keys.size())
+        {
+            if (mapping.isEmpty()
+                    || !mapping.keySet().containsAll(needyKeys)
+                    || !usedValues.containsAll(needyValues))
+                return true;
+            return consumer.test(mapping.clone());
+        }
+
+        if (!canBeCompleted(depth, usedValues))
+        {
+            prunedBranches++;
+            return true;
+        }
+
+        AttachmentPoint key = keys.get(depth);
+        for (AttachmentPoint value : options.get(depth))
+        {
+            if (value == null)
+            {
+                // NB: this leaves the key out of the mapping
+                if (keyIsNeedy[depth])
+                    continue;
+                if (!enumerate(depth+1, mapping, usedValues, consumer))
+                    return false;
+                continue;
+            }
+            if (usedValues.contains(value))
+                continue;
+
+            // Interchangeable values are used in a fixed order
+            List<AttachmentPoint> preds = symPredecessors.get(value);
+            if (preds != null && !usedValues.containsAll(preds))
+            {
+                symmetrySkippedPairings++;
+                continue;
+            }
+
+            mapping.put(key, value);
+            usedValues.add(value);
+            boolean goOn = enumerate(depth+1, mapping, usedValues, consumer);
+            mapping.remove(key);
+            usedValues.remove(value);
+            if (!goOn)
+                return false;
+        }
+        return true;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks conditions that are necessary, though not sufficient, for the
+     * partial mapping to be completed into an acceptable mapping. 
+     * Besides requiring each remaining key to have an option, we require 
+     * (i) a matching between the remaining keys and the unused values that
+     * covers all the missing needy values, and (ii) one that covers all the
+     * remaining keys that cannot be left out. By the Mendelsohn-Dulmage 
+     * theorem, these imply the existence of a single matching covering both,
+     * i.e., Hall's condition holds jointly for the two sets.
+     */
+    private boolean canBeCompleted(int depth, Set<AttachmentPoint> usedValues)
+    {
+        for (int k=depth; k<keys.size(); k++)
+        {
+            boolean hasOption = false;
+            for (AttachmentPoint value : options.get(k))
+            {
+                if ((value == null && !keyIsNeedy[k])
+                        || (value != null && !usedValues.contains(value)))
+                {
+                    hasOption = true;
+                    break;
+                }
+            }
+            if (!hasOption)
+                return false;
+        }
+
+        // (i) Missing needy values must be matched to distinct keys
+        List<AttachmentPoint> missingValues = new ArrayList<AttachmentPoint>();
+        for (AttachmentPoint value : needyValues)
+        {
+            if (!usedValues.contains(value))
+                missingValues.add(value);
+        }
+        if (missingValues.size() > keys.size() - depth)
+            return false;
+        Map<Integer,AttachmentPoint> valueOfKey = 
+                new HashMap<Integer,AttachmentPoint>();
+        for (AttachmentPoint value : missingValues)
+        {
+            if (!augmentFromValue(value, depth, valueOfKey, 
+                    new HashSet<Integer>()))
+                return false;
+        }
+
+        // (ii) Keys that cannot be left out must be matched to distinct values
+        Map<AttachmentPoint,Integer> keyOfValue = 
+                new HashMap<AttachmentPoint,Integer>();
+        for (int k=depth; k<keys.size(); k++)
+        {
+            if (!keyMustBeMapped[k])
+                continue;
+            if (!augmentFromKey(k, usedValues, keyOfValue, 
+                    new HashSet<AttachmentPoint>()))
+                return false;
+        }
+        return true;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Searches an augmenting path starting from a value in the bipartite 
+     * graph of the keys at or after <code>depth</code> and their options.
+     */
+    private boolean augmentFromValue(AttachmentPoint value, int depth,
+            Map<Integer,AttachmentPoint> valueOfKey, Set<Integer> visited)
+    {
+        BitSet ks = keysOfValue.get(value);
+        if (ks == null)
+            return false;
+        for (int k=ks.nextSetBit(depth); k>=0; k=ks.nextSetBit(k+1))
+        {
+            if (!visited.add(k))
+                continue;
+            AttachmentPoint other = valueOfKey.get(k);
+            if (other == null 
+                    || augmentFromValue(other, depth, valueOfKey, visited))
+            {
+                valueOfKey.put(k, value);
+                return true;
+            }
+        }
+        return false;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Searches an augmenting path starting from a key in the bipartite 
+     * graph of the keys and their unused options.
+     */
+    private boolean augmentFromKey(int k, Set<AttachmentPoint> usedValues,
+            Map<AttachmentPoint,Integer> keyOfValue, 
+            Set<AttachmentPoint> visited)
+    {
+        for (AttachmentPoint value : options.get(k))
+        {
+            if (value == null || usedValues.contains(value) 
+                    || !visited.add(value))
+                continue;
+            Integer other = keyOfValue.get(value);
+            if (other == null 
+                    || augmentFromKey(other, usedValues, keyOfValue, visited))
+            {
+                keyOfValue.put(value, k);
+                return true;
+            }
+        }
+        return false;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of pairings, i.e., of choices of a value for a key 
+     * within a partial mapping, that were not explored because equivalent, 
+     * by symmetry, to pairings that have been explored. This is not the 
+     * number of mappings that were not generated: each skipped pairing 
+     * may stand for any number of such mappings.
+     */
+    public long getSymmetrySkippedPairings()
+    {
+        return symmetrySkippedPairings;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of partial mappings that were abandoned because
+     * they could not be completed into a mapping satisfying the requirements.
+     */
+    public long getPrunedBranches()
+    {
+        return prunedBranches;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of partial mappings visited by the last enumeration.
+     */
+    public long getNumberOfVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the last enumeration was stopped because 
+     * the maximum number of partial mappings to visit was reached. Then,
+     * not all mappings have been generated.
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,292 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.graph.ConnectivityChecker;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.utils.MoleculeUtils;
+
+/**
+ * Molecular properties of a building block that can be summed over the
+ * vertexes of a graph to obtain lower bounds of the properties of the
+ * molecule encoded by the graph, without building such molecule.
+ * Only atoms that are elements of the periodic table are considered, and
+ * implicit hydrogen atoms are included in the count of hydrogen atoms.
+ * <ul>
+ * <li>The number of atoms of each element, and thus the number of heavy
+ * atoms and the molecular weight, are exactly additive.</li>
+ * <li>The number of rings is the cycle rank (i.e., bonds - atoms +
+ * connected components), which cannot decrease upon connecting building
+ * blocks and increases by one for each ring closure.</li>
+ * <li>The number of rotatable bonds cannot decrease upon connecting building
+ * blocks, but it can upon closing rings.</li>
+ * </ul>
+ */
+
+public class BuildingBlockProperties
+{
+    /**
+     * Properties of anything that contains no atoms.
+     */
+    public static final BuildingBlockProperties EMPTY =
+            new BuildingBlockProperties(new HashMap<String,Integer>(), 0, 0,
+                    0, 0);
+
+    /**
+     * Number of atoms per element symbol.
+     */
+    private final Map<String,Integer> elementCounts;
+
+    /**
+     * Number of non-hydrogen atoms.
+     */
+    private final int heavyAtoms;
+
+    /**
+     * Molecular weight computed as for
+     * {@link MoleculeUtils#getMolecularWeight(IAtomContainer)}.
+     */
+    private final double molWeight;
+
+    /**
+     * Number of rotatable bonds.
+     */
+    private final int rotatableBonds;
+
+    /**
+     * Number of rings.
+     */
+    private final int rings;
+
+//------------------------------------------------------------------------------
+
+    private BuildingBlockProperties(Map<String,Integer> elementCounts,
+            int heavyAtoms, double molWeight, int rotatableBonds, int rings)
+    {
+        this.elementCounts = Collections.unmodifiableMap(elementCounts);
+        this.heavyAtoms = heavyAtoms;
+        this.molWeight = molWeight;
+        this.rotatableBonds = rotatableBonds;
+        this.rings = rings;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the properties of a molecular representation.
+     * @param mol the molecular representation. This is not changed.
+     * @return the properties.
+     * @throws DENOPTIMException if the properties cannot be calculated.
+     */
+    public static BuildingBlockProperties fromAtomContainer(IAtomContainer mol)
+            throws DENOPTIMException
+    {
+        IAtomContainer elementsOnly = MoleculeUtils.makeSameAs(mol);
+        List<IAtom> toRemove = new ArrayList<IAtom>();
+        for (IAtom atm : elementsOnly.atoms())
+        {
+            if (!MoleculeUtils.isElement(atm))
+                toRemove.add(atm);
+        }
+        for (IAtom atm : toRemove)
+        {
+            elementsOnly.removeAtom(atm);
+        }
+
+        Map<String,Integer> elementCounts = new HashMap<String,Integer>();
+        for (IAtom atm : mol.atoms())
+        {
+            if (!MoleculeUtils.isElement(atm))
+                continue;
+            elementCounts.merge(atm.getSymbol(), 1, Integer::sum);
+            Integer hCount = atm.getImplicitHydrogenCount();
+            if (hCount != null && hCount > 0)
+                elementCounts.merge("H", hCount, Integer::sum);
+        }
+
+        int rings = 0;
+        if (elementsOnly.getAtomCount() > 0)
+        {
+            rings = elementsOnly.getBondCount() - elementsOnly.getAtomCount()
+                    + ConnectivityChecker.partitionIntoMolecules(elementsOnly)
+                        .getAtomContainerCount();
+        }
+
+        return new BuildingBlockProperties(elementCounts,
+                countHeavyAtoms(elementCounts),
+                calculateMolecularWeight(elementCounts),
+                MoleculeUtils.getNumberOfRotatableBonds(elementsOnly),
+                rings);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static int countHeavyAtoms(Map<String,Integer> elementCounts)
+    {
+        int n = 0;
+        for (Map.Entry<String,Integer> e : elementCounts.entrySet())
+        {
+            if (!e.getKey().equals("H"))
+                n += e.getValue();
+        }
+        return n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the molecular weight in the same way as the descriptor
+     * used by {@link MoleculeUtils#getMolecularWeight(IAtomContainer)}, i.e.,
+     * from the mass of the major isotope of each element.
+     */
+    private static double calculateMolecularWeight(
+            Map<String,Integer> elementCounts) throws DENOPTIMException
+    {
+        double mw = 0.0;
+        try
+        {
+            Isotopes isotopes = Isotopes.getInstance();
+            for (Map.Entry<String,Integer> e : elementCounts.entrySet())
+            {
+                mw += e.getValue()
+                        * isotopes.getMajorIsotope(e.getKey()).getExactMass();
+            }
+        } catch (IOException e)
+        {
+            throw new DENOPTIMException(e);
+        }
+        return mw;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sums these properties to those of another building block.
+     * @param other the properties to add.
+     * @return the new properties resulting from the sum.
+     */
+    public BuildingBlockProperties plus(BuildingBlockProperties other)
+    {
+        Map<String,Integer> sumCounts = new HashMap<String,Integer>(
+                elementCounts);
+        for (Map.Entry<String,Integer> e : other.elementCounts.entrySet())
+        {
+            sumCounts.merge(e.getKey(), e.getValue(), Integer::sum);
+        }
+        return new BuildingBlockProperties(sumCounts,
+                heavyAtoms + other.heavyAtoms,
+                molWeight + other.molWeight,
+                rotatableBonds + other.rotatableBonds,
+                rings + other.rings);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns properties equal to these ones but for the number of rings and
+     * rotatable bonds.
+     * @param additionalRings the number of rings to add.
+     * @param ignoreRotatableBonds use <code>true</code> to set the number of
+     * rotatable bonds to zero.
+     * @return the new properties.
+     */
+    public BuildingBlockProperties withRings(int additionalRings,
+            boolean ignoreRotatableBonds)
+    {
+        return new BuildingBlockProperties(
+                new HashMap<String,Integer>(elementCounts), heavyAtoms,
+                molWeight, ignoreRotatableBonds ? 0 : rotatableBonds,
+                rings + additionalRings);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of non-hydrogen atoms.
+     */
+    public int getHeavyAtomCount()
+    {
+        return heavyAtoms;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the molecular weight.
+     */
+    public double getMolecularWeight()
+    {
+        return molWeight;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of rotatable bonds.
+     */
+    public int getRotatableBondCount()
+    {
+        return rotatableBonds;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of rings.
+     */
+    public int getRingCount()
+    {
+        return rings;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param symbol the elemental symbol.
+     * @return the number of atoms of the given element.
+     */
+    public int getElementCount(String symbol)
+    {
+        return elementCounts.getOrDefault(symbol, 0);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the unmodifiable map of the number of atoms per element symbol.
+     */
+    public Map<String,Integer> getElementCounts()
+    {
+        return elementCounts;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -22,23 +22,30 @@ package denoptim.fragspace;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
+import java.util.stream.Stream;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
+import denoptim.files.FileFormat;
+import denoptim.files.FileUtils;
 import denoptim.files.UndetectedFileFormatException;
 import denoptim.graph.APClass;
 import denoptim.graph.APMapping;
 import denoptim.graph.AttachmentPoint;
 import denoptim.graph.Candidate;
 import denoptim.graph.DGraph;
+import denoptim.graph.Fragment;
 import denoptim.graph.GraphPattern;
 import denoptim.graph.Template;
 import denoptim.graph.Vertex;
@@ -66,7 +73,7 @@ public class FragmentSpace
      * meaningful value for the two indexes representing the type of building
      * block and the position of the list of all building blocks of that type.
      */
-    private ArrayList<Vertex> scaffoldLib = null;
+    private List<Vertex> scaffoldLib = null;
 
     /**
      * Data structure containing the molecular representation of building
@@ -75,7 +82,7 @@ public class FragmentSpace
      * indexes representing the type of building block and the position of the
      * list of all building blocks of that type.
      */
-    private ArrayList<Vertex> fragmentLib = null;
+    private List<Vertex> fragmentLib = null;
 
     /**
      * Data structure containing the molecular representation of building
@@ -85,7 +92,7 @@ public class FragmentSpace
      * indexes representing the type of building block and the position of the
      * list of all building blocks of that type.
      */
-    private ArrayList<Vertex> cappingLib = null;
+    private List<Vertex> cappingLib = null;
 
     /**
      * Data structure that stored the true entries of the attachment point
@@ -130,6 +137,19 @@ public class FragmentSpace
      * Clusters of fragments'AP based on AP classes
      */
     private HashMap<APClass, ArrayList<ArrayList<Integer>>> fragsApsPerApClass;
+
+    /**
+     * Bit set-based index of the fragments' APs per AP class. Used to
+     * answer queries on compatible APs.
+     */
+    private APClassIndex apClassIndex;
+    
+    /**
+     * Properties of the building blocks, indexed by building block type and
+     * index. Calculated when first needed.
+     */
+    private Map<String,BuildingBlockProperties> bbProperties = 
+            new ConcurrentHashMap<String,BuildingBlockProperties>();
     
     /**
      * APclass-specific constraints to constitutional symmetry
@@ -151,6 +171,12 @@ public class FragmentSpace
      * values unless its value is reassigned.
      */
     private FragmentSpaceParameters settings = null;
+    
+    /**
+     * The scope of the APClasses made for this fragment space, or 
+     * <code>null</code> if the APClasses are global.
+     */
+    private APClass.Scope apClassScope = null;
 
 //------------------------------------------------------------------------------
     
@@ -330,17 +356,12 @@ public class FragmentSpace
             }
         }
         
-        ArrayList<Vertex> fragLib = new ArrayList<Vertex>();
+        List<Vertex> fragLib = new ArrayList<Vertex>();
         if (fragFile != null && fragFile.length() > 0)
         {
             try
             {
-                fragLib = DenoptimIO.readVertexes(new File(fragFile),
-                        BBType.FRAGMENT);
-                for (int i=0; i<fragLib.size(); i++)
-                {
-                    fragLib.get(i).setBuildingBlockId(i);
-                }
+                fragLib = readLibrary(settings, fragFile, BBType.FRAGMENT);
             } catch (IllegalArgumentException | UndetectedFileFormatException
                     | IOException | DENOPTIMException e)
             {
@@ -349,17 +370,12 @@ public class FragmentSpace
             }
         }
         
-        ArrayList<Vertex> scaffLib = new ArrayList<Vertex>();
+        List<Vertex> scaffLib = new ArrayList<Vertex>();
         if (scaffFile != null && scaffFile.length() > 0)
         {
             try
             {
-                scaffLib = DenoptimIO.readVertexes(new File(scaffFile),
-                        BBType.SCAFFOLD);
-                for (int i=0; i<scaffLib.size(); i++)
-                {
-                    scaffLib.get(i).setBuildingBlockId(i);
-                }
+                scaffLib = readLibrary(settings, scaffFile, BBType.SCAFFOLD);
             } catch (IllegalArgumentException | UndetectedFileFormatException
                     | IOException | DENOPTIMException e)
             {
@@ -372,6 +388,41 @@ public class FragmentSpace
                 rcCpMap, symCntrMap);
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a library of building blocks from file. If requested by the
+     * settings, and if the file is an SDF file of vertexes, the library is a
+     * {@link LazyVertexLibrary}.
+     * @param settings the settings of the fragment space.
+     * @param pathname the file to read.
+     * @param bbt the type of building blocks in the file.
+     * @return the library.
+     */
+    private static List<Vertex> readLibrary(FragmentSpaceParameters settings,
+            String pathname, BBType bbt) throws UndetectedFileFormatException,
+    IOException, IllegalArgumentException, DENOPTIMException
+    {
+        File file = new File(pathname);
+        if (settings.useLazyLibraries())
+        {
+            if (FileUtils.detectFileFormat(file) == FileFormat.VRTXSDF)
+            {
+                return new LazyVertexLibrary(file, bbt, 
+                        settings.getLazyLibraryCacheSize());
+            }
+            settings.getLogger().log(Level.WARNING, "Lazy libraries can only "
+                    + "be made from SDF files of vertexes. Reading all "
+                    + "building blocks from '" + pathname + "'.");
+        }
+        ArrayList<Vertex> lib = DenoptimIO.readVertexes(file, bbt);
+        for (int i=0; i<lib.size(); i++)
+        {
+            lib.get(i).setBuildingBlockId(i);
+        }
+        return lib;
+    }
+    
 //------------------------------------------------------------------------------
 
     /**
@@ -396,8 +447,8 @@ public class FragmentSpace
      * @throws DENOPTIMException
      */
     private void define(FragmentSpaceParameters settings,
-            ArrayList<Vertex> scaffLib,
-            ArrayList<Vertex> fragLib,
+            List<Vertex> scaffLib,
+            List<Vertex> fragLib,
             ArrayList<Vertex> cappLib,
             HashMap<APClass, ArrayList<APClass>> cpMap,
             HashMap<APClass, APClass> capMap,
@@ -409,8 +460,8 @@ public class FragmentSpace
         this.settings = settings;
         settings.setFragmentSpace(this);
         
-        setScaffoldLibrary(scaffLib);
-        setFragmentLibrary(fragLib);
+        scaffoldLib = importLibrary(scaffLib, BBType.SCAFFOLD);
+        fragmentLib = importLibrary(fragLib, BBType.FRAGMENT);
         setCappingLibrary(cappLib);
         setCompatibilityMatrix(cpMap);
         apClassBasedApproch = cpMap.size()>0;
@@ -435,6 +486,31 @@ public class FragmentSpace
         return isValid;
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the scope of the APClasses made for this fragment space.
+     * @param apClassScope the scope, or <code>null</code> if the APClasses
+     * are global.
+     */
+    public void setAPClassScope(APClass.Scope apClassScope)
+    {
+        this.apClassScope = apClassScope;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return the scope of the APClasses made for this fragment space, or 
+     * <code>null</code> if the APClasses are global. The scope is not 
+     * active unless activated by whoever uses this fragment space: see 
+     * {@link APClass.Scope#setActive(APClass.Scope)}.
+     */
+    public APClass.Scope getAPClassScope()
+    {
+        return apClassScope;
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -625,7 +701,7 @@ public class FragmentSpace
                 settings.getLogger().log(Level.SEVERE, msg);
                 throw new DENOPTIMException(msg);
         }
-        Vertex clone = originalVrtx.clone();
+        Vertex clone = originalVrtx.instantiate();
         
         clone.setVertexId(GraphUtils.getUniqueVertexIndex());
 
@@ -712,21 +788,21 @@ public class FragmentSpace
 
 //------------------------------------------------------------------------------
 
-    public ArrayList<Vertex> getScaffoldLibrary()
+    public List<Vertex> getScaffoldLibrary()
     {
         return scaffoldLib;
     }
 
 //------------------------------------------------------------------------------
 
-    public ArrayList<Vertex> getFragmentLibrary()
+    public List<Vertex> getFragmentLibrary()
     {
         return fragmentLib;
     }
 
 //------------------------------------------------------------------------------
 
-    public ArrayList<Vertex> getCappingLibrary()
+    public List<Vertex> getCappingLibrary()
     {
         return cappingLib;
     }
@@ -1059,43 +1135,22 @@ public class FragmentSpace
     public ArrayList<AttachmentPoint> getAPsCompatibleWithThese(
                     ArrayList<AttachmentPoint> srcAPs)
     {
-        ArrayList<AttachmentPoint> compAps = 
-                new ArrayList<AttachmentPoint>();
-        boolean first = true;
+        BitSet slots = null;
         for (AttachmentPoint ap : srcAPs)
         { 
-            ArrayList<AttachmentPoint> compForOne = 
-                    getAPsCompatibleWithClass(ap.getAPClass());
-
-            if (first)
+            BitSet compForOne = getSlotsCompatibleWithClass(ap.getAPClass());
+            if (slots == null)
             {
-                compAps.addAll(compForOne);
-                first = false;
-                continue;
-            }
-            
-            ArrayList<AttachmentPoint> toKeep = 
-                    new ArrayList<AttachmentPoint>();
-            for (AttachmentPoint candAp : compAps)
-            {
-                for (AttachmentPoint newCand : compForOne)
-                {
-                    if (newCand == candAp)
-                    {
-                            toKeep.add(candAp);
-                            break;
-                    }
-                }
+                slots = compForOne;
+            } else {
+                slots.and(compForOne);
             }
-            
-            compAps = toKeep;
-            
-            if (compAps.size()==0)
+            if (slots.isEmpty())
             {
                 break;
             }
         }
-        return compAps;
+        return getAPsInSlots(slots);
     }
     
 //------------------------------------------------------------------------------
@@ -1110,44 +1165,23 @@ public class FragmentSpace
     public ArrayList<IdFragmentAndAP> getFragAPsCompatibleWithTheseAPs(
             ArrayList<IdFragmentAndAP> srcAPs)
     {
-        ArrayList<IdFragmentAndAP> compFrAps = new ArrayList<IdFragmentAndAP>();
-        boolean first = true;
+        BitSet slots = null;
         for (IdFragmentAndAP apId : srcAPs)
         {
             APClass srcApCls = getAPClassForFragment(apId);
-            ArrayList<IdFragmentAndAP> compForOne = 
-                    getFragAPsCompatibleWithClass(srcApCls);
-
-            if (first)
+            BitSet compForOne = getSlotsCompatibleWithClass(srcApCls);
+            if (slots == null)
             {
-                compFrAps.addAll(compForOne);
-                first = false;
-                continue;
+                slots = compForOne;
+            } else {
+                slots.and(compForOne);
             }
-
-            ArrayList<IdFragmentAndAP> toKeep = 
-                    new ArrayList<IdFragmentAndAP>();
-            for (IdFragmentAndAP candAp : compFrAps)
-            {
-                for (IdFragmentAndAP newId : compForOne)
-                {
-                    if (newId.sameFragAndAp(candAp))
-                    {
-                        toKeep.add(candAp);
-                        break;
-                    }
-                }
-            }
-
-            compFrAps = toKeep;
-
-            if (compFrAps.size() == 0)
+            if (slots.isEmpty())
             {
                 break;
             }
         }
-
-        return compFrAps;
+        return getFragAPsInSlots(slots);
     }
 
 //------------------------------------------------------------------------------
@@ -1163,30 +1197,8 @@ public class FragmentSpace
     public ArrayList<AttachmentPoint> getAPsCompatibleWithClass(
                     APClass aPC1)
     {
-        ArrayList<AttachmentPoint> compatAps = 
-                new ArrayList<AttachmentPoint>();
-        
-        // Take the compatible AP classes
-        ArrayList<APClass> compatApClasses = getCompatibleAPClasses(aPC1);
-        
-        // Find all APs with a compatible class
-        if (compatApClasses != null)
-        {
-            for (APClass klass : compatApClasses)
-            {
-                ArrayList<Vertex> vrtxs = getVerticesWithAPClass(klass);
-                for (Vertex v : vrtxs)
-                {
-                    for (AttachmentPoint ap : v.getAttachmentPoints())
-                    {
-                        if (ap.getAPClass() == klass)
-                        {
-                            compatAps.add(ap);
-                        }
-                    }
-                }
-            }
-        }
+        ArrayList<AttachmentPoint> compatAps = getAPsInSlots(
+                getSlotsCompatibleWithClass(aPC1));
         
         if (compatAps.size()==0)
         {
@@ -1210,21 +1222,97 @@ public class FragmentSpace
     public ArrayList<IdFragmentAndAP> getFragAPsCompatibleWithClass(
             APClass aPC1)
     {
-        ArrayList<IdFragmentAndAP> compatFragAps = 
-                new ArrayList<IdFragmentAndAP>();
+        return getFragAPsInSlots(getSlotsCompatibleWithClass(aPC1));
+    }
 
-        // Take the compatible AP classes
-        ArrayList<APClass> compatApClasses = getCompatibleAPClasses(aPC1);
+//------------------------------------------------------------------------------
 
-        // Find all APs with any compatible class
-        if (compatApClasses != null)
+    /**
+     * Returns the index of the fragments' APs per AP class. The index is
+     * built if it does not exist yet.
+     */
+    private APClassIndex getAPClassIndex()
+    {
+        APClassIndex index = apClassIndex;
+        if (index == null)
         {
-            for (APClass compClass : compatApClasses)
+            index = new APClassIndex();
+            if (fragmentLib != null)
             {
-                compatFragAps.addAll(getFragsWithAPClass(compClass));
+                for (int j=0; j<fragmentLib.size(); j++)
+                {
+                    index.addFragment(j, getClassOfFreeAPs(j));
+                }
             }
+            apClassIndex = index;
+        }
+        return index;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the slots of the APs found in the library of fragments and
+     * that are compatible with the given AP class.
+     * @param apc the AP class for which we want compatible APs.
+     * @return a bit set that can be modified by the caller.
+     */
+    private BitSet getSlotsCompatibleWithClass(APClass apc)
+    {
+        return getAPClassIndex().getCompatibleSlots(apc,
+                getCompatibleAPClasses(apc));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the identifiers of the APs in the given slots. The 
+     * identifiers have <code>vertex_id</code>=-1 because these APs are only on
+     * the individual fragments held in the library and do not belong to any
+     * graph.
+     * @param slots the slots, or <code>null</code>.
+     * @return the list of AP identifiers.
+     */
+    private ArrayList<IdFragmentAndAP> getFragAPsInSlots(BitSet slots)
+    {
+        ArrayList<IdFragmentAndAP> lst = new ArrayList<IdFragmentAndAP>();
+        if (slots == null)
+            return lst;
+
+        APClassIndex index = getAPClassIndex();
+        for (int slot = slots.nextSetBit(0); slot >= 0;
+                slot = slots.nextSetBit(slot+1))
+        {
+            lst.add(new IdFragmentAndAP(-1, // vertexId
+                    index.getFragmentId(slot), // MolId,
+                    BBType.FRAGMENT, index.getAPId(slot), // ApId
+                    -1, // noVSym
+                    -1));// noAPSym
+        }
+        return lst;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects the APs in the given slots from the library of fragments.
+     * @param slots the slots, or <code>null</code>.
+     * @return the list of APs.
+     */
+    private ArrayList<AttachmentPoint> getAPsInSlots(BitSet slots)
+    {
+        ArrayList<AttachmentPoint> lst = new ArrayList<AttachmentPoint>();
+        if (slots == null)
+            return lst;
+
+        APClassIndex index = getAPClassIndex();
+        for (int slot = slots.nextSetBit(0); slot >= 0;
+                slot = slots.nextSetBit(slot+1))
+        {
+            lst.add(fragmentLib.get(index.getFragmentId(slot)).getAP(
+                    index.getAPId(slot)));
         }
-        return compatFragAps;
+        return lst;
     }
 
 //------------------------------------------------------------------------------
@@ -1297,14 +1385,36 @@ public class FragmentSpace
 
     public void setScaffoldLibrary(ArrayList<Vertex> lib)
     {
-        scaffoldLib = new ArrayList<Vertex>();
-        appendVerticesToLibrary(lib, BBType.SCAFFOLD, scaffoldLib);
+        scaffoldLib = importLibrary(lib, BBType.SCAFFOLD);
+        bbProperties.clear();
     }
 
     public void setFragmentLibrary(ArrayList<Vertex> lib)
     {
-        fragmentLib = new ArrayList<Vertex>();
-        appendVerticesToLibrary(lib, BBType.FRAGMENT, fragmentLib);
+        fragmentLib = importLibrary(lib, BBType.FRAGMENT);
+        apClassIndex = null;
+        bbProperties.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Makes a library from the given list of vertices. Lazy libraries are
+     * used as they are, while the content of any other list is appended to 
+     * a new library.
+     * @param lib the list of vertices to import.
+     * @param bbt the type of building block the vertices should be set to.
+     * @return the library.
+     */
+    private List<Vertex> importLibrary(List<Vertex> lib, BBType bbt)
+    {
+        if (lib instanceof LazyVertexLibrary)
+        {
+            return lib;
+        }
+        List<Vertex> library = new ArrayList<Vertex>();
+        appendVerticesToLibrary(lib, bbt, library);
+        return library;
     }
 
 //------------------------------------------------------------------------------
@@ -1313,6 +1423,7 @@ public class FragmentSpace
     {
         cappingLib = new ArrayList<Vertex>();
         appendVerticesToLibrary(lib, BBType.CAP, cappingLib);
+        bbProperties.clear();
     }
 
 //------------------------------------------------------------------------------
@@ -1320,6 +1431,8 @@ public class FragmentSpace
     public void setCompatibilityMatrix(HashMap<APClass, ArrayList<APClass>> map)
     {
         apClassCompatibilityMatrix = map;
+        if (apClassIndex != null)
+            apClassIndex.clearCompatibility();
     }
 
 //------------------------------------------------------------------------------
@@ -1379,10 +1492,13 @@ public class FragmentSpace
 
     /**
      * Clears all settings of this fragment space. All fields changed to
-     * <code>null</code>.
+     * <code>null</code>. Libraries that read building blocks from file on 
+     * demand are closed.
      */
     public void clearAll()
     {
+        closeLazyLibrary(scaffoldLib);
+        closeLazyLibrary(fragmentLib);
         scaffoldLib = null;
         fragmentLib = null;
         cappingLib = null;
@@ -1393,9 +1509,118 @@ public class FragmentSpace
         fragPoolPerNumAP = null;
         apClassesPerFrag = null;
         fragsApsPerApClass = null;
+        apClassIndex = null;
+        bbProperties.clear();
         symmConstraints = null;
         isValid = false;
     }
+
+//------------------------------------------------------------------------------
+
+    private void closeLazyLibrary(List<Vertex> lib)
+    {
+        if (!(lib instanceof LazyVertexLibrary))
+            return;
+        try
+        {
+            ((LazyVertexLibrary) lib).close();
+        } catch (IOException e)
+        {
+            settings.getLogger().log(Level.WARNING, "Could not close file '"
+                    + ((LazyVertexLibrary) lib).getFile() + "'.", e);
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the molecular properties of a vertex. The properties of 
+     * fragments that still share the atoms of a building block in the 
+     * libraries of this fragment space (see {@link Fragment#instantiate()})
+     * are calculated only once. Any other vertex, e.g., one read from file 
+     * or one whose atoms have been altered, is analyzed on its own atoms, 
+     * even if its building block ID matches a library entry. The properties 
+     * of templates are obtained from their embedded graph. 
+     * See {@link BuildingBlockProperties}.
+     * @param v the vertex.
+     * @return the properties of the vertex.
+     * @throws DENOPTIMException if the properties cannot be calculated.
+     */
+    public BuildingBlockProperties getProperties(Vertex v) 
+            throws DENOPTIMException
+    {
+        if (v instanceof Template)
+        {
+            return estimateProperties(((Template) v).getInnerGraph());
+        }
+        if (!v.containsAtoms())
+        {
+            return BuildingBlockProperties.EMPTY;
+        }
+        
+        int bbId = v.getBuildingBlockId();
+        List<Vertex> library = null;
+        switch (v.getBuildingBlockType())
+        {
+            case SCAFFOLD:
+                library = scaffoldLib;
+                break;
+            case FRAGMENT:
+                library = fragmentLib;
+                break;
+            case CAP:
+                library = cappingLib;
+                break;
+            default:
+                break;
+        }
+        if (library == null || bbId < 0 || bbId >= library.size()
+                || !(v instanceof Fragment) 
+                || !(library.get(bbId) instanceof Fragment)
+                || !((Fragment) v).sharesMolWith((Fragment) library.get(bbId)))
+        {
+            return BuildingBlockProperties.fromAtomContainer(
+                    v.getIAtomContainer());
+        }
+        
+        String key = v.getBuildingBlockType() + "_" + bbId;
+        BuildingBlockProperties props = bbProperties.get(key);
+        if (props == null)
+        {
+            props = BuildingBlockProperties.fromAtomContainer(
+                    getVertexFromLibrary(v.getBuildingBlockType(), bbId)
+                        .getIAtomContainer());
+            bbProperties.put(key, props);
+        }
+        return props;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Estimates the molecular properties of the molecule encoded by a graph
+     * by summing the properties of its vertexes. The resulting values are 
+     * lower bounds of those of the molecule, and can thus be used to reject
+     * graphs that violate constraints without building the molecule. 
+     * See {@link BuildingBlockProperties}.
+     * @param graph the graph.
+     * @return the lower bounds of the properties. The number of rotatable
+     * bonds is set to zero if the graph contains or embeds any ring, because
+     * closing rings can make rotatable bonds not rotatable.
+     * @throws DENOPTIMException if the properties of any vertex cannot be 
+     * calculated.
+     */
+    public BuildingBlockProperties estimateProperties(DGraph graph) 
+            throws DENOPTIMException
+    {
+        BuildingBlockProperties props = BuildingBlockProperties.EMPTY;
+        for (Vertex v : graph.getVertexList())
+        {
+            props = props.plus(getProperties(v));
+        }
+        return props.withRings(graph.getRingCount(), 
+                graph.hasOrEmbedsRings());
+    }
     
 //------------------------------------------------------------------------------
 
@@ -1408,8 +1633,8 @@ public class FragmentSpace
      * @param library where to import the vertices to.
      */
     
-    public void appendVerticesToLibrary(ArrayList<Vertex> list, 
-            Vertex.BBType bbt, ArrayList<Vertex> library)
+    public void appendVerticesToLibrary(List<Vertex> list, 
+            Vertex.BBType bbt, List<Vertex> library)
     {
         for (Vertex v : list)
         {
@@ -1429,7 +1654,7 @@ public class FragmentSpace
      */
     
     public void appendVertexToLibrary(Vertex v, 
-            Vertex.BBType bbt, ArrayList<Vertex> library)
+            Vertex.BBType bbt, List<Vertex> library)
     {
         v.setBuildingBlockId(library.size());
         v.setBuildingBlockType(bbt);
@@ -1538,7 +1763,7 @@ public class FragmentSpace
                 continue;
             }
 
-            ArrayList<Vertex> library = type == BBType.FRAGMENT ?
+            List<Vertex> library = type == BBType.FRAGMENT ?
                     fragmentLib : scaffoldLib;
             
             synchronized (library)
@@ -1645,8 +1870,18 @@ public class FragmentSpace
      * specified type.
      */
     public boolean hasIsomorph(DGraph graph, BBType type) {
-        return (type == BBType.SCAFFOLD ? scaffoldLib : fragmentLib)
-                .stream()
+        List<Vertex> lib = type == BBType.SCAFFOLD ? scaffoldLib : fragmentLib;
+        Stream<Vertex> candidates = null;
+        if (lib instanceof LazyVertexLibrary)
+        {
+            // Build only the templates, not the entire library
+            candidates = ((LazyVertexLibrary) lib).getTemplateIndexes()
+                    .stream()
+                    .map(lib::get);
+        } else {
+            candidates = lib.stream();
+        }
+        return candidates
                 .filter(v -> v instanceof Template)
                 .map(t -> (Template) t)
                 .map(Template::getInnerGraph)
@@ -1755,9 +1990,35 @@ public class FragmentSpace
      */
     
     public void classifyFragment(Vertex frg,int fragId)
+    {   
+        classifyFragment(fragId, getClassOfFreeAPs(frg), 
+                frg.getAllAPClasses());
+        
+        if (useAPclassBasedApproach() && frg.isRCV())
+            registerRCV(frg);
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Classify a fragment in terms of the number of APs and possibly their 
+     * type (AP-Class) without the need of having the fragment itself.
+     * @param fragId the index of the fragment in the library
+     * @param classOfFreeAPs the APClass of each AP on the fragment, in the 
+     * order of the APs, or <code>null</code> for APs that are not available.
+     * @param allAPClasses the unique APClasses found on the fragment.
+     */
+    
+    private void classifyFragment(int fragId, List<APClass> classOfFreeAPs,
+            ArrayList<APClass> allAPClasses)
     {   
     	// Classify according to number of APs
-        int nAps = frg.getFreeAPCount();
+        int nAps = 0;
+        for (APClass cls : classOfFreeAPs)
+        {
+            if (cls != null)
+                nAps++;
+        }
     	if (nAps != 0)
     	{
             if (getMapOfFragsPerNumAps().containsKey(nAps))
@@ -1775,25 +2036,21 @@ public class FragmentSpace
     	if (useAPclassBasedApproach())
     	{
     	    // Collect classes per fragment
-    	    ArrayList<APClass> lstAPC = frg.getAllAPClasses();
-            getMapAPClassesPerFragment().put(fragId,lstAPC);
+            getMapAPClassesPerFragment().put(fragId,allAPClasses);
+            if (apClassIndex != null)
+                apClassIndex.addFragment(fragId, classOfFreeAPs);
             
     	    // Classify according to AP-Classes
-            ArrayList<AttachmentPoint> lstAPs = 
-                    frg.getAttachmentPoints();
-            
-    	    for (int j=0; j<lstAPs.size(); j++)
+    	    for (int j=0; j<classOfFreeAPs.size(); j++)
     	    {
-    	        AttachmentPoint ap = lstAPs.get(j);
-    			ArrayList<Integer> apId = new ArrayList<Integer>();
-    			apId.add(fragId);
-    			apId.add(j);
-    			APClass cls = ap.getAPClass();
-    			
-    			if (!ap.isAvailable())
+    			APClass cls = classOfFreeAPs.get(j);
+    			if (cls == null)
     			{
     			    continue;
     			}
+    			ArrayList<Integer> apId = new ArrayList<Integer>();
+    			apId.add(fragId);
+    			apId.add(j);
     			
     		    if (getMapFragsAPsPerAPClass().containsKey(cls))
     			{
@@ -1807,12 +2064,44 @@ public class FragmentSpace
     			    getMapFragsAPsPerAPClass().put(cls,outLst);
     			}
     	    }
-    	    
-    	    if (frg.isRCV())
-    	        registerRCV(frg);
     	}
     }
-
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Collects the APClass of each available AP of a vertex.
+     * @param v the vertex.
+     * @return the APClass of each AP, in the order of the APs, or 
+     * <code>null</code> for APs that are not available.
+     */
+    private static List<APClass> getClassOfFreeAPs(Vertex v)
+    {
+        List<APClass> classOfFreeAPs = new ArrayList<APClass>();
+        for (AttachmentPoint ap : v.getAttachmentPoints())
+        {
+            classOfFreeAPs.add(ap.isAvailable() ? ap.getAPClass() : null);
+        }
+        return classOfFreeAPs;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Collects the APClass of each available AP of a fragment in the library.
+     * Fragments of lazy libraries are not built.
+     * @param fragId the index of the fragment in the library.
+     * @return the APClass of each AP, in the order of the APs, or 
+     * <code>null</code> for APs that are not available.
+     */
+    private List<APClass> getClassOfFreeAPs(int fragId)
+    {
+        if (fragmentLib instanceof LazyVertexLibrary)
+        {
+            return ((LazyVertexLibrary) fragmentLib).getAPClasses(fragId);
+        }
+        return getClassOfFreeAPs(fragmentLib.get(fragId));
+    }
 
 //------------------------------------------------------------------------------
 
@@ -1831,11 +2120,29 @@ public class FragmentSpace
     	    setFragsApsPerApClass(
     	            new HashMap<APClass,ArrayList<ArrayList<Integer>>>());
     	    setAPClassesPerFrag(new HashMap<Integer,ArrayList<APClass>>());
+    	    apClassIndex = new APClassIndex();
+    	} else {
+    	    apClassIndex = null;
     	}
-    	for (int j=0; j<getFragmentLibrary().size(); j++)
+    	if (getFragmentLibrary() instanceof LazyVertexLibrary)
     	{
-    		Vertex frag = getFragmentLibrary().get(j);
-    	    classifyFragment(frag,j);
+    	    // Classify without building the fragments
+    	    LazyVertexLibrary lazyLib = 
+    	            (LazyVertexLibrary) getFragmentLibrary();
+    	    for (int j=0; j<lazyLib.size(); j++)
+    	    {
+    	        List<APClass> apClasses = lazyLib.getAPClasses(j);
+    	        classifyFragment(j, apClasses, new ArrayList<APClass>(
+    	                new LinkedHashSet<APClass>(apClasses)));
+    	        if (useAPclassBasedApproach() && lazyLib.isRCV(j))
+    	            registerRCV(lazyLib.get(j));
+    	    }
+    	} else {
+        	for (int j=0; j<getFragmentLibrary().size(); j++)
+        	{
+        		Vertex frag = getFragmentLibrary().get(j);
+        	    classifyFragment(frag,j);
+        	}
     	}
     }
 
@@ -27,6 +27,7 @@ import denoptim.exception.DENOPTIMException;
 import denoptim.files.FileUtils;
 import denoptim.graph.APClass;
 import denoptim.programs.RunTimeParameters;
+import denoptim.utils.MoleculeUtils;
 
 
 /**
@@ -89,6 +90,17 @@ public class FragmentSpaceParameters extends RunTimeParameters
      */
     protected double maxMW = 500;
 
+    /**
+     * Maximum number of rings accepted. Non-positive values mean no limit.
+     */
+    protected int maxRings = 0;
+
+    /**
+     * Maximum number of atoms accepted for specific elements.
+     */
+    protected HashMap<String,Integer> maxElementCounts = 
+            new HashMap<String,Integer>();
+
     /**
      * Flag enforcing constitutional symmetry
      */
@@ -105,6 +117,24 @@ public class FragmentSpaceParameters extends RunTimeParameters
     private HashMap<APClass, Double> symmConstraintsMap = 
             new HashMap<APClass, Double>();
     
+    /**
+     * Flag requesting libraries of scaffolds and fragments that build
+     * vertexes only when needed. See {@link LazyVertexLibrary}.
+     */
+    protected boolean useLazyLibraries = false;
+    
+    /**
+     * Maximum number of vertexes kept in memory by each lazy library.
+     */
+    protected int lazyLibraryCacheSize = LazyVertexLibrary.DEFAULTCACHESIZE;
+    
+    /**
+     * Flag requesting the APClasses made while building and using the 
+     * fragment space to be kept separate from those of other runs. 
+     * See {@link APClass.Scope}.
+     */
+    protected boolean useAPClassScope = false;
+    
     private FragmentSpace buildingBlocksSpace = null;
     
 //------------------------------------------------------------------------------
@@ -161,6 +191,24 @@ public class FragmentSpaceParameters extends RunTimeParameters
         return maxMW;
     }
 
+//------------------------------------------------------------------------------
+
+    public int getMaxRings()
+    {
+        return maxRings;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum number of atoms of each element for which a limit
+     * has been defined.
+     */
+    public HashMap<String,Integer> getMaxElementCounts()
+    {
+        return maxElementCounts;
+    }
+
 //------------------------------------------------------------------------------
     
     public boolean enforceSymmetry()
@@ -175,6 +223,27 @@ public class FragmentSpaceParameters extends RunTimeParameters
         return symmetryConstraints;
     }
 
+//------------------------------------------------------------------------------
+
+    public boolean useLazyLibraries()
+    {
+        return useLazyLibraries;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getLazyLibraryCacheSize()
+    {
+        return lazyLibraryCacheSize;
+    }
+
+//------------------------------------------------------------------------------
+
+    public boolean useAPClassScope()
+    {
+        return useAPClassScope;
+    }
+
 //------------------------------------------------------------------------------
 
     public String getRotSpaceDefFile()
@@ -267,9 +336,60 @@ public class FragmentSpaceParameters extends RunTimeParameters
                 throw new DENOPTIMException(msg);
             }
             break;
+        case "MAXRINGS=":
+            try
+            {
+                if (value.length() > 0)
+                    maxRings = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "MAXELEMENTCOUNT=":
+            try
+            {
+                String[] words = value.trim().split("\\s+");
+                if (words.length != 2 || !MoleculeUtils.isElement(words[0]))
+                {
+                    msg = "Keyword " + key + " requires two arguments: " 
+                          + "[element symbol (String)] [max (Integer)].";
+                    throw new DENOPTIMException(msg);
+                }
+                maxElementCounts.put(words[0], Integer.parseInt(words[1]));
+            }
+            catch (Throwable t)
+            {
+                if (msg.equals(""))
+                {
+                    msg = "Unable to understand value '" + value + "'";
+                }
+                throw new DENOPTIMException(msg);
+            }
+            break;
         case "ENFORCESYMMETRY":
             enforceSymmetry = true;
             break;
+        case "LAZYLIBRARIES":
+            useLazyLibraries = true;
+            break;
+        case "APCLASSSCOPE":
+            useAPClassScope = true;
+            break;
+        case "LAZYLIBRARYCACHESIZE=":
+            try
+            {
+                if (value.length() > 0)
+                    lazyLibraryCacheSize = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
     	case "CONSTRAINSYMMETRY=":
     	    symmetryConstraints = true;
     	    try
@@ -395,9 +515,30 @@ public class FragmentSpaceParameters extends RunTimeParameters
             throw new DENOPTIMException(msg);
         }
         
+        if (lazyLibraryCacheSize < 1)
+        {
+            msg = "Size of the cache of lazy libraries must be a positive "
+                    + "integer.";
+            throw new DENOPTIMException(msg);
+        }
+        
         checkOtherParameters();
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the scope of the APClasses of the fragment space defined by 
+     * these parameters, or <code>null</code> if the APClasses are global or
+     * the fragment space has not been defined yet.
+     */
+    public APClass.Scope getAPClassScope()
+    {
+        if (buildingBlocksSpace == null)
+            return null;
+        return buildingBlocksSpace.getAPClassScope();
+    }
+    
 //------------------------------------------------------------------------------
 
     /**
@@ -407,11 +548,27 @@ public class FragmentSpaceParameters extends RunTimeParameters
      */
     public void processParameters() throws DENOPTIMException
     {
-        buildingBlocksSpace = new FragmentSpace(this, 
-                scaffoldLibFile, fragmentLibFile, cappingLibFile, 
-                compMatrixFile, rcCompMatrixFile, 
-                symmConstraintsMap);
-        processOtherParameters();
+        // The scope is active only while we read the building blocks. Who 
+        // uses the fragment space must activate its scope (see 
+        // FragmentSpace#getAPClassScope()) in the threads doing the work.
+        APClass.Scope apClassScope = null;
+        APClass.Scope previousScope = APClass.Scope.getActive();
+        if (useAPClassScope)
+        {
+            apClassScope = new APClass.Scope();
+            apClassScope.activate();
+        }
+        try
+        {
+            buildingBlocksSpace = new FragmentSpace(this, 
+                    scaffoldLibFile, fragmentLibFile, cappingLibFile, 
+                    compMatrixFile, rcCompMatrixFile, 
+                    symmConstraintsMap);
+            buildingBlocksSpace.setAPClassScope(apClassScope);
+            processOtherParameters();
+        } finally {
+            APClass.Scope.setActive(previousScope);
+        }
     }
     
 //------------------------------------------------------------------------------
@@ -71,18 +71,21 @@ public class GraphLinkFinder
             new LinkedHashMap<Vertex,List<APMapping>>();
     
     /**
-     * Maximum number of combinations. This prevents combinatorial explosion, 
-     * but it is ignored if the constructor is required to screen all.
-     * Remember that the combinations are anyway randomized, so even with the 
-     * maximum limit on the number of combination to consider, there is no
-     * systematic exclusion of specific combinations.
+     * Flag recording if at least one alternative vertex was found.
      */
-    private static int maxCombs = 250;
+    private boolean foundNewLink = false;
     
     /**
-     * Flag recording if at least one alternative vertex was found.
+     * Number of pairings of APs that were not explored because equivalent, by
+     * symmetry, to pairings that have been explored.
      */
-    private boolean foundNewLink = false;
+    private long symmetrySkippedPairings = 0;
+    
+    /**
+     * Number of candidate vertexes for which the search for AP mappings was
+     * truncated because of its size.
+     */
+    private int truncatedSearches = 0;
     
     /**
      * Parameter and reference to the fragment space
@@ -371,15 +374,19 @@ public class GraphLinkFinder
                 continue;
             }
             
-            // Get all possible combinations of compatible AP pairs
+            // Get the combinations of compatible AP pairs: all of them, or 
+            // the first one found when considering APs in random order.
             List<APMapping> apMappings = new ArrayList<APMapping>();
-            int currentKey = 0;
-            APMapping currentMapping = new APMapping();
-            // yes, a nested loop would do it, but for now I use the same code
-            // as for when there is no limit to the number of keys (here, always 2)
-            FragmentSpaceUtils.recursiveCombiner(keys, 
-                    currentKey, apCompatilities, currentMapping, apMappings, 
-                    screenAll, maxCombs);
+            APMappingEnumerator enumerator = new APMappingEnumerator(keys,
+                    apCompatilities, needeAPs, null,
+                    screenAll ? null : fragSpace.getRandomizer());
+            enumerator.enumerate(null, (mapping) -> {
+                apMappings.add(mapping);
+                return screenAll;
+            });
+            symmetrySkippedPairings += enumerator.getSymmetrySkippedPairings();
+            if (enumerator.isTruncated())
+                truncatedSearches++;
             
             if (apMappings.isEmpty())
             {
@@ -469,6 +476,33 @@ public class GraphLinkFinder
         return foundNewLink;
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Returns the number of pairings of APs that were not explored, over all
+     * candidate vertexes, because they would lead to mappings that are 
+     * equivalent, by symmetry, to mappings that have been considered. This 
+     * is not the number of mappings that were not generated.
+     * @return the number of pairings skipped by symmetry.
+     */
+    public long getSymmetrySkippedPairings()
+    {
+        return symmetrySkippedPairings;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return the number of candidate vertexes for which the search for AP 
+     * mappings was stopped because it exceeded 
+     * {@link APMappingEnumerator#DEFAULTMAXNODES} partial mappings. For such
+     * vertexes, not all mappings have been considered.
+     */
+    public int getNumberOfTruncatedSearches()
+    {
+        return truncatedSearches;
+    }
+    
 //------------------------------------------------------------------------------
 
 }
\ No newline at end of file
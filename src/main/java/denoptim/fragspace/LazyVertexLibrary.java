@@ -0,0 +1,526 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.ChemObject;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.MDLV2000Reader;
+import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
+
+import com.google.gson.Gson;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.graph.APClass;
+import denoptim.graph.AttachmentPoint;
+import denoptim.graph.Template;
+import denoptim.graph.Vertex;
+import denoptim.graph.Vertex.BBType;
+import denoptim.json.DENOPTIMgson;
+import denoptim.utils.MoleculeUtils;
+
+/**
+ * Library of building blocks that keeps in memory only a light index of the
+ * building blocks defined in an SDF file: the APClass of each attachment
+ * point, whether the building block is a ring-closing vertex, the molecular
+ * weight, and the position of the record in the file. The {@link Vertex} is
+ * built from the file only when requested by {@link #get(int)}, and the most
+ * recently used vertexes are kept in a cache of limited size.
+ * <p>Vertexes appended to this library, for example templates generated
+ * on-the-fly, are kept in memory.</p>
+ * <p>Since vertexes may be evicted from the cache and built again, the
+ * identity of the objects returned by {@link #get(int)} is not preserved, and
+ * any change made to such objects may be lost.</p>
+ * <p>The library keeps the file open until {@link #close()} is called. 
+ * Afterwards, vertexes that are not in the cache cannot be retrieved.</p>
+ */
+
+public class LazyVertexLibrary extends AbstractList<Vertex>
+    implements RandomAccess, Closeable
+{
+    /**
+     * Default number of vertexes kept in the cache.
+     */
+    public static final int DEFAULTCACHESIZE = 1000;
+
+    /**
+     * The file containing the building blocks.
+     */
+    private final File file;
+
+    /**
+     * Channel used to read records from the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The type of building blocks in this library.
+     */
+    private final BBType bbt;
+
+    /**
+     * Light representation of the building blocks found in the file.
+     */
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Vertexes appended to this library after its creation.
+     */
+    private final ArrayList<Vertex> appended = new ArrayList<Vertex>();
+
+    /**
+     * Recently used vertexes, in access order.
+     */
+    private final Map<Integer,Vertex> cache;
+
+    /**
+     * Converter of JSON strings embedded in the SDF records.
+     */
+    private final Gson reader = DENOPTIMgson.getReader();
+
+    /**
+     * Light representation of one building block.
+     */
+    private static class Entry
+    {
+        /**
+         * Position of the first byte of the record in the file.
+         */
+        long offset;
+
+        /**
+         * Number of bytes of the record.
+         */
+        int length;
+
+        /**
+         * The APClass of each attachment point.
+         */
+        List<APClass> apClasses;
+
+        /**
+         * Whether the building block is a ring-closing vertex.
+         */
+        boolean isRCV;
+
+        /**
+         * Whether the building block is a {@link Template}.
+         */
+        boolean isTemplate;
+
+        /**
+         * Molecular weight, or NaN if it could not be calculated.
+         */
+        double molWeight;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Creates the library by indexing the given SDF file. Each record is
+     * converted into a {@link Vertex} once, to collect the light
+     * representation, and then forgotten.
+     * @param file the SDF file with the definition of building blocks.
+     * @param bbt the type of building blocks in the file.
+     * @param cacheSize the maximum number of vertexes kept in memory.
+     * @throws DENOPTIMException if the file cannot be read or any of its
+     * records cannot be converted into a vertex.
+     */
+    public LazyVertexLibrary(File file, BBType bbt, int cacheSize)
+            throws DENOPTIMException
+    {
+        this.file = file;
+        this.bbt = bbt;
+        final int maxSize = Math.max(1, cacheSize);
+        this.cache = new LinkedHashMap<Integer,Vertex>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer,Vertex> e)
+            {
+                return size() > maxSize;
+            }
+        };
+        buildIndex();
+        try
+        {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e)
+        {
+            throw new DENOPTIMException("Cannot open file '" + file + "'.", e);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the file record by record and collects the light representation
+     * of each building block.
+     */
+    private void buildIndex() throws DENOPTIMException
+    {
+        try (InputStream is = new BufferedInputStream(
+                new FileInputStream(file)))
+        {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = 0;
+            long recordStart = 0;
+            int b;
+            while ((b = is.read()) != -1)
+            {
+                position++;
+                record.write(b);
+                if (b != '\n')
+                {
+                    line.write(b);
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8.name());
+                line.reset();
+                if (text.trim().equals("$$$$"))
+                {
+                    addEntry(recordStart, record.toByteArray());
+                    record.reset();
+                    recordStart = position;
+                }
+            }
+            // Last record may not be terminated
+            if (record.toString(StandardCharsets.UTF_8.name()).trim()
+                    .length() > 0)
+            {
+                addEntry(recordStart, record.toByteArray());
+            }
+        } catch (IOException e)
+        {
+            throw new DENOPTIMException("Cannot read file '" + file + "'.", e);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the vertex defined in an SDF record and stores its light
+     * representation.
+     */
+    private void addEntry(long offset, byte[] record) throws DENOPTIMException
+    {
+        int id = entries.size();
+        IAtomContainer mol = parseRecord(record, id);
+        Vertex v = null;
+        try
+        {
+            v = Vertex.parseVertexFromSDFFormat(mol, reader, bbt);
+        } catch (DENOPTIMException e)
+        {
+            throw new DENOPTIMException("Unable to read vertex " + (id+1)
+                    + " in file " + file, e);
+        }
+        Entry entry = new Entry();
+        entry.offset = offset;
+        entry.length = record.length;
+        ArrayList<APClass> apClasses = new ArrayList<APClass>();
+        for (AttachmentPoint ap : v.getAttachmentPoints())
+        {
+            apClasses.add(ap.getAPClass());
+        }
+        entry.apClasses = Collections.unmodifiableList(apClasses);
+        entry.isRCV = v.isRCV();
+        entry.isTemplate = v instanceof Template;
+        try
+        {
+            entry.molWeight = MoleculeUtils.getMolecularWeight(mol);
+        } catch (DENOPTIMException e)
+        {
+            entry.molWeight = Double.NaN;
+        }
+        entries.add(entry);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Converts the text of an SDF record into an atom container.
+     */
+    private IAtomContainer parseRecord(byte[] record, int id)
+            throws DENOPTIMException
+    {
+        String text = new String(record, StandardCharsets.UTF_8);
+        try (MDLV2000Reader mdlreader = new MDLV2000Reader(
+                new StringReader(text)))
+        {
+            ChemFile chemFile = (ChemFile) mdlreader.read(
+                    (ChemObject) new ChemFile());
+            List<IAtomContainer> mols =
+                    ChemFileManipulator.getAllAtomContainers(chemFile);
+            if (mols.isEmpty())
+            {
+                throw new DENOPTIMException("No data found for vertex "
+                        + (id+1) + " in file " + file);
+            }
+            return mols.get(0);
+        } catch (CDKException | IOException e)
+        {
+            throw new DENOPTIMException("Unable to read vertex " + (id+1)
+                    + " in file " + file, e);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the vertex with the given index from its record in the file.
+     */
+    private Vertex readVertex(int i) throws DENOPTIMException
+    {
+        Entry entry = entries.get(i);
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        try
+        {
+            long position = entry.offset;
+            while (buffer.hasRemaining())
+            {
+                int n = channel.read(buffer, position);
+                if (n < 0)
+                {
+                    throw new DENOPTIMException("Unexpected end of file '"
+                            + file + "' while reading vertex " + (i+1) + ".");
+                }
+                position += n;
+            }
+        } catch (IOException e)
+        {
+            throw new DENOPTIMException("Cannot read vertex " + (i+1)
+                    + " from file '" + file + "'.", e);
+        }
+        IAtomContainer mol = parseRecord(buffer.array(), i);
+        Vertex v = Vertex.parseVertexFromSDFFormat(mol, reader, bbt);
+        v.setBuildingBlockId(i);
+        return v;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the vertex with the given index. Vertexes defined in the file
+     * are taken from the cache, or built from the file if not in the cache.
+     * @param i the index of the vertex.
+     * @return the vertex.
+     * @throws IllegalStateException if the vertex cannot be built from the
+     * file.
+     */
+    @Override
+    public Vertex get(int i)
+    {
+        if (i >= entries.size())
+        {
+            return appended.get(i - entries.size());
+        }
+        if (i < 0)
+        {
+            throw new IndexOutOfBoundsException("Index: " + i);
+        }
+        synchronized (cache)
+        {
+            Vertex v = cache.get(i);
+            if (v != null)
+                return v;
+        }
+        Vertex v = null;
+        try
+        {
+            v = readVertex(i);
+        } catch (DENOPTIMException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        synchronized (cache)
+        {
+            cache.put(i, v);
+        }
+        return v;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Override
+    public int size()
+    {
+        return entries.size() + appended.size();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Appends a vertex to this library. The vertex is kept in memory. Only
+     * appending to the end of the library is supported.
+     */
+    @Override
+    public void add(int index, Vertex v)
+    {
+        if (index != size())
+        {
+            throw new UnsupportedOperationException("Vertexes can only be "
+                    + "appended to the end of a "
+                    + this.getClass().getSimpleName() + ".");
+        }
+        appended.add(v);
+        modCount++;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the APClass of each attachment point of a vertex without
+     * building the vertex.
+     * @param i the index of the vertex.
+     * @return the list of APClasses, one per attachment point, in the
+     * order of the attachment points.
+     */
+    public List<APClass> getAPClasses(int i)
+    {
+        if (i >= entries.size())
+        {
+            ArrayList<APClass> lst = new ArrayList<APClass>();
+            for (AttachmentPoint ap : get(i).getAttachmentPoints())
+            {
+                lst.add(ap.getAPClass());
+            }
+            return lst;
+        }
+        return entries.get(i).apClasses;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of attachment points of a vertex without building
+     * the vertex.
+     * @param i the index of the vertex.
+     * @return the number of attachment points.
+     */
+    public int getNumberOfAPs(int i)
+    {
+        return getAPClasses(i).size();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks if a vertex is a ring-closing vertex without building the
+     * vertex.
+     * @param i the index of the vertex.
+     * @return <code>true</code> if the vertex is a ring-closing vertex.
+     */
+    public boolean isRCV(int i)
+    {
+        if (i >= entries.size())
+        {
+            return get(i).isRCV();
+        }
+        return entries.get(i).isRCV;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the indexes of the vertexes that are {@link Template}s, 
+     * without building the vertexes defined in the file.
+     * @return the list of indexes in ascending order.
+     */
+    public List<Integer> getTemplateIndexes()
+    {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i=0; i<entries.size(); i++)
+        {
+            if (entries.get(i).isTemplate)
+                ids.add(i);
+        }
+        for (int i=0; i<appended.size(); i++)
+        {
+            if (appended.get(i) instanceof Template)
+                ids.add(entries.size() + i);
+        }
+        return ids;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the molecular weight of a vertex defined in the file, as
+     * calculated when indexing the file.
+     * @param i the index of the vertex.
+     * @return the molecular weight or NaN if not available, as it is for
+     * vertexes appended to this library.
+     */
+    public double getMolecularWeight(int i)
+    {
+        if (i >= entries.size())
+        {
+            return Double.NaN;
+        }
+        return entries.get(i).molWeight;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the file this library is built from.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Closes the file this library reads building blocks from. Calling this
+     * method more than once has no effect.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+//------------------------------------------------------------------------------
+
+}
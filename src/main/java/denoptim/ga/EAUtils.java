@@ -109,6 +109,17 @@ public class EAUtils
     private static final String NL =System.getProperty("line.separator");
     private static final String FSEP = System.getProperty("file.separator");
     
+    /**
+     * Lock guarding the access to the graphs of the candidates that can be
+     * chosen as parents. These graphs are only read, to choose parents and
+     * crossover sites and to make clones, but reading can trigger the lazy
+     * initialization of cached data (e.g., the atoms of vertexes sharing
+     * atoms with the library of building blocks), so concurrent builders of
+     * offspring (see {@link OffspringProducer}) must not read them at the
+     * same time.
+     */
+    private static final Object PARENTSLOCK = new Object();
+    
 //------------------------------------------------------------------------------
 
     /**
@@ -302,71 +313,77 @@ public class EAUtils
         mnt.increase(CounterID.NEWCANDIDATEATTEMPTS);
         
         int numatt = 1;
+        Candidate cA = null, cB = null;
+        DGraph gA = null, gB = null;
+        String candIdA = null, candIdB = null;
+        int gid1 = -1, gid2 = -1;
+        XoverSite xosOnClones = null;
         
         // Identify a pair of parents that can do crossover, and a pair of
         // vertexes from which we can define a subgraph (or a branch) to swap
         XoverSite xos = null;
         boolean foundPars = false;
-        while (numatt < settings.getMaxGeneticOpAttempts())
-        {   
-            if (fragSpace.useAPclassBasedApproach())
-            {
-                xos = EAUtils.performFBCC(eligibleParents, 
-                        population, choiceOfParents, choiceOfXOverSites,
-                        settings);
-                if (xos == null)
-                {
-                    numatt++;
-                    continue;
-                }
-            } else {
-                //TODO: make it reproducible using choiceOfParents and choiceOfXOverSites
-                Candidate[] parents = EAUtils.selectBasedOnFitness(
-                        eligibleParents, 2, settings);
-                if (parents[0] == null || parents[1] == null)
+        synchronized (PARENTSLOCK)
+        {
+            while (numatt < settings.getMaxGeneticOpAttempts())
+            {   
+                if (fragSpace.useAPclassBasedApproach())
                 {
-                    numatt++;
-                    continue;
+                    xos = EAUtils.performFBCC(eligibleParents, 
+                            population, choiceOfParents, choiceOfXOverSites,
+                            settings);
+                    if (xos == null)
+                    {
+                        numatt++;
+                        continue;
+                    }
+                } else {
+                    //TODO: make it reproducible using choiceOfParents and choiceOfXOverSites
+                    Candidate[] parents = EAUtils.selectBasedOnFitness(
+                            eligibleParents, 2, settings);
+                    if (parents[0] == null || parents[1] == null)
+                    {
+                        numatt++;
+                        continue;
+                    }
+                    //NB: this does not go into templates!
+                    DGraph gpA = parents[0].getGraph();
+                    List<Vertex> subGraphA = new ArrayList<Vertex>();
+                    gpA.getChildrenTree(EAUtils.selectNonScaffoldNonCapVertex(
+                            gpA, settings.getRandomizer()),subGraphA);
+
+                    DGraph gpB = parents[1].getGraph();
+                    List<Vertex> subGraphB = new ArrayList<Vertex>();
+                    gpB.getChildrenTree(EAUtils.selectNonScaffoldNonCapVertex(
+                            gpB, settings.getRandomizer()),subGraphB);
                 }
-                //NB: this does not go into templates!
-                DGraph gpA = parents[0].getGraph();
-                List<Vertex> subGraphA = new ArrayList<Vertex>();
-                gpA.getChildrenTree(EAUtils.selectNonScaffoldNonCapVertex(
-                        gpA, settings.getRandomizer()),subGraphA);
-
-                DGraph gpB = parents[1].getGraph();
-                List<Vertex> subGraphB = new ArrayList<Vertex>();
-                gpB.getChildrenTree(EAUtils.selectNonScaffoldNonCapVertex(
-                        gpB, settings.getRandomizer()),subGraphB);
+                foundPars = true;
+                break;
             }
-            foundPars = true;
-            break;
-        }
-        mnt.increaseBy(CounterID.XOVERPARENTSEARCH, numatt);
+            mnt.increaseBy(CounterID.XOVERPARENTSEARCH, numatt);
 
-        if (!foundPars)
-        {
-            mnt.increase(CounterID.FAILEDXOVERATTEMPTS_FINDPARENTS);
-            mnt.increase(CounterID.FAILEDXOVERATTEMPTS);
-            return null;
-        }
+            if (!foundPars)
+            {
+                mnt.increase(CounterID.FAILEDXOVERATTEMPTS_FINDPARENTS);
+                mnt.increase(CounterID.FAILEDXOVERATTEMPTS);
+                return null;
+            }
         
-        Candidate cA = null, cB = null;
-        Vertex vA = null, vB = null;
-        vA = xos.getA().get(0);
-        vB = xos.getB().get(0);
-        DGraph gA = vA.getGraphOwner();
-        cA = gA.getOutermostGraphOwner().getCandidateOwner();
-        DGraph gB = vB.getGraphOwner();
-        cB = gB.getOutermostGraphOwner().getCandidateOwner();
-        
-        String candIdA = cA.getName();
-        String candIdB = cB.getName();
-        int gid1 = gA.getGraphId();
-        int gid2 = gB.getGraphId();
-        
-        // Start building the offspring
-        XoverSite xosOnClones = xos.projectToClonedGraphs();
+            Vertex vA = xos.getA().get(0);
+            Vertex vB = xos.getB().get(0);
+            gA = vA.getGraphOwner();
+            cA = gA.getOutermostGraphOwner().getCandidateOwner();
+            gB = vB.getGraphOwner();
+            cB = gB.getOutermostGraphOwner().getCandidateOwner();
+        
+            candIdA = cA.getName();
+            candIdB = cB.getName();
+            gid1 = gA.getGraphId();
+            gid2 = gB.getGraphId();
+        
+            // Start building the offspring
+            xosOnClones = xos.projectToClonedGraphs();
+        }
         DGraph gAClone = xosOnClones.getA().get(0).getGraphOwner();
         DGraph gBClone = xosOnClones.getB().get(0).getGraphOwner();
         
@@ -431,7 +448,7 @@ public class EAUtils
             // It makes sense to do this on the possibly embedded graph and not
             // on their embedding owners because there cannot be any new cycle
             // affecting the latter, but there can be ones affecting the first.
-            if (!EAUtils.setupRings(null, g, settings))
+            if (!EAUtils.setupRings(null, g, settings, mnt))
             {
                 mnt.increase(CounterID.FAILEDXOVERATTEMPTS_SETUPRINGS);
                 continue;
@@ -443,6 +460,12 @@ public class EAUtils
             gOutermost.renumberGraphVertices();
             gOutermost.setLocalMsg(msgs[ig]);
             
+            if (isDuplicateGraph(gOutermost, settings, mnt))
+            {
+                gOutermost.cleanup();
+                continue;
+            }
+            
             // Consider if the result can be used to define a new candidate
             Object[] res = null;
             try
@@ -467,7 +490,7 @@ public class EAUtils
             }
             if (res != null)
             {
-                if (!EAUtils.setupRings(res, gOutermost, settings))
+                if (!EAUtils.setupRings(res, gOutermost, settings, mnt))
                 {
                     mnt.increase(CounterID.FAILEDXOVERATTEMPTS_SETUPRINGS);
                     res = null;
@@ -559,11 +582,16 @@ public class EAUtils
             return null;
         }
         
-        DGraph graph = parent.getGraph().clone();
+        DGraph graph = null;
+        int parentGraphId = -1;
+        synchronized (PARENTSLOCK)
+        {
+            graph = parent.getGraph().clone();
+            parentGraphId = parent.getGraph().getGraphId();
+        }
         graph.renumberGraphVertices();
         
         String parentMolName = FilenameUtils.getBaseName(parent.getSDFFile());
-        int parentGraphId = parent.getGraph().getGraphId();
         graph.setLocalMsg("Mutation:"
                 + " Gen:" + parent.getGeneration() + " Cand:" + parentMolName 
                 + "|" + parentGraphId);
@@ -579,6 +607,13 @@ public class EAUtils
         
         graph.addCappingGroups(fragSpace);
         
+        if (isDuplicateGraph(graph, settings, mnt))
+        {
+            graph.cleanup();
+            mnt.increase(CounterID.FAILEDMUTATTEMTS);
+            return null;
+        }
+        
         Object[] res = null;
         try
         {
@@ -604,7 +639,7 @@ public class EAUtils
         
         if (res != null)
         {
-            if (!EAUtils.setupRings(res,graph,settings))
+            if (!EAUtils.setupRings(res,graph,settings,mnt))
             {
                 res = null;
                 mnt.increase(CounterID.FAILEDMUTATTEMTS_SETUPRINGS);
@@ -746,11 +781,18 @@ public class EAUtils
         }
         graph.setLocalMsg("NEW");
         
+        if (isDuplicateGraph(graph, settings, mnt))
+        {
+            graph.cleanup();
+            mnt.increase(CounterID.FAILEDBUILDATTEMPTS);
+            return null;
+        }
+        
         Object[] res = graph.checkConsistency(settings);
         
         if (res != null)
         {
-            if (!EAUtils.setupRings(res,graph, settings))
+            if (!EAUtils.setupRings(res,graph, settings, mnt))
             {
                 graph.cleanup();
                 mnt.increase(CounterID.FAILEDBUILDATTEMPTS_SETUPRINGS);
@@ -1373,6 +1415,37 @@ public class EAUtils
         return graph;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks if a graph is a duplicate of a graph generated before, according
+     * to the identifier returned by {@link DGraph#getGraphUID()}, and records
+     * the identifier of any graph that is not. This check is meant to reject
+     * duplicate graphs before building their molecular representation, and
+     * does not replace the check based on the UID of the molecule.
+     * Graphs that have free ring-closing vertexes are never considered
+     * duplicates because the rings set up later may differ.
+     * @param graph the graph to check.
+     * @param settings the GA settings, where the known identifiers are stored.
+     * @param mnt the monitor where to record the detection of duplicates.
+     * @return <code>true</code> if the graph is a known duplicate.
+     */
+    protected static boolean isDuplicateGraph(DGraph graph,
+            GAParameters settings, Monitor mnt)
+    {
+        if (!settings.checkGraphUID)
+            return false;
+        if (graph.getFreeRCVertices().size() > 0)
+            return false;
+        String graphUID = graph.getGraphUID();
+        if (graphUID == null)
+            return false;
+        if (settings.addNewUniqueGraphUID(graphUID))
+            return false;
+        mnt.increase(CounterID.DUPLICATEGRAPHS);
+        return true;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1389,6 +1462,28 @@ public class EAUtils
 
     protected static boolean setupRings(Object[] res, DGraph molGraph, 
             GAParameters settings) throws DENOPTIMException
+    {
+        return setupRings(res, molGraph, settings, null);
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Evaluates the possibility of closing rings in a given graph and if
+     * any ring can be closed, it chooses one of the combinations of ring 
+     * closures that involves the highest number of new rings.
+     * @param res an object array containing the inchi code, the smiles string
+     * and the 2D representation of the molecule. This object can be
+     * <code>null</code> if inchi/smiles/2D conversion fails.
+     * @param molGraph the <code>DENOPTIMGraph</code> on which rings are to
+     * be identified
+     * @param mnt the monitor recording the usage of the cache of verdicts
+     * on closability. Can be <code>null</code>.
+     * @return <code>true</code> unless no ring can be set up even if required
+     */
+
+    protected static boolean setupRings(Object[] res, DGraph molGraph, 
+            GAParameters settings, Monitor mnt) throws DENOPTIMException
     {
         // get settings //TODO: this should happen inside RunTimeParameters
         RingClosureParameters rcParams = new RingClosureParameters();
@@ -1428,7 +1523,8 @@ public class EAUtils
                 true, settings.getLogger());
         
         // get the set of possible RCA combinations = ring closures
-        CyclicGraphHandler cgh = new CyclicGraphHandler(rcParams,fragSpace);
+        CyclicGraphHandler cgh = new CyclicGraphHandler(rcParams,fragSpace,
+                mnt);
 
         //TODO: remove hard-coded variable that exclude considering all 
         // combination of rings
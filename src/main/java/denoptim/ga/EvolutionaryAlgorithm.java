@@ -37,7 +37,9 @@ import org.apache.commons.lang3.time.StopWatch;
 import denoptim.exception.DENOPTIMException;
 import denoptim.exception.ExceptionUtils;
 import denoptim.fitness.FitnessParameters;
+import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.ga.EAUtils.CandidateSource;
+import denoptim.graph.APClass;
 import denoptim.graph.Candidate;
 import denoptim.logging.CounterID;
 import denoptim.logging.Monitor;
@@ -241,6 +243,27 @@ public class EvolutionaryAlgorithm
 //------------------------------------------------------------------------------
     
     public void run() throws DENOPTIMException
+    {
+        // The threads doing the work are created from now on, so they 
+        // inherit the scope of the APClasses of the fragment space.
+        APClass.Scope scope = null;
+        if (settings.containsParameters(ParametersType.FS_PARAMS))
+        {
+            scope = ((FragmentSpaceParameters) settings.getParameters(
+                    ParametersType.FS_PARAMS)).getAPClassScope();
+        }
+        APClass.Scope previousScope = APClass.Scope.setActive(scope);
+        try
+        {
+            runEvolution();
+        } finally {
+            APClass.Scope.setActive(previousScope);
+        }
+    }
+    
+//------------------------------------------------------------------------------
+    
+    private void runEvolution() throws DENOPTIMException
     {
         cmdListener.setReferenceToRunningEAlgorithm(this);
         
@@ -529,6 +552,10 @@ public class EvolutionaryAlgorithm
             ex.printStackTrace();
             throw new DENOPTIMException(ex);
         }
+        finally
+        {
+            mnt.stopDumps();
+        }
         
         mnt.printSummary();
 
@@ -592,12 +619,33 @@ public class EvolutionaryAlgorithm
         Monitor mnt = new Monitor("MonitorGen", genId, 
                 settings.getMonitorFile(),settings.getMonitorDumpStep(), 
                 settings.dumpMonitor(), settings.getLogger());
+        
+        // Offspring can be built by parallel threads, while this thread only
+        // submits their evaluation
+        OffspringProducer producer = null;
+        if (settings.getNumberOfOffspringBuilders() > 1)
+        {
+            producer = new OffspringProducer(
+                    new ArrayList<Candidate>(eligibleParents), population,
+                    genId, 
+                    settings.getPopulationSize() * settings.getMaxTriesFactor(),
+                    settings.getNumberOfCPU(), scs, mnt, settings);
+            producer.start(settings.getNumberOfOffspringBuilders());
+        }
         try
         {
             while (i < settings.getPopulationSize() *
                     settings.getMaxTriesFactor()) 
             {
-                i++;
+                if (producer == null)
+                {
+                    i++;
+                } else if (producer.isExhausted()) {
+                    // All attempts have been made and all offspring taken
+                    producer.checkForException();
+                    i = producer.getNumberOfAttempts();
+                    break;
+                }
                 
                 if (stopped)
                 {
@@ -627,6 +675,12 @@ public class EvolutionaryAlgorithm
                                 }
                             }
                             candidatesToRemove.clear();
+                            if (producer != null)
+                            {
+                                producer.setEligibleParents(
+                                        new ArrayList<Candidate>(
+                                                eligibleParents));
+                            }
                         }
                     }
                 }
@@ -640,6 +694,7 @@ public class EvolutionaryAlgorithm
                 File srcOfCandidate = null;
                 Candidate candidate = null;
                 CandidateSource src = CandidateSource.CONSTRUCTION;
+                boolean takeFromProducer = false;
                 synchronized (candidatesToAdd)
                 {
                     if (candidatesToAdd.size()>0)
@@ -647,54 +702,69 @@ public class EvolutionaryAlgorithm
                         src = CandidateSource.MANUAL;
                         srcOfCandidate = new File(candidatesToAdd.get(0));
                         candidatesToAdd.remove(0);
+                    } else if (producer != null) {
+                        takeFromProducer = true;
                     } else {
                         src = EAUtils.chooseGenerationMethod(settings);
                     }
                 }
                 
-                switch (src)
+                if (takeFromProducer)
                 {
-                    case MANUAL:
-                    {
-                        candidate = EAUtils.readCandidateFromFile(
-                                srcOfCandidate, mnt, settings);
-                        if (candidate == null)
-                            continue;
-                        break;
-                    }
-                    case CROSSOVER:
+                    // Generation has been dealt with already
+                    candidate = producer.takeCandidate(100,
+                            TimeUnit.MILLISECONDS);
+                    if (candidate == null)
+                        continue;
+                } else {
+                    switch (src)
                     {
-                        candidate = EAUtils.buildCandidateByXOver(
-                                eligibleParents, population, mnt, settings);
-                        if (candidate == null)
-                            continue;
-                        break;
-                    }
+                        case MANUAL:
+                        {
+                            candidate = EAUtils.readCandidateFromFile(
+                                    srcOfCandidate, mnt, settings);
+                            if (candidate == null)
+                                continue;
+                            break;
+                        }
+                        case CROSSOVER:
+                        {
+                            candidate = EAUtils.buildCandidateByXOver(
+                                    eligibleParents, population, mnt, 
+                                    settings);
+                            if (candidate == null)
+                                continue;
+                            break;
+                        }
                         
-                    case MUTATION:
-                    {
-                        candidate = EAUtils.buildCandidateByMutation(
-                                eligibleParents, mnt, settings);
-                        if (candidate == null)
-                            continue;
-                        break;
-                    }
+                        case MUTATION:
+                        {
+                            candidate = EAUtils.buildCandidateByMutation(
+                                    eligibleParents, mnt, settings);
+                            if (candidate == null)
+                                continue;
+                            break;
+                        }
                         
-                    case CONSTRUCTION:
-                    {
-                        candidate = EAUtils.buildCandidateFromScratch(mnt,
-                                settings);
-                        if (candidate == null)
-                            continue;
-                        break;
+                        case CONSTRUCTION:
+                        {
+                            candidate = EAUtils.buildCandidateFromScratch(mnt,
+                                    settings);
+                            if (candidate == null)
+                                continue;
+                            break;
+                        }
                     }
-                }
                 
-                if (candidate == null)
-                    continue;
+                    if (candidate == null)
+                        continue;
+                
+                    candidate.setGeneration(genId);
+                }
                 
-                candidate.setGeneration(genId);
-                    
+                // Offspring from the producer have been checked against the
+                // known UIDs, but the UID is recorded only here, where we 
+                // know the offspring is going to be used.
                 if (((FitnessParameters)settings.getParameters(
                         ParametersType.FIT_PARAMS)).checkPreFitnessUID())
                 {
@@ -706,8 +776,8 @@ public class EvolutionaryAlgorithm
                             continue;
                         }
                     } catch (Exception e) {
-                        mnt.increase(
-                                CounterID.FAILEDDUPLICATEPREFITNESSDETECTION);
+                        mnt.increase(CounterID
+                                .FAILEDDUPLICATEPREFITNESSDETECTION);
                         continue;
                     }
                 }
@@ -729,7 +799,9 @@ public class EvolutionaryAlgorithm
                             ||
                             //This to avoid the fixed batch size to block the
                             //generation of new candidates for too long
-                            i >= (0.1 * settings.getPopulationSize() *
+                            (producer == null ? i 
+                                    : producer.getNumberOfAttempts())
+                                >= (0.1 * settings.getPopulationSize() *
                                     settings.getMaxTriesFactor()))
                     {
                         // Now we have as many tasks as are needed to fill up 
@@ -764,6 +836,14 @@ public class EvolutionaryAlgorithm
             ex.printStackTrace();
             throw new DENOPTIMException(ex);
         }
+        finally
+        {
+            if (producer != null)
+            {
+                producer.stop();
+            }
+            mnt.stopDumps();
+        }
         
         mnt.printSummary();
         
@@ -111,6 +111,7 @@ public class OffspringEvaluationTask extends FitnessTask
         	ThreeDimTreeBuilder tb3d = new ThreeDimTreeBuilder(
         	        fitnessSettings.getLogger(),
         	        fitnessSettings.getRandomizer());
+        	tb3d.setAssemblyCache(fitnessSettings.getAssemblyCache());
         	
             try {
                 DGraph gWithNoRCVs = dGraph.clone();
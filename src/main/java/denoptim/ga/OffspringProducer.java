@@ -0,0 +1,352 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.ga;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.fitness.FitnessParameters;
+import denoptim.ga.EAUtils.CandidateSource;
+import denoptim.graph.APClass;
+import denoptim.graph.Candidate;
+import denoptim.logging.CounterID;
+import denoptim.logging.Monitor;
+import denoptim.programs.RunTimeParameters.ParametersType;
+import denoptim.programs.denovo.GAParameters;
+import denoptim.utils.SizeControlledSet;
+
+/**
+ * Stage of the {@link EvolutionaryAlgorithm} that builds offspring in
+ * parallel threads. Offspring are built by crossover, mutation, or
+ * construction from scratch, and made available in a bounded queue from
+ * which the thread running the evolutionary algorithm takes them to submit
+ * their evaluation. When the queue is full, the builders wait.
+ * <p>Parents are chosen among a snapshot of the population that is
+ * provided by the evolutionary algorithm and replaced only when the
+ * evolutionary algorithm removes candidates from its own snapshot.
+ * Builders read the graphs of the parents only while holding the lock 
+ * used for this purpose in {@link EAUtils}.</p>
+ * <p>If requested, builders discard offspring with an already known unique 
+ * identifier, but they do not record new identifiers. Identifiers are 
+ * recorded only by the consumer of the offspring, so the identifier of 
+ * offspring that are discarded by {@link #stop()} are not recorded.</p>
+ */
+
+public class OffspringProducer
+{
+    /**
+     * Parameters controlling the evolutionary algorithm.
+     */
+    private final GAParameters settings;
+
+    /**
+     * The population the offspring are meant for.
+     */
+    private final Population population;
+
+    /**
+     * Candidates that can be used as parents. This list is never modified:
+     * it is replaced by {@link #setEligibleParents(ArrayList)}.
+     */
+    private volatile ArrayList<Candidate> eligibleParents;
+
+    /**
+     * Identifier of the generation the offspring belong to.
+     */
+    private final int genId;
+
+    /**
+     * Maximum number of attempts to build an offspring.
+     */
+    private final int maxAttempts;
+
+    /**
+     * Number of attempts to build an offspring made so far.
+     */
+    private final AtomicInteger attempts = new AtomicInteger(0);
+
+    /**
+     * Number of builders that are still running.
+     */
+    private final AtomicInteger activeBuilders = new AtomicInteger(0);
+
+    /**
+     * Storage of unique identifiers encountered so far.
+     */
+    private final SizeControlledSet scs;
+
+    /**
+     * Monitor recording the events related to the construction of offspring.
+     */
+    private final Monitor mnt;
+
+    /**
+     * The offspring ready to be evaluated.
+     */
+    private final BlockingQueue<Candidate> ready;
+
+    /**
+     * The threads building offspring.
+     */
+    private ExecutorService builders;
+
+    /**
+     * Flag requesting the builders to stop.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Issue emerging from any builder.
+     */
+    private volatile Throwable exception;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param eligibleParents the candidates that can be used as parents.
+     * @param population the population the offspring are meant for.
+     * @param genId the identifier of the generation the offspring belong to.
+     * @param maxAttempts the maximum number of attempts to build an
+     * offspring.
+     * @param queueSize the maximum number of offspring waiting to be taken.
+     * @param scs the storage of unique identifiers.
+     * @param mnt the monitor recording events.
+     * @param settings the parameters controlling the evolutionary algorithm.
+     */
+    public OffspringProducer(ArrayList<Candidate> eligibleParents,
+            Population population, int genId, int maxAttempts,
+            int queueSize, SizeControlledSet scs, Monitor mnt,
+            GAParameters settings)
+    {
+        this.eligibleParents = eligibleParents;
+        this.population = population;
+        this.genId = genId;
+        this.maxAttempts = maxAttempts;
+        this.ready = new ArrayBlockingQueue<Candidate>(Math.max(1, queueSize));
+        this.scs = scs;
+        this.mnt = mnt;
+        this.settings = settings;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Starts the threads building offspring.
+     * @param numBuilders the number of threads.
+     */
+    public void start(int numBuilders)
+    {
+        APClass.Scope scope = APClass.Scope.getActive();
+        builders = Executors.newFixedThreadPool(numBuilders);
+        activeBuilders.set(numBuilders);
+        for (int i=0; i<numBuilders; i++)
+        {
+            builders.execute(() -> {
+                // Builders work within the scope of APClasses of the caller
+                APClass.Scope.setActive(scope);
+                try
+                {
+                    produce();
+                } catch (InterruptedException e)
+                {
+                    // Stopped while waiting for space in the queue
+                } catch (Throwable t)
+                {
+                    exception = t;
+                    stopped = true;
+                } finally {
+                    activeBuilders.decrementAndGet();
+                }
+            });
+        }
+        builders.shutdown();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds offspring until the maximum number of attempts is reached or
+     * this producer is stopped.
+     */
+    private void produce() throws DENOPTIMException, InterruptedException
+    {
+        boolean checkUID = settings.containsParameters(
+                ParametersType.FIT_PARAMS) 
+                && ((FitnessParameters) settings.getParameters(
+                        ParametersType.FIT_PARAMS)).checkPreFitnessUID();
+        while (!stopped && attempts.incrementAndGet() <= maxAttempts)
+        {
+            Candidate candidate = buildOffspring();
+            if (candidate == null)
+                continue;
+
+            candidate.setGeneration(genId);
+
+            // NB: the identifier is recorded by the consumer
+            if (checkUID)
+            {
+                try
+                {
+                    if (scs.contains(candidate.getUID()))
+                    {
+                        mnt.increase(CounterID.DUPLICATEPREFITNESS);
+                        continue;
+                    }
+                } catch (Exception e) {
+                    mnt.increase(
+                            CounterID.FAILEDDUPLICATEPREFITNESSDETECTION);
+                    continue;
+                }
+            }
+
+            ready.put(candidate);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Makes one attempt to build an offspring.
+     * @return the offspring or <code>null</code> if the attempt failed.
+     */
+    protected Candidate buildOffspring() throws DENOPTIMException
+    {
+        Candidate candidate = null;
+        CandidateSource src = EAUtils.chooseGenerationMethod(settings);
+        switch (src)
+        {
+            case CROSSOVER:
+                candidate = EAUtils.buildCandidateByXOver(
+                        eligibleParents, population, mnt, settings);
+                break;
+
+            case MUTATION:
+                candidate = EAUtils.buildCandidateByMutation(
+                        eligibleParents, mnt, settings);
+                break;
+
+            case CONSTRUCTION:
+                candidate = EAUtils.buildCandidateFromScratch(mnt,
+                        settings);
+                break;
+
+            default:
+                break;
+        }
+        return candidate;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Takes the next offspring ready to be evaluated, waiting up to the given
+     * time if none is available.
+     * @param timeout how long to wait.
+     * @param unit the unit of the <code>timeout</code> argument.
+     * @return the offspring or <code>null</code> if none became available in
+     * the given time.
+     * @throws DENOPTIMException if any builder has failed.
+     */
+    public Candidate takeCandidate(long timeout, TimeUnit unit)
+            throws DENOPTIMException
+    {
+        checkForException();
+        try
+        {
+            return ready.poll(timeout, unit);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @throws DENOPTIMException if any builder has failed.
+     */
+    public void checkForException() throws DENOPTIMException
+    {
+        if (exception != null)
+        {
+            throw new DENOPTIMException("Errors found while building "
+                    + "offspring.", exception);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Replaces the list of candidates that can be used as parents. The given
+     * list must not be modified afterwards.
+     * @param eligibleParents the new list of eligible parents.
+     */
+    public void setEligibleParents(ArrayList<Candidate> eligibleParents)
+    {
+        this.eligibleParents = eligibleParents;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of attempts to build offspring made so far. This
+     * number never exceeds the maximum number of attempts.
+     */
+    public int getNumberOfAttempts()
+    {
+        return Math.min(attempts.get(), maxAttempts);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if no more offspring will be made available,
+     * i.e., all builders have terminated and all offspring have been taken.
+     */
+    public boolean isExhausted()
+    {
+        return activeBuilders.get() == 0 && ready.isEmpty();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stops the builders and discards any offspring that has not been taken.
+     */
+    public void stop()
+    {
+        stopped = true;
+        if (builders != null)
+        {
+            builders.shutdownNow();
+        }
+        ready.clear();
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -196,7 +196,8 @@ public class Population extends ArrayList<Candidate> implements Cloneable
      * and here is the list of crossover sites".
      * This data structure user a {@link LinkedHashMap} to ensure
      * reproducibility in the generation of list of keys for the inner map. The
-     * order of the keys is given by insertion order.
+     * order of the keys is given by insertion order. Access is synchronized
+     * because offspring can be built by concurrent threads.
      */
     private class XoverSitesAmongCandidates
     {
@@ -220,7 +221,7 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * of the vertexes is expected to be consistent to that of the arguments
          * given to this method.
          */
-        public void put(Candidate c1, Candidate c2, 
+        public synchronized void put(Candidate c1, Candidate c2, 
                 List<XoverSite> xoversite)
         {     
             if (data.containsKey(c1))
@@ -258,7 +259,7 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * @param c2
          * @return the list of compatible pairs or null.
          */
-        public List<XoverSite> get(Candidate c1, Candidate c2)
+        public synchronized List<XoverSite> get(Candidate c1, Candidate c2)
         {
             if (data.containsKey(c1))
             {
@@ -273,7 +274,8 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * @param cA the item that is looking for a crossover partner.
          * @return the list of crossover-compatible items.
          */
-        public ArrayList<Candidate> getMembersCompatibleWith(Candidate cA)
+        public synchronized ArrayList<Candidate> getMembersCompatibleWith(
+                Candidate cA)
         {
             ArrayList<Candidate> compatibleMembers = new ArrayList<Candidate>();
             if (data.keySet().contains(cA))
@@ -300,7 +302,8 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * that such information can be "they are not compatible" or 
          * "they are compatible and here is the list of crossover sites".
          */
-        public boolean contains(Candidate memberA, Candidate memberB)
+        public synchronized boolean contains(Candidate memberA, 
+                Candidate memberB)
         {            
             return data.keySet().contains(memberA) &&
                     data.get(memberA).containsKey(memberB);
@@ -310,7 +313,7 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * removes all references to the specified candidate.
          * @param c the candidate whose references have to be removed.
          */
-        public void remove(Candidate c)
+        public synchronized void remove(Candidate c)
         {
             data.remove(c);
             for (LinkedHashMap<Candidate, List<XoverSite>> m : 
@@ -325,7 +328,7 @@ public class Population extends ArrayList<Candidate> implements Cloneable
          * new objects, but the references to candidates and vertexes will point
          * to the original instances.
          */
-        public XoverSitesAmongCandidates clone()
+        public synchronized XoverSitesAmongCandidates clone()
         {
             XoverSitesAmongCandidates cloned = new XoverSitesAmongCandidates();
             for (Candidate c1 : data.keySet())
@@ -20,10 +20,13 @@ package denoptim.graph;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
@@ -51,15 +54,19 @@ public class APClass implements Cloneable,Comparable<APClass>
     private int subClass;
    
     /**
-     * Set unique APClasses
+     * Unique APClasses that do not belong to any {@link Scope}, indexed by
+     * the string representation of rule and subclass.
+     * Reading does not require any lock.
      */
-    public static Set<APClass> uniqueAPClasses = new HashSet<APClass>();
+    private static final Map<String,APClass> GLOBALTABLE = 
+            new ConcurrentHashMap<String,APClass>();
     
     /**
-     * Synchronisation lock. Used to guard alteration of the set of unique
-     * APClasses.
+     * The scope active in the current thread, if any. Threads created by a
+     * thread that has an active scope inherit that scope.
      */
-    private final static Object uniqueAPClassesLock = new Object();
+    private static final InheritableThreadLocal<Scope> CURRENTSCOPE = 
+            new InheritableThreadLocal<Scope>();
 
     /**
      * Recognized attachment point classes of RingClosingAttractor
@@ -72,32 +79,15 @@ public class APClass implements Cloneable,Comparable<APClass>
                 private static final long serialVersionUID = 1L;
 
             {
-    	        APClass a = getUnique("ATplus", 0, BondType.ANY);
-    	        add(a);
-    	        synchronized (uniqueAPClassesLock)
-                {
-    	            uniqueAPClasses.add(a);
-                }
-    	        
-    	        APClass b = getUnique("ATminus", 0, BondType.ANY);
-                add(b);
-                synchronized (uniqueAPClassesLock)
-                {
-                    uniqueAPClasses.add(b);
-                }
-                
-                APClass c = getUnique("ATneutral", 0, BondType.ANY);
-                add(c);
-                synchronized (uniqueAPClassesLock)
-                {
-                    uniqueAPClasses.add(c);
-                }
+    	        add(getUnique("ATplus", 0, BondType.ANY));
+    	        add(getUnique("ATminus", 0, BondType.ANY));
+                add(getUnique("ATneutral", 0, BondType.ANY));
                 }};
     
     /**
      * Bond type to use when converting edge users into formal bonds
      */
-    private BondType bndTyp = DEFAULTBT; 
+    private volatile BondType bndTyp = DEFAULTBT; 
     
     /**
      * Default bond type for all but APClasses of RCVs.
@@ -230,46 +220,80 @@ public class APClass implements Cloneable,Comparable<APClass>
     /**
      * Checks if there is already a instance with the given members, if not it 
      * created one. In either case, returns the reference to that instance of 
-     * APClass.
+     * APClass. Only the scope active in the current thread, if any, and the
+     * global APClasses are searched, see the warning in {@link Scope}.
      * @param rule
      * @param subClass
      * @return reference to the APClass instance with the given members.
      */
     private static APClass getUnique(String rule, int subClass, BondType bt)
     {
-        APClass newApc = new APClass();
-        synchronized (uniqueAPClassesLock)
+        String key = makeKey(rule, subClass);
+        APClass apc = find(key);
+        if (apc == null)
         {
-            boolean found = false;
-            for (APClass existingApc : uniqueAPClasses)
-            {
-                if (existingApc.getRule().equals(rule)
-                        && existingApc.getSubClass()==subClass)
-                {
-                    newApc = existingApc;
-                    found = true;
-                    break;
-                }
-            }
-            if (!found)
-            {
-                newApc.setRule(rule);
-                newApc.setSubClass(subClass);
-                newApc.setBondType(bt);
-            } else {
-                // NB: the default bond type for RCAs must not be changed, but
-                // For non-RCA APClasses we do update the bond type.
-                if (bt != newApc.bndTyp && !RCAAPCLASSSET.contains(newApc))
-                {
-                    System.err.println("WARNING! Changing bond order of "
-                            + "APClass " + newApc + ": " + newApc.bndTyp 
-                            + " -> " + bt);
-                    newApc.setBondType(bt);
-                }
-            }
-            uniqueAPClasses.add(newApc);
+            APClass newApc = new APClass();
+            newApc.setRule(rule);
+            newApc.setSubClass(subClass);
+            newApc.setBondType(bt);
+            apc = getTable().putIfAbsent(key, newApc);
+            if (apc == null)
+                return newApc;
+        }
+        // NB: the default bond type for RCAs must not be changed, but
+        // For non-RCA APClasses we do update the bond type.
+        if (bt != apc.bndTyp && !RCAAPCLASSSET.contains(apc))
+        {
+            System.err.println("WARNING! Changing bond order of "
+                    + "APClass " + apc + ": " + apc.bndTyp 
+                    + " -> " + bt);
+            apc.setBondType(bt);
+        }
+        return apc;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return the key identifying an APClass in the tables of unique 
+     * APClasses.
+     */
+    private static String makeKey(String rule, int subClass)
+    {
+        return rule + DENOPTIMConstants.SEPARATORAPPROPSCL + subClass;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * @return the table where new APClasses are stored, i.e., that of the 
+     * scope active in the current thread, or the global one.
+     */
+    private static Map<String,APClass> getTable()
+    {
+        Scope scope = CURRENTSCOPE.get();
+        if (scope != null)
+            return scope.table;
+        return GLOBALTABLE;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Searches for an existing APClass in the scope active in the current 
+     * thread, if any, and then among the global APClasses.
+     * @return the APClass or <code>null</code> if not found.
+     */
+    private static APClass find(String key)
+    {
+        Scope scope = CURRENTSCOPE.get();
+        if (scope != null)
+        {
+            APClass apc = scope.table.get(key);
+            if (apc != null)
+                return apc;
         }
-        return newApc;
+        return GLOBALTABLE.get(key);
     }
     
 //------------------------------------------------------------------------------
@@ -299,9 +323,18 @@ public class APClass implements Cloneable,Comparable<APClass>
     public static List<String> getAllAPClassesAsString()
     {
         List<String> names = new ArrayList<String>();
-        for (APClass apc : uniqueAPClasses)
+        Scope scope = CURRENTSCOPE.get();
+        if (scope != null)
+        {
+            for (APClass apc : scope.table.values())
+            {
+                names.add(apc.toString());
+            }
+        }
+        for (APClass apc : GLOBALTABLE.values())
         {
-            names.add(apc.toString());
+            if (!names.contains(apc.toString()))
+                names.add(apc.toString());
         }
         Collections.sort(names);
         return names;
@@ -508,18 +541,8 @@ public class APClass implements Cloneable,Comparable<APClass>
                 //Only for conversion to V3
                 String rule = jo.get("rule").getAsString();
                 int subClass = jo.get("subClass").getAsInt();
-                boolean found = false;
-                for (APClass existingApc : uniqueAPClasses)
-                {
-                    if (existingApc.getRule().equals(rule)
-                            && existingApc.getSubClass()==subClass)
-                    {
-                        apc = existingApc;
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found)
+                apc = find(makeKey(rule, subClass));
+                if (apc == null)
                 {
                     System.out.println("WARNING! Setting " + DEFAULTBT 
                             + " for "+rule+":"+subClass);
@@ -531,7 +554,109 @@ public class APClass implements Cloneable,Comparable<APClass>
         }
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * A collection of unique APClasses that is independent from the global 
+     * one. When a scope is active in a thread, the APClasses made in that 
+     * thread, or in any thread it creates afterwards, are stored in the scope
+     * rather than among the global APClasses. This allows independent runs 
+     * in the same JVM to avoid sharing, and accumulating, APClasses.
+     * APClasses made before the activation of the scope remain visible 
+     * within the scope.
+     * <p>Threads of pools that are shared or created beforehand, e.g., 
+     * {@link java.util.concurrent.ForkJoinPool}s, do not inherit the scope: 
+     * whoever submits work to such threads must make the work activate the
+     * scope by means of {@link #setActive(Scope)}, and restore the previous
+     * scope once done.</p>
+     * <p><b>WARNING:</b> APClasses are compared by identity, and a scope 
+     * does not prevent threads outside of it from making APClasses. If an 
+     * APClass is first made within a scope, and a thread that does not use 
+     * that scope (e.g., the GUI's event dispatch thread, the common
+     * {@link java.util.concurrent.ForkJoinPool}, or a pool created before
+     * activating the scope) later makes an APClass with the same rule and 
+     * subclass, the latter is a second, global instance. The two 
+     * instances are not equal, so compatibility checks involving them fail 
+     * silently. Therefore, any work dealing with the building blocks, 
+     * graphs, or compatibility rules that are bound to a scope must run with
+     * that scope active.</p>
+     */
+    public static class Scope
+    {
+        /**
+         * The APClasses of this scope indexed by the string representation
+         * of rule and subclass.
+         */
+        private final Map<String,APClass> table = 
+                new ConcurrentHashMap<String,APClass>();
+        
+    //-------------------------------------------------------------------------
+        
+        /**
+         * Makes this scope the one used by the current thread and by the 
+         * threads that it will create.
+         * @return the scope that was active before, or <code>null</code>.
+         */
+        public Scope activate()
+        {
+            return setActive(this);
+        }
+        
+    //-------------------------------------------------------------------------
+        
+        /**
+         * Makes the given scope the one used by the current thread and by the 
+         * threads that it will create.
+         * @param scope the scope to use, or <code>null</code> to use the 
+         * global APClasses.
+         * @return the scope that was active before, or <code>null</code>.
+         * This can be given to this method to restore the previous state.
+         */
+        public static Scope setActive(Scope scope)
+        {
+            Scope previous = CURRENTSCOPE.get();
+            if (scope == null)
+            {
+                CURRENTSCOPE.remove();
+            } else {
+                CURRENTSCOPE.set(scope);
+            }
+            return previous;
+        }
+        
+    //-------------------------------------------------------------------------
+        
+        /**
+         * Stops using any scope in the current thread. APClasses will then be
+         * stored among the global APClasses.
+         */
+        public static void deactivate()
+        {
+            CURRENTSCOPE.remove();
+        }
+        
+    //-------------------------------------------------------------------------
+        
+        /**
+         * @return the scope active in the current thread, or 
+         * <code>null</code>.
+         */
+        public static Scope getActive()
+        {
+            return CURRENTSCOPE.get();
+        }
+        
+    //-------------------------------------------------------------------------
+        
+        /**
+         * @return the APClasses stored in this scope.
+         */
+        public Collection<APClass> getAPClasses()
+        {
+            return Collections.unmodifiableCollection(table.values());
+        }
+    }
+
 //------------------------------------------------------------------------------
 
 }
-    
@@ -22,6 +22,9 @@ package denoptim.graph;
 import java.io.File;
 import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -60,6 +63,7 @@ import com.google.gson.JsonSerializer;
 
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
+import denoptim.fragspace.BuildingBlockProperties;
 import denoptim.fragspace.FragmentSpace;
 import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.graph.APClass.APClassDeserializer;
@@ -3411,6 +3415,118 @@ public class DGraph implements Cloneable
         return vf2.isomorphismExists();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Produces a string that identifies the graph independently on the
+     * identifiers of its vertexes. The string is the hash of a canonical
+     * representation of the spanning tree that is built from the source
+     * vertex, where each vertex is represented by its building block type and
+     * identifier (or by the representation of its inner graph, for templates)
+     * and the branches are ordered by the index of the attachment points they
+     * depart from, plus the rings defined in terms of the position of their
+     * head and tail vertexes in the spanning tree. Identical graphs have the
+     * same identifier, but isomorphic graphs represented by different
+     * spanning trees do not, so this identifier can be used to detect
+     * duplicate graphs but not duplicate molecules.
+     * @return the identifier, or <code>null</code> if any vertex cannot be
+     * identified, i.e., it is not a template and it does not come from a
+     * library of building blocks.
+     */
+    public String getGraphUID()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (!appendCanonicalString(sb))
+            return null;
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest)
+            {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform must support SHA-256, so we should never
+            // get here. Anyway, the canonical string is a valid identifier.
+            return sb.toString();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Appends the canonical representation of this graph to a string. See
+     * {@link #getGraphUID()}.
+     * @return <code>false</code> if any vertex cannot be identified.
+     */
+    private boolean appendCanonicalString(StringBuilder sb)
+    {
+        Vertex src = getSourceVertex();
+        if (src == null)
+            return true;
+        Map<Vertex,Integer> positions = new HashMap<Vertex,Integer>();
+        if (!appendCanonicalString(src, sb, positions))
+            return false;
+
+        List<String> rings = new ArrayList<String>();
+        for (Ring r : gRings)
+        {
+            Integer h = positions.get(r.getHeadVertex());
+            Integer t = positions.get(r.getTailVertex());
+            if (h == null || t == null)
+                return false;
+            rings.add(Math.min(h, t) + "-" + Math.max(h, t) + ":"
+                    + r.getBondType());
+        }
+        Collections.sort(rings);
+        sb.append("|R");
+        for (String r : rings)
+        {
+            sb.append("[").append(r).append("]");
+        }
+        return true;
+    }
+
+//------------------------------------------------------------------------------
+
+    private boolean appendCanonicalString(Vertex v, StringBuilder sb,
+            Map<Vertex,Integer> positions)
+    {
+        positions.put(v, positions.size());
+        sb.append(v.getBuildingBlockType()).append(":");
+        if (v instanceof Template)
+        {
+            DGraph inner = ((Template) v).getInnerGraph();
+            if (inner == null)
+                return false;
+            sb.append("{");
+            if (!inner.appendCanonicalString(sb))
+                return false;
+            sb.append("}");
+        } else {
+            if (v.getBuildingBlockId() < 0)
+                return false;
+            sb.append(v.getBuildingBlockId());
+        }
+        for (AttachmentPoint ap : v.getAttachmentPoints())
+        {
+            Edge e = ap.getEdgeUser();
+            if (e == null || e.getSrcAP() != ap)
+                continue;
+            sb.append("(").append(ap.getIndexInOwner()).append(">")
+                .append(e.getTrgAP().getIndexInOwner()).append(":")
+                .append(e.getBondType()).append(":");
+            if (!appendCanonicalString(e.getTrgAP().getOwner(), sb, positions))
+                return false;
+            sb.append(")");
+        }
+        return true;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -4945,6 +5061,41 @@ public class DGraph implements Cloneable
         return parentTree.size() - 1;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Compares molecular properties with the constraints defined in the 
+     * settings of a fragment space.
+     * @param fsSettings the settings defining the constraints.
+     * @param props the properties to evaluate.
+     * @return the name of the first constraint found to be violated, or 
+     * <code>null</code> if no constraint is violated.
+     */
+    private static String getViolatedConstraint(
+            FragmentSpaceParameters fsSettings, BuildingBlockProperties props)
+    {
+        if (fsSettings.getMaxHeavyAtom()>0 
+                && props.getHeavyAtomCount() > fsSettings.getMaxHeavyAtom())
+            return "Max atoms";
+        if (fsSettings.getMaxMW()>0 
+                && props.getMolecularWeight() > fsSettings.getMaxMW())
+            return "Molecular weight";
+        if (fsSettings.getMaxRotatableBond()>0 
+                && props.getRotatableBondCount() 
+                    > fsSettings.getMaxRotatableBond())
+            return "Max rotatable bonds";
+        if (fsSettings.getMaxRings()>0 
+                && props.getRingCount() > fsSettings.getMaxRings())
+            return "Max rings";
+        for (Map.Entry<String,Integer> e : 
+            fsSettings.getMaxElementCounts().entrySet())
+        {
+            if (props.getElementCount(e.getKey()) > e.getValue())
+                return "Max " + e.getKey() + " atoms";
+        }
+        return null;
+    }
+    
 //------------------------------------------------------------------------------
 
     /**
@@ -5012,6 +5163,24 @@ public class DGraph implements Cloneable
                     ParametersType.FS_PARAMS);
         }
         
+        // Reject graphs that certainly violate constraints before doing any
+        // work on the molecular representation
+        if (!permissive && fsSettings.getFragmentSpace() != null)
+        {
+            BuildingBlockProperties lowerBounds = 
+                    fsSettings.getFragmentSpace().estimateProperties(this);
+            String violation = getViolatedConstraint(fsSettings, 
+                    lowerBounds);
+            if (violation != null)
+            {
+                String msg = "Evaluation of graph: " + violation 
+                        + " constraint violated by building blocks "
+                        + toString();
+                settings.getLogger().log(Level.FINE, msg);
+                return null;
+            }
+        }
+        
         // calculate the molecule representation
         ThreeDimTreeBuilder t3d = new ThreeDimTreeBuilder(settings.getLogger(),
                 settings.getRandomizer());
@@ -5094,8 +5263,23 @@ public class DGraph implements Cloneable
             }
         }
         mol.setProperty("ROT_BND", nrot);
+        
+        // 1D) number of rings and of atoms of specific elements
+        if ((fsSettings.getMaxRings()>0 
+                || !fsSettings.getMaxElementCounts().isEmpty()) && !permissive)
+        {
+            String violation = getViolatedConstraint(fsSettings, 
+                    BuildingBlockProperties.fromAtomContainer(mol));
+            if (violation != null)
+            {
+                String msg = "Evaluation of graph: " + violation 
+                        + " constraint violated: " + smiles;
+                settings.getLogger().log(Level.FINE, msg);
+                return null;
+            }
+        }
 
-        // 1D) unacceptable free APs
+        // 1E) unacceptable free APs
         if (fsSettings.getFragmentSpace().useAPclassBasedApproach())
         {
             if (hasForbiddenEnd(fsSettings))
@@ -27,6 +27,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 
 import javax.vecmath.Point3d;
@@ -73,6 +74,14 @@ public class Fragment extends Vertex
 	 */
 	private IAtomContainer mol;
 	
+	/**
+	 * Flag signaling that the molecular representation is shared with other
+	 * fragments. A shared molecular representation is never modified nor 
+	 * exposed: it is copied before any such use. See {@link #instantiate()}.
+	 * Read and changed only while holding the lock on this fragment.
+	 */
+	private boolean sharedMol = false;
+	
 	/**
 	 * jGraph representation used for detecting fragment isomorphism.
 	 */
@@ -339,7 +348,7 @@ public class Fragment extends Vertex
                 atomPositionNumber, dirVec, apClass);
         getAttachmentPoints().add(ap);
         
-        IAtom srcAtm = mol.getAtom(atomPositionNumber);
+        IAtom srcAtm = getOwnMol().getAtom(atomPositionNumber);
         
         ArrayList<AttachmentPoint> apList = new ArrayList<>();
         if (getAPCountOnAtom(srcAtm) > 0) {
@@ -371,7 +380,7 @@ public class Fragment extends Vertex
     public void addAP(int srcAtmId, APClass apc, Point3d vector) 
             throws DENOPTIMException
     {
-        IAtom srcAtm = mol.getAtom(srcAtmId);
+        IAtom srcAtm = getOwnMol().getAtom(srcAtmId);
         addAPOnAtom(srcAtm, apc, vector);
     }
     
@@ -393,7 +402,7 @@ public class Fragment extends Vertex
     public AttachmentPoint addAPOnAtom(IAtom srcAtm, APClass apc, 
             Point3d vector) throws DENOPTIMException
     {
-        int atmId = mol.indexOf(srcAtm);
+        int atmId = getOwnMol().indexOf(srcAtm);
         return this.addAP(atmId, new Point3d(vector.x, vector.y, vector.z), apc);
     }
     
@@ -404,7 +413,7 @@ public class Fragment extends Vertex
         if (!getAttachmentPoints().contains(ap))
             return;
         
-        IAtom srcAtm = mol.getAtom(ap.getAtomPositionNumber());
+        IAtom srcAtm = getOwnMol().getAtom(ap.getAtomPositionNumber());
         
         ArrayList<AttachmentPoint> apList = new ArrayList<>();
         if (getAPCountOnAtom(srcAtm) > 0) {
@@ -443,7 +452,7 @@ public class Fragment extends Vertex
     
     public int getAPCountOnAtom(int srcAtmId)
     {
-        IAtom srcAtm = mol.getAtom(srcAtmId);
+        IAtom srcAtm = getOwnMol().getAtom(srcAtmId);
         return getAPCountOnAtom(srcAtm);
     }
 
@@ -479,9 +488,9 @@ public class Fragment extends Vertex
     
     public void updateAPs()
     {
-        for (int atmId = 0; atmId<mol.getAtomCount(); atmId++)
+        for (int atmId = 0; atmId<getOwnMol().getAtomCount(); atmId++)
         {
-            IAtom srcAtm = mol.getAtom(atmId);
+            IAtom srcAtm = getOwnMol().getAtom(atmId);
             if (srcAtm.getProperty(DENOPTIMConstants.ATMPROPAPS) != null)
             {
             	ArrayList<AttachmentPoint> apsOnAtm = getAPsFromAtom(srcAtm);
@@ -513,7 +522,7 @@ public class Fragment extends Vertex
     	
     	lstAPs.clear();
     	
-        for (IAtom srcAtm : mol.atoms())
+        for (IAtom srcAtm : getOwnMol().atoms())
         {
         	if (srcAtm.getProperty(DENOPTIMConstants.ATMPROPAPS) != null)
             {
@@ -569,9 +578,9 @@ public class Fragment extends Vertex
     	}
     	
     	// Cleanup current APs in atom objects
-    	for (int ii=0 ; ii<mol.getAtomCount(); ii++)
+    	for (int ii=0 ; ii<getOwnMol().getAtomCount(); ii++)
     	{
-    		IAtom atm = mol.getAtom(ii);   		
+    		IAtom atm = getOwnMol().getAtom(ii);   		
     		atm.removeProperty(DENOPTIMConstants.ATMPROPAPS);
     	}
 	   
@@ -633,7 +642,7 @@ public class Fragment extends Vertex
             AttachmentPoint ap = lstAPs.get(i);
             int atmID = ap.getAtomPositionNumber();
             
-            IAtom atm = mol.getAtom(atmID);
+            IAtom atm = getOwnMol().getAtom(atmID);
             if (atm.getProperty(DENOPTIMConstants.ATMPROPAPS) != null)
             {
                 ArrayList<AttachmentPoint> oldAPs = 
@@ -665,13 +674,13 @@ public class Fragment extends Vertex
         // Prepare the string-representation of unused APs on this graph
         LinkedHashMap<Integer,List<AttachmentPoint>> apsPerAtom =
                 new LinkedHashMap<>();
-        for (IAtom atm : mol.atoms())
+        for (IAtom atm : getOwnMol().atoms())
         {   
             if (atm.getProperty(DENOPTIMConstants.ATMPROPAPS) == null)
             {
                 continue;
             }
-            int atmID = mol.indexOf(atm);
+            int atmID = getOwnMol().indexOf(atm);
             ArrayList<AttachmentPoint> apsOnAtm = 
                     getAPsFromAtom(atm);
             for (AttachmentPoint ap : apsOnAtm)
@@ -695,23 +704,101 @@ public class Fragment extends Vertex
 //-----------------------------------------------------------------------------
 
     /**
-     * Returns a deep copy of this fragments
+     * Returns a deep copy of this fragments. If the molecular representation 
+     * of this fragment is shared (see {@link #instantiate()}), then the
+     * copy shares it as well.
      * @throws CloneNotSupportedException 
      */
     
     @Override
-    public Fragment clone()
+    public synchronized Fragment clone()
     {   
-    	Fragment clone = new Fragment();
-    	clone.setVertexId(this.getVertexId());
-    	try
+        return copy(sharedMol);
+    }
+    
+//-----------------------------------------------------------------------------
+
+    /**
+     * Returns a copy of this fragment that shares with this fragment the
+     * molecular representation, i.e., atoms and bonds, while owning
+     * attachment points, symmetric sets, and properties. The molecular 
+     * representation is copied only when either fragment needs to alter or
+     * expose its atoms or bonds. This is much faster than {@link #clone()}
+     * when the copy is only used to define the graph, as it happens for 
+     * building blocks taken from the fragment space.
+     * <p>Like any other method of this class, this method must not run 
+     * concurrently with methods that modify this fragment. However, 
+     * multiple threads can instantiate the same fragment, e.g., a building 
+     * block of the fragment space, and read or copy it at the same time:
+     * instantiation and copy-on-write are synchronized on the fragment. 
+     * Accordingly, atoms and bonds obtained from this fragment before its 
+     * instantiation must not be modified afterwards.</p>
+     * @return the copy of this fragment.
+     */
+    
+    @Override
+    public synchronized Fragment instantiate()
+    {
+        sharedMol = true;
+        return copy(true);
+    }
+    
+//-----------------------------------------------------------------------------
+
+    /**
+     * Checks if this fragment shares its molecular representation with 
+     * another fragment, i.e., if neither of them has altered or exposed 
+     * the atoms and bonds since one was instantiated from the other (see
+     * {@link #instantiate()}). Fragments sharing the molecular 
+     * representation have the same atoms and bonds.
+     * @param other the other fragment.
+     * @return <code>true</code> if the two fragments share the molecular 
+     * representation.
+     */
+    public boolean sharesMolWith(Fragment other)
+    {
+        if (other == this)
+            return true;
+        IAtomContainer otherMol;
+        synchronized (other)
         {
-            clone.mol = MoleculeUtils.makeSameAs(mol);
-        } catch (DENOPTIMException e1)
+            if (!other.sharedMol)
+                return false;
+            otherMol = other.mol;
+        }
+        synchronized (this)
         {
-            // TODO Auto-generated catch block
-            e1.printStackTrace();
+            return sharedMol && mol == otherMol;
         }
+    }
+    
+//-----------------------------------------------------------------------------
+
+    /**
+     * Copies this fragment.
+     * @param shareMol use <code>true</code> to let the copy share the 
+     * molecular representation with this fragment. This must be used only if
+     * this fragment is marked as sharing its molecular representation.
+     * @return the copy.
+     */
+    private Fragment copy(boolean shareMol)
+    {
+    	Fragment clone = new Fragment();
+    	clone.setVertexId(this.getVertexId());
+    	if (shareMol)
+    	{
+    	    clone.mol = mol;
+    	    clone.sharedMol = true;
+    	} else {
+        	try
+            {
+                clone.mol = MoleculeUtils.makeSameAs(mol);
+            } catch (DENOPTIMException e1)
+            {
+                // TODO Auto-generated catch block
+                e1.printStackTrace();
+            }
+    	}
     	
         for (AttachmentPoint ap : lstAPs)
         {
@@ -721,7 +808,11 @@ public class Fragment extends Vertex
                     ap.getAPClass());
             clone.lstAPs.add(cAp);
         }
-        clone.projectListAPToAtomProperties();
+        if (!shareMol)
+        {
+            // Shared atoms hold the APs of the original fragment.
+            clone.projectListAPToAtomProperties();
+        }
         
 		clone.setBuildingBlockId(this.getBuildingBlockId());
 		clone.setBuildingBlockType(this.getBuildingBlockType());
@@ -740,6 +831,39 @@ public class Fragment extends Vertex
             clone.uniquefyingPropertyKeys.addAll(uniquefyingPropertyKeys);
 		return clone;
     }
+    
+//-----------------------------------------------------------------------------
+
+    /**
+     * Returns the molecular representation of this fragment making sure it is
+     * owned only by this fragment, i.e., it can be modified or exposed. 
+     * A shared molecular representation is replaced by a copy, and the 
+     * attachment points of this fragment are projected onto the atoms of
+     * such copy.
+     * @return the molecular representation owned by this fragment.
+     * @throws IllegalStateException if the shared molecular representation
+     * cannot be copied. The fragment still shares its molecular 
+     * representation in this case.
+     */
+    private synchronized IAtomContainer getOwnMol()
+    {
+        if (sharedMol)
+        {
+            try
+            {
+                mol = MoleculeUtils.makeSameAs(mol);
+            } catch (DENOPTIMException e)
+            {
+                throw new IllegalStateException("Could not copy the "
+                        + "molecular representation shared by fragment " 
+                        + getVertexId() + ".", e);
+            }
+            sharedMol = false;
+            jGraphFragIsomorphism = null;
+            projectListAPToAtomProperties();
+        }
+        return mol;
+    }
 
 //-----------------------------------------------------------------------------
 
@@ -747,18 +871,18 @@ public class Fragment extends Vertex
     public IAtomContainer getIAtomContainer()
     {
         this.projectAPsToProperties();
-        for (int atmPos=0; atmPos<mol.getAtomCount(); atmPos++)
+        for (int atmPos=0; atmPos<getOwnMol().getAtomCount(); atmPos++)
         {
-            IAtom atm = mol.getAtom(atmPos);
+            IAtom atm = getOwnMol().getAtom(atmPos);
             atm.setProperty(DENOPTIMConstants.ATMPROPVERTEXID, getVertexId());
             atm.setProperty(DENOPTIMConstants.ATMPROPORIGINALATMID, atmPos);
         }
-        mol.setProperty(DENOPTIMConstants.APSTAG, 
+        getOwnMol().setProperty(DENOPTIMConstants.APSTAG, 
                 getProperty(DENOPTIMConstants.APSTAG));
-        mol.setProperty(DENOPTIMConstants.VERTEXJSONTAG,this.toJson());
-        mol.setProperty(DENOPTIMConstants.ISOMORPHICFAMILYID,
+        getOwnMol().setProperty(DENOPTIMConstants.VERTEXJSONTAG,this.toJson());
+        getOwnMol().setProperty(DENOPTIMConstants.ISOMORPHICFAMILYID,
                 getProperty(DENOPTIMConstants.ISOMORPHICFAMILYID));
-        return mol;
+        return getOwnMol();
     }
     
 //------------------------------------------------------------------------------
@@ -780,35 +904,35 @@ public class Fragment extends Vertex
 
     public Iterable<IAtom> atoms()
     {
-        return mol.atoms();
+        return getOwnMol().atoms();
     }
     
 //-----------------------------------------------------------------------------
 
     public Iterable<IBond> bonds()
     {
-        return mol.bonds();
+        return getOwnMol().bonds();
     }
 
 //-----------------------------------------------------------------------------
 
     public void addAtom(IAtom atom)
     {
-        mol.addAtom(atom);
+        getOwnMol().addAtom(atom);
     }   
     
 //-----------------------------------------------------------------------------
 
     public IAtom getAtom(int number)
     {
-        return mol.getAtom(number);
+        return getOwnMol().getAtom(number);
     }
 
 //-----------------------------------------------------------------------------
 
     public int indexOf(IAtom atom)
     {
-        return mol.indexOf(atom);
+        return getOwnMol().indexOf(atom);
     }
     
 //-----------------------------------------------------------------------------
@@ -829,28 +953,28 @@ public class Fragment extends Vertex
 
     public void addBond(IBond bond)
     {
-        mol.addBond(bond);
+        getOwnMol().addBond(bond);
     }
     
 //-----------------------------------------------------------------------------
     
     public IBond removeBond(int position)
     {
-        return mol.removeBond(position);
+        return getOwnMol().removeBond(position);
     }
 
 //-----------------------------------------------------------------------------
    
     public IBond removeBond(IAtom atom1, IAtom atom2)
     {
-       return mol.removeBond(atom1, atom2);
+       return getOwnMol().removeBond(atom1, atom2);
     }
     
 //-----------------------------------------------------------------------------
     
     public void removeBond(IBond bond)
     {
-        mol.removeBond(bond);
+        getOwnMol().removeBond(bond);
     }
     
 //-----------------------------------------------------------------------------
@@ -872,13 +996,13 @@ public class Fragment extends Vertex
     public void removeAtoms(Collection<IAtom> atoms)
     {
         for (IAtom atom : atoms)
-            mol.removeAtom(atom);
+            getOwnMol().removeAtom(atom);
         
         lstAPs.clear();
         
-        for (int atmId = 0; atmId<mol.getAtomCount(); atmId++)
+        for (int atmId = 0; atmId<getOwnMol().getAtomCount(); atmId++)
         {
-            IAtom srcAtm = mol.getAtom(atmId);
+            IAtom srcAtm = getOwnMol().getAtom(atmId);
             if (srcAtm.getProperty(DENOPTIMConstants.ATMPROPAPS) != null)
             {
                 ArrayList<AttachmentPoint> apsOnAtm = getAPsFromAtom(srcAtm);
@@ -901,14 +1025,14 @@ public class Fragment extends Vertex
     
     public List<IAtom> getConnectedAtomsList(IAtom atom)
     {
-        return mol.getConnectedAtomsList(atom);
+        return getOwnMol().getConnectedAtomsList(atom);
     }
     
 //-----------------------------------------------------------------------------
     
     public int getConnectedAtomsCount(IAtom atom)
     {
-        return mol.getConnectedBondsCount(atom);
+        return getOwnMol().getConnectedBondsCount(atom);
     }
     
 //------------------------------------------------------------------------------
@@ -1046,7 +1170,36 @@ public class Fragment extends Vertex
                 this, otherFrag); 
         return fii.isomorphismExists();
     }
-    
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Produces a string that is identical for any pair of fragments for which
+     * {@link #isIsomorphicTo(Vertex)} returns <code>true</code>. The string
+     * collects the number of nodes and edges of each kind in the graph
+     * representation of this fragment
+     * (see {@link #getJGraphFragIsomorphism()}). Fragments with different
+     * invariant cannot be isomorphic, while fragments with the same invariant
+     * may or may not be isomorphic.
+     * @return the isomorphism invariant.
+     */
+    public String getIsomorphismInvariant()
+    {
+        DefaultUndirectedGraph<FragIsomorphNode,FragIsomorphEdge> g =
+                getJGraphFragIsomorphism();
+        Map<String,Integer> nodeCounts = new TreeMap<String,Integer>();
+        for (FragIsomorphNode node : g.vertexSet())
+        {
+            nodeCounts.merge(node.label, 1, Integer::sum);
+        }
+        Map<String,Integer> edgeCounts = new TreeMap<String,Integer>();
+        for (FragIsomorphEdge edge : g.edgeSet())
+        {
+            edgeCounts.merge(edge.label, 1, Integer::sum);
+        }
+        return nodeCounts.toString() + edgeCounts.toString();
+    }
+
 //------------------------------------------------------------------------------
 
     public int getHeavyAtomsCount()
@@ -1183,7 +1336,7 @@ public class Fragment extends Vertex
         if (ap.getOwner() != this)
             return null;
        
-        return mol.getAtom(ap.getAtomPositionNumber());
+        return getOwnMol().getAtom(ap.getAtomPositionNumber());
     }
     
 //------------------------------------------------------------------------------
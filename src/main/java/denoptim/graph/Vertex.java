@@ -569,6 +569,21 @@ public abstract class Vertex implements Cloneable
     @Override
     public abstract Vertex clone();
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Returns a copy of this vertex meant to be used as a new instance of 
+     * the same building block, for example when taking a building block from
+     * the fragment space. Subclasses may let the copy share immutable
+     * components with this vertex. By default, this is the same as 
+     * {@link #clone()}.
+     * @return the new instance.
+     */
+    public Vertex instantiate()
+    {
+        return clone();
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -0,0 +1,174 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.graph.rings;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bounded, thread-safe, in-memory cache of the verdicts on the 3D
+ * closability of chains of fragments. Chains are identified by the
+ * chain IDs of {@link PathSubGraph}s, so the same chain found in different
+ * graphs shares its verdict. When the maximum size is reached, the oldest
+ * entries are discarded first. Lookups do not block.
+ */
+
+public class ClosabilityCache
+{
+    /**
+     * Default maximum number of entries.
+     */
+    public static final int DEFAULTSIZE = 10000;
+
+    /**
+     * Maximum number of entries. Non-positive values disable the cache.
+     */
+    private final int maxSize;
+
+    /**
+     * The verdicts indexed by chain ID.
+     */
+    private final Map<String,Verdict> verdicts =
+            new ConcurrentHashMap<String,Verdict>();
+
+    /**
+     * Chain IDs in order of insertion.
+     */
+    private final Queue<String> insertionOrder =
+            new ConcurrentLinkedQueue<String>();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The result of the evaluation of closability of a chain.
+     */
+    public static class Verdict
+    {
+        private final String chainId;
+        private final boolean closable;
+        private final RingClosingConformations rcc;
+
+        public Verdict(String chainId, boolean closable,
+                RingClosingConformations rcc)
+        {
+            this.chainId = chainId;
+            this.closable = closable;
+            this.rcc = rcc;
+        }
+
+        /**
+         * @return the ID of the chain this verdict was stored with.
+         */
+        public String getChainId()
+        {
+            return chainId;
+        }
+
+        /**
+         * @return <code>true</code> if the chain is closable.
+         */
+        public boolean isClosable()
+        {
+            return closable;
+        }
+
+        /**
+         * @return the closable conformations of the chain.
+         */
+        public RingClosingConformations getRCCs()
+        {
+            return rcc;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries. Non-positive values
+     * produce a cache that never stores anything.
+     */
+    public ClosabilityCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Searches for a verdict on any of the chain IDs that represent the given
+     * chain.
+     * @param chain the chain to search for.
+     * @return the verdict or <code>null</code> if no verdict is in the cache.
+     */
+    public Verdict get(PathSubGraph chain)
+    {
+        if (maxSize < 1)
+            return null;
+        for (String altChId : chain.getAllAlternativeChainIDs())
+        {
+            Verdict verdict = verdicts.get(altChId);
+            if (verdict != null)
+                return verdict;
+        }
+        return null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stores a verdict on the closability of a chain.
+     * @param chainId the ID of the chain.
+     * @param closable <code>true</code> if the chain is closable.
+     * @param rcc the closable conformations of the chain.
+     */
+    public void put(String chainId, boolean closable,
+            RingClosingConformations rcc)
+    {
+        if (maxSize < 1)
+            return;
+        Verdict previous = verdicts.putIfAbsent(chainId,
+                new Verdict(chainId, closable, rcc));
+        if (previous != null)
+            return;
+        insertionOrder.add(chainId);
+        while (verdicts.size() > maxSize)
+        {
+            String oldest = insertionOrder.poll();
+            if (oldest == null)
+                break;
+            verdicts.remove(oldest);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of verdicts in the cache.
+     */
+    public int size()
+    {
+        return verdicts.size();
+    }
+
+//------------------------------------------------------------------------------
+
+}
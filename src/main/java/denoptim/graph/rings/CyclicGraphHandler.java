@@ -20,11 +20,16 @@ package denoptim.graph.rings;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +57,8 @@ import denoptim.graph.Fragment;
 import denoptim.graph.Ring;
 import denoptim.graph.Vertex;
 import denoptim.graph.Vertex.BBType;
+import denoptim.logging.CounterID;
+import denoptim.logging.Monitor;
 import denoptim.utils.ManySMARTSQuery;
 import denoptim.utils.MoleculeUtils;
 import denoptim.utils.ObjectPair;
@@ -73,12 +80,6 @@ import denoptim.utils.RingClosingUtils;
 
 public class CyclicGraphHandler
 {
-    /**
-     * variables needed by recursive methods
-     */
-    private int recCount = 0;
-    private int maxLng = 0;
-    
     /**
      * Parameters 
      */
@@ -94,6 +95,12 @@ public class CyclicGraphHandler
      */
     private Logger logger;
     
+    /**
+     * Monitor collecting the hits and misses of the closability cache. Can
+     * be <code>null</code>.
+     */
+    private Monitor monitor;
+    
     /**
      * New line character
      */
@@ -116,6 +123,23 @@ public class CyclicGraphHandler
         this.fragSpace = fragSpace;
     }
     
+//-----------------------------------------------------------------------------
+
+    /**
+     * Constructor from data structure. 
+     * @param settings the ring-closure parameters.
+     * @param fragSpace the fragment space.
+     * @param monitor the monitor where to record the usage of the cache of 
+     * verdicts on closability.
+     */
+
+    public CyclicGraphHandler(RingClosureParameters settings, 
+            FragmentSpace fragSpace, Monitor monitor) 
+    {
+        this(settings, fragSpace);
+        this.monitor = monitor;
+    }
+    
 //-----------------------------------------------------------------------------
 
     /**
@@ -217,8 +241,12 @@ public class CyclicGraphHandler
 //-----------------------------------------------------------------------------
 
     /**
-     * Identifies all possible ring closing paths and returns them as list of 
-     * DENOPTIMRings ready to be appended to a DENOPTIMGraph.
+     * Identifies all possible ring closing paths and returns them as list of
+     * DENOPTIMRings ready to be appended to a DENOPTIMGraph. Only the
+     * combinations with the largest number of rings are returned.
+     * When more than one thread is allowed by the ring-closure parameters,
+     * the exploration of the combinations is split among threads according
+     * to the first pair of ring-closing vertices of each combination.
      * @param mol the molecule
      * @param molGraph the molecular graph
      * @return the candidate closable paths in the given graph
@@ -228,18 +256,329 @@ public class CyclicGraphHandler
             IAtomContainer mol, DGraph molGraph)
                     throws DENOPTIMException
     {
-        // All the candidate paths 
-        Map<ObjectPair,PathSubGraph> allGoodPaths = 
+        RingCombinationSpace space = getRingCombinationSpace(mol, molGraph);
+
+        // The first pairs define independent portions of the exploration
+        List<int[]> firstPairs = new ArrayList<int[]>();
+        for (int i=0; i<space.size(); i++)
+        {
+            BitSet partners = space.compat[i];
+            for (int j=partners.nextSetBit(i+1); j>=0;
+                    j=partners.nextSetBit(j+1))
+            {
+                firstPairs.add(new int[] {i, j});
+            }
+        }
+
+        List<List<Ring>> found = new ArrayList<List<Ring>>();
+        int numThreads = settings.getRingCombinationThreads();
+        if (numThreads < 2 || firstPairs.size() < 2)
+        {
+            for (int[] firstPair : firstPairs)
+            {
+                found.addAll(combineFromFirstPair(space, firstPair));
+            }
+        }
+        else
+        {
+            // Threads of the pool do not inherit the scope of APClasses
+            APClass.Scope scope = APClass.Scope.getActive();
+            List<Callable<List<List<Ring>>>> tasks =
+                    new ArrayList<Callable<List<List<Ring>>>>();
+            for (int[] firstPair : firstPairs)
+            {
+                tasks.add(() -> {
+                    APClass.Scope previous = APClass.Scope.setActive(scope);
+                    try
+                    {
+                        return combineFromFirstPair(space, firstPair);
+                    } finally {
+                        APClass.Scope.setActive(previous);
+                    }
+                });
+            }
+            try
+            {
+                // Results are collected in the order of the tasks, so the
+                // outcome does not depend on the scheduling of threads
+                for (Future<List<List<Ring>>> result :
+                    settings.getRingCombinationPool().invokeAll(tasks))
+                {
+                    found.addAll(result.get());
+                }
+            }
+            catch (ExecutionException ee)
+            {
+                if (ee.getCause() instanceof DENOPTIMException)
+                    throw (DENOPTIMException) ee.getCause();
+                throw new DENOPTIMException(ee.getCause());
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                throw new DENOPTIMException(ie);
+            }
+        }
+
+        // Keep only the combinations with the largest number of rings
+        int maxSize = 0;
+        for (List<Ring> ringsComb : found)
+        {
+            maxSize = Math.max(maxSize, ringsComb.size());
+        }
+        ArrayList<List<Ring>> allCombsOfRings = new ArrayList<List<Ring>>();
+        for (List<Ring> ringsComb : found)
+        {
+            if (ringsComb.size() == maxSize)
+                allCombsOfRings.add(ringsComb);
+        }
+        logger.log(Level.FINE, "All possible combination of rings: " +
+                                                             allCombsOfRings);
+        return allCombsOfRings;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Identifies the combinations of ring closing paths one by one and
+     * hands each of them to the given consumer as soon as it is found.
+     * Contrary to {@link #getPossibleCombinationOfRings(IAtomContainer,
+     * DGraph)}, combinations are not filtered by number of rings:
+     * any combination that cannot be extended by an additional ring is given
+     * to the consumer.
+     * @param mol the molecule
+     * @param molGraph the molecular graph
+     * @param consumer the consumer of the combinations. It returns
+     * <code>false</code> to stop the exploration of further combinations.
+     * @return <code>false</code> if the exploration was stopped by the
+     * consumer.
+     */
+
+    public boolean enumerateCombinationsOfRings(IAtomContainer mol,
+            DGraph molGraph, Predicate<List<Ring>> consumer)
+                    throws DENOPTIMException
+    {
+        RingCombinationSpace space = getRingCombinationSpace(mol, molGraph);
+        try
+        {
+            return enumerateMaximalPairings(space.compat, 0,
+                    new BitSet(space.size()), new ArrayList<int[]>(),
+                    (pairs) -> {
+                        List<Ring> ringsComb = makeCombinationOfRings(space,
+                                pairs);
+                        if (ringsComb == null)
+                            return true;
+                        return consumer.test(ringsComb);
+                    });
+        }
+        catch (UncheckedDENOPTIMException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Collects all the combinations of rings that include the given first
+     * pair, i.e., the pair that includes the ring-closing vertex with the
+     * lowest index among those used in the combination.
+     */
+
+    private List<List<Ring>> combineFromFirstPair(RingCombinationSpace space,
+            int[] firstPair) throws DENOPTIMException
+    {
+        List<List<Ring>> result = new ArrayList<List<Ring>>();
+        BitSet used = new BitSet(space.size());
+        used.set(firstPair[0]);
+        used.set(firstPair[1]);
+        List<int[]> chosen = new ArrayList<int[]>();
+        chosen.add(firstPair);
+        try
+        {
+            enumerateMaximalPairings(space.compat, firstPair[0]+1, used,
+                    chosen, (pairs) -> {
+                        List<Ring> ringsComb = makeCombinationOfRings(space,
+                                pairs);
+                        if (ringsComb != null)
+                            result.add(ringsComb);
+                        return true;
+                    });
+        }
+        catch (UncheckedDENOPTIMException e)
+        {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Recursive enumeration of all the maximal sets of pairs, i.e., the sets
+     * of disjoint pairs that cannot be extended by adding any other pair.
+     * The enumeration does not depend on any state other than the arguments,
+     * so independent calls can run in parallel.
+     * @param compat the compatibility of each index with the others.
+     * @param first the first index that can be added to the set.
+     * @param used the indexes already included in the set. This is modified
+     * during the recursion, but restored before returning.
+     * @param chosen the pairs already included in the set. This is modified
+     * during the recursion, but restored before returning.
+     * @param consumer the consumer of each complete set of pairs.
+     * It returns <code>false</code> to stop the enumeration.
+     * @return <code>false</code> if the enumeration was stopped by the
+     * consumer.
+     */
+
+    static boolean enumerateMaximalPairings(BitSet[] compat, int first,
+            BitSet used, List<int[]> chosen, Predicate<List<int[]>> consumer)
+    {
+        // Skip indexes that cannot be paired anymore
+        int i = first;
+        while (i < compat.length
+                && (used.get(i) || !hasFreePartner(compat, i, used)))
+        {
+            i++;
+        }
+
+        if (i == compat.length)
+        {
+            if (chosen.isEmpty())
+                return true;
+            for (int k=used.nextClearBit(0); k<compat.length;
+                    k=used.nextClearBit(k+1))
+            {
+                if (hasFreePartner(compat, k, used))
+                {
+                    // The set is not maximal
+                    return true;
+                }
+            }
+            return consumer.test(new ArrayList<int[]>(chosen));
+        }
+
+        // Pair i with each of its available partners
+        for (int j=compat[i].nextSetBit(i+1); j>=0;
+                j=compat[i].nextSetBit(j+1))
+        {
+            if (used.get(j))
+                continue;
+            used.set(i);
+            used.set(j);
+            chosen.add(new int[] {i, j});
+            boolean goOn = enumerateMaximalPairings(compat, i+1, used, chosen,
+                    consumer);
+            chosen.remove(chosen.size()-1);
+            used.clear(i);
+            used.clear(j);
+            if (!goOn)
+                return false;
+        }
+
+        // Leave i unpaired
+        return enumerateMaximalPairings(compat, i+1, used, chosen, consumer);
+    }
+
+//-----------------------------------------------------------------------------
+
+    private static boolean hasFreePartner(BitSet[] compat, int i, BitSet used)
+    {
+        for (int j=compat[i].nextSetBit(0); j>=0; j=compat[i].nextSetBit(j+1))
+        {
+            if (j != i && !used.get(j))
+                return true;
+        }
+        return false;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Converts a set of pairs of ring-closing vertices into rings.
+     * @return the rings or <code>null</code> if the set includes
+     * interdependent paths that cannot be closed simultaneously.
+     * @throws UncheckedDENOPTIMException if the paths are inconsistent with
+     * the bond types.
+     */
+
+    private List<Ring> makeCombinationOfRings(RingCombinationSpace space,
+            List<int[]> pairs)
+    {
+        List<ObjectPair> lstPairs = new ArrayList<ObjectPair>();
+        for (int[] pair : pairs)
+        {
+            lstPairs.add(space.getObjectPair(pair[0], pair[1]));
+        }
+
+        if (settings.checkInterdependentChains() &&
+                hasInterdependentPaths(lstPairs, space.interdepPaths))
+        {
+            if (!checkClosabilityOfInterdependentPaths(lstPairs,
+                    space.interdepPaths, space.allGoodPaths))
+            {
+                logger.log(Level.FINEST, "Interdependent paths not closable: "
+                        + lstPairs);
+                return null;
+            }
+        }
+
+        List<Ring> ringsComb = new ArrayList<Ring>();
+        for (ObjectPair op : lstPairs)
+        {
+            PathSubGraph path = space.allGoodPaths.get(op);
+            ArrayList<Vertex> arrLst = new ArrayList<Vertex>();
+            arrLst.addAll(path.getVertecesPath());
+
+            Ring ring = new Ring(arrLst);
+
+            List<Edge> es = path.getEdgesPath();
+            BondType btH = es.get(0).getBondType();
+            BondType btT = es.get(es.size()-1).getBondType();
+            if (btH != btT)
+            {
+                String s = "Attempt to close rings is not "
+                + "compatible to the different bond type "
+                + "specified by the head and tail APs: ("
+                + btH + "!=" + btT + " for vertices "
+                + path.getHeadVertex() + " "
+                + path.getTailVertex() + ")";
+                throw new UncheckedDENOPTIMException(
+                        new DENOPTIMException(s));
+            }
+            ring.setBondType(btH);
+
+            ringsComb.add(ring);
+        }
+        logger.log(Level.FINEST, "Found combination of rings: " + ringsComb);
+        return ringsComb;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Identifies the pairs of ring-closing vertices that can form closable
+     * paths, and the interdependent paths, if requested.
+     */
+
+    private RingCombinationSpace getRingCombinationSpace(IAtomContainer mol,
+            DGraph molGraph) throws DENOPTIMException
+    {
+        // All the candidate paths
+        Map<ObjectPair,PathSubGraph> allGoodPaths =
                                         new HashMap<ObjectPair,PathSubGraph>();
         ArrayList<Vertex> rcaVertLst = molGraph.getFreeRCVertices();
-        
+
         // Get manager of ring size problems
         RingSizeManager rsm = new RingSizeManager(fragSpace);
         rsm.initialize(mol, molGraph);
 
         // identify compatible pairs of RCA vertices
-        Map<Vertex,ArrayList<Vertex>> compatMap =
-                       new HashMap<Vertex,ArrayList<Vertex>>();
+        BitSet[] compat = new BitSet[rcaVertLst.size()];
+        for (int i=0; i<rcaVertLst.size(); i++)
+        {
+            compat[i] = new BitSet(rcaVertLst.size());
+        }
         for (int i=0; i<rcaVertLst.size(); i++)
         {
             Vertex vI = rcaVertLst.get(i);
@@ -248,14 +587,14 @@ public class CyclicGraphHandler
                 Vertex vJ = rcaVertLst.get(j);
                 if (!rsm.getCompatibilityOfPair(vI,vJ))
                 {
-                    logger.log(Level.FINE, "Rejecting RC-incompatible pair " 
+                    logger.log(Level.FINE, "Rejecting RC-incompatible pair "
                                 + vI + " "+ vJ);
                     continue;
                 }
-                
+
                 // make the new candidate RCA pair
                 PathSubGraph subGraph = new PathSubGraph(vI, vJ, molGraph);
-                logger.log(Level.FINE, "Evaluating closability of path " 
+                logger.log(Level.FINE, "Evaluating closability of path "
                 + subGraph);
                 boolean keepRcaPair = evaluatePathClosability(subGraph, mol);
 
@@ -270,44 +609,17 @@ public class CyclicGraphHandler
                         + "Storing verified RCA pair");
 
                 // Store the information that the two vertex are compatible
-                if (compatMap.containsKey(vI))
-                {
-                    compatMap.get(vI).add(vJ);
-                }
-                else
-                {
-                    ArrayList<Vertex> lst =
-                                            new ArrayList<Vertex>();
-                    lst.add(vJ);
-                    compatMap.put(vI,lst);
-                }
-                if (compatMap.containsKey(vJ))
-                {
-                    compatMap.get(vJ).add(vI);
-                }
-                else
-                {
-                    ArrayList<Vertex> lst =
-                                            new ArrayList<Vertex>();
-                    lst.add(vI);
-                    compatMap.put(vJ,lst);
-                }
+                compat[i].set(j);
+                compat[j].set(i);
 
                 // store the RCA pair for further use
-                ObjectPair compatPair;
-                if (vI.getVertexId() > vJ.getVertexId())
-                {
-                    compatPair = new ObjectPair(vI,vJ);
-                }
-                else
-                {
-                    compatPair = new ObjectPair(vJ,vI);
-                }
-                allGoodPaths.put(compatPair,subGraph);
+                allGoodPaths.put(RingCombinationSpace.makeObjectPair(vI, vJ),
+                        subGraph);
             }
         }
 
-        logger.log(Level.FINE, "Compatibility Map for RCAs: "+NL+compatMap);
+        logger.log(Level.FINE, "Compatibility of RCAs: " + rcaVertLst + NL
+                + Arrays.toString(compat));
 
         // Identify paths that share bonds (interdependent paths)
         Map<IBond,List<PathSubGraph>> interdepPaths =
@@ -322,17 +634,17 @@ public class CyclicGraphHandler
                     {
                         continue;
                     }
-    
+
                     Vertex hA = rpA.getHeadVertex();
                     Vertex tA = rpA.getTailVertex();
                     Vertex hB = rpB.getHeadVertex();
                     Vertex tB = rpB.getTailVertex();
-    
+
                     if ((hA == hB || hA == tB) || (tA == hB || tA == tB))
                     {
                         continue;
                     }
-    
+
                     for (IBond bnd : rpA.getBondPath())
                     {
                         // ignore non-rotatable bonds
@@ -344,7 +656,7 @@ public class CyclicGraphHandler
                         {
                             continue;
                         }
-    
+
                         if (rpB.getBondPath().contains(bnd))
                         {
                             if (interdepPaths.containsKey(bnd))
@@ -354,7 +666,7 @@ public class CyclicGraphHandler
                             }
                             else
                             {
-                                List<PathSubGraph> paths = 
+                                List<PathSubGraph> paths =
                                                    new ArrayList<PathSubGraph>();
                                 paths.add(rpA);
                                 paths.add(rpB);
@@ -378,239 +690,89 @@ public class CyclicGraphHandler
             logger.log(Level.FINE, sb.toString());
         }
 
-        // Generate all combinations of compatible, closable paths
-        ArrayList<ObjectPair> lstPairs = new ArrayList<ObjectPair>();
-        ArrayList<Integer> usedId = new ArrayList<Integer>();
-        ArrayList<Vertex> sortedKeys = new ArrayList<Vertex>();
-        for (Vertex keyVert : compatMap.keySet())
-        {
-            sortedKeys.add(keyVert);
-        }
-
-        // All possible ring closing paths will be stored here
-        ArrayList<List<Ring>> allCombsOfRings =
-                                     new ArrayList<List<Ring>>();
-        combineCompatPathSubGraphs(0,
-                sortedKeys,
-                compatMap,
-                lstPairs,
-                usedId,
-                allGoodPaths,
-                interdepPaths,
-                allCombsOfRings);
-        logger.log(Level.FINE, "All possible combination of rings: " + 
-                                                             allCombsOfRings);
-        return allCombsOfRings;
+        return new RingCombinationSpace(rcaVertLst, compat, allGoodPaths,
+                interdepPaths);
     }
 
 //-----------------------------------------------------------------------------
 
     /**
-     * Recursive method to identify all the combination of rings.
+     * Immutable collection of the data defining the space of combinations of
+     * rings for a given graph. Ring-closing vertices are identified by their
+     * index in the list of ring-closing vertices.
      */
 
-    private boolean combineCompatPathSubGraphs(int ii0,
-                       ArrayList<Vertex> sortedKeys,
-                       Map<Vertex,ArrayList<Vertex>> compatMap,
-                       ArrayList<ObjectPair> lstPairs,
-                       ArrayList<Integer> usedId,
-                       Map<ObjectPair,PathSubGraph> allGoodPaths,
-                       Map<IBond,List<PathSubGraph>> interdepPaths,
-                       ArrayList<List<Ring>> allCombsOfRings)
-                                                      throws DENOPTIMException
+    private static class RingCombinationSpace
     {
-        int objId = this.hashCode();
-        String recLab = new String(new char[recCount]).replace("\0", "-");
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append(objId+"-"+recLab+"> Begin of new recursion: "+recCount+NL);
-        sb.append(objId+"-"+recLab+"> sortedKeys= "+sortedKeys+NL);
-        sb.append(objId+"-"+recLab+"> usedId= "+usedId+NL);
-        sb.append(objId+"-"+recLab+"> ii0= "+ii0+NL);
-        sb.append(objId+"-"+recLab+"> lstPairs= "+lstPairs+NL);
-        sb.append(objId+"-"+recLab+"> compatMap= "+compatMap+NL);
-        sb.append(objId+"-"+recLab+"> allCombsOfRings"+NL);
-        for (List<Ring> ringSet : allCombsOfRings)
-        {
-            sb.append("        "+ringSet+NL);
-        }
-        logger.log(Level.FINEST, sb.toString()); 
+        private final List<Vertex> rcvs;
+        private final BitSet[] compat;
+        private final Map<ObjectPair,PathSubGraph> allGoodPaths;
+        private final Map<IBond,List<PathSubGraph>> interdepPaths;
 
-        boolean inFound = false;
-        boolean addedNew = false;
-        for (int ii=ii0; ii<sortedKeys.size(); ii++)
-        {
-            Vertex vi = sortedKeys.get(ii);
-            int vIdI = vi.getVertexId();
-
-            logger.log(Level.FINEST, objId+"-"+recLab+"> vIdI= "+vIdI);
-
-            if (usedId.contains(vIdI))
-            {
-                continue;
-            }
-
-            for (Vertex vj : compatMap.get(vi))
-            {
-                int vIdJ = vj.getVertexId();
-
-                logger.log(Level.FINEST, objId+"-"+recLab+"> vIdJ= "+vIdJ);
-
-                if (usedId.contains(vIdJ) || usedId.contains(vIdI))
-                {
-                    continue;
-                }
-
-                ObjectPair op;
-                if (vIdI > vIdJ)
-                {
-                    op = new ObjectPair(vi,vj);
-                }
-                else
-                {
-                    op = new ObjectPair(vj,vi);
-                }
-                lstPairs.add(op);
-                usedId.add(vIdI);
-                usedId.add(vIdJ);
-
-                if (lstPairs.size() > maxLng)
-                {
-                    maxLng = lstPairs.size();
-                }
-                recCount++;
-                inFound = combineCompatPathSubGraphs(ii+1,
-                                        sortedKeys,
-                                        compatMap,
-                                        lstPairs,
-                                        usedId,
-                                        allGoodPaths,
-                                        interdepPaths,
-                                        allCombsOfRings);
-                recCount--;
-
-                logger.log(Level.FINEST, objId+"-"+recLab+"> lstPairs.size() "
-                        + "& maxLng= "+lstPairs.size() +" " +maxLng); 
-
-                if (!inFound && lstPairs.size() == maxLng)
-                {
-                    logger.log(Level.FINEST, objId+"-"+recLab+"> in A");
-
-                    boolean closable = true;
-                    if (settings.checkInterdependentChains() &&
-                               hasInterdependentPaths(lstPairs, interdepPaths))
-                    {
-                        closable = checkClosabilityOfInterdependentPaths(
-                                                        lstPairs,
-                                                        interdepPaths,
-                                                        allGoodPaths);
-                    }
-                    if (closable)
-                    {
-                        logger.log(Level.FINEST, objId+"-"+recLab+"> in B");
+        //---------------------------------------------------------------------
 
-                        List<Ring> ringsComb = new ArrayList<Ring>();
-                        for (ObjectPair opFinal : lstPairs)
-                        {
-                            PathSubGraph path = allGoodPaths.get(opFinal);
-                            ArrayList<Vertex> arrLst = 
-                                               new ArrayList<Vertex>();
-                            arrLst.addAll(path.getVertecesPath());
+        public RingCombinationSpace(List<Vertex> rcvs, BitSet[] compat,
+                Map<ObjectPair,PathSubGraph> allGoodPaths,
+                Map<IBond,List<PathSubGraph>> interdepPaths)
+        {
+            this.rcvs = rcvs;
+            this.compat = compat;
+            this.allGoodPaths = allGoodPaths;
+            this.interdepPaths = interdepPaths;
+        }
 
-                            Ring ring = new Ring(arrLst);
+        //---------------------------------------------------------------------
 
-                            List<Edge> es = path.getEdgesPath();
-                            BondType btH = es.get(0).getBondType();
-                            BondType btT = es.get(es.size()-1).getBondType();
-                            if (btH != btT)
-                            {
-                                String s = "Attempt to close rings is not "
-                                + "compatible to the different bond type "
-                                + "specified by the head and tail APs: (" 
-                                + btH + "!=" + btT + " for vertices " 
-                                + path.getHeadVertex() + " " 
-                                + path.getTailVertex() + ")"; 
-                                throw new DENOPTIMException(s);
-                            }
-                            ring.setBondType(btH);
+        public int size()
+        {
+            return rcvs.size();
+        }
 
-                            ringsComb.add(ring);
+        //---------------------------------------------------------------------
 
-                            logger.log(Level.FINEST, objId+"-"+recLab
-                                    +"> added ringComb: "+ring);
-                        }
+        public ObjectPair getObjectPair(int i, int j)
+        {
+            return makeObjectPair(rcvs.get(i), rcvs.get(j));
+        }
 
-                        boolean notNewCmb = false;
-                        for(List<Ring> oldCmb : allCombsOfRings)
-                        {
-                            StringBuilder sb2 = new StringBuilder();
-                            sb2.append(objId+"-"+recLab
-                                    +"> Comparing ring sets: ");
-                            sb2.append("o> old: "+oldCmb);
-                            sb2.append("o> new: "+ringsComb);
-                            logger.log(Level.FINEST, sb2.toString());
-
-                            notNewCmb = RingClosingUtils.areSameRingsSet(oldCmb,
-                                                                     ringsComb);
-                            
-                            logger.log(Level.FINEST,"o> result: "+notNewCmb);
-
-                            if (notNewCmb)
-                            {
-                                break;
-                            }
-                        }
+        //---------------------------------------------------------------------
 
-                        if (!notNewCmb)
-                        {
-                            logger.log(Level.FINEST, objId+"-"+recLab
-                                    +"> adding to all combs of ring.");
-                            allCombsOfRings.add(ringsComb);
-                            addedNew = true;
-                        }
-                    }
-                }
-                if (!inFound)
-                {
-                    logger.log(Level.FINEST, objId+"-"+recLab+"> in C");
+        /**
+         * Makes the pair with the vertex with highest ID as first element.
+         */
+        public static ObjectPair makeObjectPair(Vertex vI, Vertex vJ)
+        {
+            if (vI.getVertexId() > vJ.getVertexId())
+            {
+                return new ObjectPair(vI,vJ);
+            }
+            return new ObjectPair(vJ,vI);
+        }
 
-                    ArrayList<ObjectPair> toDel = new ArrayList<ObjectPair>();
-                    for (int ir = recCount; ir<lstPairs.size(); ir++)
-                    {
-                        ObjectPair opToRemove = lstPairs.get(ir);
-                        Vertex delVA = (Vertex) opToRemove.getFirst();
-                        Vertex delVB = (Vertex) opToRemove.getSecond();
-                        usedId.remove(usedId.indexOf(delVA.getVertexId()));
-                        usedId.remove(usedId.indexOf(delVB.getVertexId()));
-                        toDel.add(opToRemove);
-                    }
-                    lstPairs.removeAll(toDel);
+        //---------------------------------------------------------------------
+    }
 
-                    logger.log(Level.FINEST, objId+"-"+recLab
-                            +"> in C: after removal usedId: "+usedId+NL
-                            +objId+"-"+recLab
-                            +"> in C: after removal lstPairs: "+lstPairs);
-                }
+//-----------------------------------------------------------------------------
 
-                if (lstPairs.contains(op))
-                {
-                    logger.log(Level.FINEST, objId+"-"+recLab+"> in D");
+    /**
+     * Wrapper used to propagate a {@link DENOPTIMException} through
+     * functional interfaces.
+     */
 
-                    lstPairs.remove(op);
-                    usedId.remove(usedId.indexOf(vIdI));
-                    usedId.remove(usedId.indexOf(vIdJ));
+    private static class UncheckedDENOPTIMException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
 
-                    logger.log(Level.FINEST, objId+"-"+recLab
-                            +"> in D: after removal usedId: "+usedId
-                            +objId+"-"+recLab
-                            +"> in D: after removal lstPairs: "+lstPairs);
-                }
-            }
+        public UncheckedDENOPTIMException(DENOPTIMException cause)
+        {
+            super(cause);
         }
-        
-        logger.log(Level.FINEST, objId+"-"+recLab+"> returning= "+addedNew);
 
-        return addedNew;
+        @Override
+        public DENOPTIMException getCause()
+        {
+            return (DENOPTIMException) super.getCause();
+        }
     }
 
 //-----------------------------------------------------------------------------
@@ -620,7 +782,7 @@ public class CyclicGraphHandler
      * paths, that is, paths that share one or more bonds. 
      */
 
-    private boolean hasInterdependentPaths(ArrayList<ObjectPair> lstPairs,
+    private boolean hasInterdependentPaths(List<ObjectPair> lstPairs,
                                     Map<IBond,List<PathSubGraph>> interdepPaths)
     {
         boolean result = false;
@@ -663,7 +825,7 @@ public class CyclicGraphHandler
      */
 
     private boolean checkClosabilityOfInterdependentPaths(
-                                ArrayList<ObjectPair> lstPairs,
+                                List<ObjectPair> lstPairs,
                                 Map<IBond,List<PathSubGraph>> interdepPaths,
                                 Map<ObjectPair,PathSubGraph> allGoodPaths)
     {
@@ -852,8 +1014,9 @@ public class CyclicGraphHandler
          */
         private int sz;
 
-        // Compatibility matrix between pairs of RCAs in the current system.
-        private boolean[][] compatibilityOfPairs;
+        // Compatibility matrix between pairs of RCAs in the current system:
+        // bit j of the i-th entry is set if RCAs i and j are compatible.
+        private BitSet[] compatibilityOfPairs;
 
         /**
          * List of weight factors used to control the likeliness of choosing 
@@ -961,7 +1124,11 @@ public class CyclicGraphHandler
         private void calculateCompatibilityOfAllRCAPairs() throws DENOPTIMException
         {
             weigths = new ArrayList<Double>(Collections.nCopies(sz, 0.0));
-            compatibilityOfPairs = new boolean[sz][sz];
+            compatibilityOfPairs = new BitSet[sz];
+            for (int i=0; i<sz; i++)
+            {
+                compatibilityOfPairs[i] = new BitSet(sz);
+            }
             for (int i=0; i<sz; i++)
             {
                 Vertex vI = lstVert.get(i);
@@ -1011,8 +1178,8 @@ public class CyclicGraphHandler
                     if (!isAtmI && !isAtmJ)
                     {
                         // Ring size is ignored when RCVs are empty vertexes
-                        compatibilityOfPairs[i][j] = true;
-                        compatibilityOfPairs[j][i] = true;
+                        compatibilityOfPairs[i].set(j);
+                        compatibilityOfPairs[j].set(i);
                         weigths.set(i, weigths.get(i) + 1.0);
                         weigths.set(j, weigths.get(j) + 1.0);
                         continue;
@@ -1031,8 +1198,8 @@ public class CyclicGraphHandler
                         }
                         if (szFct > 0)
                         {
-                            compatibilityOfPairs[i][j] = true;
-                            compatibilityOfPairs[j][i] = true;
+                            compatibilityOfPairs[i].set(j);
+                            compatibilityOfPairs[j].set(i);
                             weigths.set(i, weigths.get(i) + szFct);
                             weigths.set(j, weigths.get(j) + szFct);
                         }
@@ -1053,7 +1220,7 @@ public class CyclicGraphHandler
                     for (int j=0; j<sz; j++)
                     {
                         String p = "0";
-                        if (compatibilityOfPairs[i][j])
+                        if (compatibilityOfPairs[i].get(j))
                             p = "1";
                         l = l + " " + p;
                     }
@@ -1093,9 +1260,10 @@ public class CyclicGraphHandler
         {
             int i = lstVert.indexOf(vI);
             ArrayList<Vertex> wLst = new ArrayList<Vertex>();
-            for (int j=0; j<sz; j++)
+            for (int j=compatibilityOfPairs[i].nextSetBit(0); j>=0;
+                    j=compatibilityOfPairs[i].nextSetBit(j+1))
             {
-                if (done.get(j) || !compatibilityOfPairs[i][j])
+                if (done.get(j))
                 {
                     continue;
                 }
@@ -1195,7 +1363,7 @@ public class CyclicGraphHandler
         {
             int i = lstVert.indexOf(vI); 
             int j = lstVert.indexOf(vJ);
-            return compatibilityOfPairs[i][j];
+            return compatibilityOfPairs[i].get(j);
         }
 
         //---------------------------------------------------------------------
@@ -1605,17 +1773,35 @@ public class CyclicGraphHandler
         logger.log(Level.FINE, "Evaluating 3D closability of path: " 
                             + subGraph.getVertecesPath()+" ChainID: "+chainId);
         
+        ClosabilityCache cache = settings.getClosabilityCache();
         RingClosuresArchive rca = settings.getRingClosuresArchive();
         
         RingClosingConformations rcc;
         boolean closable = false;
         
-        String foundID = rca.containsChain(subGraph);
-        if (foundID != "")
+        ClosabilityCache.Verdict verdict = cache.get(subGraph);
+        String foundID = "";
+        if (verdict == null)
+        {
+            if (monitor != null)
+                monitor.increase(CounterID.CLOSABILITYCACHEMISSES);
+            foundID = rca.containsChain(subGraph);
+        } else {
+            if (monitor != null)
+                monitor.increase(CounterID.CLOSABILITYCACHEHITS);
+        }
+        if (verdict != null || foundID != "")
         {
-            // Get all info from archive
-            closable = rca.getClosabilityOfChain(foundID);
-            rcc = rca.getRCCsOfChain(foundID);
+            if (verdict != null)
+            {
+                closable = verdict.isClosable();
+                rcc = verdict.getRCCs();
+            } else {
+                // Get all info from archive
+                closable = rca.getClosabilityOfChain(foundID);
+                rcc = rca.getRCCsOfChain(foundID);
+                cache.put(foundID, closable, rcc);
+            }
             if (settings.checkInterdependentChains() 
                     && settings.doExhaustiveConfSrch())
             {
@@ -1679,6 +1865,7 @@ public class CyclicGraphHandler
 
             // put ring-closure information in archive for further use
             rca.storeEntry(chainId,closable,rcc);
+            cache.put(chainId,closable,rcc);
         }
 
         logger.log(Level.FINE, "Path closablility: "+closable);
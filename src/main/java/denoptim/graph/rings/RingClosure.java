@@ -121,6 +121,20 @@ public class RingClosure
         this.t2 = t2;
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     *  Constructs a RingClosure from the involved points and the parameters
+     *  needed to define closability conditions.
+     */
+
+    public RingClosure(Point3d h1, Point3d h2, Point3d t1, Point3d t2,
+            RingClosureParameters settings)
+    {
+        this(h1, h2, t1, t2);
+        this.settings = settings;
+    }
+
 //-----------------------------------------------------------------------------
 
     /**
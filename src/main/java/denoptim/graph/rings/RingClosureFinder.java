@@ -19,9 +19,15 @@
 package denoptim.graph.rings;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.vecmath.AxisAngle4d;
 import javax.vecmath.Matrix3d;
@@ -35,7 +41,7 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
-import denoptim.constants.DENOPTIMConstants;
+import denoptim.graph.APClass;
 import denoptim.io.DenoptimIO;
 import denoptim.utils.MathUtils;
 
@@ -49,7 +55,11 @@ import denoptim.utils.MathUtils;
 public class RingClosureFinder
 {
 
-    private final static String NL = DENOPTIMConstants.EOL;
+    /**
+     * Flag enabling the writing of closable conformations. For debug only!
+     */
+    private final static boolean DEBUG = false;
+    
 //----------------------------------------------------------------------------
 
     /**
@@ -88,10 +98,13 @@ public class RingClosureFinder
         }
         
         // Create the chain of points to work with
-        List<Point3d> ptsChain = new ArrayList<Point3d>();
+        double[] coords = new double[3*sz];
         for (int i=0; i<path.size(); i++)
         {
-            ptsChain.add(new Point3d(path.get(i).getPoint3d()));
+            Point3d p = path.get(i).getPoint3d();
+            coords[3*i] = p.x;
+            coords[3*i+1] = p.y;
+            coords[3*i+2] = p.z;
         }
 
         // Get closability condition
@@ -105,7 +118,8 @@ public class RingClosureFinder
         RingClosure rc = new RingClosure(path.get(h1).getPoint3d(),
                                          path.get(h2).getPoint3d(),
                                          path.get(t1).getPoint3d(),
-                                         path.get(t2).getPoint3d());
+                                         path.get(t2).getPoint3d(),
+                                         settings);
         ArrayList<Double> clsablConds = rc.getClosabilityConditions(
                 settings.getConfPathExtraTolerance());
         settings.getLogger().log(Level.FINE, "RingClosability conditions "
@@ -113,14 +127,13 @@ public class RingClosureFinder
         
         // Make work vector of dihedrals (angles around rotatable bonds)
         // avoiding linearities
-        ArrayList<Double> dihedrals = new ArrayList<Double>();
-        ArrayList<Double> dihIncement = new ArrayList<Double>();
+        double[] dihedrals = new double[sz-1];
         int nn = 0;
-        for (int i=2; i<ptsChain.size(); i++)
+        for (int i=2; i<sz; i++)
         {
-            double a = MathUtils.angle(ptsChain.get(i-2),
-                                               ptsChain.get(i-1),
-                                               ptsChain.get(i));
+            double a = MathUtils.angle(path.get(i-2).getPoint3d(),
+                                               path.get(i-1).getPoint3d(),
+                                               path.get(i).getPoint3d());
             if (a >= settings.getLinearityLimit())
             {
                 settings.getLogger().log(Level.FINE, "Skipping linearity in "
@@ -134,41 +147,40 @@ public class RingClosureFinder
             if (i==2)
             {
                 // add FIRST even if it is always not rotatable
-                dihedrals.add(0.0);
-                dihIncement.add(0.0);
+                dihedrals[i-2] = 0.0;
             }
             else
             {
                 ArrayList<Point3d> refPoints = dihRefs.get(i-3);
-                dihedrals.add(MathUtils.computeDihedralAngle(
+                dihedrals[i-2] = MathUtils.computeDihedralAngle(
                                                         refPoints.get(0), 
                                                         refPoints.get(1), 
                                                         refPoints.get(2),
-                                                        refPoints.get(3)));
-                dihIncement.add(0.0);
+                                                        refPoints.get(3));
             }
         }
         // add LAST even if it is always not rotatable
-        dihedrals.add(0.0);
-        dihIncement.add(0.0);
+        dihedrals[sz-2] = 0.0;
+        
+        boolean[] rotatable = new boolean[sz-1];
+        for (int i=0; i<sz-1; i++)
+        {
+            rotatable[i] = rotatability.get(i);
+        }
+        double[] conds = new double[clsablConds.size()];
+        for (int i=0; i<conds.length; i++)
+        {
+            conds[i] = clsablConds.get(i);
+        }
 
         settings.getLogger().log(Level.FINE, "Exploring torsional space... (dim:"
                     + nn + " - complete:" + settings.doExhaustiveConfSrch()+")");
 
         long startTime = System.nanoTime();
-        hasClosableRotamer(ptsChain,
-                                rotatability,
-                                dihedrals,
-                                dihIncement,
-                                0,
-                                settings.getPathConfSearchStep(),
-                                h1,h2,t1,t2,
-                                clsablConds,
-                                closableConfs,
-                                settings.doExhaustiveConfSrch(),
-                                false, //true for debug only!
-                                settings.getLogger(),
-                                0);
+        closableConfs.addAll(searchClosableRotamers(coords, rotatable, 
+                dihedrals, settings.getPathConfSearchStep(), conds, 
+                settings.doExhaustiveConfSrch(), settings.getLogger(),
+                settings.getRotamerSearchPool()));
         long endTime = System.nanoTime();
         long time = (endTime - startTime) / (long) 1000.0;
 
@@ -185,22 +197,146 @@ public class RingClosureFinder
 
     /**
      * Scan rotatable space looking for conformations that satisfy closability
-     * condition.
+     * condition. The systematic scan of the first rotatable bond is split in
+     * branches, each exploring the rotatable space of the remaining bonds for
+     * one value of the first dihedral. Branches can be explored in parallel
+     * by the threads of the given pool. 
+     * The results are collected in the same order of a sequential scan.
+     *
+     * @param coords the chain of atoms as a vector of coordinates 
+     * [x1,y1,z1,x2,y2,z2,...xN,yN,zN]. The first two points define the head 
+     * vector, the last two the tail vector.
+     * @param rotatable flags defining which bond is rotatable
+     * @param dihedrals the initial value of the dihedral angles
+     * @param step the step taken by each sequential rotation of the bond
+     * @param conds the closability condition vector (see
+     * {@link RingClosure#getClosabilityConditions(double)})
+     * @param doExhaustiveSearch use <code>true</code> to collect all the 
+     * closable conformations, or <code>false</code> to stop at the first one.
+     * @param logger where to log
+     * @param pool the threads exploring the branches, or <code>null</code> 
+     * to explore them in the calling thread.
+     * @return the vectors of dihedrals of the closable conformations
+     */
+
+    public static List<ArrayList<Double>> searchClosableRotamers(
+            double[] coords, boolean[] rotatable, double[] dihedrals,
+            double step, double[] conds, boolean doExhaustiveSearch, 
+            Logger logger, ForkJoinPool pool)
+    {
+        RotamerSearch master = new RotamerSearch(coords, rotatable, dihedrals,
+                step, conds, doExhaustiveSearch, logger);
+
+        // Bonds that cannot rotate before the first rotatable one do not 
+        // change the conformation.
+        int topRot = -1;
+        for (int i=0; i<rotatable.length; i++)
+        {
+            if (rotatable[i])
+            {
+                topRot = i;
+                break;
+            }
+        }
+        if (topRot < 0 || master.totStp < 2)
+        {
+            master.search(0);
+            return master.closableConfs;
+        }
+        
+        double[] rotMat = master.getRotationMatrix(topRot, step);
+        AtomicInteger firstSuccess = new AtomicInteger(Integer.MAX_VALUE);
+        final int top = topRot;
+        // Threads of the pool do not inherit the scope of APClasses
+        APClass.Scope scope = APClass.Scope.getActive();
+        IntFunction<RotamerSearch> explorer = i -> {
+            APClass.Scope previous = APClass.Scope.setActive(scope);
+            try
+            {
+                RotamerSearch branch = master.branch(i, firstSuccess);
+                if (firstSuccess.get() < i)
+                    return branch;
+                for (int j=1; j<=i; j++)
+                {
+                    branch.increments[top] = branch.increments[top] + step;
+                    branch.rotateBranch(top, rotMat);
+                }
+                if (branch.exploreBelow(top) && !doExhaustiveSearch)
+                {
+                    firstSuccess.accumulateAndGet(i, Math::min);
+                }
+                return branch;
+            } finally {
+                APClass.Scope.setActive(previous);
+            }
+        };
+        List<RotamerSearch> branches;
+        if (pool == null)
+        {
+            branches = IntStream.range(0, master.totStp)
+                    .mapToObj(explorer)
+                    .collect(Collectors.toList());
+        } else {
+            // A parallel stream started by a task of the pool runs in the 
+            // threads of that pool
+            branches = pool.submit(() -> IntStream.range(0, master.totStp)
+                    .parallel()
+                    .mapToObj(explorer)
+                    .collect(Collectors.toList())).join();
+        }
+        
+        List<ArrayList<Double>> closableConfs = new ArrayList<ArrayList<Double>>();
+        for (RotamerSearch branch : branches)
+        {
+            closableConfs.addAll(branch.closableConfs);
+            if (!doExhaustiveSearch && closableConfs.size() > 0)
+            {
+                break;
+            }
+        }
+        return closableConfs;
+    }
+
+//----------------------------------------------------------------------------
+
+    /**
+     * Scan rotatable space looking for conformations that satisfy closability
+     * condition. This method runs {@link #searchClosableRotamers(double[],
+     * boolean[], double[], double, double[], boolean, Logger, ForkJoinPool)}
+     * in the calling thread. Unlike in previous versions, the points of the
+     * chain are not moved. 
      *
      * @param chain the chain of atoms as a list of points in 3D space
      * @param rotatability flags defining which bond is rotatable
      * @param dihedrals the current value of the dihedral angles
-     * @param activeRot index of the currently active (rotating) bond
+     * @param dihIncement the increments already applied to the dihedral 
+     * angles
+     * @param activeRot index of the first bond that can rotate. Bonds before
+     * this one are not rotated.
      * @param step the step taken by each sequential rotation of the bond
-     * @param h1 the index of the first point defining the head vector
-     * @param h2 the index of the second point defining the head vector
-     * @param t1 the index of the first point defining the tail vector
-     * @param t2 the index of the second point defining the tail vector
+     * @param h1 the index of the first point defining the head vector. Must
+     * be 1.
+     * @param h2 the index of the second point defining the head vector. Must
+     * be 0.
+     * @param t1 the index of the first point defining the tail vector. Must 
+     * be the index of the second-last point.
+     * @param t2 the index of the second point defining the tail vector. Must
+     * be the index of the last point.
      * @param clsablConds the closability condition vector meant to feed
      * <code>RingClosure</code> 
-     * @return <code>true</code> when the first closable conformation is found
+     * @param closableConfs collector of the vectors of dihedrals of the 
+     * closable conformations.
+     * @param doExhaustiveSearch use <code>true</code> to collect all the 
+     * closable conformations, or <code>false</code> to stop at the first one.
+     * @param writeAllConfs ignored.
+     * @param logger where to log
+     * @param rec ignored.
+     * @return <code>true</code> if any closable conformation is found
+     * @deprecated use {@link #searchClosableRotamers(double[], boolean[], 
+     * double[], double, double[], boolean, Logger, ForkJoinPool)}.
      */
 
+    @Deprecated
     public static boolean hasClosableRotamer(List<Point3d> chain, 
                                 ArrayList<Boolean> rotatability,
                                 ArrayList<Double> dihedrals,
@@ -215,187 +351,446 @@ public class RingClosureFinder
                                 Logger logger,
                                 int rec)
     {
-
-        boolean res = false;
-        logger.log(Level.FINEST,"-Rec: "+activeRot);
-        int totStp = (int) (360.0 / step);
-        if (!rotatability.get(activeRot))
+        int sz = chain.size();
+        if (h1 != 1 || h2 != 0 || t1 != sz-2 || t2 != sz-1)
         {
-            logger.log(Level.FINEST, rec+"-Rec: not active");
-            totStp = 1;
+            throw new IllegalArgumentException("Head and tail vectors must "
+                    + "be defined by the first two and last two points.");
         }
-        for (int i=0; i<totStp; i++)
+        double[] coords = new double[3*sz];
+        for (int i=0; i<sz; i++)
         {
-            logger.log(Level.FINEST,rec+"-RecLop: "+activeRot+" I:"+i);
-            if (i != 0)
-            {
-                dihIncement.set(activeRot,dihIncement.get(activeRot) + step);
+            Point3d p = chain.get(i);
+            coords[3*i] = p.x;
+            coords[3*i+1] = p.y;
+            coords[3*i+2] = p.z;
+        }
+        boolean[] rotatable = new boolean[sz-1];
+        double[] dihs = new double[sz-1];
+        for (int i=0; i<sz-1; i++)
+        {
+            rotatable[i] = i >= activeRot && rotatability.get(i);
+            dihs[i] = dihedrals.get(i) + dihIncement.get(i);
+        }
+        double[] conds = new double[clsablConds.size()];
+        for (int i=0; i<conds.length; i++)
+        {
+            conds[i] = clsablConds.get(i);
+        }
+        List<ArrayList<Double>> found = searchClosableRotamers(coords, 
+                rotatable, dihs, step, conds, doExhaustiveSearch, logger, 
+                null);
+        closableConfs.addAll(found);
+        return found.size() > 0;
+    }
+
+//----------------------------------------------------------------------------
 
-                // Move the whole branch of points that lie after the rotbond
-                Point3d srcRotBnd = chain.get(activeRot);
-                Point3d endRotBnd = chain.get(activeRot+1);
-                Vector3d rotAxis = new Vector3d(endRotBnd.x - srcRotBnd.x, 
-                                                endRotBnd.y - srcRotBnd.y,
-                                                endRotBnd.z - srcRotBnd.z);
-                rotAxis.normalize();
-                Matrix3d rotMat = new Matrix3d();
+    /**
+     * Systematic and recursive scan of the torsional space of a chain of 
+     * points. Works on a flat vector of coordinates that is modified 
+     * in place, so each thread must use its own instance.
+     */
 
-                rotMat.set(new AxisAngle4d(rotAxis,Math.toRadians(step)));
+    private static class RotamerSearch
+    {
+        /**
+         * Coordinates of the chain of points [x1,y1,z1,...xN,yN,zN].
+         */
+        final double[] coords;
+        
+        /**
+         * Number of points in the chain.
+         */
+        final int nPts;
+        
+        /**
+         * Flags defining which bond is rotatable.
+         */
+        final boolean[] rotatable;
+        
+        /**
+         * The initial value of the dihedral angles.
+         */
+        final double[] dihedrals;
+        
+        /**
+         * The current change of each dihedral angle.
+         */
+        final double[] increments;
+        
+        /**
+         * Step of each sequential rotation of a bond (degrees).
+         */
+        final double step;
+        
+        /**
+         * Number of steps in a full rotation of a bond.
+         */
+        final int totStp;
+        
+        /**
+         * The closability conditions.
+         */
+        final double[] conds;
+        
+        /**
+         * Upper bound of the distance between the point at the given index
+         * and the last point of the chain, i.e., the sum of the lengths of the
+         * bonds in between.
+         */
+        final double[] lengthToEnd;
+        
+        /**
+         * Flag requesting to collect all closable conformations.
+         */
+        final boolean doExhaustiveSearch;
+        
+        /**
+         * Index of this branch among those explored in parallel, or -1 if 
+         * this is not one of such branches.
+         */
+        final int branchId;
+        
+        /**
+         * Index of the first branch that has found a closable conformation.
+         * Used to stop branches that cannot contribute to the result of
+         * a non-exhaustive search.
+         */
+        final AtomicInteger firstSuccess;
+        
+        /**
+         * The vectors of dihedrals of the closable conformations.
+         */
+        final List<ArrayList<Double>> closableConfs = 
+                new ArrayList<ArrayList<Double>>();
+        
+        final Logger logger;
 
-                logger.log(Level.FINEST," srcRotBnd: " + srcRotBnd+NL
-                        +" endRotBnd: " + endRotBnd+NL
-                        +" rotAxis:   " + rotAxis+NL
-                        +" rotMat:    " + rotMat);
+    //------------------------------------------------------------------------
 
-                for (int ip = activeRot+2; ip<chain.size(); ip++)
+        RotamerSearch(double[] coords, boolean[] rotatable, double[] dihedrals,
+                double step, double[] conds, boolean doExhaustiveSearch, 
+                Logger logger)
+        {
+            this(coords, rotatable, dihedrals, new double[dihedrals.length], 
+                    step, conds, null, doExhaustiveSearch, -1, null, logger);
+        }
+        
+    //------------------------------------------------------------------------
+
+        private RotamerSearch(double[] coords, boolean[] rotatable, 
+                double[] dihedrals, double[] increments, double step, 
+                double[] conds, double[] lengthToEnd, 
+                boolean doExhaustiveSearch, int branchId, 
+                AtomicInteger firstSuccess, Logger logger)
+        {
+            this.coords = coords;
+            this.nPts = coords.length/3;
+            this.rotatable = rotatable;
+            this.dihedrals = dihedrals;
+            this.increments = increments;
+            this.step = step;
+            this.totStp = (int) (360.0 / step);
+            this.conds = conds;
+            this.doExhaustiveSearch = doExhaustiveSearch;
+            this.branchId = branchId;
+            this.firstSuccess = firstSuccess;
+            this.logger = logger;
+            if (lengthToEnd == null)
+            {
+                lengthToEnd = new double[nPts];
+                for (int i=nPts-2; i>=0; i--)
                 {
-                    Point3d pt = chain.get(ip);
-                    // Translate to origin of rot. axis while making vector
-                    Vector3d newVec = new Vector3d(pt.x - srcRotBnd.x,
-                                                   pt.y - srcRotBnd.y,
-                                                   pt.z - srcRotBnd.z);
-                    // Rotate
-                    rotMat.transform(newVec);
-
-                    // Translate back to original space
-                    pt.x = newVec.x + srcRotBnd.x;
-                    pt.y = newVec.y + srcRotBnd.y;
-                    pt.z = newVec.z + srcRotBnd.z;
+                    lengthToEnd[i] = lengthToEnd[i+1] + distance(i, i+1);
                 }
             }
+            this.lengthToEnd = lengthToEnd;
+        }
+        
+    //------------------------------------------------------------------------
 
-            if (activeRot+1 < dihedrals.size())
+        /**
+         * Makes an independent copy meant to explore one of the branches
+         * that can be explored in parallel.
+         */
+        RotamerSearch branch(int branchId, AtomicInteger firstSuccess)
+        {
+            return new RotamerSearch(Arrays.copyOf(coords, coords.length),
+                    rotatable, dihedrals, 
+                    Arrays.copyOf(increments, increments.length),
+                    step, conds, lengthToEnd, doExhaustiveSearch, branchId,
+                    firstSuccess, logger);
+        }
+        
+    //------------------------------------------------------------------------
+
+        /**
+         * @return <code>true</code> if a non-exhaustive search has already 
+         * found a closable conformation in a branch that precedes this one.
+         */
+        private boolean isSuperseded()
+        {
+            return branchId >= 0 && !doExhaustiveSearch 
+                    && firstSuccess.get() < branchId;
+        }
+
+    //------------------------------------------------------------------------
+
+        /**
+         * Explores all the rotamers of the given bond and of the following 
+         * ones.
+         * @param activeRot index of the currently active (rotating) bond.
+         * @return <code>true</code> when the last explored conformation is 
+         * closable, and thus when the first closable conformation is found 
+         * in a non-exhaustive search.
+         */
+        boolean search(int activeRot)
+        {
+            boolean res = false;
+            int totStp = this.totStp;
+            double[] rotMat = null;
+            if (!rotatable[activeRot])
             {
-                // Lauch exploration of next level
-                rec++;
-                int nextRot = activeRot+1;
-                res = hasClosableRotamer(chain,
-                                rotatability,
-                                dihedrals,
-                                dihIncement,
-                                nextRot,
-                                step,
-                                h1,h2,t1,t2,
-                                clsablConds,
-                                closableConfs,
-                                doExhaustiveSearch,
-                                writeAllConfs,
-                                logger,
-                                rec);
-                rec--;
+                totStp = 1;
+            } else {
+                // The rotation axis does not change while scanning this bond
+                rotMat = getRotationMatrix(activeRot, step);
             }
-            else
+            for (int i=0; i<totStp; i++)
             {
-                // Evaluate current conformation
-                Point3d pH1 = chain.get(h1);
-                Point3d pH2 = chain.get(h2);
-                Point3d pT1 = chain.get(t1);
-                Point3d pT2 = chain.get(t2);
-                RingClosure rc = new RingClosure(pH1,pH2,pT1,pT2);
-                res = rc.isClosable(clsablConds, logger);
-                if (res)
+                if (isSuperseded())
                 {
-                    // Store vector of dihedrals
-                    ArrayList<Double> conf = new ArrayList<Double>();
-                    for (int ib=0; ib<dihedrals.size(); ib++)
-                    {
-                        double tot = dihedrals.get(ib) + dihIncement.get(ib);
-                        if (tot > 180.0)
-                        {
-                            tot = tot - 360.0;
-                        }
-                        conf.add(tot);
-                    }
-                    closableConfs.add(conf);
-
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("Found closable path conformation!");
-                    if (writeAllConfs)
-                    {
-                        reportForDebug("closable.sdf",chain);
-                        sb.append(" Dihedrals:  " + dihedrals+NL);
-                        sb.append(" Increments: " + dihIncement+NL);
-                        sb.append(" Conf.:      " + conf+NL);
-                        sb.append(" See 'closable.sdf'"+NL);
-                    }
-                    logger.log(Level.FINE, sb.toString());
+                    break;
                 }
-                else
+                if (i != 0)
                 {
-                    if (writeAllConfs)
-                    {
-                        StringBuilder sb = new StringBuilder();
-                        reportForDebug("not_closable.sdf",chain);
-                        sb.append("Conformation of path is NOT "
-                                        +"closable! See 'not_closable.sdf'");
-                        sb.append(" Dihedrals:  " + dihedrals+NL);
-                        sb.append(" Increments: " + dihIncement+NL);
-                        sb.append(" Chain:"+NL);
-                        for (int ii=0; ii<chain.size(); ii++)
-                            sb.append("   " + chain.get(ii)+NL);
-                        logger.log(Level.FINE, sb.toString());
-                    }
+                    increments[activeRot] = increments[activeRot] + step;
+                    rotateBranch(activeRot, rotMat);
                 }
-            }
-    	    if (!doExhaustiveSearch)
-    	    {
-                if (res)
+                res = exploreBelow(activeRot);
+                if (!doExhaustiveSearch && res)
                 {
-                    logger.log(Level.FINE, "Stop recursive conf. search."
-            				   + " (rec.: " + rec + ")");
+                    logger.log(Level.FINE, "Stop recursive conf. search.");
                     break;
                 }
             }
+    
+            // reset
+            if (rotatable[activeRot])
+            {
+                increments[activeRot] = 
+                        increments[activeRot] - step*(totStp-1);
+                rotateBranch(activeRot, 
+                        getRotationMatrix(activeRot, -step * (totStp - 1)));
+            }
+            return res;
         }
+        
+    //------------------------------------------------------------------------
 
-        // reset
-        if (rotatability.get(activeRot))
+        /**
+         * Explores the rotamers of the bonds following the given one, or 
+         * evaluates the conformation if there are no more bonds.
+         */
+        boolean exploreBelow(int activeRot)
         {
-            dihIncement.set(activeRot,dihIncement.get(activeRot)-step*(totStp-1));
-
-            // Move back the whole branch of points that lie after the rotbond
-            Point3d srcRotBnd = chain.get(activeRot);
-            Point3d endRotBnd = chain.get(activeRot+1);
-            Vector3d rotAxis = new Vector3d(endRotBnd.x - srcRotBnd.x,
-                                            endRotBnd.y - srcRotBnd.y,
-                                            endRotBnd.z - srcRotBnd.z);
-            rotAxis.normalize();
-            Matrix3d rotMat = new Matrix3d();
-            rotMat.set(new AxisAngle4d(rotAxis,
-                                       Math.toRadians(-step * (totStp - 1))));
+            if (activeRot+1 < dihedrals.length)
+            {
+                if (!canBeClosable(activeRot))
+                {
+                    return false;
+                }
+                return search(activeRot+1);
+            }
+            return evaluateConformation();
+        }
+        
+    //------------------------------------------------------------------------
+
+        /**
+         * Checks if any rotation of the bonds following the given one can 
+         * possibly lead to closable conformations. Such rotations do not 
+         * move the points up to the second atom after the given bond, and do 
+         * not change the length of the chain from such point to the tail.
+         * Therefore, we have lower bounds for the distances between head 
+         * and tail points.
+         * @return <code>false</code> if we can exclude that any conformation 
+         * reachable by rotating the bonds after the given one is closable.
+         */
+        private boolean canBeClosable(int activeRot)
+        {
+            int pivot = activeRot + 2;
+            if (pivot >= nPts - 1)
+            {
+                return true;
+            }
+            int h1 = 1;
+            int h2 = 0;
+            int t1 = nPts - 2;
+            
+            // Tolerance for round-off in the bounds
+            double tol = 0.000001;
+            
+            double minH1T2 = distance(h1, pivot) - lengthToEnd[pivot];
+            if (minH1T2 - tol >= conds[1])
+            {
+                return false;
+            }
+            double minH2T1 = distance(h2, pivot) 
+                    - (lengthToEnd[pivot] - lengthToEnd[t1]);
+            if (minH2T1 - tol >= conds[3])
+            {
+                return false;
+            }
+            double minH2T2 = distance(h2, pivot) - lengthToEnd[pivot];
+            if (minH2T2 - tol >= conds[5])
+            {
+                return false;
+            }
+            return true;
+        }
+        
+    //------------------------------------------------------------------------
 
-            for (int ip = activeRot+2; ip<chain.size(); ip++)
+        /**
+         * Evaluates the current conformation and stores it, if closable.
+         * @return <code>true</code> if the conformation is closable.
+         */
+        private boolean evaluateConformation()
+        {
+            int h1 = 1;
+            int h2 = 0;
+            int t1 = nPts - 2;
+            int t2 = nPts - 1;
+            
+            // Same conditions as in RingClosure.isClosable()
+            double distH1T2 = distance(h1, t2);
+            double distH2T1 = distance(h2, t1);
+            double distH2T2 = distance(h2, t2);
+            if (!(distH1T2 < conds[1] && distH1T2 > conds[0] &&
+                    distH2T1 < conds[3] && distH2T1 > conds[2] &&
+                    distH2T2 < conds[5] && distH2T2 > conds[4]))
+            {
+                return false;
+            }
+            double[] h = normalizedVector(h1, h2);
+            double[] t = normalizedVector(t1, t2);
+            if ((h[0]*t[0] + h[1]*t[1] + h[2]*t[2]) > conds[6])
             {
-                Point3d pt = chain.get(ip);
-                // Translate to origin of rot. axis while making vector
-                Vector3d newVec = new Vector3d(pt.x - srcRotBnd.x,
-                                               pt.y - srcRotBnd.y,
-                                               pt.z - srcRotBnd.z);
-                // Rotate
-                rotMat.transform(newVec);
-
-                // Translate back to original space
-                pt.x = newVec.x + srcRotBnd.x;
-                pt.y = newVec.y + srcRotBnd.y;
-                pt.z = newVec.z + srcRotBnd.z;
+                return false;
             }
+            
+            // Store vector of dihedrals
+            ArrayList<Double> conf = new ArrayList<Double>();
+            for (int ib=0; ib<dihedrals.length; ib++)
+            {
+                double tot = dihedrals[ib] + increments[ib];
+                if (tot > 180.0)
+                {
+                    tot = tot - 360.0;
+                }
+                conf.add(tot);
+            }
+            closableConfs.add(conf);
+            
+            if (DEBUG)
+            {
+                reportForDebug("closable.sdf", coords);
+            }
+            logger.log(Level.FINE, "Found closable path conformation!");
+            return true;
+        }
+        
+    //------------------------------------------------------------------------
+
+        /**
+         * Builds the matrix for the rotation around the given bond.
+         * @param activeRot index of the bond.
+         * @param angle rotation angle (degrees).
+         * @return the rotation matrix as [m00,m01,m02,m10,...m22].
+         */
+        double[] getRotationMatrix(int activeRot, double angle)
+        {
+            int s = 3*activeRot;
+            int e = 3*(activeRot+1);
+            Vector3d rotAxis = new Vector3d(coords[e] - coords[s],
+                                            coords[e+1] - coords[s+1],
+                                            coords[e+2] - coords[s+2]);
+            rotAxis.normalize();
+            Matrix3d m = new Matrix3d();
+            m.set(new AxisAngle4d(rotAxis, Math.toRadians(angle)));
+            return new double[] {m.m00, m.m01, m.m02,
+                    m.m10, m.m11, m.m12,
+                    m.m20, m.m21, m.m22};
+        }
+        
+    //------------------------------------------------------------------------
+
+        /**
+         * Moves the whole branch of points that lie after the given bond.
+         * @param activeRot index of the bond.
+         * @param m the rotation matrix.
+         */
+        void rotateBranch(int activeRot, double[] m)
+        {
+            int s = 3*activeRot;
+            double ox = coords[s];
+            double oy = coords[s+1];
+            double oz = coords[s+2];
+            for (int ip = 3*(activeRot+2); ip<coords.length; ip=ip+3)
+            {
+                // Translate to origin of rot. axis
+                double x = coords[ip] - ox;
+                double y = coords[ip+1] - oy;
+                double z = coords[ip+2] - oz;
+                
+                // Rotate and translate back to original space
+                coords[ip] = (m[0]*x + m[1]*y + m[2]*z) + ox;
+                coords[ip+1] = (m[3]*x + m[4]*y + m[5]*z) + oy;
+                coords[ip+2] = (m[6]*x + m[7]*y + m[8]*z) + oz;
+            }
+        }
+        
+    //------------------------------------------------------------------------
+
+        private double distance(int i, int j)
+        {
+            double dx = coords[3*i] - coords[3*j];
+            double dy = coords[3*i+1] - coords[3*j+1];
+            double dz = coords[3*i+2] - coords[3*j+2];
+            return Math.sqrt(dx*dx + dy*dy + dz*dz);
+        }
+        
+    //------------------------------------------------------------------------
+
+        /**
+         * @return the normalized vector from the first to the second point.
+         */
+        private double[] normalizedVector(int from, int to)
+        {
+            double x = coords[3*to] - coords[3*from];
+            double y = coords[3*to+1] - coords[3*from+1];
+            double z = coords[3*to+2] - coords[3*from+2];
+            double norm = 1.0/Math.sqrt(x*x + y*y + z*z);
+            return new double[] {x*norm, y*norm, z*norm};
         }
-        return res;
     }
 
 //----------------------------------------------------------------------------
 
     /**
-     * Method for reporting a path of atoms (list of points) as SDF file
+     * Method for reporting a path of atoms (vector of coordinates) as SDF file
      */
 
-    private static void reportForDebug(String filename, List<Point3d> chain)
+    private static void reportForDebug(String filename, double[] coords)
     {
         IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
         IAtomContainer mol = builder.newAtomContainer();
-        for (int ia=0 ; ia<chain.size(); ia++)
+        for (int ia=0 ; ia<coords.length/3; ia++)
         {
-            Atom atm = new Atom("He",chain.get(ia));
+            Atom atm = new Atom("He",new Point3d(coords[3*ia], coords[3*ia+1],
+                    coords[3*ia+2]));
             mol.addAtom(atm);
             if (ia > 0)
                mol.addBond(ia-1,ia,IBond.Order.valueOf("SINGLE"));
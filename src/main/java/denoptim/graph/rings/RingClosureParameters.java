@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 
 import denoptim.exception.DENOPTIMException;
@@ -211,6 +212,17 @@ public class RingClosureParameters extends RunTimeParameters
      * Collection of information about ring-closability of graph substructures.
      */
     private RingClosuresArchive rcArchive;
+    
+    /**
+     * In-memory cache of the verdicts on the closability of chains.
+     */
+    private ClosabilityCache closabilityCache;
+    
+    /**
+     * Maximum number of entries in the cache of verdicts on the closability 
+     * of chains.
+     */
+    protected int closabilityCacheSize = ClosabilityCache.DEFAULTSIZE;
 
     /**
      * Flag controlling conformational search. If <code>true</code> the
@@ -233,6 +245,36 @@ public class RingClosureParameters extends RunTimeParameters
      * keyword providing the pathname of the root folder of the RCCs archive
      */
     protected boolean serializeRCCs = false;
+    
+    /**
+     * Maximum number of <code>RingClosingConformations</code> read from the
+     * archive and kept in memory.
+     */
+    protected int rccCacheSize = RingClosuresArchive.DEFAULTCACHESIZE;
+
+    /**
+     * Maximum number of threads used to explore the combinations of rings
+     * of a single graph.
+     */
+    protected int ringCombinationThreads = 1;
+
+    /**
+     * Pool of threads used to explore the combinations of rings. Created
+     * upon first request.
+     */
+    private ForkJoinPool ringCombinationPool;
+
+    /**
+     * Maximum number of threads used to search for closable conformations 
+     * of a single chain.
+     */
+    protected int rotamerSearchThreads = 1;
+
+    /**
+     * Pool of threads used to search for closable conformations. Created 
+     * upon first request.
+     */
+    private ForkJoinPool rotamerSearchPool;
 
 //-----------------------------------------------------------------------------
     
@@ -244,6 +286,7 @@ public class RingClosureParameters extends RunTimeParameters
     {
         super(ParametersType.RC_PARAMS);
         rcArchive = new RingClosuresArchive();
+        closabilityCache = new ClosabilityCache(closabilityCacheSize);
     }
 
 //----------------------------------------------------------------------------
@@ -435,6 +478,20 @@ public class RingClosureParameters extends RunTimeParameters
 	return serializeRCCs;
     }
 
+//----------------------------------------------------------------------------
+
+    public ClosabilityCache getClosabilityCache()
+    {
+        return closabilityCache;
+    }
+
+//----------------------------------------------------------------------------
+
+    public int getRCCCacheSize()
+    {
+        return rccCacheSize;
+    }
+
 //----------------------------------------------------------------------------
 
     public boolean checkInterdependentChains()
@@ -442,6 +499,53 @@ public class RingClosureParameters extends RunTimeParameters
 	return checkInterdepPaths;
     }
 
+//----------------------------------------------------------------------------
+
+    public int getRingCombinationThreads()
+    {
+        return ringCombinationThreads;
+    }
+
+//----------------------------------------------------------------------------
+
+    /**
+     * @return the pool of threads used to explore the combinations of rings.
+     * The pool is shared by all users of these parameters.
+     */
+    public synchronized ForkJoinPool getRingCombinationPool()
+    {
+        if (ringCombinationPool == null)
+        {
+            ringCombinationPool = new ForkJoinPool(ringCombinationThreads);
+        }
+        return ringCombinationPool;
+    }
+
+//----------------------------------------------------------------------------
+
+    public int getRotamerSearchThreads()
+    {
+        return rotamerSearchThreads;
+    }
+
+//----------------------------------------------------------------------------
+
+    /**
+     * @return the pool of threads used to search for closable conformations,
+     * or <code>null</code> if the search is meant to run in the calling 
+     * thread. The pool is shared by all users of these parameters.
+     */
+    public synchronized ForkJoinPool getRotamerSearchPool()
+    {
+        if (rotamerSearchThreads < 2)
+            return null;
+        if (rotamerSearchPool == null)
+        {
+            rotamerSearchPool = new ForkJoinPool(rotamerSearchThreads);
+        }
+        return rotamerSearchPool;
+    }
+
 //----------------------------------------------------------------------------
 
     public void interpretKeyword(String key, String value)
@@ -698,6 +802,50 @@ public class RingClosureParameters extends RunTimeParameters
             	serializeRCCs = true;
                 rccFolder = value;
                 break;
+            case "RCCCACHESIZE=":
+                try
+                {
+                    rccCacheSize = Integer.parseInt(value);
+                }
+                catch (Throwable t)
+                {
+                    msg = "Unable to understand value '" + value + "'";
+                    throw new DENOPTIMException(msg);
+                }
+                break;
+            case "CLOSABILITYCACHESIZE=":
+                try
+                {
+                    closabilityCacheSize = Integer.parseInt(value);
+                }
+                catch (Throwable t)
+                {
+                    msg = "Unable to understand value '" + value + "'";
+                    throw new DENOPTIMException(msg);
+                }
+                break;
+            case "RINGCOMBINATIONTHREADS=":
+                try
+                {
+                    ringCombinationThreads = Integer.parseInt(value);
+                }
+                catch (Throwable t)
+                {
+                    msg = "Unable to understand value '" + value + "'";
+                    throw new DENOPTIMException(msg);
+                }
+                break;
+            case "ROTAMERSEARCHTHREADS=":
+                try
+                {
+                    rotamerSearchThreads = Integer.parseInt(value);
+                }
+                catch (Throwable t)
+                {
+                    msg = "Unable to understand value '" + value + "'";
+                    throw new DENOPTIMException(msg);
+                }
+                break;
             case "EXHAUSTIVECONFSEARCH":
             	exhaustiveConfSrch = true;
             	break;
@@ -774,6 +922,20 @@ public class RingClosureParameters extends RunTimeParameters
             }
         }
 
+        if (ringCombinationThreads < 1)
+        {
+            msg = "The number of threads used to explore the combinations "
+                    + "of rings must be a positive integer.";
+            throw new DENOPTIMException(msg);
+        }
+
+        if (rotamerSearchThreads < 1)
+        {
+            msg = "The number of threads used to search for closable "
+                    + "conformations must be a positive integer.";
+            throw new DENOPTIMException(msg);
+        }
+
         if (minRingClosures > maxRingClosures)
         {
             msg = "Check values of minRingClosures and maxRingClosures";
@@ -809,6 +971,7 @@ public class RingClosureParameters extends RunTimeParameters
     public void processParameters() throws DENOPTIMException
     {
     	rcArchive = new RingClosuresArchive(this);
+    	closabilityCache = new ClosabilityCache(closabilityCacheSize);
     	processOtherParameters();
     }
     
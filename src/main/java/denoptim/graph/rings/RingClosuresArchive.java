@@ -19,9 +19,9 @@
 package denoptim.graph.rings;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -29,9 +29,14 @@ import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 
 import denoptim.exception.DENOPTIMException;
@@ -41,6 +46,19 @@ import denoptim.files.FileUtils;
 /**
  * Data structure to store and handle information about sub-structures 
  * (i.e., chains of fragments) and ring closure capability.
+ * <p>
+ * The archive is persisted as an index file (one line per chain) and, if
+ * serialization of the <code>RingClosingConformations</code> is enabled, 
+ * a single segment file collecting all the serialized 
+ * <code>RingClosingConformations</code>: each line of the index file 
+ * reports the offset and length of the corresponding bytes in the segment
+ * file. Lookups by chain ID are served by concurrent maps and never block.
+ * The <code>RingClosingConformations</code> read from the segment file are
+ * kept in a size-limited cache that discards the least recently used 
+ * entries. Appends are serialized among the threads of this JVM and, by 
+ * means of a blocking lock on the index file, among processes sharing the
+ * same archive. Entries appended by other processes are imported when 
+ * appending.</p>
  *
  * @author Marco Foscato
  */
@@ -48,9 +66,28 @@ import denoptim.files.FileUtils;
 public class RingClosuresArchive
 {
     /**
-     * Index of the next entry to be added to the archive
+     * Name of the segment file collecting the serialized 
+     * <code>RingClosingConformations</code>.
+     */
+    public static final String SEGMENTFILENAME = "RCCs.seg";
+    
+    /**
+     * Default maximum number of <code>RingClosingConformations</code> kept
+     * in memory.
+     */
+    public static final int DEFAULTCACHESIZE = 1000;
+    
+    /**
+     * Index of the next entry to be added to the archive. Changed only while
+     * holding {@link #writeLock}.
      */
     private int nextRccId = 0;
+    
+    /**
+     * Number of bytes of the index file that have already been imported.
+     * Changed only while holding {@link #writeLock}.
+     */
+    private long indexBytesRead = 0;
 
     /**
      * Data structure containing the main information about the
@@ -60,8 +97,14 @@ public class RingClosuresArchive
      * conformations from the archive of serialized objects, and 
      * (ii) the closability of the chain.
      */
-    private HashMap<String,ArrayList<String>> rccsPerChainId =
-							     new HashMap<>();
+    private Map<String,ArchiveRecord> rccsPerChainId =
+            new ConcurrentHashMap<String,ArchiveRecord>();
+    
+    /**
+     * Records indexed by their unique Id.
+     */
+    private Map<Integer,ArchiveRecord> recordsPerRccId =
+            new ConcurrentHashMap<Integer,ArchiveRecord>();
 
     /**
      * Data structure containing the library of 
@@ -72,36 +115,136 @@ public class RingClosuresArchive
      * identified by the molecular fragment Id in the proper library of
      * fragments.
      */
-    private HashMap<Integer,ArrayList<ClosableChain>> libCCxTPIdx =
-                                                             new HashMap<>();
+    private Map<Integer,List<ClosableChain>> libCCxTPIdx =
+            new ConcurrentHashMap<Integer,List<ClosableChain>>();
+    
+    /**
+     * Size-limited cache of the <code>RingClosingConformations</code> that
+     * can be recovered from the segment file.
+     */
+    private Map<Integer,RingClosingConformations> rccCache;
+    
+    /**
+     * <code>RingClosingConformations</code> that cannot be recovered from 
+     * the segment file because the latter is not in use. This is a
+     * size-limited cache: chains with evicted 
+     * <code>RingClosingConformations</code> are
+     * treated as not archived until their data is stored again.
+     */
+    private Map<Integer,RingClosingConformations> unsavedRCCs;
+    
+    /**
+     * Lock serializing appends among the threads of this JVM.
+     */
+    private final Object writeLock = new Object();
     
     /**
      * Parameters
      */
     private RingClosureParameters settings;
 
-  //----------------------------------------------------------------------------
+//----------------------------------------------------------------------------
+    
+    /**
+     * The information stored for each chain.
+     */
+    private static class ArchiveRecord
+    {
+        /**
+         * Unique Id of the entry.
+         */
+        final int rccId;
+        
+        /**
+         * Closability of the chain.
+         */
+        final boolean closable;
+        
+        /**
+         * Offset of the serialized <code>RingClosingConformations</code>
+         * in the segment file, or -1 if not in the segment file.
+         */
+        final long offset;
+        
+        /**
+         * Length of the serialized <code>RingClosingConformations</code>
+         * in the segment file.
+         */
+        final int length;
+        
+        /**
+         * <code>true</code> if the <code>RingClosingConformations</code> 
+         * are kept only in memory.
+         */
+        final boolean inMemoryOnly;
+        
+        ArchiveRecord(int rccId, boolean closable, long offset, int length)
+        {
+            this(rccId, closable, offset, length, false);
+        }
+        
+        ArchiveRecord(int rccId, boolean closable, long offset, int length,
+                boolean inMemoryOnly)
+        {
+            this.rccId = rccId;
+            this.closable = closable;
+            this.offset = offset;
+            this.length = length;
+            this.inMemoryOnly = inMemoryOnly;
+        }
+    }
+
+//----------------------------------------------------------------------------
 
     /**
-     * Construct an empty archive.
+     * Construct an empty archive that is kept in memory only and does not
+     * log.
      */
-    public RingClosuresArchive(){}
+    public RingClosuresArchive()
+    {
+        rccCache = makeCache(DEFAULTCACHESIZE);
+        unsavedRCCs = makeCache(DEFAULTCACHESIZE);
+    }
     
 //----------------------------------------------------------------------------
 
     /**
      * Construct the library of ring closing substructures from an
      * existing index file.
-     * @param rccIndex the index file.
+     * @param settings the parameters defining, among other things, the 
+     * index file.
      */
 
-    public RingClosuresArchive(RingClosureParameters settings) throws DENOPTIMException
+    public RingClosuresArchive(RingClosureParameters settings) 
+            throws DENOPTIMException
     {
+        this.settings = settings;
+        rccCache = makeCache(settings.getRCCCacheSize());
+        unsavedRCCs = makeCache(settings.getRCCCacheSize());
         if (FileUtils.checkExists(settings.getRCCLibraryIndexFile()))
         {
             readLibraryOfRCCs(settings.getRCCLibraryIndexFile());
         }
     }
+    
+//----------------------------------------------------------------------------
+
+    private static Map<Integer,RingClosingConformations> makeCache(
+            final int maxSize)
+    {
+        return Collections.synchronizedMap(
+                new LinkedHashMap<Integer,RingClosingConformations>(16, 
+                        0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer,RingClosingConformations> eldest)
+            {
+                return size() > maxSize;
+            }
+        });
+    }
 
 //----------------------------------------------------------------------------
 
@@ -122,7 +265,6 @@ public class RingClosuresArchive
                 String[] parts = line.trim().split("\\s+");
                 String chainIdStr = parts[0];
                 String rccIdNum = parts[1];
-                String closability = parts[2];
 
                 if (Integer.parseInt(rccIdNum) != nextRccId)
                 {
@@ -139,7 +281,7 @@ public class RingClosuresArchive
                         throw new DENOPTIMException(msg);
                 }
 
-                addRecord(chainIdStr,rccIdNum,closability);
+                addRecord(chainIdStr, parseRecord(parts));
             }
         }
         catch (NumberFormatException | IOException nfe)
@@ -166,49 +308,87 @@ public class RingClosuresArchive
             String err = "No entry taken from RCC index file: ";
             throw new DENOPTIMException(err + " " + filename);
         }
+        indexBytesRead = new File(filename).length();
     }
-
+    
 //----------------------------------------------------------------------------
 
-    private void addRecord(String chainId, String rccIdNum,
-            String closability) throws DENOPTIMException
+    /**
+     * Parses a line of the index file. Lines have the format
+     * <code>chainId rccId closability [offset length]</code>, where offset
+     * and length are present only for entries stored in the segment file.
+     */
+    private static ArchiveRecord parseRecord(String[] parts)
     {
-        // Create record for RCC
-        ArrayList<String> record = new ArrayList<String>();
-        record.add(rccIdNum);
-        record.add(closability);
+        int rccId = Integer.parseInt(parts[1]);
+        boolean closable = parts[2].equals("T");
+        long offset = -1;
+        int length = 0;
+        if (parts.length > 4)
+        {
+            offset = Long.parseLong(parts[3]);
+            length = Integer.parseInt(parts[4]);
+        }
+        return new ArchiveRecord(rccId, closable, offset, length);
+    }
 
-        // Store (closability,rccIndex)-x-chainID
-        rccsPerChainId.put(chainId,record);
+//----------------------------------------------------------------------------
 
+    private void addRecord(String chainId, ArchiveRecord record) 
+            throws DENOPTIMException
+    {
         // Store (closable chain)-x-vertexMolId
-        if (closability.equals("T"))
+        if (record.closable)
         {
 //TODO per each fragment with more than 3 APs store the link to a ClosableChain
 // not a new one. Might need to store the number of APs as a property of
 // the ChainLinks, that is, change to format of the chainId string to include also that info
             ClosableChain cc = new ClosableChain(chainId);
             int tpId = cc.getTurningPointIdx();
-            if (libCCxTPIdx.containsKey(tpId))
-            {
-                libCCxTPIdx.get(tpId).add(cc);
-            }
-            else
-            {
-                ArrayList<ClosableChain> lstCC = new ArrayList<ClosableChain>();
-                lstCC.add(cc);
-                libCCxTPIdx.put(tpId,lstCC);
-            }
+            libCCxTPIdx.computeIfAbsent(tpId, 
+                    k -> new CopyOnWriteArrayList<ClosableChain>()).add(cc);
         }
+        
+        // Store (closability,rccIndex)-x-chainID
+        recordsPerRccId.put(record.rccId, record);
+        rccsPerChainId.put(chainId, record);
 
         // Increment counter
-        nextRccId++;
+        nextRccId = record.rccId + 1;
+    }
+    
+//----------------------------------------------------------------------------
+
+    /**
+     * Imports the entries that have been appended to the index file by other
+     * processes since the last time we read it. 
+     * Must be called while holding the lock on the index file.
+     */
+    private void importNewEntries(RandomAccessFile indexFile) 
+            throws IOException, DENOPTIMException
+    {
+        long length = indexFile.length();
+        if (length <= indexBytesRead)
+            return;
+        indexFile.seek(indexBytesRead);
+        String line = null;
+        while ((line = indexFile.readLine()) != null)
+        {
+            if (line.trim().length() == 0)
+                continue;
+            String[] parts = line.trim().split("\\s+");
+            if (!rccsPerChainId.containsKey(parts[0]))
+                addRecord(parts[0], parseRecord(parts));
+        }
+        indexBytesRead = length;
     }
 
 //----------------------------------------------------------------------------
 
     /**
-     * Append a new closable chain entry to the archive
+     * Append a new closable chain entry to the archive. 
+     * If the chain has meanwhile been added by another thread or process, 
+     * the archive is not changed.
      * @param chainId the string representing the chain of fragments
      * @param closable <code>true</code> for verified closable chains
      * @param rcc the ensemble of <code>RingClosingConformations</code> of
@@ -218,115 +398,146 @@ public class RingClosuresArchive
     public void storeEntry(String chainId, boolean closable,
             RingClosingConformations rcc) throws DENOPTIMException
     {
-    	String closability = "F";
-    	if (closable)
-    	{
-    	    closability = "T";
-    	}
-
-        File file = new File(settings.getRCCLibraryIndexFile());
-        long fileLength = file.length();
-        RandomAccessFile rafile = null;
-        FileChannel channel = null;
-        FileLock lock = null;
-        try
+        synchronized (writeLock)
         {
-            // Lock the index file
-            rafile = new RandomAccessFile(file, "rw");
-            channel = rafile.getChannel();
-
-            int nTry = 0;
-            while (true)
+            if (settings == null 
+                    || settings.getRCCLibraryIndexFile().isEmpty())
             {
-                try
+                if (restoreIfArchived(chainId, rcc))
+                    return;
+                int rccId = nextRccId;
+                if (closable)
+                    unsavedRCCs.put(rccId, rcc);
+                addRecord(chainId, new ArchiveRecord(rccId, closable, -1, 0,
+                        true));
+                return;
+            }
+            
+            // The blocking lock waits for other processes without spinning.
+            // Threads of this JVM do not get here concurrently, so no 
+            // OverlappingFileLockException can occur.
+            try (RandomAccessFile rafile = new RandomAccessFile(
+                    settings.getRCCLibraryIndexFile(), "rw");
+                    FileChannel channel = rafile.getChannel();
+                    FileLock lock = channel.lock())
+            {
+                importNewEntries(rafile);
+                if (restoreIfArchived(chainId, rcc))
                 {
-                    lock = channel.tryLock();
-                    if (lock != null)
-                        break;
+                    settings.getLogger().log(Level.FINE, "Chain " + chainId 
+                            + " already archived.");
+                    return;
                 }
-                catch (OverlappingFileLockException e)
+                
+                int rccId = nextRccId;
+                long offset = -1;
+                int length = 0;
+                boolean inMemoryOnly = false;
+                if (closable)
                 {
-                    nTry++;
-                    settings.getLogger().log(Level.WARNING,"Attempt " + nTry
-                             + " to get lock " + "for '"
-                             + settings.getRCCLibraryIndexFile()
-                             + "' failed. ");
-                }
-            }
-        
-            if (rccsPerChainId.containsKey(chainId))
-            {
-                throw new DENOPTIMException("Found duplicate in library of "
-                            + " RingClosingConformations");
-            }
-
-            // Add record in maps (objects kept in memory)
-            String rccId = Integer.toString(nextRccId);
-            addRecord(chainId,rccId,closability);
-
-            // Update RCC index file
-            if (closable)
-            {
-                rafile.seek(fileLength);
-                rafile.writeBytes(chainId + " " + rccId + " " + "T" +"\n");
-                channel.force(true);
-        		if (settings.serializeRCCs())
-        		{
-                    String rccFileName = settings.getRCCLibraryFolder()
-                            + "/" + rccId + ".ser";
-                    FileOutputStream fos = null;
-                    ObjectOutputStream oos = null;
-                    try
-                    {
-                        fos = new FileOutputStream(rccFileName);
-                        oos = new ObjectOutputStream(fos);
-                        oos.writeObject(rcc);
-                        oos.close();
-                        settings.getLogger().log(Level.FINE,
-                                "Serialization to file " + rccFileName);
-                    }
-                    catch (Throwable t2)
-                    {
-                        throw new DENOPTIMException(t2);
-                    }
-                    finally
+                    if (settings.serializeRCCs())
                     {
-                        fos.flush();
-                        fos.close();
-                        fos = null;
+                        byte[] data = serialize(rcc);
+                        offset = appendToSegment(data);
+                        length = data.length;
+                        rccCache.put(rccId, rcc);
+                    } else {
+                        unsavedRCCs.put(rccId, rcc);
+                        inMemoryOnly = true;
                     }
-        		}
+                }
+                
+                // Update RCC index file
+                StringBuilder sb = new StringBuilder();
+                sb.append(chainId).append(" ").append(rccId).append(" ");
+                sb.append(closable ? "T" : "F");
+                if (offset >= 0)
+                {
+                    sb.append(" ").append(offset).append(" ").append(length);
+                }
+                sb.append("\n");
+                rafile.seek(rafile.length());
+                rafile.writeBytes(sb.toString());
+                channel.force(true);
+                indexBytesRead = rafile.length();
+
+                // Add record in maps (objects kept in memory)
+                addRecord(chainId, new ArchiveRecord(rccId, closable, offset,
+                        length, inMemoryOnly));
             }
-            else 
+            catch (Throwable t)
             {
-                rafile.seek(fileLength);
-                rafile.writeBytes(chainId + " " + rccId + " " + "F" +"\n");
-                channel.force(true);
+                 throw new DENOPTIMException("Exception while trying to store " 
+                         + chainId,t);
             }
         }
-        catch (Throwable t)
+    }
+    
+//----------------------------------------------------------------------------
+
+    /**
+     * Checks if a chain is already archived and, if its 
+     * <code>RingClosingConformations</code> have been evicted from memory, 
+     * puts back the given ones. Must be called holding {@link #writeLock}.
+     * @return <code>true</code> if the chain is already archived.
+     */
+    private boolean restoreIfArchived(String chainId, 
+            RingClosingConformations rcc)
+    {
+        ArchiveRecord record = rccsPerChainId.get(chainId);
+        if (record == null)
+            return false;
+        if (!isRetrievable(record))
+            unsavedRCCs.put(record.rccId, rcc);
+        return true;
+    }
+    
+//----------------------------------------------------------------------------
+
+    /**
+     * @return <code>false</code> if the <code>RingClosingConformations</code>
+     * of the given record were kept only in memory and have been evicted.
+     */
+    private boolean isRetrievable(ArchiveRecord record)
+    {
+        return !(record.closable && record.inMemoryOnly 
+                && !unsavedRCCs.containsKey(record.rccId));
+    }
+    
+//----------------------------------------------------------------------------
+
+    private static byte[] serialize(RingClosingConformations rcc) 
+            throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos))
         {
-             throw new DENOPTIMException("Exception while trying to store " 
-                     + chainId,t);
+            oos.writeObject(rcc);
         }
-        finally
+        return baos.toByteArray();
+    }
+    
+//----------------------------------------------------------------------------
+
+    /**
+     * Appends data to the segment file. Must be called while holding the lock
+     * on the index file.
+     * @return the offset of the appended data.
+     */
+    private long appendToSegment(byte[] data) throws IOException
+    {
+        String segFileName = settings.getRCCLibraryFolder() 
+                + System.getProperty("file.separator") + SEGMENTFILENAME;
+        try (RandomAccessFile segFile = new RandomAccessFile(segFileName, 
+                "rw"))
         {
-            try
-            {
-                if (channel != null)
-                    channel.close();
-                if (rafile != null)
-                    rafile.close();
-                if (lock != null && lock.isValid())
-                    lock.release();
-            }
-            catch (Throwable t)
-            {
-                throw new DENOPTIMException("RingClosuresArchive is unable "
-                        + "to unlock file '" 
-            			+ settings.getRCCLibraryIndexFile() 
-            			+ "'. " + t);
-            }
+            long offset = segFile.length();
+            segFile.seek(offset);
+            segFile.write(data);
+            segFile.getChannel().force(true);
+            settings.getLogger().log(Level.FINE, "Serialization to file " 
+                    + segFileName + " at " + offset);
+            return offset;
         }
     }
 
@@ -341,9 +552,10 @@ public class RingClosuresArchive
 
     public ArrayList<ClosableChain> getCCFromTurningPointId(int tpId)
     {
-        if (libCCxTPIdx.containsKey(tpId))
+        List<ClosableChain> ccs = libCCxTPIdx.get(tpId);
+        if (ccs != null)
         {
-            return libCCxTPIdx.get(tpId);
+            return new ArrayList<ClosableChain>(ccs);
         }
         return new ArrayList<ClosableChain>();
     }
@@ -362,7 +574,7 @@ public class RingClosuresArchive
     	String result = "";
     	for (String altChId : chain.getAllAlternativeChainIDs())
         {
-    	    if (rccsPerChainId.containsKey(altChId))
+    	    if (containsChainId(altChId))
     	    {
     	        result = altChId;
     		break;	    
@@ -371,6 +583,20 @@ public class RingClosuresArchive
     	return result;
     }
 
+//----------------------------------------------------------------------------
+
+    /**
+     * @param chainId the string representing the chain of fragments.
+     * @return <code>true</code> if the chain is archived and its 
+     * <code>RingClosingConformations</code> can be retrieved.
+     */
+
+    public boolean containsChainId(String chainId)
+    {
+        ArchiveRecord record = rccsPerChainId.get(chainId);
+        return record != null && isRetrievable(record);
+    }
+
 //----------------------------------------------------------------------------
 
     /**
@@ -379,9 +605,7 @@ public class RingClosuresArchive
 
     public boolean getClosabilityOfChain(String chainId)
     {
-        ArrayList<String> rccRecord = rccsPerChainId.get(chainId);
-        String closability = rccRecord.get(1);
-        return closability.equals("T");
+        return rccsPerChainId.get(chainId).closable;
     }
 
 //----------------------------------------------------------------------------
@@ -394,15 +618,13 @@ public class RingClosuresArchive
     public RingClosingConformations getRCCsOfChain(String chainId)
                                                      throws DENOPTIMException
     {
-        ArrayList<String> rccRecord = rccsPerChainId.get(chainId);
-        int rccId = Integer.parseInt(rccRecord.get(0));
-        String closability = rccRecord.get(1);
+        ArchiveRecord rccRecord = rccsPerChainId.get(chainId);
 
         RingClosingConformations rcc = new RingClosingConformations();
-        if (closability.equals("T"))
+        if (rccRecord.closable)
         {
-            rcc = getRCCsFromArchive(rccId);
-            if (settings.getVerbosity() > 1)
+            rcc = getRCCsFromArchive(rccRecord.rccId);
+            if (settings != null && settings.getVerbosity() > 1)
             {
                 settings.getLogger().log(Level.FINE, 
                         "Path is closable (from DB)");
@@ -410,7 +632,7 @@ public class RingClosuresArchive
         }
         else
         {
-            if (settings.getVerbosity() > 1)
+            if (settings != null && settings.getVerbosity() > 1)
             {
                 settings.getLogger().log(Level.FINE, 
                         "Path is NOT closable (from DB)");
@@ -422,7 +644,8 @@ public class RingClosuresArchive
 //----------------------------------------------------------------------------
 
     /**
-     * Get serialized <code>RingClosingConformations</code> from archive
+     * Get <code>RingClosingConformations</code> from archive. These are 
+     * taken from memory, if available, or from the serialized objects.
      * @param rccId the index identifying the 
      * <code>RingClosingConformations</code> in the archive 
      */
@@ -430,43 +653,53 @@ public class RingClosuresArchive
     public RingClosingConformations getRCCsFromArchive(int rccId)
                                                      throws DENOPTIMException
     {
-        RingClosingConformations rcc = new RingClosingConformations();
+        RingClosingConformations rcc = rccCache.get(rccId);
+        if (rcc != null)
+            return rcc;
+        rcc = unsavedRCCs.get(rccId);
+        if (rcc != null)
+            return rcc;
         
-        String rccFileName1 = settings.getRCCLibraryFolder() + 
-                System.getProperty("file.separator") + rccId + ".ser";
-        FileInputStream fis = null;
-        ObjectInputStream ois = null;
-        boolean recoveringDone = false;
-        try
+        ArchiveRecord record = recordsPerRccId.get(rccId);
+        if (settings == null || (record != null && record.inMemoryOnly))
         {
-            fis = new FileInputStream(rccFileName1);
-            ois = new ObjectInputStream(fis);
-            rcc = (RingClosingConformations) ois.readObject();
-            ois.close();
-            settings.getLogger().log(Level.FINE, 
-                    "Got serialized RCC from " + rccFileName1);
-            recoveringDone = true;
+            throw new DENOPTIMException("RingClosingConformations " + rccId
+                    + " are not available in memory and cannot be read "
+                    + "from file.");
         }
-        catch (Throwable t2)
-        {
-            throw new DENOPTIMException(t2);
-        }
-        finally
+        byte[] data = null;
+        String rccFileName = settings.getRCCLibraryFolder() 
+                + System.getProperty("file.separator");
+        try
         {
-            try
+            if (record != null && record.offset >= 0)
             {
-                fis.close();
+                rccFileName = rccFileName + SEGMENTFILENAME;
+                data = new byte[record.length];
+                try (RandomAccessFile segFile = new RandomAccessFile(
+                        rccFileName, "r"))
+                {
+                    segFile.seek(record.offset);
+                    segFile.readFully(data);
+                }
+            } else {
+                // Archives written before the introduction of the segment file
+                rccFileName = rccFileName + rccId + ".ser";
+                data = Files.readAllBytes(new File(rccFileName).toPath());
             }
-            catch (Throwable t)
+            try (ObjectInputStream ois = new ObjectInputStream(
+                    new ByteArrayInputStream(data)))
             {
-                throw new DENOPTIMException(t);
+                rcc = (RingClosingConformations) ois.readObject();
             }
         }
-        if (!recoveringDone)
+        catch (Throwable t2)
         {
-            String s = "Failed attempt to recover RCC. Check code.";
-            throw new DENOPTIMException(s);
+            throw new DENOPTIMException(t2);
         }
+        settings.getLogger().log(Level.FINE, 
+                "Got serialized RCC from " + rccFileName);
+        rccCache.put(rccId, rcc);
         return rcc;
     }
 
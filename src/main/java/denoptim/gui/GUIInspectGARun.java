@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -88,6 +89,7 @@ import denoptim.files.FileUtils;
 import denoptim.graph.CandidateLW;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.CounterID;
+import denoptim.logging.MonitorRecordsReader;
 import denoptim.utils.GeneralUtils;
 
 
@@ -159,6 +161,28 @@ public class GUIInspectGARun extends GUICardPanel
 	
 	
 	private final String NL = System.getProperty("line.separator");
+	
+	/**
+	 * Maximum number of monitor files for which we keep a reader.
+	 */
+	private static final int MAXMONITORREADERS = 10;
+	
+	/**
+	 * Readers of the monitor files of the most recently inspected runs. The
+	 * least recently used reader is forgotten when there are more than 
+	 * {@link #MAXMONITORREADERS} readers.
+	 */
+	private static final Map<File,MonitorRecordsReader> monitorReaders = 
+	        new LinkedHashMap<File,MonitorRecordsReader>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<File,MonitorRecordsReader> eldest)
+                {
+                    return size() > MAXMONITORREADERS;
+                }
+            };
 
 	/**
 	 * Button offering the possibility to load the graph inspector for a 
@@ -1099,11 +1123,24 @@ public class GUIInspectGARun extends GUICardPanel
 	                + "not found."));
 	        return;
 	    }
-	    ArrayList<String> lines = null;
+	    // The file is append-only, so readers are kept and, when the same 
+	    // run is inspected again, only the records appended in the meantime
+	    // are read.
+	    ArrayList<String> lines = new ArrayList<String>();
 	    try
         {
-            lines = DenoptimIO.readList(eaMonitorDumps.getAbsolutePath());
-        } catch (DENOPTIMException e1)
+	        MonitorRecordsReader reader;
+	        synchronized (monitorReaders)
+	        {
+	            reader = monitorReaders.computeIfAbsent(
+	                    eaMonitorDumps.getAbsoluteFile(), 
+	                    f -> new MonitorRecordsReader(f));
+	        }
+	        reader.update();
+	        if (reader.getHeader() != null)
+	            lines.add(reader.getHeader());
+	        lines.addAll(reader.getSummaryRecords());
+        } catch (IOException e1)
         {
             e1.printStackTrace();
             rightDownPanel.add(new JLabel("Cannot read " + eaMonitorDumps));
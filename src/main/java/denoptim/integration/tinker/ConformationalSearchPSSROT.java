@@ -82,6 +82,30 @@ public class ConformationalSearchPSSROT
             List<String> subParamsInit, List<String> subParamsRest,
             String pssExePathName, String xyzintPathName, String workDir, 
             int taskId, Logger logger) throws DENOPTIMException, TinkerException
+    {
+        performPSSROT(mols, runLabel, ffFilePathName, keyFileLines, 
+                subParamsInit, subParamsRest, pssExePathName, xyzintPathName, 
+                workDir, taskId, logger, false);
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Performs PSSROT conformational search on the given list of chemical 
+     * objects. See 
+     * {@link #performPSSROT(ArrayList, String, String, List, List, List, 
+     * String, String, String, int, Logger)}.
+     * @param useExternalXYZINT use <code>true</code> to convert the
+     * Cartesian coordinates produced by PSSROT into internal coordinates by
+     * running Tinker's <code>xyzint</code>, rather than within this JVM.
+     */
+
+    public static void performPSSROT(ArrayList<ChemicalObjectModel> mols, 
+            String runLabel, String ffFilePathName, List<String> keyFileLines, 
+            List<String> subParamsInit, List<String> subParamsRest,
+            String pssExePathName, String xyzintPathName, String workDir, 
+            int taskId, Logger logger, boolean useExternalXYZINT) 
+                    throws DENOPTIMException, TinkerException
     {
         for (int i=0; i<mols.size(); i++)
         {
@@ -95,7 +119,7 @@ public class ConformationalSearchPSSROT
         		        runLabel, ffFilePathName, keyFileLines,
         		        subParamsInit, subParamsRest,
         		        pssExePathName, xyzintPathName,
-        		        workDir, taskId, logger);
+        		        workDir, taskId, logger, useExternalXYZINT);
     	    } else {
         		logger.log(Level.INFO, "Field MOL_ERROR is NOT null: skiping "
         		        + "conformational search. Reason: " + molErroProp);
@@ -141,6 +165,32 @@ public class ConformationalSearchPSSROT
             String pssrotPathName, String xyzintPathName, String workDir, 
             int taskId, Logger logger)
 						throws DENOPTIMException, TinkerException
+    {
+        performPSSROT(chemObj, idm, runLabel, ffFilePathName, keyFileLines, 
+                subParamsInit, subParamsRest, pssrotPathName, xyzintPathName, 
+                workDir, taskId, logger, false);
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Performs PSSROT conformational search on the given chemical object.
+     * See {@link #performPSSROT(ChemicalObjectModel, int, String, String, 
+     * List, List, List, String, String, String, int, Logger)}.
+     * @param useExternalXYZINT use <code>true</code> to convert the
+     * Cartesian coordinates produced by PSSROT into internal coordinates by
+     * running Tinker's <code>xyzint</code>. Otherwise, the conversion is done
+     * within this JVM, and <code>xyzint</code> is used only if such 
+     * conversion fails.
+     */
+
+    public static void performPSSROT(ChemicalObjectModel chemObj, 
+            int idm, String runLabel, 
+            String ffFilePathName, List<String> keyFileLines, 
+            List<String> subParamsInit, List<String> subParamsRest,
+            String pssrotPathName, String xyzintPathName, String workDir, 
+            int taskId, Logger logger, boolean useExternalXYZINT)
+                        throws DENOPTIMException, TinkerException
     {
         logger.log(Level.INFO, "Start conformational search on mol: " + idm);
 
@@ -266,48 +316,71 @@ public class ConformationalSearchPSSROT
     	// But before that, need to handle case where Tinker splits line in two
     	fixLongeLinesInXYZ(ocsIntfile);
 
-    	String newTnkICLog = workDir + FSEP + molName + "_"+runLabel + idm 
-    	        + ".log2";
-        String ocsID = "" + taskId;
-        String ocsCmd = xyzintPathName + " " + ocsIntfile + " "
-                        + " T " //set use of template 
-                        + " > " + newTnkICLog;
-        logger.log(Level.INFO, "CMD: " + ocsCmd+" TskID: "+ocsID);
-        ProcessHandler ocsPh = new ProcessHandler(ocsCmd, ocsID);
-        try
+        // Convert XYZ into INT within this JVM, unless we are asked to use
+        // Tinker's xyzint, or the conversion fails.
+        boolean converted = false;
+        if (!useExternalXYZINT)
         {
-            ocsPh.runProcessInBASH();
-            if (ocsPh.getExitCode() != 0)
+            try
             {
-                String msg = "XYZINT (post conf.search) failed for " + molName;
-                throw new DENOPTIMException(msg + NL + ocsPh.getErrorOutput());
+                TinkerUtils.setICFromXYZ(tmol, 
+                        TinkerUtils.readTinkerXYZ(ocsIntfile));
+                converted = true;
+            } catch (DENOPTIMException de)
+            {
+                logger.log(Level.WARNING, "Could not convert XYZ to INT for "
+                        + molName + " within the JVM. Using xyzint. Cause: "
+                        + de.getMessage());
             }
         }
-        catch (Exception ex)
+        if (!converted)
         {
-            throw new DENOPTIMException(ex);
-        }
+            String newTnkICLog = workDir + FSEP + molName + "_" + runLabel 
+                    + idm + ".log2";
+            String ocsID = "" + taskId;
+            String ocsCmd = xyzintPathName + " " + ocsIntfile + " "
+                            + " T " //set use of template 
+                            + " > " + newTnkICLog;
+            logger.log(Level.INFO, "CMD: " + ocsCmd+" TskID: "+ocsID);
+            ProcessHandler ocsPh = new ProcessHandler(ocsCmd, ocsID);
+            try
+            {
+                ocsPh.runProcessInBASH();
+                if (ocsPh.getExitCode() != 0)
+                {
+                    String msg = "XYZINT (post conf.search) failed for " 
+                            + molName;
+                    throw new DENOPTIMException(msg + NL 
+                            + ocsPh.getErrorOutput());
+                }
+            }
+            catch (Exception ex)
+            {
+                throw new DENOPTIMException(ex);
+            }
         
-        // Conversion can fail if system is beyond the capabilities of Tinker.
-        // Such capabilities can be expanded by altering Tinker's parameters 
-        // such as maxval and maxtors (and others?)
-        String newTnkIC = workDir + FSEP + molName + "_" + runLabel + idm 
-                + ".int_2";
-        TinkerUtils.ensureOutputExistsOrRelayError(newTnkIC, newTnkICLog, 
-                "convert xyz to int for " + runLabel + "job");
+            // Conversion can fail if system is beyond the capabilities of 
+            // Tinker. Such capabilities can be expanded by altering Tinker's 
+            // parameters such as maxval and maxtors (and others?)
+            String newTnkIC = workDir + FSEP + molName + "_" + runLabel + idm 
+                    + ".int_2";
+            TinkerUtils.ensureOutputExistsOrRelayError(newTnkIC, newTnkICLog, 
+                    "convert xyz to int for " + runLabel + "job");
         
-        // Update local molecular representation with output from PSSROT
-        TinkerMolecule tmpTmol = TinkerUtils.readTinkerIC(newTnkIC);
-        ArrayList<TinkerAtom> lstAtoms = tmpTmol.getAtoms();
-        for (int i=0; i<lstAtoms.size(); i++)
-        {
-            TinkerAtom ta = lstAtoms.get(i);
-            tmol.getAtom(i+1).setDistAngle(ta.getDistAngle());
+            // Update local molecular representation with output from PSSROT
+            TinkerMolecule tmpTmol = TinkerUtils.readTinkerIC(newTnkIC);
+            ArrayList<TinkerAtom> lstAtoms = tmpTmol.getAtoms();
+            for (int i=0; i<lstAtoms.size(); i++)
+            {
+                TinkerAtom ta = lstAtoms.get(i);
+                tmol.getAtom(i+1).setDistAngle(ta.getDistAngle());
+            }
         }
         chemObj.updateXYZFromINT();
 
         // Cleanup
-        FileUtils.deleteFilesContaining(workDir,molName + "_" + runLabel + idm);
+        FileUtils.deleteFilesContaining(workDir,
+                molName + "_" + runLabel + idm + ".");
     }
 
 //------------------------------------------------------------------------------    
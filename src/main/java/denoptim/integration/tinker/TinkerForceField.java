@@ -0,0 +1,327 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.integration.tinker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.files.FileContentCache;
+
+/**
+ * Immutable representation of the content of a Tinker force field parameters
+ * file. Instances are obtained with {@link #getForceField(String)}, so that
+ * the many Tinker jobs that use the same parameters file, possibly from
+ * different threads, share one parsed copy of it. An edited parameters file
+ * is parsed anew (see {@link FileContentCache}).
+ */
+
+public class TinkerForceField
+{
+    /**
+     * Force fields that have been parsed.
+     */
+    private static final FileContentCache<TinkerForceField> FORCEFIELDS =
+            new FileContentCache<TinkerForceField>(TinkerForceField::new);
+
+    private static final String NL = System.getProperty("line.separator");
+
+    /**
+     * Absolute pathname of the source file.
+     */
+    private final String pathname;
+
+    /**
+     * Definitions of atom types in order of appearance.
+     */
+    private final List<AtomType> atomTypes;
+
+    /**
+     * Atom types indexed by atom symbol. If a symbol is used by more than one
+     * atom type, the last one in the file is used.
+     */
+    private final Map<String,Integer> atomTypesPerSymbol;
+
+    /**
+     * All other records of the file, i.e., the whitespace-separated
+     * fields of each line, indexed by the lower case keyword at the
+     * beginning of the line.
+     */
+    private final Map<String,List<String[]>> records;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Definition of an atom type, i.e., a line starting with
+     * <code>atom</code>.
+     */
+    public static class AtomType
+    {
+        private final int type;
+        private final String symbol;
+        private final String label;
+        private final int atomicNumber;
+        private final double atomicWeight;
+        private final int valence;
+
+        public AtomType(int type, String symbol, String label,
+                int atomicNumber, double atomicWeight, int valence)
+        {
+            this.type = type;
+            this.symbol = symbol;
+            this.label = label;
+            this.atomicNumber = atomicNumber;
+            this.atomicWeight = atomicWeight;
+            this.valence = valence;
+        }
+
+        public int getType()
+        {
+            return type;
+        }
+
+        public String getSymbol()
+        {
+            return symbol;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        public int getAtomicNumber()
+        {
+            return atomicNumber;
+        }
+
+        public double getAtomicWeight()
+        {
+            return atomicWeight;
+        }
+
+        public int getValence()
+        {
+            return valence;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private TinkerForceField(File file) throws DENOPTIMException
+    {
+        this.pathname = file.getAbsolutePath();
+
+        List<AtomType> types = new ArrayList<AtomType>();
+        Map<String,Integer> typesPerSymbol = new HashMap<String,Integer>();
+        Map<String,List<String[]>> recs =
+                new LinkedHashMap<String,List<String[]>>();
+
+        BufferedReader br = null;
+        String line;
+        try
+        {
+            br = new BufferedReader(new FileReader(file));
+            while ((line = br.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                if (line.startsWith("atom"))
+                {
+                    AtomType at = parseAtomType(line);
+                    types.add(at);
+                    typesPerSymbol.put(at.getSymbol(), at.getType());
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                String key = fields[0].toLowerCase();
+                List<String[]> lst = recs.get(key);
+                if (lst == null)
+                {
+                    lst = new ArrayList<String[]>();
+                    recs.put(key, lst);
+                }
+                lst.add(fields);
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException(ioe);
+        }
+        finally
+        {
+            try
+            {
+                if (br != null)
+                {
+                    br.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+
+        if (types.isEmpty())
+        {
+            String msg = "No data found in file: " + pathname;
+            throw new DENOPTIMException(msg);
+        }
+
+        for (Map.Entry<String,List<String[]>> e : recs.entrySet())
+        {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        this.atomTypes = Collections.unmodifiableList(types);
+        this.atomTypesPerSymbol = Collections.unmodifiableMap(typesPerSymbol);
+        this.records = Collections.unmodifiableMap(recs);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Parses the definition of an atom type. Format:
+     * <code>atom type symbol "label" Z atomic_weight connectivity</code>.
+     */
+    private static AtomType parseAtomType(String line)
+            throws DENOPTIMException
+    {
+        try
+        {
+            String[] dq = line.split("\"");
+            String[] str1 = dq[0].trim().split("\\s+");
+            int type = Integer.parseInt(str1[1]);
+            String symbol = str1[2];
+            String label = "";
+            int z = -1;
+            double weight = -1.0;
+            int cn = -1;
+            if (dq.length > 2)
+            {
+                label = dq[1];
+                String[] str2 = dq[2].trim().split("\\s+");
+                if (str2.length > 2)
+                {
+                    z = Integer.parseInt(str2[0]);
+                    weight = Double.parseDouble(str2[1]);
+                    cn = Integer.parseInt(str2[2]);
+                }
+            }
+            return new AtomType(type, symbol, label, z, weight, cn);
+        }
+        catch (Throwable t)
+        {
+            String msg = "Format of Tinker's atom type definition not "
+                    + "recognized. " + NL + "Details: " + NL
+                    + t.getMessage();
+            throw new DENOPTIMException(msg);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the force field defined in the given file. The file is parsed
+     * only if it has not been parsed before, or if it has changed since it was
+     * last parsed.
+     * @param filename the pathname of the force field parameters file.
+     * @return the immutable force field.
+     * @throws DENOPTIMException if the file cannot be read or parsed.
+     */
+    public static TinkerForceField getForceField(String filename)
+            throws DENOPTIMException
+    {
+        File file = new File(filename);
+        if (!file.exists())
+        {
+            throw new DENOPTIMException("File '" + filename + "' not found.");
+        }
+        return FORCEFIELDS.get(file);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the absolute pathname of the file this force field comes from.
+     */
+    public String getPathname()
+    {
+        return pathname;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the unmodifiable list of atom type definitions.
+     */
+    public List<AtomType> getAtomTypes()
+    {
+        return atomTypes;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the unmodifiable map of atom types indexed by atom symbol.
+     */
+    public Map<String,Integer> getAtomTypesPerSymbol()
+    {
+        return atomTypesPerSymbol;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param keyword the keyword at the beginning of the lines to get,
+     * e.g., <code>vdw</code>. Case insensitive.
+     * @return the unmodifiable list of records, each being the
+     * whitespace-separated fields of a line, including the keyword.
+     * The list is empty if no line starts with the given keyword.
+     */
+    public List<String[]> getRecords(String keyword)
+    {
+        List<String[]> lst = records.get(keyword.toLowerCase());
+        if (lst == null)
+            return Collections.emptyList();
+        return lst;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Override
+    public String toString()
+    {
+        return "TinkerForceField [" + pathname + "]";
+    }
+
+//------------------------------------------------------------------------------
+
+}
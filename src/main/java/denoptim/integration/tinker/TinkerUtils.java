@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.input.ReversedLinesFileReader;
 import org.openscience.cdk.interfaces.IAtom;
@@ -367,6 +368,139 @@ public class TinkerUtils
 
     }
 
+//------------------------------------------------------------------------------
+    
+    /**
+     * Sets the internal coordinates of a molecule to the values that 
+     * correspond to the given Cartesian coordinates. The Z-matrix, i.e., the 
+     * atoms defining each internal coordinate, is not changed, but the 
+     * chirality flag of atoms defined by two bond angles is set according to
+     * the side on which the atom lies.
+     * This is the equivalent of running Tinker's <code>xyzint</code> using the
+     * present internal coordinates as template.
+     * @param tmol the molecule to modify.
+     * @param coords the Cartesian coordinates of each atom in the order of 
+     * the atom list of the molecule.
+     * @throws DENOPTIMException if the coordinates do not match the molecule.
+     * In this case, the molecule is not modified.
+     */
+    
+    public static void setICFromXYZ(TinkerMolecule tmol, List<double[]> coords)
+            throws DENOPTIMException
+    {
+        ArrayList<TinkerAtom> lstAtoms = tmol.getAtoms();
+        if (coords.size() != lstAtoms.size())
+        {
+            throw new DENOPTIMException("Inconsistent number of atoms: " 
+                    + coords.size() + " coordinates for " + lstAtoms.size() 
+                    + " atoms.");
+        }
+        
+        double[][] newDistAngles = new double[lstAtoms.size()][];
+        int[] newFlags = new int[lstAtoms.size()];
+        for (int i=0; i<lstAtoms.size(); i++)
+        {
+            int[] nbrs = lstAtoms.get(i).getAtomNeighbours();
+            newFlags[i] = nbrs[3];
+            double[] x = coords.get(i);
+            double[] distAngle = new double[3];
+            if (nbrs[0] > 0)
+            {
+                double[] xB = coords.get(nbrs[0]-1);
+                distAngle[0] = Math.sqrt(Math.pow(x[0]-xB[0], 2) 
+                        + Math.pow(x[1]-xB[1], 2) + Math.pow(x[2]-xB[2], 2));
+                if (nbrs[1] > 0)
+                {
+                    double[] xC = coords.get(nbrs[1]-1);
+                    distAngle[1] = getBondAngle(x, xB, xC);
+                    if (nbrs[2] > 0)
+                    {
+                        double[] xD = coords.get(nbrs[2]-1);
+                        if (nbrs[3] == 0)
+                        {
+                            // Proper torsion
+                            distAngle[2] = MathUtils.computeDihedralAngle(
+                                    x, xB, xC, xD);
+                        } else {
+                            // Second bond angle
+                            distAngle[2] = getBondAngle(x, xB, xD);
+                            newFlags[i] = getChiralityFlag(x, xB, xC, xD, 
+                                    nbrs[3]);
+                        }
+                    }
+                }
+            }
+            for (double v : distAngle)
+            {
+                if (Double.isNaN(v))
+                {
+                    throw new DENOPTIMException("NaN internal coordinate for "
+                            + "atom " + (i+1) + ".");
+                }
+            }
+            newDistAngles[i] = distAngle;
+        }
+        for (int i=0; i<lstAtoms.size(); i++)
+        {
+            TinkerAtom tAtm = lstAtoms.get(i);
+            tAtm.setDistAngle(newDistAngles[i]);
+            int[] nbrs = tAtm.getAtomNeighbours();
+            nbrs[3] = newFlags[i];
+            tAtm.setAtomNeighbours(nbrs);
+        }
+    }
+
+//------------------------------------------------------------------------------
+    
+    /**
+     * Calculates the chirality flag of an atom defined by a distance from 
+     * atom A, the bond angle with atom B, and the bond angle with atom C.
+     * The convention is that of the conversion of internal coordinates into 
+     * Cartesian (see 
+     * {@link denoptim.molecularmodeling.ChemicalObjectModel#updateXYZFromINT()}
+     * ): the flag is the sign of the projection of the AX vector on 
+     * CA x AB.
+     * @param x the position of the atom.
+     * @param a position of the atom the distance refers to.
+     * @param b position of the atom defining the first bond angle.
+     * @param c position of the atom defining the second bond angle.
+     * @param currentFlag the flag to return when the atom lies (almost) on
+     * the plane of A, B, and C, where both flags are equivalent.
+     * @return the chirality flag, i.e., either 1 or -1.
+     */
+    public static int getChiralityFlag(double[] x, double[] a, double[] b,
+            double[] c, int currentFlag)
+    {
+        double[] vCA = MathUtils.subtract(a, c);
+        double[] vAB = MathUtils.subtract(b, a);
+        double[] vAX = MathUtils.subtract(x, a);
+        double[] t = MathUtils.computeCrossProduct(vCA, vAB);
+        double proj = MathUtils.computeDotProduct(vAX, t);
+        double norm = MathUtils.length(vAX) * MathUtils.length(t);
+        if (norm == 0.0 || Math.abs(proj / norm) 
+                < DENOPTIMConstants.FLOATCOMPARISONTOLERANCE)
+        {
+            return currentFlag;
+        }
+        return proj > 0.0 ? 1 : -1;
+    }
+
+//------------------------------------------------------------------------------
+    
+    /**
+     * Calculates the angle (in degrees) between vectors BA and BC, and is
+     * robust against rounding for (almost) linear arrangements.
+     */
+    private static double getBondAngle(double[] a, double[] b, double[] c)
+    {
+        double[] vBA = {a[0]-b[0], a[1]-b[1], a[2]-b[2]};
+        double[] vBC = {c[0]-b[0], c[1]-b[1], c[2]-b[2]};
+        double cos = MathUtils.computeDotProduct(vBA, vBC) 
+                / (MathUtils.length(vBA) * MathUtils.length(vBC));
+        cos = Math.max(-1.0, Math.min(1.0, cos));
+        return Math.toDegrees(Math.acos(cos));
+    }
+
 //------------------------------------------------------------------------------   
     
     /**
@@ -627,7 +761,8 @@ public class TinkerUtils
 //------------------------------------------------------------------------------
 
     /**
-     * Read the Tinker atom mapping from Tinker Force Field.
+     * Read the Tinker atom mapping from Tinker Force Field. The file is parsed
+     * only once per process, see {@link TinkerForceField}.
      *
      * @param filename
      * @return map of atom symbol and Tinker type
@@ -637,83 +772,8 @@ public class TinkerUtils
     public static HashMap<String, Integer> readTinkerAtomTypes(String filename)
             throws DENOPTIMException
     {
-        HashMap<String, Integer> atomTypesMap = new HashMap<>();
-
-        BufferedReader br = null;
-        String line;
-
-        try
-        {
-            br = new BufferedReader(new FileReader(filename));
-            while ((line = br.readLine()) != null)
-            {
-                //Read only lines starting with keyword "atom"
-                line = line.trim();
-                if (!line.startsWith("atom"))
-                {
-                    continue;
-                }
-
-                //Format:
-                //key, class, symbol, "label", Z, atomic weight, connectivity
-                try
-                {
-                    //extract atom type (or 'class' according to Tinker's 
-                    // nomenclature) and atom symbol
-                    String[] dq = line.split("\"");
-                    String fp = dq[0];
-                    String[] str1 = fp.split("\\s+");
-
-                    //Check the format by reading all parts of atom type def.
-                    int atomType = Integer.parseInt(str1[1]);
-                    String symbol = str1[2];
-                    /* Not needed so far...
-                    String sp = dq[2];
-                    String[] str2 = sp.split("\\s+");
-                    String label = dq[1];
-                    int z = Integer.parseInt(str2[1]);
-                    double atmWeight = Double.parseDouble(str2[2]);
-                    int cn = Integer.parseInt(str2[3]);
-                    */
-
-                    //Store
-                    atomTypesMap.put(symbol,atomType);                    
-                }
-                catch (Throwable t)
-                {
-                    String msg = "Format of Tinker's atom type definition not "
-                            + "recognized. " + NL + "Details: " + NL 
-                            + t.getMessage();
-                    throw new DENOPTIMException(msg);
-                }
-            }
-        }
-        catch (NumberFormatException | IOException nfe)
-        {
-            throw new DENOPTIMException(nfe);
-        }
-        finally
-        {
-            try
-            {
-                if (br != null)
-                {
-                    br.close();
-                }
-            }
-            catch (IOException ioe)
-            {
-                throw new DENOPTIMException(ioe);
-            }
-        }
-
-        if (atomTypesMap.isEmpty())
-        {
-            String msg = "No data found in file: " + filename;
-            throw new DENOPTIMException(msg);
-        }
-
-        return atomTypesMap;
+        return new HashMap<String, Integer>(TinkerForceField.getForceField(
+                filename).getAtomTypesPerSymbol());
     }
 
 //------------------------------------------------------------------------------
@@ -728,7 +788,7 @@ public class TinkerUtils
      */
 
     public static TinkerMolecule getICFromIAC(IAtomContainer mol, 
-                       HashMap<String,Integer> tMap )  throws DENOPTIMException
+                       Map<String,Integer> tMap )  throws DENOPTIMException
     {
         TinkerMolecule tm = new TinkerMolecule();
         String doneBnd = "visitedBond";
@@ -1009,7 +1069,7 @@ public class TinkerUtils
      */
 
     public static void setTinkerTypes(TinkerMolecule tmol, 
-                        HashMap<String,Integer> tMap) throws DENOPTIMException
+                        Map<String,Integer> tMap) throws DENOPTIMException
     {
         ArrayList<TinkerAtom> lstAtoms = tmol.getAtoms();
         int numberOfAtoms = lstAtoms.size();
@@ -150,6 +150,10 @@ public class DENOPTIMgson
                     && field.getName().equals("jGraphFragIsomorphism")) {
                 return true;
             }
+            if (field.getDeclaringClass() == Fragment.class
+                    && field.getName().equals("sharedMol")) {
+                return true;
+            }
             if (field.getDeclaringClass() == Template.class
                     && field.getName().equals("mol")) {
                 return true;
@@ -190,6 +194,10 @@ public class DENOPTIMgson
                     && field.getName().equals("jGraphFragIsomorphism")) {
                 return true;
             }
+            if (field.getDeclaringClass() == Fragment.class
+                    && field.getName().equals("sharedMol")) {
+                return true;
+            }
             if (field.getDeclaringClass() == Template.class
                     && field.getName().equals("innerToOuterAPs")) {
                 return true;
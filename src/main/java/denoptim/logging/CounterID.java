@@ -74,7 +74,11 @@ public enum CounterID
     FITNESSEVALS, FAILEDFITNESSEVALS,
     
     DUPLICATEPREFITNESS,
-    FAILEDDUPLICATEPREFITNESSDETECTION;
+    FAILEDDUPLICATEPREFITNESSDETECTION,
+    DUPLICATEGRAPHS,
+    
+    CLOSABILITYCACHEHITS,
+    CLOSABILITYCACHEMISSES;
     
     private String description = "";
     
@@ -175,6 +179,14 @@ public enum CounterID
         FAILEDDUPLICATEPREFITNESSDETECTION.description = "Number of failed "
                 + "attempts to compare UID with known UIDs prior to considering "
                 + "the fitness evaluation of a candidate";
+        DUPLICATEGRAPHS.description = "Number of duplicate graphs detected "
+                + "prior to building the molecular representation of a "
+                + "candidate";
+        
+        CLOSABILITYCACHEHITS.description = "Number of evaluations of 3D "
+                + "closability of chains answered by the cache of verdicts";
+        CLOSABILITYCACHEMISSES.description = "Number of evaluations of 3D "
+                + "closability of chains not found in the cache of verdicts";
     }
     
     private String prettyName = "";
@@ -274,6 +286,13 @@ public enum CounterID
                 "#Duplicates Pre-Fitness";
         FAILEDDUPLICATEPREFITNESSDETECTION.prettyName =
                 "#Failed Duplicate Pre-Fitness Detection";
+        DUPLICATEGRAPHS.prettyName =
+                "#Duplicate Graphs";
+        
+        CLOSABILITYCACHEHITS.prettyName =
+                "#Closability Cache Hits";
+        CLOSABILITYCACHEMISSES.prettyName =
+                "#Closability Cache Misses";
     }
     
 //------------------------------------------------------------------------------
@@ -18,8 +18,12 @@
 
 package denoptim.logging;
 
-import java.util.HashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,18 +32,20 @@ import denoptim.io.DenoptimIO;
 
 /**
  * A collection of counters user to count actions taken by the evolutionary 
- * algorithm.
+ * algorithm. Counters are meant to be changed concurrently by many threads
+ * without locking: each counter is a {@link LongAdder}, and the counters are
+ * indexed by the ordinal of their {@link CounterID}.
+ * Periodic dumps of the counters to file, if required, are taken by a 
+ * background thread that is shared by all monitors, so threads changing the
+ * counters never write on the file. Since counters are not read under a
+ * lock, a dump taken while counters are being changed is not guaranteed to
+ * be a consistent snapshot across counters.
  * 
  * @author Marco Foscato
  */
 
-public class Monitor extends HashMap<CounterID,AtomicInteger> 
+public class Monitor
 {
-    /**
-     * Version UID
-     */
-    private static final long serialVersionUID = 1L;
-    
     /**
      * A name that allows humans to understand what this is a monitor of.
      */
@@ -62,22 +68,64 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
     private boolean dumpData = false;
     
     /**
-     * A generation number
+     * A generation number. Read also by the thread taking the dumps.
+     */
+    public volatile int generationId = 0;
+    
+    /**
+     * The counters, indexed by the ordinal of the {@link CounterID}.
+     */
+    private final LongAdder[] counters;
+    
+    /**
+     * Value of the counter of attempts to make new candidates at the time of
+     * the latest dump. Used only by the thread taking the dumps.
+     */
+    private long attemptsAtLastDump = 0;
+    
+    /**
+     * The periodic check of the need for dumping data, if any.
      */
-    public int generationId = 0;
+    private ScheduledFuture<?> snapshotter;
     
     /**
-     * Counter controlling dumps
+     * Flag signaling that no more dumps are to be taken. 
+     * Guarded by this monitor's lock.
      */
-    private int dumpsId = 0;
+    private boolean dumpsStopped = false;
     
     /**
      * Logger to use
      */
     private Logger logger;
     
+    /**
+     * Milliseconds between checks of the need for dumping data.
+     */
+    private static final long SNAPSHOTPERIOD = 500;
+    
     private final String NL = System.getProperty("line.separator");
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Holder of the thread that takes the dumps of all monitors. This thread
+     * is created only when the first dump is requested.
+     */
+    private static class SnapshotterHolder
+    {
+        static final ScheduledExecutorService EXECUTOR = 
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "Monitor-snapshotter");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
 //------------------------------------------------------------------------------
     
     /**
@@ -85,10 +133,10 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
      */
     public Monitor()
     {
-        super();
-        for (CounterID cid : CounterID.values())
+        counters = new LongAdder[CounterID.values().length];
+        for (int i=0; i<counters.length; i++)
         {
-            this.put(cid,new AtomicInteger());
+            counters[i] = new LongAdder();
         }
     }
 
@@ -102,6 +150,22 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
      */
     public Monitor(String identifier, int genId, String monitorFile, 
             int dumpStep, boolean dumpData, Logger logger)
+    {
+        this(identifier, genId, monitorFile, dumpStep, dumpData, logger, 
+                SNAPSHOTPERIOD);
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Creates a named monitor that checks the need for dumping data with the
+     * given period.
+     * @param snapshotPeriod milliseconds between checks of the need for 
+     * dumping data. If not positive, there are no periodic checks, and dumps
+     * are taken only upon calling {@link #dumpIfNeeded()}.
+     */
+    Monitor(String identifier, int genId, String monitorFile, 
+            int dumpStep, boolean dumpData, Logger logger, long snapshotPeriod)
     {
         this();
         name = identifier;
@@ -110,38 +174,19 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
         this.dumpStep = dumpStep;
         this.dumpData = dumpData;
         this.logger = logger;
+        if (dumpData && snapshotPeriod > 0)
+        {
+            snapshotter = SnapshotterHolder.EXECUTOR.scheduleWithFixedDelay(
+                    this::dumpIfNeeded, snapshotPeriod, snapshotPeriod, 
+                    TimeUnit.MILLISECONDS);
+        }
     }
     
 //------------------------------------------------------------------------------
     
     public void changeBy(CounterID cid, int value)
     {
-        String dump = "";
-        synchronized (this)
-        {
-            this.get(cid).addAndGet(value);
-            if (cid == CounterID.NEWCANDIDATEATTEMPTS)
-            {
-                dumpsId++;
-                if (dumpData && dumpsId >= dumpStep)
-                {
-                    dumpsId = 0;
-                    dump = getMonitorDataLine("DUMP");
-                }
-            }
-        }
-        if (!dump.equals(""))
-        {
-            try
-            {
-                printSnapshot(dump);
-            } catch (DENOPTIMException e)
-            {
-                logger.log(Level.WARNING,
-                        "Unable to print monitor report: "+e.getMessage() + NL
-                        + "Monitor report: " + NL + dump);
-            }
-        }
+        counters[cid.ordinal()].add(value);
     }
     
 //------------------------------------------------------------------------------
@@ -172,6 +217,64 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
         changeBy(cid,-value);
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * @param cid the identifier of the counter.
+     * @return the current value of the counter.
+     */
+    public long getValue(CounterID cid)
+    {
+        return counters[cid.ordinal()].sum();
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Dumps the counters if the number of attempts to make new candidates
+     * has grown by at least the dump step since the latest dump. This runs
+     * in the thread taking the dumps.
+     */
+    synchronized void dumpIfNeeded()
+    {
+        if (dumpsStopped || !dumpData)
+            return;
+        long attempts = getValue(CounterID.NEWCANDIDATEATTEMPTS);
+        if (attempts - attemptsAtLastDump < dumpStep)
+            return;
+        attemptsAtLastDump = attempts;
+        String dump = getMonitorDataLine("DUMP");
+        try
+        {
+            printSnapshot(dump);
+        } catch (DENOPTIMException e)
+        {
+            if (logger != null)
+            {
+                logger.log(Level.WARNING,
+                        "Unable to print monitor report: "+e.getMessage() + NL
+                        + "Monitor report: " + NL + dump);
+            }
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Stops the periodic dumps of the counters, if any. Counters can still
+     * be changed and printed. If a dump is being written, waits for it to be
+     * completed, so no dump is written after this method returns.
+     */
+    public synchronized void stopDumps()
+    {
+        dumpsStopped = true;
+        if (snapshotter != null)
+        {
+            snapshotter.cancel(false);
+            snapshotter = null;
+        }
+    }
+    
 //------------------------------------------------------------------------------
 
     public void printHeader(String pathName) throws DENOPTIMException
@@ -181,14 +284,19 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
     
 //------------------------------------------------------------------------------
 
+    /**
+     * Stops the periodic dumps, if any, and prints the summary of the counters.
+     */
     public void printSummary() throws DENOPTIMException
     {
-        DenoptimIO.writeData(monitorFile, getMonitorDataLine("SUMMARY"), true);
+        stopDumps();
+        printSnapshot(getMonitorDataLine("SUMMARY"));
     }
     
 //------------------------------------------------------------------------------
 
-    public void printSnapshot(String snapshot) throws DENOPTIMException
+    public synchronized void printSnapshot(String snapshot) 
+            throws DENOPTIMException
     {
         DenoptimIO.writeData(monitorFile, snapshot, true);
     }
@@ -203,12 +311,9 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
     {
         StringBuilder sb = new StringBuilder();
         sb.append("RecordType MonitorName Generation ");
-        synchronized (this)
-            {
-            for (CounterID cid : CounterID.values())
-            {
-                sb.append(cid).append(" ");
-            }
+        for (CounterID cid : CounterID.values())
+        {
+            sb.append(cid).append(" ");
         }
         return sb.toString();
     }
@@ -226,12 +331,9 @@ public class Monitor extends HashMap<CounterID,AtomicInteger>
         sb.append(prefix).append(" ");
         sb.append(name).append(" ");
         sb.append(generationId).append(" ");
-        synchronized (this)
-            {
-            for (CounterID cid : CounterID.values())
-            {
-                sb.append(this.get(cid).get()).append(" ");
-            }
+        for (CounterID cid : CounterID.values())
+        {
+            sb.append(getValue(cid)).append(" ");
         }
         return sb.toString();
     }
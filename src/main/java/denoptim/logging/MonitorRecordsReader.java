@@ -0,0 +1,164 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader of the file written by {@link Monitor} that keeps the header and the
+ * SUMMARY records. The file is append-only, so the reader remembers how far
+ * it has read and, upon each {@link #update()}, reads only what has been
+ * appended since the previous update. An incomplete last line is left to the
+ * next update. If the file becomes shorter than what has already been read,
+ * the file is assumed to have been replaced and it is read from the start.
+ *
+ * @author Marco Foscato
+ */
+
+public class MonitorRecordsReader
+{
+    /**
+     * The file to read.
+     */
+    private final File file;
+
+    /**
+     * Number of bytes of the file that have been read and processed.
+     */
+    private long offset = 0;
+
+    /**
+     * The header line, or <code>null</code> if not read yet.
+     */
+    private String header = null;
+
+    /**
+     * The SUMMARY records read so far.
+     */
+    private final List<String> summaries = new ArrayList<String>();
+
+    /**
+     * Size of the chunks read from the file.
+     */
+    private static final int BUFFERSIZE = 65536;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Creates a reader of the given monitor file. Nothing is read until
+     * {@link #update()} is called.
+     * @param file the monitor file.
+     */
+    public MonitorRecordsReader(File file)
+    {
+        this.file = file;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the lines appended to the file since the previous update.
+     * @return <code>true</code> if any new SUMMARY record has been found.
+     * @throws IOException if the file cannot be read.
+     */
+    public synchronized boolean update() throws IOException
+    {
+        int numSummaries = summaries.size();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            long length = raf.length();
+            if (length < offset)
+            {
+                offset = 0;
+                header = null;
+                summaries.clear();
+                numSummaries = 0;
+            }
+            raf.seek(offset);
+
+            byte[] buffer = new byte[BUFFERSIZE];
+            ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+            long position = offset;
+            while (position < length)
+            {
+                int n = raf.read(buffer, 0,
+                        (int) Math.min(buffer.length, length - position));
+                if (n < 0)
+                    break;
+                int lineStart = 0;
+                for (int i=0; i<n; i++)
+                {
+                    if (buffer[i] != '\n')
+                        continue;
+                    partialLine.write(buffer, lineStart, i - lineStart);
+                    processLine(partialLine.toString());
+                    partialLine.reset();
+                    lineStart = i + 1;
+                    offset = position + lineStart;
+                }
+                partialLine.write(buffer, lineStart, n - lineStart);
+                position += n;
+            }
+        }
+        return summaries.size() > numSummaries;
+    }
+
+//------------------------------------------------------------------------------
+
+    private void processLine(String line)
+    {
+        if (line.endsWith("\r"))
+            line = line.substring(0, line.length()-1);
+        if (header == null)
+        {
+            header = line;
+        } else if (line.startsWith("SUMMARY")) {
+            summaries.add(line);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the header line, or <code>null</code> if not read yet.
+     */
+    public synchronized String getHeader()
+    {
+        return header;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return a copy of the SUMMARY records read so far, in the order they
+     * appear in the file.
+     */
+    public synchronized List<String> getSummaryRecords()
+    {
+        return new ArrayList<String>(summaries);
+    }
+
+//------------------------------------------------------------------------------
+
+}
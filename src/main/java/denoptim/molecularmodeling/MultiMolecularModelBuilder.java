@@ -55,6 +55,11 @@ public class MultiMolecularModelBuilder
     
     private MMBuilderParameters settings;
     
+    /**
+     * Pathname of the folder where files for external tools are written
+     */
+    private String workDir;
+    
     /**
      * Program-specific logger
      */
@@ -69,6 +74,20 @@ public class MultiMolecularModelBuilder
         this.logger = settings.getLogger();
         this.molName = molName;
         this.molGraph = molGraph;
+        this.workDir = settings.getWorkingDirectory();
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the folder where files for external tools are written. By default,
+     * this is the working directory defined in the settings. Builders that
+     * run in parallel must use different folders.
+     * @param workDir the pathname of the folder.
+     */
+    public void setWorkingDirectory(String workDir)
+    {
+        this.workDir = workDir;
     }
 
 //------------------------------------------------------------------------------
@@ -110,6 +129,7 @@ public class MultiMolecularModelBuilder
         // Evaluate source of isomerism
         // 1: Attempt Ring Closures 
         RingClosureTool rct = new RingClosureTool(settings);
+        rct.setWorkingDirectory(workDir);
         ArrayList<ChemicalObjectModel> structures =new ArrayList<ChemicalObjectModel>();
         boolean skipConfSearch = false;
         if (rcParams.allowRingClosures() && mol.getGraph().hasOrEmbedsRings())
@@ -162,8 +182,9 @@ public class MultiMolecularModelBuilder
                     settings.getRestPSSROTParams(),
                     settings.getPSSROTTool(),
                     settings.getXYZINTTool(),
-                    settings.getWorkingDirectory(),
-                    settings.getTaskID(), logger);
+                    workDir,
+                    settings.getTaskID(), logger,
+                    settings.useExternalXYZINT());
             time = (endTime - startTime);
             logger.log(Level.FINE, "TIME (conf. search): "+time/1000000+" ms"
                       + " #frags: " + mol.getGraph().getVertexList().size()
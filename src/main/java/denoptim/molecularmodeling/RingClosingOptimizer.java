@@ -0,0 +1,549 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.molecularmodeling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.graph.rings.RingClosingAttractor;
+import denoptim.integration.tinker.TinkerMolecule;
+import denoptim.integration.tinker.TinkerUtils;
+import denoptim.utils.ObjectPair;
+
+/**
+ * Ring-closing conformational optimizer working in torsional space without
+ * any external tool. This is an alternative to the PSSROT-based
+ * ring-closing conformational search. The potential includes
+ * <ul>
+ * <li>an attraction between each {@link RingClosingAttractor} and the source
+ * atom of its partner attractor (the 1,1 interaction defined by the
+ * parameters of the {@link RingClosingAttractor}s). For a distance
+ * <i>d</i> the attraction is <i>A(sqrt(1+Bd<sup>2</sup>)-1)</i>, which is
+ * harmonic at short distance and linear at long distance,</li>
+ * <li>a penalty for any pair of atoms that would be closer than
+ * {@value #MINNONBONDDIST} Angstrom even if they are more than three bonds
+ * apart once the rings are closed. Dummy atoms and attractors are
+ * excluded.</li>
+ * </ul>
+ * The optimization is a multi-start pattern search on the dihedral angles of
+ * the rotatable bonds. The first start is the initial conformation; the
+ * others use random dihedral angles.
+ */
+
+public class RingClosingOptimizer
+{
+    /**
+     * Minimum distance between atoms more than three bonds apart.
+     */
+    public static final double MINNONBONDDIST = 2.0;
+
+    /**
+     * Force constant of the penalty for atoms that are too close.
+     */
+    private static final double CLASHFORCECONST = 1.0;
+
+    /**
+     * Initial size of the change of dihedral angles (radians).
+     */
+    private static final double INITSTEP = Math.PI / 6.0;
+
+    /**
+     * Size of the change of dihedral angles (radians) below which a local
+     * optimization is considered converged.
+     */
+    private static final double MINSTEP = Math.PI / 720.0;
+
+    /**
+     * Initial Cartesian coordinates in flat format (x0,y0,z0,x1,y1,...).
+     */
+    private final double[] initCoords;
+
+    /**
+     * For each torsion, the indexes of the two atoms defining the axis.
+     */
+    private final int[][] axes;
+
+    /**
+     * For each torsion, the indexes of the atoms moved by the rotation.
+     */
+    private final int[][] branches;
+
+    /**
+     * Pairs of atom indexes attracting each other.
+     */
+    private final int[][] attractions;
+
+    /**
+     * Parameters A and B of each attraction.
+     */
+    private final double[][] attractionParams;
+
+    /**
+     * Pairs of atom indexes subject to the penalty for being too close.
+     */
+    private final int[][] clashPairs;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param initCoords the initial Cartesian coordinates in flat format
+     * (x0,y0,z0,x1,y1,...).
+     * @param axes for each torsion, the indexes of the two atoms defining the
+     * rotation axis.
+     * @param branches for each torsion, the indexes of the atoms that
+     * rotate.
+     * @param attractions pairs of atom indexes attracting each other.
+     * @param attractionParams parameters A and B of each attraction.
+     * @param clashPairs pairs of atom indexes subject to the penalty for
+     * being closer than {@value #MINNONBONDDIST} Angstrom.
+     */
+    public RingClosingOptimizer(double[] initCoords, int[][] axes,
+            int[][] branches, int[][] attractions, double[][] attractionParams,
+            int[][] clashPairs)
+    {
+        this.initCoords = initCoords;
+        this.axes = axes;
+        this.branches = branches;
+        this.attractions = attractions;
+        this.attractionParams = attractionParams;
+        this.clashPairs = clashPairs;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the ring-closing optimization on the given chemical object. The
+     * object is modified directly: the optimized geometry is
+     * written into its internal coordinates and the Cartesian coordinates
+     * are updated accordingly.
+     * @param chemObj the object to work with.
+     * @param rcaCombination the pairs of {@link RingClosingAttractor}s that
+     * should be brought together.
+     * @param numStarts number of starting conformations.
+     * @param maxSteps maximum number of steps of each local optimization.
+     * @param seed the seed of the random number generator used to choose
+     * the starting conformations.
+     * @param logger the program-specific logger.
+     * @throws DENOPTIMException
+     */
+    public static void optimize(ChemicalObjectModel chemObj,
+            Set<ObjectPair> rcaCombination, int numStarts, int maxSteps,
+            long seed, Logger logger) throws DENOPTIMException
+    {
+        if (chemObj.getNumberRotatableBonds() == 0)
+        {
+            logger.log(Level.FINE, "No rotatable bond: skiping "
+                    + " ring-closing optimization.");
+            return;
+        }
+
+        IAtomContainer fmol = chemObj.getIAtomContainer();
+        int numAtoms = fmol.getAtomCount();
+        double[] coords = new double[3*numAtoms];
+        for (int i=0; i<numAtoms; i++)
+        {
+            Point3d p = fmol.getAtom(i).getPoint3d();
+            coords[3*i] = p.x;
+            coords[3*i+1] = p.y;
+            coords[3*i+2] = p.z;
+        }
+        List<List<Integer>> nbrs = getNeighbours(fmol);
+
+        // Torsions: rotation of the smallest side of each rotatable bond
+        List<int[]> axesList = new ArrayList<int[]>();
+        List<int[]> branchesList = new ArrayList<int[]>();
+        for (ObjectPair rotBnd : chemObj.getRotatableBonds())
+        {
+            int a = ((Integer) rotBnd.getFirst()).intValue();
+            int b = ((Integer) rotBnd.getSecond()).intValue();
+            int[] branch = getBranch(nbrs, a, b);
+            if (branch == null)
+                continue;
+            if (branch.length > numAtoms/2)
+            {
+                branch = getBranch(nbrs, b, a);
+                int tmp = a;
+                a = b;
+                b = tmp;
+            }
+            axesList.add(new int[] {a, b});
+            branchesList.add(branch);
+        }
+
+        // Attractions and topology of the system with closed rings
+        List<int[]> attrList = new ArrayList<int[]>();
+        List<double[]> attrParList = new ArrayList<double[]>();
+        Set<Integer> rcaIds = new HashSet<Integer>();
+        for (RingClosingAttractor rca : chemObj.getAttractorsList())
+        {
+            rcaIds.add(chemObj.getAtmIdOfRCA(rca));
+        }
+        for (ObjectPair op : rcaCombination)
+        {
+            RingClosingAttractor rca0 = (RingClosingAttractor) op.getFirst();
+            RingClosingAttractor rca1 = (RingClosingAttractor) op.getSecond();
+            int i0 = chemObj.getAtmIdOfRCA(rca0);
+            int i1 = chemObj.getAtmIdOfRCA(rca1);
+            int s0 = fmol.indexOf(rca0.getSrcAtom());
+            int s1 = fmol.indexOf(rca1.getSrcAtom());
+            double parA = (rca0.getParamA11() + rca1.getParamA11()) / 2.0;
+            double parB = (rca0.getParamB11() + rca1.getParamB11()) / 2.0;
+            attrList.add(new int[] {i0, s1});
+            attrParList.add(new double[] {parA, parB});
+            attrList.add(new int[] {s0, i1});
+            attrParList.add(new double[] {parA, parB});
+            nbrs.get(s0).add(s1);
+            nbrs.get(s1).add(s0);
+        }
+
+        List<int[]> clashList = new ArrayList<int[]>();
+        for (int i=0; i<numAtoms; i++)
+        {
+            if (rcaIds.contains(i) || isDummy(fmol.getAtom(i)))
+                continue;
+            boolean[] close = getAtomsWithinThreeBonds(nbrs, i);
+            for (int j=i+1; j<numAtoms; j++)
+            {
+                if (close[j] || rcaIds.contains(j) || isDummy(fmol.getAtom(j)))
+                    continue;
+                clashList.add(new int[] {i, j});
+            }
+        }
+
+        RingClosingOptimizer rco = new RingClosingOptimizer(coords,
+                axesList.toArray(new int[0][]),
+                branchesList.toArray(new int[0][]),
+                attrList.toArray(new int[0][]),
+                attrParList.toArray(new double[0][]),
+                clashList.toArray(new int[0][]));
+        double[] bestTorsions = rco.optimize(numStarts, maxSteps,
+                new Random(seed));
+        double[] newCoords = rco.buildConformation(bestTorsions);
+        logger.log(Level.FINE, "Ring-closing optimization energy: "
+                + rco.getEnergy(bestTorsions));
+
+        setInternalCoordinates(chemObj.getTinkerMolecule(), newCoords);
+        chemObj.updateXYZFromINT();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes the geometry given in Cartesian coordinates into the internal
+     * coordinates of a molecule. All internal coordinates are recomputed, so
+     * atoms defined by two bond angles (i.e., with a chirality flag) follow
+     * the rotations as much as those defined by proper dihedrals.
+     * @param tmol the molecule to update.
+     * @param coords the Cartesian coordinates in flat format
+     * (x0,y0,z0,x1,y1,...).
+     * @throws DENOPTIMException if the coordinates do not match the molecule.
+     */
+    static void setInternalCoordinates(TinkerMolecule tmol, double[] coords)
+            throws DENOPTIMException
+    {
+        List<double[]> points = new ArrayList<double[]>();
+        for (int i=0; i<coords.length/3; i++)
+        {
+            points.add(getPoint(coords, i));
+        }
+        TinkerUtils.setICFromXYZ(tmol, points);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the multi-start optimization.
+     * @param numStarts number of starting conformations.
+     * @param maxSteps maximum number of steps of each local optimization.
+     * @param rng the random number generator used to choose the starting
+     * conformations.
+     * @return the values of the changes of dihedral angles (radians)
+     * corresponding to the conformation with the lowest energy.
+     */
+    public double[] optimize(int numStarts, int maxSteps, Random rng)
+    {
+        double[] best = new double[axes.length];
+        double bestEnergy = Double.MAX_VALUE;
+        for (int iStart=0; iStart<numStarts; iStart++)
+        {
+            double[] torsions = new double[axes.length];
+            if (iStart > 0)
+            {
+                for (int k=0; k<torsions.length; k++)
+                {
+                    torsions[k] = (rng.nextDouble() * 2.0 - 1.0) * Math.PI;
+                }
+            }
+            double energy = minimize(torsions, maxSteps);
+            if (energy < bestEnergy)
+            {
+                bestEnergy = energy;
+                best = torsions;
+            }
+        }
+        return best;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Local optimization by pattern search on the dihedral angles.
+     * @param torsions the starting changes of dihedral angles (radians).
+     * These are overwritten with the optimized values.
+     * @param maxSteps maximum number of steps.
+     * @return the energy at the end of the optimization.
+     */
+    private double minimize(double[] torsions, int maxSteps)
+    {
+        double energy = getEnergy(torsions);
+        double step = INITSTEP;
+        for (int iStep=0; iStep<maxSteps && step>MINSTEP; iStep++)
+        {
+            boolean improved = false;
+            for (int k=0; k<torsions.length; k++)
+            {
+                for (double delta : new double[] {step, -step})
+                {
+                    torsions[k] += delta;
+                    double newEnergy = getEnergy(torsions);
+                    if (newEnergy < energy)
+                    {
+                        energy = newEnergy;
+                        improved = true;
+                        break;
+                    }
+                    torsions[k] -= delta;
+                }
+            }
+            if (!improved)
+                step = step / 2.0;
+        }
+        return energy;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the energy of the conformation obtained by applying the
+     * given changes of dihedral angles to the initial conformation.
+     * @param torsions the changes of dihedral angles (radians).
+     * @return the energy.
+     */
+    public double getEnergy(double[] torsions)
+    {
+        double[] c = buildConformation(torsions);
+        double energy = 0.0;
+        for (int i=0; i<attractions.length; i++)
+        {
+            double d2 = squaredDistance(c, attractions[i][0],
+                    attractions[i][1]);
+            energy += attractionParams[i][0]
+                    * (Math.sqrt(1.0 + attractionParams[i][1] * d2) - 1.0);
+        }
+        double minD2 = MINNONBONDDIST * MINNONBONDDIST;
+        for (int[] pair : clashPairs)
+        {
+            double d2 = squaredDistance(c, pair[0], pair[1]);
+            if (d2 < minD2)
+            {
+                double diff = MINNONBONDDIST - Math.sqrt(d2);
+                energy += CLASHFORCECONST * diff * diff;
+            }
+        }
+        return energy;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the conformation obtained by applying the given changes of
+     * dihedral angles to the initial conformation. Torsions are applied in
+     * the order they are given.
+     * @param torsions the changes of dihedral angles (radians).
+     * @return the Cartesian coordinates in flat format.
+     */
+    public double[] buildConformation(double[] torsions)
+    {
+        double[] c = Arrays.copyOf(initCoords, initCoords.length);
+        for (int k=0; k<axes.length; k++)
+        {
+            if (torsions[k] != 0.0)
+                rotateBranch(c, axes[k][0], axes[k][1], branches[k],
+                        torsions[k]);
+        }
+        return c;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Rotates a set of atoms around the axis defined by two atoms
+     * (Rodrigues' rotation formula).
+     */
+    private static void rotateBranch(double[] c, int a, int b, int[] branch,
+            double angle)
+    {
+        double ox = c[3*a];
+        double oy = c[3*a+1];
+        double oz = c[3*a+2];
+        double kx = c[3*b] - ox;
+        double ky = c[3*b+1] - oy;
+        double kz = c[3*b+2] - oz;
+        double norm = Math.sqrt(kx*kx + ky*ky + kz*kz);
+        kx /= norm;
+        ky /= norm;
+        kz /= norm;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for (int i : branch)
+        {
+            double vx = c[3*i] - ox;
+            double vy = c[3*i+1] - oy;
+            double vz = c[3*i+2] - oz;
+            double dot = (kx*vx + ky*vy + kz*vz) * (1.0 - cos);
+            c[3*i] = ox + vx*cos + (ky*vz - kz*vy)*sin + kx*dot;
+            c[3*i+1] = oy + vy*cos + (kz*vx - kx*vz)*sin + ky*dot;
+            c[3*i+2] = oz + vz*cos + (kx*vy - ky*vx)*sin + kz*dot;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static double squaredDistance(double[] c, int i, int j)
+    {
+        double dx = c[3*i] - c[3*j];
+        double dy = c[3*i+1] - c[3*j+1];
+        double dz = c[3*i+2] - c[3*j+2];
+        return dx*dx + dy*dy + dz*dz;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static double[] getPoint(double[] c, int i)
+    {
+        return new double[] {c[3*i], c[3*i+1], c[3*i+2]};
+    }
+
+//------------------------------------------------------------------------------
+
+    private static boolean isDummy(IAtom atm)
+    {
+        return DENOPTIMConstants.DUMMYATMSYMBOL.equals(atm.getSymbol());
+    }
+
+//------------------------------------------------------------------------------
+
+    private static List<List<Integer>> getNeighbours(IAtomContainer fmol)
+    {
+        List<List<Integer>> nbrs = new ArrayList<List<Integer>>();
+        for (int i=0; i<fmol.getAtomCount(); i++)
+        {
+            nbrs.add(new ArrayList<Integer>());
+        }
+        for (IBond bnd : fmol.bonds())
+        {
+            int i0 = fmol.indexOf(bnd.getAtom(0));
+            int i1 = fmol.indexOf(bnd.getAtom(1));
+            nbrs.get(i0).add(i1);
+            nbrs.get(i1).add(i0);
+        }
+        return nbrs;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects the atoms that are on the side of atom <code>b</code> with
+     * respect to bond <code>a-b</code>.
+     * @return the indexes of the atoms in the branch (excluding
+     * <code>b</code>), or <code>null</code> if the bond is part of a ring.
+     */
+    private static int[] getBranch(List<List<Integer>> nbrs, int a, int b)
+    {
+        boolean[] visited = new boolean[nbrs.size()];
+        visited[a] = true;
+        visited[b] = true;
+        List<Integer> branch = new ArrayList<Integer>();
+        Deque<Integer> queue = new ArrayDeque<Integer>();
+        queue.add(b);
+        while (!queue.isEmpty())
+        {
+            int current = queue.poll();
+            for (int nbr : nbrs.get(current))
+            {
+                if (nbr == a && current != b)
+                    return null;
+                if (visited[nbr])
+                    continue;
+                visited[nbr] = true;
+                branch.add(nbr);
+                queue.add(nbr);
+            }
+        }
+        return branch.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+//------------------------------------------------------------------------------
+
+    private static boolean[] getAtomsWithinThreeBonds(
+            List<List<Integer>> nbrs, int i)
+    {
+        boolean[] close = new boolean[nbrs.size()];
+        close[i] = true;
+        List<Integer> shell = new ArrayList<Integer>();
+        shell.add(i);
+        for (int depth=0; depth<3; depth++)
+        {
+            List<Integer> nextShell = new ArrayList<Integer>();
+            for (int j : shell)
+            {
+                for (int nbr : nbrs.get(j))
+                {
+                    if (!close[nbr])
+                    {
+                        close[nbr] = true;
+                        nextShell.add(nbr);
+                    }
+                }
+            }
+            shell = nextShell;
+        }
+        return close;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -23,6 +23,14 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,6 +54,7 @@ import denoptim.integration.tinker.TinkerException;
 import denoptim.integration.tinker.TinkerMolecule;
 import denoptim.programs.RunTimeParameters.ParametersType;
 import denoptim.programs.moldecularmodelbuilder.MMBuilderParameters;
+import denoptim.programs.moldecularmodelbuilder.MMBuilderParameters.RCEngine;
 import denoptim.utils.ObjectPair;
 
 /**
@@ -58,9 +67,10 @@ import denoptim.utils.ObjectPair;
 public class RingClosureTool
 {
     /**
-     * Iteration counter for making unique filenames.
+     * Iteration counter for making unique filenames. Shared among the 
+     * ring closing attempts that may run in parallel.
      */
-    private int itn = 0;
+    private AtomicInteger itnCounter = new AtomicInteger(0);
 
     /**
      * File separator
@@ -72,11 +82,35 @@ public class RingClosureTool
      */
     private MMBuilderParameters settings;
     
+    /**
+     * Pathname of the folder where Tinker's files are written
+     */
+    private String workDir;
+    
     /**
      * Program.specific logger
      */
     private Logger logger;
 
+//------------------------------------------------------------------------------
+
+    /**
+     * A single ring closing attempt for one combination of ring closing 
+     * attractors.
+     */
+    interface RingClosureAttempt
+    {
+        /**
+         * @param molTo3d a copy of the molecular system that is dedicated to 
+         * this attempt. This system will be modified.
+         * @param iComb the index of the combination of ring closing 
+         * attractors.
+         * @return the result of the attempt.
+         */
+        ChemicalObjectModel attempt(ChemicalObjectModel molTo3d, int iComb) 
+                throws DENOPTIMException, TinkerException;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -86,6 +120,19 @@ public class RingClosureTool
     {
         this.settings = settings;
         this.logger = settings.getLogger();
+        this.workDir = settings.getWorkingDirectory();
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the folder where this tool writes the files of external tools.
+     * By default, this is the working directory defined in the settings.
+     * @param workDir the pathname of the folder.
+     */
+    public void setWorkingDirectory(String workDir)
+    {
+        this.workDir = workDir;
     }
 
 //------------------------------------------------------------------------------
@@ -136,6 +183,13 @@ public class RingClosureTool
      * Performs one or more attempts to close rings by conformational adaptation.
      * The number of attempts (i.e, different set of rings) and the list of
      * definition of each attempt are defined into the object provided as input.
+     * Attempts can run in parallel (see 
+     * {@link MMBuilderParameters#getNumParallelRCAttempts()}), and can be 
+     * stopped as soon as a sufficient number of combinations has been fully 
+     * closed with good quality (see 
+     * {@link MMBuilderParameters#getRCStopAfterClosed()}). In the latter case,
+     * the combinations that have not been attempted are not reported in the
+     * returned list.
      * If no ring closure is possible, returns an empty array.
      * @param mol the input molecular system 
      * @return the list of generated molecules, if any.
@@ -146,36 +200,108 @@ public class RingClosureTool
     public ArrayList<ChemicalObjectModel> attemptAllRingClosures(
             ChemicalObjectModel mol) throws DENOPTIMException, TinkerException
     {
-        ArrayList<ChemicalObjectModel> rcMols = new ArrayList<ChemicalObjectModel>();
-        for (int i=0; i<mol.getRCACombinations().size(); i++)
+        return attemptAllRingClosures(mol, 
+                this::attemptRingClosureOfCombination);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the given ring closing attempt on each combination of ring closing
+     * attractors, possibly in parallel and with early termination, according
+     * to the settings.
+     * @param mol the input molecular system.
+     * @param rcAttempt the attempt to run on each combination.
+     * @return the results of the attempts that have been run, sorted from 
+     * the best to the worst.
+     * @throws DENOPTIMException
+     * @throws TinkerException 
+     */
+    
+    ArrayList<ChemicalObjectModel> attemptAllRingClosures(
+            ChemicalObjectModel mol, RingClosureAttempt rcAttempt) 
+                    throws DENOPTIMException, TinkerException
+    {
+        int numCombs = mol.getRCACombinations().size();
+        ChemicalObjectModel[] results = new ChemicalObjectModel[numCombs];
+        int numThreads = Math.min(settings.getNumParallelRCAttempts(), 
+                numCombs);
+        if (numThreads <= 1)
         {
-            Set<ObjectPair> rcaComb = mol.getRCACombinations().get(i);
-            if (logger.isLoggable(Level.FINE))
+            int numGood = 0;
+            for (int i=0; i<numCombs; i++)
             {
-                String s = "";
-                for (ObjectPair p : rcaComb)
+                results[i] = rcAttempt.attempt(mol.deepcopy(), i);
+                if (isGoodEnoughToStop(results[i]))
                 {
-                    s = s + p.getFirst() + ":" + p.getSecond() + " ";
+                    numGood++;
+                    if (numGood >= settings.getRCStopAfterClosed())
+                        break;
                 }
-                logger.log(Level.FINE,"Attempting Ring Closure with RCA "
-                        + "Combination (" + i + "): " + s);
             }
-
-            // Try to create new molecule
-            ChemicalObjectModel molTo3d = mol.deepcopy();
-            ChemicalObjectModel rcMol = attemptRingClosure(molTo3d, 
-                    molTo3d.getRCACombinations().get(i));
-
-    	    // If some ring remains open, report in the MOL_ERROR field
-    	    int newRingClosed = rcMol.getNewRingClosures().size();
-    	    if (newRingClosed < rcaComb.size())
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+            CompletionService<ChemicalObjectModel> cs = 
+                    new ExecutorCompletionService<ChemicalObjectModel>(pool);
+            List<Future<ChemicalObjectModel>> futures = 
+                    new ArrayList<Future<ChemicalObjectModel>>();
+            try
             {
-        	    String err = "#RingClosureTool: uncomplete closure (closed "
-    				+ newRingClosed + "/" + rcaComb.size() + ")";
-        	    rcMol.getIAtomContainer().setProperty(
-        	            DENOPTIMConstants.MOLERRORTAG,err);
+                for (int i=0; i<numCombs; i++)
+                {
+                    // Copies are made here to avoid concurrent reads of mol
+                    final int iComb = i;
+                    final ChemicalObjectModel molTo3d = mol.deepcopy();
+                    futures.add(cs.submit(() -> 
+                        rcAttempt.attempt(molTo3d, iComb)));
+                }
+                int numGood = 0;
+                for (int j=0; j<numCombs; j++)
+                {
+                    if (isGoodEnoughToStop(cs.take().get()))
+                    {
+                        numGood++;
+                        if (numGood >= settings.getRCStopAfterClosed())
+                        {
+                            // Attempts already running are let to finish, so 
+                            // that they clean up their working files.
+                            for (Future<ChemicalObjectModel> f : futures)
+                                f.cancel(false);
+                            break;
+                        }
+                    }
+                }
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+                for (int i=0; i<numCombs; i++)
+                {
+                    if (!futures.get(i).isCancelled())
+                        results[i] = futures.get(i).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DENOPTIMException("Interrupted while waiting for "
+                        + "ring closing attempts.", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof TinkerException)
+                    throw (TinkerException) cause;
+                if (cause instanceof DENOPTIMException)
+                    throw (DENOPTIMException) cause;
+                throw new DENOPTIMException("Failed ring closing attempt.", 
+                        cause);
+            } finally {
+                pool.shutdownNow();
             }
-            rcMols.add(rcMol);
+        }
+        
+        // Collect results in the order of the combinations
+        ArrayList<ChemicalObjectModel> rcMols = 
+                new ArrayList<ChemicalObjectModel>();
+        for (int i=0; i<numCombs; i++)
+        {
+            if (results[i] != null)
+                rcMols.add(results[i]);
         }
 
         // Sort
@@ -184,6 +310,73 @@ public class RingClosureTool
         return rcMols;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the ring closing attempt for one combination of 
+     * ring closing attractors.
+     * @param molTo3d a copy of the molecular system that is dedicated to this
+     * attempt. This system will be modified.
+     * @param i the index of the combination of ring closing attractors.
+     * @return the result of the attempt.
+     * @throws DENOPTIMException
+     * @throws TinkerException
+     */
+    
+    private ChemicalObjectModel attemptRingClosureOfCombination(
+            ChemicalObjectModel molTo3d, int i) 
+                    throws DENOPTIMException, TinkerException
+    {
+        Set<ObjectPair> rcaComb = molTo3d.getRCACombinations().get(i);
+        if (logger.isLoggable(Level.FINE))
+        {
+            String s = "";
+            for (ObjectPair p : rcaComb)
+            {
+                s = s + p.getFirst() + ":" + p.getSecond() + " ";
+            }
+            logger.log(Level.FINE,"Attempting Ring Closure with RCA "
+                    + "Combination (" + i + "): " + s);
+        }
+
+        // Try to create new molecule
+        ChemicalObjectModel rcMol = attemptRingClosure(molTo3d, rcaComb);
+
+	    // If some ring remains open, report in the MOL_ERROR field
+	    int newRingClosed = rcMol.getNewRingClosures().size();
+	    if (newRingClosed < rcaComb.size())
+        {
+    	    String err = "#RingClosureTool: uncomplete closure (closed "
+				+ newRingClosed + "/" + rcaComb.size() + ")";
+    	    rcMol.getIAtomContainer().setProperty(
+    	            DENOPTIMConstants.MOLERRORTAG,err);
+        }
+	    return rcMol;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks if the result of a ring closing attempt counts towards the 
+     * early termination of the attempts, i.e., if all the rings of the 
+     * combination have been closed and the quality score of the ring closures
+     * is not higher than {@link MMBuilderParameters#getRCStopQualityScore()}.
+     * @param rcMol the result of a ring closing attempt.
+     * @return <code>true</code> if the attempt counts towards early 
+     * termination, which is never the case when early termination is disabled.
+     */
+    
+    private boolean isGoodEnoughToStop(ChemicalObjectModel rcMol)
+    {
+        if (settings.getRCStopAfterClosed() < 1)
+            return false;
+        if (rcMol.getIAtomContainer().getProperty(
+                DENOPTIMConstants.MOLERRORTAG) != null)
+            return false;
+        return rcMol.getNewRingClosuresQuality() 
+                <= settings.getRCStopQualityScore();
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -253,7 +446,10 @@ public class RingClosureTool
      * is performed under the effect of the Ring Closing potential,
      * that defines which atoms (chain head/tails) attract each other. 
      * The PSSROT engine is provided by an ad hoc modified version of Tinker
-     * (call to external tool).
+     * (call to external tool). Alternatively, according to
+     * {@link MMBuilderParameters#getRCEngine()}, the conformational search
+     * is performed by the {@link RingClosingOptimizer}, which does not 
+     * need any external tool.
      * @param chemObj the definition of the system to work with. This system
      * will be modified.
      * @param rcaCombination the combination of RingClosingAttractors. This
@@ -269,69 +465,80 @@ public class RingClosureTool
             Set<ObjectPair> rcaCombination) throws DENOPTIMException, TinkerException
     {
         IAtomContainer fmol = chemObj.getIAtomContainer();
-        String workDir = settings.getWorkingDirectory();
         String molName = chemObj.getName();
 
         // Increment iteration number (to make unique file names)
-        itn++;
+        int itn = itnCounter.incrementAndGet();
 
         logger.log(Level.INFO, "Attempting Ring Closure via conformational"
                                 + " adaptation for " + molName
-                                + " (PSSROT - Iteration: " + itn + ")");
+                                + " (" + settings.getRCEngine() 
+                                + " - Iteration: " + itn + ")");
         
-        List<String> molSpecificKeyFileLines = new ArrayList<String>();
-        molSpecificKeyFileLines.addAll(settings.getRSKeyFileParams());
-        for (ObjectPair op : rcaCombination)
+        long startTime = System.nanoTime();
+        if (settings.getRCEngine() == RCEngine.INTERNAL)
         {
-            int iTnkAtmRcaA = chemObj.getTnkAtmIdOfRCA(
-                    (RingClosingAttractor) op.getFirst());
-            int iTnkAtmRcaB = chemObj.getTnkAtmIdOfRCA(
-                    (RingClosingAttractor) op.getSecond());
-            molSpecificKeyFileLines.add("RC-PAIR " + iTnkAtmRcaA + " " 
-                    + iTnkAtmRcaB);
-        }
+            RingClosingOptimizer.optimize(chemObj, rcaCombination,
+                    settings.getRCInternalStarts(),
+                    settings.getRCInternalMaxSteps(), itn, logger);
+        } else {
+            List<String> molSpecificKeyFileLines = new ArrayList<String>();
+            molSpecificKeyFileLines.addAll(settings.getRSKeyFileParams());
+            for (ObjectPair op : rcaCombination)
+            {
+                int iTnkAtmRcaA = chemObj.getTnkAtmIdOfRCA(
+                        (RingClosingAttractor) op.getFirst());
+                int iTnkAtmRcaB = chemObj.getTnkAtmIdOfRCA(
+                        (RingClosingAttractor) op.getSecond());
+                molSpecificKeyFileLines.add("RC-PAIR " + iTnkAtmRcaA + " " 
+                        + iTnkAtmRcaB);
+            }
         
-        // Definition of RingClosingPotential
-        molSpecificKeyFileLines.add("RC11BNDTERM");
-        molSpecificKeyFileLines.add("RC12BNDTERM NONE");
-        for (ObjectPair op : rcaCombination)
-        {
-            RingClosingAttractor rca0 = (RingClosingAttractor) op.getFirst();
-            RingClosingAttractor rca1 = (RingClosingAttractor) op.getSecond();
-            int s0t = fmol.indexOf(rca0.getSrcAtom()) + 1;
-            int s1t = fmol.indexOf(rca1.getSrcAtom()) + 1;
-            int i0t = chemObj.getTnkAtmIdOfRCA(rca0);
-            int i1t = chemObj.getTnkAtmIdOfRCA(rca1);
-
-            double parA = 0.0;
-            double parB = 0.0;
-            parA = (rca0.getParamA11() + rca1.getParamA11()) / 2.0;
-            parB = (rca0.getParamB11() + rca1.getParamB11()) / 2.0;
-
-            molSpecificKeyFileLines.add("RC-11-PAIRS " + i0t + " " +s1t + " "
-                           + parA + " " + parB);
-            molSpecificKeyFileLines.add("RC-11-PAIRS " + s0t + " " + i1t + " "
-                           + parA + " " + parB);
-        }
+            // Definition of RingClosingPotential
+            molSpecificKeyFileLines.add("RC11BNDTERM");
+            molSpecificKeyFileLines.add("RC12BNDTERM NONE");
+            for (ObjectPair op : rcaCombination)
+            {
+                RingClosingAttractor rca0 = 
+                        (RingClosingAttractor) op.getFirst();
+                RingClosingAttractor rca1 = 
+                        (RingClosingAttractor) op.getSecond();
+                int s0t = fmol.indexOf(rca0.getSrcAtom()) + 1;
+                int s1t = fmol.indexOf(rca1.getSrcAtom()) + 1;
+                int i0t = chemObj.getTnkAtmIdOfRCA(rca0);
+                int i1t = chemObj.getTnkAtmIdOfRCA(rca1);
+
+                double parA = 0.0;
+                double parB = 0.0;
+                parA = (rca0.getParamA11() + rca1.getParamA11()) / 2.0;
+                parB = (rca0.getParamB11() + rca1.getParamB11()) / 2.0;
+
+                molSpecificKeyFileLines.add("RC-11-PAIRS " + i0t + " " + s1t
+                        + " " + parA + " " + parB);
+                molSpecificKeyFileLines.add("RC-11-PAIRS " + s0t + " " + i1t
+                        + " " + parA + " " + parB);
+            }
         
-        long startTime = System.nanoTime();
-        ConformationalSearchPSSROT.performPSSROT(chemObj, itn, "rs",
-                settings.getParamFile(), 
-                molSpecificKeyFileLines,
-                settings.getInitPSSROTParams(),
-                settings.getRestPSSROTParams(),
-                settings.getPSSROTTool(),
-                settings.getXYZINTTool(),
-                workDir,
-                settings.getTaskID(), logger);
+            ConformationalSearchPSSROT.performPSSROT(chemObj, itn, "rs",
+                    settings.getParamFile(), 
+                    molSpecificKeyFileLines,
+                    settings.getInitPSSROTParams(),
+                    settings.getRestPSSROTParams(),
+                    settings.getPSSROTTool(),
+                    settings.getXYZINTTool(),
+                    workDir,
+                    settings.getTaskID(), logger,
+                    settings.useExternalXYZINT());
+        }
         long endTime = System.nanoTime();
         long time = (endTime - startTime);
-        logger.log(Level.FINE, "TIME (RC conf. search): "+time/1000000+" ms"
+        logger.log(Level.FINE, "TIME (RC conf. search with " 
+                  + settings.getRCEngine() + "): "+time/1000000+" ms"
                   + " #frags: " + chemObj.getGraph().getVertexList().size()
                   + " #atoms: " + chemObj.getIAtomContainer().getAtomCount()
                   + " #rotBnds: " + chemObj.getRotatableBonds().size());
 
-        logger.log(Level.INFO, "RC-PSSROT done. Now, post-processing.");
+        logger.log(Level.INFO, "RC conf. search done. Now, post-processing.");
 
         // Evaluate proximity of RingClosingAttractor and close rings
         closeRings(chemObj, rcaCombination);
@@ -343,7 +550,7 @@ public class RingClosureTool
         saturateRingClosingAttractor(chemObj);
         
         // Cleanup
-        FileUtils.deleteFilesContaining(workDir,molName + "_rs" + itn);
+        FileUtils.deleteFilesContaining(workDir,molName + "_rs" + itn + ".");
         
         return chemObj;
     }
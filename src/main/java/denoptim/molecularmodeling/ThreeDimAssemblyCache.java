@@ -0,0 +1,404 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.molecularmodeling;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.graph.AttachmentPoint;
+import denoptim.graph.DGraph;
+import denoptim.graph.Edge;
+import denoptim.graph.Fragment;
+import denoptim.graph.Template;
+import denoptim.graph.Template.ContractLevel;
+import denoptim.graph.Vertex;
+import denoptim.utils.MoleculeUtils;
+
+/**
+ * Bounded, thread-safe, in-memory cache of the placements of building blocks
+ * made by the {@link ThreeDimTreeBuilder}. A placement is the
+ * roto-translated molecular representation of a building block together
+ * with the resulting attachment point vectors. Placements are indexed by
+ * a key that combines the identity of the building block, the attachment
+ * point used to connect it to its parent, and the geometry of the
+ * attachment point on the parent. Since the geometry of the attachment points
+ * offered to the children is determined by the placement of the parent,
+ * reusing the placement of a vertex makes its children find their placements
+ * too, so that entire subtrees shared among graphs
+ * (e.g., between parents and offspring) are not re-aligned, nor rebuilt,
+ * in the case of templates.
+ * Since vertexes with the same building block identifier may have different
+ * content (e.g., when read from file or built with another library), the key
+ * includes also a signature of the content of the vertex.
+ * When the maximum size is reached, the oldest entries are discarded first.
+ */
+
+public class ThreeDimAssemblyCache
+{
+    /**
+     * Precision used to compare coordinates defining the geometry of
+     * attachment points.
+     */
+    private static final double PRECISION = 10000.0;
+
+    /**
+     * Precision used to compare interatomic distances in the signature of
+     * the content of vertexes.
+     */
+    private static final double DISTPRECISION = 100.0;
+
+    /**
+     * Maximum number of entries. Non-positive values disable the cache.
+     */
+    private final int maxSize;
+
+    /**
+     * The placements indexed by key.
+     */
+    private final Map<String,Placement> placements =
+            new ConcurrentHashMap<String,Placement>();
+
+    /**
+     * Keys in order of insertion.
+     */
+    private final Queue<String> insertionOrder =
+            new ConcurrentLinkedQueue<String>();
+
+    /**
+     * Number of requests that found a placement.
+     */
+    private final AtomicLong hits = new AtomicLong(0);
+
+    /**
+     * Number of requests that did not find a placement.
+     */
+    private final AtomicLong misses = new AtomicLong(0);
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The result of placing a building block. Instances are never modified
+     * after creation. The stored molecular representation does not carry 
+     * any property that refers to the graph where the placement was made, 
+     * i.e., attachment points, vertex identifiers, and vertex paths.
+     */
+    public static class Placement
+    {
+        private final IAtomContainer mol;
+        private final Point3d[] apVectors;
+        private final int[] apSrcAtoms;
+
+        /**
+         * Constructor that takes a snapshot of the current state of the
+         * vertex and its molecular representation.
+         * @param vertex the vertex that has been placed.
+         * @param mol the placed molecular representation of the vertex.
+         * @throws CloneNotSupportedException
+         */
+        public Placement(Vertex vertex, IAtomContainer mol)
+                throws CloneNotSupportedException
+        {
+            this.mol = mol.clone();
+            for (IAtom atm : this.mol.atoms())
+            {
+                atm.removeProperty(DENOPTIMConstants.ATMPROPAPS);
+                atm.removeProperty(DENOPTIMConstants.ATMPROPVERTEXID);
+                atm.removeProperty(DENOPTIMConstants.ATMPROPVERTEXPATH);
+            }
+            this.mol.removeProperty(DENOPTIMConstants.APSTAG);
+            this.mol.removeProperty(DENOPTIMConstants.VERTEXJSONTAG);
+            int numAPs = vertex.getNumberOfAPs();
+            this.apVectors = new Point3d[numAPs];
+            this.apSrcAtoms = new int[numAPs];
+            for (int i=0; i<numAPs; i++)
+            {
+                AttachmentPoint ap = vertex.getAP(i);
+                if (ap.getDirectionVector() != null)
+                    apVectors[i] = new Point3d(ap.getDirectionVector());
+                apSrcAtoms[i] = ap.getAtomPositionNumber();
+            }
+        }
+
+        /**
+         * @return the placed molecular representation. Do not modify it:
+         * make a clone.
+         */
+        public IAtomContainer getIAtomContainer()
+        {
+            return mol;
+        }
+
+        /**
+         * @return the number of attachment points of the placed vertex.
+         */
+        public int getNumberOfAPs()
+        {
+            return apVectors.length;
+        }
+
+        /**
+         * @param i the index of the attachment point.
+         * @return a copy of the placed attachment point vector, or
+         * <code>null</code>.
+         */
+        public Point3d getAPVector(int i)
+        {
+            if (apVectors[i] == null)
+                return null;
+            return new Point3d(apVectors[i]);
+        }
+
+        /**
+         * @param i the index of the attachment point.
+         * @return the index of the source atom of the attachment point.
+         */
+        public int getAPSourceAtom(int i)
+        {
+            return apSrcAtoms[i];
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries. Non-positive values
+     * produce a cache that never stores anything.
+     */
+    public ThreeDimAssemblyCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the key identifying the placement of a vertex. Only vertexes
+     * that have a building block identifier can be placed from cache, and 
+     * templates only if their content is fixed. The key includes the 
+     * signature of the content of the vertex (see 
+     * {@link #getContentSignature(Vertex)}).
+     * @param vertex the vertex to place.
+     * @param apB the attachment point on the vertex used to bind the parent,
+     * or <code>null</code> if the vertex is the root of the graph.
+     * @param srcApA source of the attachment point vector on the parent.
+     * @param trgApA end of the attachment point vector on the parent.
+     * @param edgeToRCA <code>true</code> if the connection involves ring
+     * closing attractors.
+     * @param removeUsedRCAs the flag controlling removal of used ring
+     * closing attractors.
+     * @return the key, or <code>null</code> if the vertex cannot be
+     * placed from cache.
+     */
+    public static String getKey(Vertex vertex, AttachmentPoint apB,
+            Point3d srcApA, Point3d trgApA, boolean edgeToRCA,
+            boolean removeUsedRCAs)
+    {
+        if (!vertex.containsAtoms() || vertex.getBuildingBlockId() < 0)
+            return null;
+        if (vertex instanceof Template && ((Template) vertex)
+                .getContractLevel() != ContractLevel.FIXED)
+            return null;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(vertex.getClass().getSimpleName()).append("_");
+        sb.append(vertex.getBuildingBlockType()).append("_");
+        sb.append(vertex.getBuildingBlockId()).append("_");
+        sb.append(getContentSignature(vertex)).append("_");
+        sb.append(removeUsedRCAs ? "T" : "F");
+        if (apB == null)
+        {
+            sb.append("_root");
+            return sb.toString();
+        }
+        sb.append(edgeToRCA ? "T" : "F").append("_");
+        sb.append(apB.getIndexInOwner());
+        appendPoint(sb, srcApA);
+        appendPoint(sb, trgApA);
+        return sb.toString();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a cheap signature of the content of a vertex. The signature 
+     * accounts for the elements, the connectivity, the bond orders, and the
+     * internal geometry (bond lengths and distances from the first atom) of
+     * fragments, and for the structure of the inner graph of templates. It 
+     * does not depend on the position and orientation of the vertex in 
+     * space. 
+     * @param vertex the vertex to analyze.
+     * @return the signature.
+     */
+    static String getContentSignature(Vertex vertex)
+    {
+        int hash = 1;
+        if (vertex instanceof Fragment)
+        {
+            Fragment frag = (Fragment) vertex;
+            Point3d origin = null;
+            for (IAtom atm : frag.atoms())
+            {
+                Point3d p = MoleculeUtils.getPoint3d(atm);
+                if (origin == null)
+                    origin = p;
+                hash = 31 * hash 
+                        + MoleculeUtils.getSymbolOrLabel(atm).hashCode();
+                hash = 31 * hash + Long.hashCode(
+                        Math.round(origin.distance(p) * DISTPRECISION));
+            }
+            for (IBond bnd : frag.bonds())
+            {
+                hash = 31 * hash + frag.indexOf(bnd.getBegin());
+                hash = 31 * hash + frag.indexOf(bnd.getEnd());
+                hash = 31 * hash + String.valueOf(bnd.getOrder()).hashCode();
+                hash = 31 * hash + Long.hashCode(Math.round(
+                        MoleculeUtils.getPoint3d(bnd.getBegin()).distance(
+                                MoleculeUtils.getPoint3d(bnd.getEnd())) 
+                        * DISTPRECISION));
+            }
+            return "F" + frag.getAtomCount() + "." + frag.getBondCount() 
+                + "." + Integer.toHexString(hash);
+        } else if (vertex instanceof Template) {
+            DGraph inner = ((Template) vertex).getInnerGraph();
+            for (Vertex v : inner.getVertexList())
+            {
+                hash = 31 * hash + getContentSignature(v).hashCode();
+                hash = 31 * hash + v.getBuildingBlockId();
+                hash = 31 * hash + v.getNumberOfAPs();
+            }
+            for (Edge e : inner.getEdgeList())
+            {
+                hash = 31 * hash + inner.indexOf(e.getSrcAP().getOwner());
+                hash = 31 * hash + e.getSrcAP().getIndexInOwner();
+                hash = 31 * hash + inner.indexOf(e.getTrgAP().getOwner());
+                hash = 31 * hash + e.getTrgAP().getIndexInOwner();
+                hash = 31 * hash + String.valueOf(e.getBondType()).hashCode();
+            }
+            return "T" + inner.getVertexCount() + "." + inner.getRingCount()
+                + "." + Integer.toHexString(hash);
+        }
+        return vertex.getClass().getSimpleName() + vertex.getNumberOfAPs();
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void appendPoint(StringBuilder sb, Point3d p)
+    {
+        sb.append("_").append(Math.round(p.x * PRECISION));
+        sb.append(",").append(Math.round(p.y * PRECISION));
+        sb.append(",").append(Math.round(p.z * PRECISION));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param key the key identifying the placement.
+     * @return the placement or <code>null</code> if none is in the cache.
+     */
+    public Placement get(String key)
+    {
+        if (maxSize < 1 || key == null)
+            return null;
+        Placement placement = placements.get(key);
+        if (placement == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return placement;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stores a placement.
+     * @param key the key identifying the placement.
+     * @param placement the placement to store.
+     */
+    public void put(String key, Placement placement)
+    {
+        if (maxSize < 1 || key == null)
+            return;
+        Placement previous = placements.putIfAbsent(key, placement);
+        if (previous != null)
+            return;
+        insertionOrder.add(key);
+        while (placements.size() > maxSize)
+        {
+            String oldest = insertionOrder.poll();
+            if (oldest == null)
+                break;
+            placements.remove(oldest);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum number of entries.
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of requests that found a placement in the cache.
+     */
+    public long getNumberOfHits()
+    {
+        return hits.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of requests that did not find a placement in the 
+     * cache.
+     */
+    public long getNumberOfMisses()
+    {
+        return misses.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of placements in the cache.
+     */
+    public int size()
+    {
+        return placements.size();
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -47,6 +47,7 @@ import denoptim.graph.DGraph;
 import denoptim.graph.Edge;
 import denoptim.graph.Edge.BondType;
 import denoptim.graph.Ring;
+import denoptim.graph.Template;
 import denoptim.graph.Vertex;
 import denoptim.io.DenoptimIO;
 import denoptim.utils.GraphConversionTool;
@@ -101,6 +102,11 @@ public class ThreeDimTreeBuilder
      */
     private Randomizer randomizer = new Randomizer();
     
+    /**
+     * Cache of building block placements, if any.
+     */
+    private ThreeDimAssemblyCache assemblyCache = null;
+    
     private static final String NL = DENOPTIMConstants.EOL;
     
 //------------------------------------------------------------------------------
@@ -128,6 +134,21 @@ public class ThreeDimTreeBuilder
         this.alignIn3D = align;
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Sets the cache of building block placements that this builder will use
+     * to avoid re-aligning and rebuilding building blocks that have already 
+     * been placed in the same way, as it occurs for subtrees that are shared
+     * among graphs. The same cache can be shared by any number of builders.
+     * @param cache the cache, or <code>null</code> to place every building 
+     * block from scratch (default).
+     */
+    public void setAssemblyCache(ThreeDimAssemblyCache cache)
+    {
+        this.assemblyCache = cache;
+    }
+    
 //------------------------------------------------------------------------------
 
     /**
@@ -249,8 +270,26 @@ public class ThreeDimTreeBuilder
         IAtomContainer iacRootVrtx = null;
         if (rootVrtx.containsAtoms())
         {
-            iacRootVrtx = rootVrtx.getIAtomContainer(logger, randomizer, 
-                    removeUsedRCAs, rebuild);
+            // Only templates are expensive to rebuild as root
+            String placementKey = null;
+            if (assemblyCache != null && rebuild 
+                    && rootVrtx instanceof Template)
+            {
+                placementKey = ThreeDimAssemblyCache.getKey(rootVrtx, null, 
+                        null, null, false, removeUsedRCAs);
+                iacRootVrtx = getPlacementFromCache(rootVrtx, placementKey, 
+                        removeUsedRCAs);
+            }
+            if (iacRootVrtx == null)
+            {
+                iacRootVrtx = rootVrtx.getIAtomContainer(logger, randomizer, 
+                        removeUsedRCAs, rebuild);
+                if (iacRootVrtx != null && placementKey != null)
+                {
+                    storePlacementInCache(rootVrtx, iacRootVrtx, 
+                            placementKey);
+                }
+            }
         
             if (iacRootVrtx == null)
             {
@@ -534,8 +573,27 @@ public class ThreeDimTreeBuilder
         IAtomContainer inFrag = null;
         if (inVtx.containsAtoms())
         {
-            inFrag = inVtx.getIAtomContainer(logger, randomizer, removeUsedRCAs, 
-                    true);
+            // Placements can be reused only if they depend on nothing but
+            // the building block and the AP on the growing molecule
+            String placementKey = null;
+            if (assemblyCache != null && alignIn3D && idSrcAtmA > -1)
+            {
+                boolean edgeToRCA = edge.getSrcAP().getOwner().isRCV() 
+                        || edge.getTrgAP().getOwner().isRCV();
+                placementKey = ThreeDimAssemblyCache.getKey(inVtx, apB, 
+                        srcApA, trgApA, edgeToRCA, removeUsedRCAs);
+                inFrag = getPlacementFromCache(inVtx, placementKey, 
+                        removeUsedRCAs);
+            }
+            boolean placedFromCache = inFrag != null;
+            if (placedFromCache)
+            {
+                logger.log(Level.FINE, "Placement of incoming vertex taken "
+                        + "from cache.");
+            } else {
+                inFrag = inVtx.getIAtomContainer(logger, randomizer, 
+                        removeUsedRCAs, true);
+            }
             if (inFrag == null)
             {
                 String msg = "ThreeDimTreeBuilder found a building block "
@@ -551,7 +609,7 @@ public class ThreeDimTreeBuilder
             logger.log(Level.FINE, "Incoming IAC #atoms: " + 
                     inFrag.getAtomCount());
 
-            if (alignIn3D)
+            if (alignIn3D && !placedFromCache)
             {
                 // Define the roto-translation operation that aligns
                 // the incoming building block to the growing molecule. 
@@ -728,6 +786,11 @@ public class ThreeDimTreeBuilder
                     }
                     ap.setDirectionVector(pt);
                 }
+                
+                if (placementKey != null)
+                {
+                    storePlacementInCache(inVtx, inFrag, placementKey);
+                }
             }
     
             // Store vertex ID on atoms
@@ -853,6 +916,98 @@ public class ThreeDimTreeBuilder
         }
     }
     
+//------------------------------------------------------------------------------
+    
+    /**
+     * Places a vertex according to a placement stored in the cache. The 
+     * vertex is given the placed geometry so that it remains consistent with
+     * the molecule being built: the atoms of fragments are moved to the 
+     * cached coordinates, while templates are given a copy of the cached 
+     * molecular representation, so they are not rebuilt. The AP vectors of 
+     * the vertex are set as they were when the placement was stored.
+     * @param vtx the vertex to place.
+     * @param key the key identifying the placement.
+     * @param removeUsedRCAs use <code>true</code> if the used RCAs should be
+     * removed.
+     * @return the placed molecular representation of the vertex, or 
+     * <code>null</code> if no suitable placement could be found.
+     */
+    private IAtomContainer getPlacementFromCache(Vertex vtx, String key,
+            boolean removeUsedRCAs)
+    {
+        ThreeDimAssemblyCache.Placement placement = assemblyCache.get(key);
+        if (placement == null 
+                || placement.getNumberOfAPs() != vtx.getNumberOfAPs())
+            return null;
+        IAtomContainer cached = placement.getIAtomContainer();
+        
+        IAtomContainer iac = null;
+        if (vtx instanceof Template)
+        {
+            try
+            {
+                iac = cached.clone();
+            } catch (CloneNotSupportedException e)
+            {
+                return null;
+            }
+            setAPsFromPlacement(vtx, placement);
+            try
+            {
+                ((Template) vtx).setIAtomContainer(iac, false);
+            } catch (DENOPTIMException e)
+            {
+                logger.log(Level.WARNING, "Could not use cached placement "
+                        + "of vertex " + vtx.getVertexId() + ". " 
+                        + e.getMessage());
+                return null;
+            }
+        } else {
+            iac = vtx.getIAtomContainer(logger, randomizer, removeUsedRCAs, 
+                    true);
+            if (iac == null || iac.getAtomCount() != cached.getAtomCount())
+                return null;
+            for (int i=0; i<iac.getAtomCount(); i++)
+            {
+                iac.getAtom(i).setPoint3d(new Point3d(
+                        MoleculeUtils.getPoint3d(cached.getAtom(i))));
+            }
+            setAPsFromPlacement(vtx, placement);
+        }
+        return iac;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    private void setAPsFromPlacement(Vertex vtx, 
+            ThreeDimAssemblyCache.Placement placement)
+    {
+        for (int i=0; i<vtx.getNumberOfAPs(); i++)
+        {
+            AttachmentPoint ap = vtx.getAP(i);
+            ap.setAtomPositionNumber(placement.getAPSourceAtom(i));
+            ap.setDirectionVector(placement.getAPVector(i));
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    private void storePlacementInCache(Vertex vtx, IAtomContainer iac, 
+            String key)
+    {
+        if (key == null)
+            return;
+        try
+        {
+            assemblyCache.put(key, new ThreeDimAssemblyCache.Placement(vtx, 
+                    iac));
+        } catch (CloneNotSupportedException e)
+        {
+            logger.log(Level.WARNING, "Could not store placement of vertex " 
+                    + vtx.getVertexId() + ". " + e.getMessage());
+        }
+    }
+    
 //------------------------------------------------------------------------------
     
     private Point3d getRandomPoint(IAtomContainer mol)
@@ -24,6 +24,8 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import denoptim.constants.DENOPTIMConstants;
@@ -265,6 +267,13 @@ public class GAParameters extends RunTimeParameters
      */
     protected int numParallelTasks = 0;
 
+    /**
+     * Number of threads building offspring in parallel. Values lower than 2
+     * make offspring be built by the thread running the evolutionary 
+     * algorithm.
+     */
+    protected int numOffspringBuilders = 1;
+
     /**
      * Flag controlling how to sort the population based on the fitness
      */
@@ -328,6 +337,20 @@ public class GAParameters extends RunTimeParameters
      * memory (see {@link GAParameters#maxUIDMemory}).
      */
     public String uidMemoryOnDisk = "memory_UIDs.txt";
+
+    /**
+     * Flag enabling the detection of duplicate graphs prior to building the
+     * molecular representation of offspring (see
+     * {@link denoptim.graph.DGraph#getGraphUID()}).
+     * The detection of duplicates by UID remains the authoritative check.
+     */
+    public boolean checkGraphUID = false;
+
+    /**
+     * Identifiers of the graphs generated so far. Used only if
+     * {@link GAParameters#checkGraphUID} is <code>true</code>.
+     */
+    private Set<String> graphUIDs = ConcurrentHashMap.newKeySet();
     
     /**
      * Flag that enables the ignoring of mutated graphs that lead to a failure 
@@ -431,6 +454,13 @@ public class GAParameters extends RunTimeParameters
         return numParallelTasks;
     }    
 
+//------------------------------------------------------------------------------
+
+    public int getNumberOfOffspringBuilders()
+    {
+        return numOffspringBuilders;
+    }
+
 //------------------------------------------------------------------------------
 
     public boolean isSortOrderDecreasing()
@@ -721,6 +751,24 @@ public class GAParameters extends RunTimeParameters
         return saveRingSystemsAsTemplatesScaffolds;
     }
     
+//-----------------------------------------------------------------------------
+
+    /**
+     * Records the identifier of a graph among those of the graphs generated
+     * so far. When the number of recorded identifiers reaches
+     * {@link GAParameters#maxUIDMemory}, new identifiers are no longer
+     * recorded, but they are still compared with the recorded ones.
+     * This method is thread-safe.
+     * @param graphUID the identifier of the graph.
+     * @return <code>true</code> if the identifier was not known.
+     */
+    public boolean addNewUniqueGraphUID(String graphUID)
+    {
+        if (graphUIDs.size() >= maxUIDMemory)
+            return !graphUIDs.contains(graphUID);
+        return graphUIDs.add(graphUID);
+    }
+    
 //-----------------------------------------------------------------------------
 
     /**
@@ -751,6 +799,15 @@ public class GAParameters extends RunTimeParameters
                 break;
             }
             
+            case "NUMOFFSPRINGBUILDERS=":
+            {
+                if (value.length() > 0)
+                {
+                    numOffspringBuilders = Integer.parseInt(value);
+                }
+                break;
+            }
+            
             case "PARALLELIZATION=":
             {
                 switch (value.toUpperCase())
@@ -1156,6 +1213,12 @@ public class GAParameters extends RunTimeParameters
                 break;
             }
             
+            case "CHECKGRAPHUID=":
+            {
+                checkGraphUID = readYesNoTrueFalse(value);
+                break;
+            }
+            
             
             default:
                 msg = "Keyword " + key + " is not a known GeneticAlgorithm-" 
@@ -1268,6 +1331,13 @@ public class GAParameters extends RunTimeParameters
             error = "Number of children must be a positive number.";
             throw new DENOPTIMException(error);
         }
+        
+        if (numOffspringBuilders < 1)
+        {
+            error = "Number of offspring builders must be a positive number.";
+            throw new DENOPTIMException(error);
+        }
+        
         if (numGenerations <= 0)
         {
             error = "Number of generations must be a positive number.";
@@ -89,6 +89,7 @@ public class FitnessEvaluationTask extends FitnessTask
             ThreeDimTreeBuilder tb3d = new ThreeDimTreeBuilder(
                     fitnessSettings.getLogger(), 
                     fitnessSettings.getRandomizer());
+            tb3d.setAssemblyCache(fitnessSettings.getAssemblyCache());
             try {
                 DGraph gWithNoRCVs = dGraph.clone();
                 gWithNoRCVs.replaceUnusedRCVsWithCapps(fragSpace);
@@ -29,6 +29,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -37,6 +38,7 @@ import denoptim.exception.DENOPTIMException;
 import denoptim.files.FileFormat;
 import denoptim.files.FileUtils;
 import denoptim.fragmenter.FragmentClusterer;
+import denoptim.fragmenter.IsomorphicFamilyIndex;
 import denoptim.graph.Vertex;
 import denoptim.graph.Vertex.BBType;
 import denoptim.io.DenoptimIO;
@@ -86,6 +88,18 @@ public class FragmenterParameters extends RunTimeParameters
      */
     private int numParallelTasks = 1;
     
+    /**
+     * Flag requesting to stream the input structures to the parallel tasks
+     * rather than splitting the input into one batch file per task.
+     */
+    private boolean streamInput = false;
+    
+    /**
+     * Flag requesting that, when streaming the input structures, the results
+     * are written in the same order as the input structures.
+     */
+    private boolean preserveInputOrder = false;
+    
     /**
      * Flag requesting the execution of elemental analysis and comparison 
      * of the content of the structure file against a given molecular formula.
@@ -285,7 +299,8 @@ public class FragmenterParameters extends RunTimeParameters
      * a fragmentation process. The key is a string that identifies the vertex 
      * without having to hold the entire data structure of it.
      */
-    private Map<String,Integer> isomorphsCount = new HashMap<String,Integer>();
+    private Map<String,Integer> isomorphsCount = 
+            new ConcurrentHashMap<String,Integer>();
     
     //TODO: We could use something like the SizeControlledSet used in the EA to 
     // collect unique identifiers.
@@ -296,11 +311,13 @@ public class FragmenterParameters extends RunTimeParameters
     private AtomicInteger unqIsomorphicFamilyId = new AtomicInteger(0);
     
     /**
-     * Synchronization lock for manipulating a) the collections (i.e., MW slots)
-     * of fragments produced by multiple threads and b) the relative information 
-     * (i.e., isomorphic family size).
+     * In-memory index of the unique fragments collected in each MW slot.
+     * Manipulation of a) the collections (i.e., MW slots) of fragments 
+     * produced by multiple threads and b) the relative information 
+     * (i.e., isomorphic family size) is synchronized on the individual MW slot.
      */
-    public final Object MANAGEMWSLOTSSLOCK = new Object();
+    private final IsomorphicFamilyIndex isomorphicFamilyIndex = 
+            new IsomorphicFamilyIndex();
     
     /**
      * Flag signaling the request to analyze each isomorphic family to extract
@@ -382,6 +399,54 @@ public class FragmenterParameters extends RunTimeParameters
         this.numParallelTasks = numParallelTasks;
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the input structures are to be streamed
+     * to the parallel tasks, which pull structures as soon as they are ready 
+     * to process them. Otherwise, the input is split into one batch file for 
+     * each parallel task.
+     */
+    public boolean doStreamInput()
+    {
+        return streamInput;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the flag requesting to stream the input structures to the parallel
+     * tasks.
+     * @param streamInput use <code>true</code> to request streaming.
+     */
+    public void setStreamInput(boolean streamInput)
+    {
+        this.streamInput = streamInput;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the results of streamed input are to be 
+     * written in the same order as the input structures.
+     */
+    public boolean doPreserveInputOrder()
+    {
+        return preserveInputOrder;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the flag requesting to write the results of streamed input in the
+     * same order as the input structures.
+     * @param preserveInputOrder use <code>true</code> to preserve the order.
+     */
+    public void setPreserveInputOrder(boolean preserveInputOrder)
+    {
+        this.preserveInputOrder = preserveInputOrder;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -841,6 +906,16 @@ public class FragmenterParameters extends RunTimeParameters
         return isomorphsCount;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the in-memory index of unique fragments.
+     */
+    public IsomorphicFamilyIndex getIsomorphicFamilyIndex()
+    {
+        return isomorphicFamilyIndex;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1093,6 +1168,15 @@ public class FragmenterParameters extends RunTimeParameters
                 }
                 break;
                 
+            case "STREAMINPUT":
+                streamInput = true;
+                break;
+                
+            case "PRESERVEINPUTORDER":
+                streamInput = true;
+                preserveInputOrder = true;
+                break;
+                
             case "VERBOSITY=":
                 try
                 {
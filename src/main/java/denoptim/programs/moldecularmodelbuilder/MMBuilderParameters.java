@@ -21,9 +21,10 @@ package denoptim.programs.moldecularmodelbuilder;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Map;
 
 import denoptim.exception.DENOPTIMException;
+import denoptim.integration.tinker.TinkerForceField;
 import denoptim.integration.tinker.TinkerUtils;
 import denoptim.molecularmodeling.MMBuilderUtils;
 import denoptim.programs.RunTimeParameters;
@@ -123,10 +124,15 @@ public class MMBuilderParameters extends RunTimeParameters
      */
     protected int atomOrderingScheme = 1;
 
+    /**
+     * Force field parameters, shared by all the users of the same file
+     */
+    protected TinkerForceField forceField;
+
     /**
      * Atom type map
      */    
-    protected HashMap<String, Integer> TINKER_MAP;
+    protected Map<String, Integer> TINKER_MAP;
 
     /**
      * Unique task identifier
@@ -143,6 +149,65 @@ public class MMBuilderParameters extends RunTimeParameters
      */
     protected String outSDFFile;
     
+    /**
+     * Maximum number of ring-closing attempts (i.e., combinations of ring 
+     * closing attractors) to run in parallel.
+     */
+    protected int numParallelRCAttempts = 1;
+    
+    /**
+     * Number of combinations of ring closing attractors that have to be
+     * fully closed with a quality score not higher than 
+     * {@link #rcStopQualityScore} to stop attempting any further combination.
+     * Any value lower than 1 disables this early exit.
+     */
+    protected int rcStopAfterClosed = 0;
+    
+    /**
+     * Maximum quality score (the lower, the better) of the ring closures of a 
+     * combination of ring closing attractors for the combination to count 
+     * towards {@link #rcStopAfterClosed}.
+     */
+    protected double rcStopQualityScore = Double.MAX_VALUE;
+    
+    /**
+     * Engines that can perform ring-closing conformational searches.
+     * {@link #TINKER} uses Tinker's PSSROT as an external tool, 
+     * {@link #INTERNAL} uses the torsional optimizer implemented in
+     * {@link denoptim.molecularmodeling.RingClosingOptimizer}.
+     */
+    public enum RCEngine {TINKER, INTERNAL}
+    
+    /**
+     * Engine used for ring-closing conformational searches.
+     */
+    protected RCEngine rcEngine = RCEngine.TINKER;
+    
+    /**
+     * Number of starting conformations explored by the internal ring-closing
+     * optimizer.
+     */
+    protected int rcInternalStarts = 10;
+    
+    /**
+     * Maximum number of steps of each local optimization performed by the
+     * internal ring-closing optimizer.
+     */
+    protected int rcInternalMaxSteps = 500;
+    
+    /**
+     * Maximum number of graphs for which molecular models are built in 
+     * parallel.
+     */
+    protected int numParallelTasks = 1;
+    
+    /**
+     * Flag requesting the use of Tinker's xyzint to convert the results of 
+     * PSSROT into internal coordinates. By default, the conversion is done
+     * within the JVM and xyzint is used only as fallback.
+     */
+    protected boolean useExternalXYZINT = false;
+    
 
 //------------------------------------------------------------------------------
     
@@ -268,11 +333,77 @@ public class MMBuilderParameters extends RunTimeParameters
 
 //------------------------------------------------------------------------------
 
-    public HashMap<String, Integer> getTinkerMap()
+    /**
+     * @return the unmodifiable map of Tinker atom types indexed by atom symbol.
+     */
+    public Map<String, Integer> getTinkerMap()
     {
         return TINKER_MAP;
     }
 
+//------------------------------------------------------------------------------
+
+    public TinkerForceField getForceField()
+    {
+        return forceField;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getNumParallelRCAttempts()
+    {
+        return numParallelRCAttempts;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getRCStopAfterClosed()
+    {
+        return rcStopAfterClosed;
+    }
+
+//------------------------------------------------------------------------------
+
+    public double getRCStopQualityScore()
+    {
+        return rcStopQualityScore;
+    }
+
+//------------------------------------------------------------------------------
+
+    public RCEngine getRCEngine()
+    {
+        return rcEngine;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getRCInternalStarts()
+    {
+        return rcInternalStarts;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getRCInternalMaxSteps()
+    {
+        return rcInternalMaxSteps;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getNumParallelTasks()
+    {
+        return numParallelTasks;
+    }
+
+//------------------------------------------------------------------------------
+
+    public boolean useExternalXYZINT()
+    {
+        return useExternalXYZINT;
+    }
+
 //------------------------------------------------------------------------------
 
     public String getWorkingDirectory()
@@ -336,6 +467,9 @@ public class MMBuilderParameters extends RunTimeParameters
         case "KEEPDUMMYATOMS":
             keepDummy = true;
             break;
+        case "EXTERNALXYZINT":
+            useExternalXYZINT = true;
+            break;
         case "ATOMORDERINGSCHEME=":
             try
             {
@@ -356,6 +490,83 @@ public class MMBuilderParameters extends RunTimeParameters
         case "WORKDIR=":
             workDir = value;
             break;
+        case "RCPARALLELATTEMPTS=":
+            try
+            {
+                numParallelRCAttempts = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "RCSTOPAFTERCLOSED=":
+            try
+            {
+                rcStopAfterClosed = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "RCSTOPQUALITYSCORE=":
+            try
+            {
+                rcStopQualityScore = Double.parseDouble(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "RCENGINE=":
+            try
+            {
+                rcEngine = RCEngine.valueOf(value.trim().toUpperCase());
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "RCINTERNALSTARTS=":
+            try
+            {
+                rcInternalStarts = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "RCINTERNALMAXSTEPS=":
+            try
+            {
+                rcInternalMaxSteps = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "NUMPARALLELTASKS=":
+            try
+            {
+                numParallelTasks = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
 /*
         case "=":
             = value;
@@ -404,6 +615,24 @@ public class MMBuilderParameters extends RunTimeParameters
         ensureFileExists(pssrotFile);
 
 
+        if (rcInternalStarts < 1 || rcInternalMaxSteps < 1)
+        {
+            throw new DENOPTIMException("Parameters 'rcInternalStarts' and "
+                    + "'rcInternalMaxSteps' must be positive integers.");
+        }
+
+        if (numParallelRCAttempts < 1)
+        {
+            throw new DENOPTIMException("Parameter 'numParallelRCAttempts' "
+                    + "must be a positive integer.");
+        }
+
+        if (numParallelTasks < 1)
+        {
+            throw new DENOPTIMException("Parameter 'numParallelTasks' "
+                    + "must be a positive integer.");
+        }
+
         if (atomOrderingScheme < 1 || atomOrderingScheme > 2)
         {
             throw new Error("ERROR! Parameter 'atomOrderingScheme' can only "
@@ -459,7 +688,8 @@ public class MMBuilderParameters extends RunTimeParameters
         MMBuilderUtils.readKeyFileParams(keyFile, keyFileParams);
         TinkerUtils.readPSSROTParams(pssrotFile, pssrotParams_Init, 
                                                              pssrotParams_Rest);
-        TINKER_MAP = TinkerUtils.readTinkerAtomTypes(forceFieldFile);
+        forceField = TinkerForceField.getForceField(forceFieldFile);
+        TINKER_MAP = forceField.getAtomTypesPerSymbol();
 
         if (otherParameters.containsKey(ParametersType.RC_PARAMS))
         {
@@ -20,13 +20,25 @@
 package denoptim.programs.moldecularmodelbuilder;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.files.FileUtils;
 import denoptim.graph.Candidate;
 import denoptim.graph.DGraph;
 import denoptim.integration.tinker.TinkerException;
@@ -35,14 +47,41 @@ import denoptim.molecularmodeling.MultiMolecularModelBuilder;
 import denoptim.task.ProgramTask;
 
 /**
- * Builder of molecular models. This program constructs a three-dimensional
- * molecular model by converting a given DENOPTIM {@link Candidate}.
+ * Builder of molecular models. This program constructs three-dimensional
+ * molecular models by converting the DENOPTIM {@link Candidate}s found in the
+ * input. Candidates can be processed in parallel, and the models of all
+ * candidates are written to the same output file.
  * 
  * @author Vishwesh Venkatraman
  * @author Marco Foscato
  */
 public class MolecularModelBuilder extends ProgramTask
 {
+    /**
+     * Maximum number of candidates, per parallel task, that are submitted 
+     * and whose models are not yet written. This limits the number of models 
+     * kept in memory while waiting for the output to be written in the same 
+     * order as the input.
+     */
+    static final int INFLIGHTPERTASK = 2;
+    
+    /**
+     * Builds the models of a candidate.
+     */
+    interface ModelsBuilder
+    {
+        ArrayList<IAtomContainer> build(Candidate candidate, String workDir) 
+                throws Exception;
+    }
+    
+    /**
+     * Writes the models of a candidate.
+     */
+    interface ModelsWriter
+    {
+        void write(Candidate candidate, ArrayList<IAtomContainer> models) 
+                throws DENOPTIMException;
+    }
 
 //------------------------------------------------------------------------------
     
@@ -73,9 +112,166 @@ public class MolecularModelBuilder extends ProgramTask
         mmbParams.startProgramSpecificLogger(loggerIdentifier, false);
         mmbParams.printParameters();
         
-        // read the input molecule
-        Candidate candidate = DenoptimIO.readCandidates(
-                new File(mmbParams.getInputSDFFile()), true).get(0);
+        // read the input graphs. All settings, including the force field 
+        // parameters and atom types, are shared by all the builders.
+        ArrayList<Candidate> candidates = DenoptimIO.readCandidates(
+                new File(mmbParams.getInputSDFFile()), true);
+        
+        int numTasks = Math.min(mmbParams.getNumParallelTasks(), 
+                candidates.size());
+        boolean normalTerm = true;
+        
+        // The first models overwrite any previous output
+        boolean[] appendToOutput = new boolean[] {false};
+        ModelsWriter writer = (candidate, nmols) -> {
+            DenoptimIO.writeSDFFile(mmbParams.getOutputSDFFile(), nmols, 
+                    appendToOutput[0]);
+            appendToOutput[0] = true;
+        };
+        Logger logger = mmbParams.getLogger();
+        
+        if (numTasks < 2)
+        {
+            for (Candidate candidate : candidates)
+            {
+                try {
+                    writer.write(candidate, buildModels(candidate, mmbParams, 
+                            mmbParams.getWorkingDirectory()));
+                } catch (Throwable t)
+                {
+                    reportFailure(candidate, t, logger);
+                    normalTerm = false;
+                }
+            }
+        } else {
+            List<String> scratchDirs = new ArrayList<String>();
+            for (int i=0; i<numTasks; i++)
+            {
+                File scratchDir = new File(mmbParams.getWorkingDirectory(), 
+                        "mmbWorker" + i);
+                if (!scratchDir.exists() && !scratchDir.mkdirs())
+                {
+                    throw new DENOPTIMException("Could not create folder '" 
+                            + scratchDir + "'.");
+                }
+                scratchDirs.add(scratchDir.getAbsolutePath());
+            }
+            normalTerm = buildInParallel(candidates, scratchDirs, 
+                    (candidate, dir) -> buildModels(candidate, mmbParams, dir),
+                    writer, logger);
+        }
+        
+        if (normalTerm)
+        {
+            mmbParams.getLogger().log(Level.INFO, "MolecularModelBuilder "
+                    + "terminated normally!");
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the models of the given candidates in parallel and writes them 
+     * in the same order as the candidates. Only a limited number of 
+     * candidates (see {@link #INFLIGHTPERTASK}) is submitted ahead of the 
+     * one whose models are to be written next. Candidates that cannot be 
+     * built are reported and skipped.
+     * @param candidates the candidates to build.
+     * @param scratchDirs the folders where the tasks can write files for 
+     * external tools. One task runs for each folder. Each folder is used by
+     * one task at a time and is emptied after each candidate. Failures to
+     * empty a folder are only logged.
+     * @param builder the builder of the models of one candidate.
+     * @param writer the writer of the models of one candidate.
+     * @param logger where to report failures.
+     * @return <code>true</code> if all candidates have been built.
+     * @throws InterruptedException if interrupted while waiting for the 
+     * models. All running tasks are interrupted as well.
+     * @throws DENOPTIMException if the models cannot be written. All 
+     * running tasks are interrupted.
+     */
+    static boolean buildInParallel(List<Candidate> candidates, 
+            List<String> scratchDirs, ModelsBuilder builder, 
+            ModelsWriter writer, Logger logger) 
+                    throws InterruptedException, DENOPTIMException
+    {
+        int numTasks = scratchDirs.size();
+        int maxInFlight = INFLIGHTPERTASK * numTasks;
+        
+        // Each task uses a scratch folder that is taken from this pool
+        // and emptied before being given back to the pool.
+        BlockingQueue<String> freeDirs = new LinkedBlockingQueue<String>(
+                scratchDirs);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(numTasks);
+        Deque<Future<ArrayList<IAtomContainer>>> inFlight = 
+                new ArrayDeque<Future<ArrayList<IAtomContainer>>>();
+        boolean normalTerm = true;
+        int nextToSubmit = 0;
+        try
+        {
+            // Results are written in the same order as the input
+            for (int i=0; i<candidates.size(); i++)
+            {
+                while (nextToSubmit < candidates.size() 
+                        && inFlight.size() < maxInFlight)
+                {
+                    Candidate candidate = candidates.get(nextToSubmit);
+                    inFlight.add(executor.submit(() -> {
+                        String scratchDir = freeDirs.take();
+                        try {
+                            return builder.build(candidate, scratchDir);
+                        } finally {
+                            // The folder goes back to the pool even if it
+                            // cannot be emptied, or later tasks wait forever
+                            try {
+                                FileUtils.deleteFilesInFolder(scratchDir);
+                            } catch (Throwable t) {
+                                logger.log(Level.WARNING, "Could not empty "
+                                        + "scratch folder '" + scratchDir 
+                                        + "'. " + t.getMessage());
+                            } finally {
+                                freeDirs.put(scratchDir);
+                            }
+                        }
+                    }));
+                    nextToSubmit++;
+                }
+                try {
+                    ArrayList<IAtomContainer> nmols = inFlight.poll().get();
+                    writer.write(candidates.get(i), nmols);
+                } catch (ExecutionException ee)
+                {
+                    reportFailure(candidates.get(i), ee.getCause(), logger);
+                    normalTerm = false;
+                }
+            }
+        } catch (InterruptedException ie)
+        {
+            logger.log(Level.WARNING, "Interrupted while building molecular "
+                    + "models. Stopping all tasks.");
+            throw ie;
+        } finally {
+            executor.shutdownNow();
+        }
+        return normalTerm;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the molecular models of one candidate.
+     * @param candidate the candidate to build.
+     * @param mmbParams the settings.
+     * @param workDir the folder where to write files for external tools.
+     * @return the molecular models.
+     * @throws DENOPTIMException
+     * @throws TinkerException
+     */
+    private static ArrayList<IAtomContainer> buildModels(Candidate candidate, 
+            MMBuilderParameters mmbParams, String workDir) 
+                    throws DENOPTIMException, TinkerException
+    {
         DGraph grph = candidate.getGraph();
         String mname = candidate.getName();
         Map<Object,Object> properties = candidate.getChemicalRepresentation()
@@ -83,47 +279,50 @@ public class MolecularModelBuilder extends ProgramTask
             
         MultiMolecularModelBuilder mbuild = 
                 new MultiMolecularModelBuilder(mname, grph, mmbParams);
+        mbuild.setWorkingDirectory(workDir);
 
-        boolean normalTerm = false;
-        try {
-            ArrayList<IAtomContainer> nmols = mbuild.buildMulti3DStructure();
-            for (int i = 0; i<nmols.size(); i++)
+        ArrayList<IAtomContainer> nmols = mbuild.buildMulti3DStructure();
+        for (int i = 0; i<nmols.size(); i++)
+        {
+            //NB: here we reset the IAC properties, so, any property that
+            // should be passed on to the future should be copied.
+            String propVIDs = nmols.get(i).getProperty(
+                    DENOPTIMConstants.ATMPROPVERTEXID).toString();
+            Object propMolErr = nmols.get(i).getProperty(
+                    DENOPTIMConstants.MOLERRORTAG);
+            nmols.get(i).setProperties(properties);
+            nmols.get(i).setProperty(
+                    DENOPTIMConstants.ATMPROPVERTEXID, propVIDs);
+            if (propMolErr != null)
             {
-                //NB: here we reset the IAC properties, so, any property that
-                // should be passed on to the future should be copied.
-                String propVIDs = nmols.get(i).getProperty(
-                        DENOPTIMConstants.ATMPROPVERTEXID).toString();
-                Object propMolErr = nmols.get(i).getProperty(
-                        DENOPTIMConstants.MOLERRORTAG);
-                nmols.get(i).setProperties(properties);
-                nmols.get(i).setProperty(
-                        DENOPTIMConstants.ATMPROPVERTEXID, propVIDs);
-                if (propMolErr != null)
-                {
-                    nmols.get(i).setProperty(DENOPTIMConstants.MOLERRORTAG, 
-                            propMolErr.toString());
-                }
+                nmols.get(i).setProperty(DENOPTIMConstants.MOLERRORTAG, 
+                        propMolErr.toString());
             }
-            DenoptimIO.writeSDFFile(mmbParams.getOutputSDFFile(), nmols);
-            normalTerm = true;
-        } catch (TinkerException te)
+        }
+        return nmols;
+    }
+    
+//------------------------------------------------------------------------------
+
+    private static void reportFailure(Candidate candidate, Throwable t, 
+            Logger logger)
+    {
+        if (t instanceof TinkerException)
         {
+            TinkerException te = (TinkerException) t;
             String msg = "ERROR! Tinker failed on task '" + te.taskName 
-                    + "'!";
+                    + "' for candidate '" + candidate.getName() + "'!";
             if (te.solution != "")
             {
-                msg = msg + NL + te.solution;
+                msg = msg + DENOPTIMConstants.EOL + te.solution;
             }
-            mmbParams.getLogger().log(Level.SEVERE, msg);
-        } 
-        catch (Exception de)
-        {
-            de.printStackTrace(System.err);
-        } 
-        if (normalTerm)
-        {
-            mmbParams.getLogger().log(Level.INFO, "MolecularModelBuilder "
-                    + "terminated normally!");
+            logger.log(Level.SEVERE, msg);
+        } else {
+            logger.log(Level.SEVERE, "ERROR! Could not build "
+                    + "molecular models for candidate '" + candidate.getName() 
+                    + "'.", t);
         }
     }
+    
+//------------------------------------------------------------------------------
 }
@@ -131,6 +131,7 @@ public abstract class FitnessTask extends Task
             ThreeDimTreeBuilder t3d = new ThreeDimTreeBuilder(
                     fitnessSettings.getLogger(),
                     fitnessSettings.getRandomizer());
+            t3d.setAssemblyCache(fitnessSettings.getAssemblyCache());
             fitProvMol = t3d.convertGraphTo3DAtomContainer(dGraph,true);
     	}
         
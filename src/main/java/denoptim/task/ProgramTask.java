@@ -29,6 +29,7 @@ import java.util.logging.Logger;
 import denoptim.exception.DENOPTIMException;
 import denoptim.files.FileFormat;
 import denoptim.files.FileUtils;
+import denoptim.graph.APClass;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.StaticLogger;
 import denoptim.utils.TaskUtils;
@@ -89,6 +90,11 @@ public abstract class ProgramTask extends Task
         {
             thrownExc = t;
             handleThrowable();
+        } finally
+        {
+            // Forget any scope of APClasses used by the program, so that 
+            // threads reused by other tasks do not inherit it.
+            APClass.Scope.deactivate();
         }
 		
     	if (notifyGlobalTaskManager)
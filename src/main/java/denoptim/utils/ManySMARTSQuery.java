@@ -48,20 +48,42 @@ public class ManySMARTSQuery
 
 //------------------------------------------------------------------------------
 
-    public ManySMARTSQuery(IAtomContainer mol, Map<String, String> smarts) {
+    public ManySMARTSQuery(IAtomContainer mol, Map<String, String> smarts) 
+    {
+        this(mol, smarts, new HashMap<String, Pattern>());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Matches the given SMARTS queries reusing compiled patterns whenever
+     * possible. Queries that are not yet compiled are compiled and stored 
+     * in the given collection of compiled patterns. Since compiled patterns
+     * are not guaranteed to be thread-safe, the collection of compiled 
+     * patterns should not be used by more than one thread.
+     * @param mol the molecule to search in.
+     * @param smarts the SMARTS queries with their reference names.
+     * @param compiled the compiled patterns indexed by the reference names of
+     * the corresponding SMARTS queries.
+     */
+    public ManySMARTSQuery(IAtomContainer mol, Map<String, String> smarts,
+            Map<String, Pattern> compiled) 
+    {
         String err="";
         try {
+            // WARNING: assumptions on implicit H count and bond orders!
+            MoleculeUtils.setZeroImplicitHydrogensToAllAtoms(mol);
+            MoleculeUtils.ensureNoUnsetBondOrdersSilent(mol);
+            
             for (String smartsRef : smarts.keySet())
             {
-                //get the new query
-                String oneSmarts = smarts.get(smartsRef);
                 err = smartsRef;
-                
-                Pattern sp = SmartsPattern.create(oneSmarts);
-
-                // WARNING: assumptions on implicit H count and bond orders!
-                MoleculeUtils.setZeroImplicitHydrogensToAllAtoms(mol);
-                MoleculeUtils.ensureNoUnsetBondOrdersSilent(mol);
+                Pattern sp = compiled.get(smartsRef);
+                if (sp == null)
+                {
+                    sp = SmartsPattern.create(smarts.get(smartsRef));
+                    compiled.put(smartsRef, sp);
+                }
                 
                 if (sp.matches(mol))
                 {
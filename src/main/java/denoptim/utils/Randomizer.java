@@ -28,7 +28,9 @@ import denoptim.exception.DENOPTIMException;
 import denoptim.io.DenoptimIO;
 
 /**
- * Tool to generate random numbers and random decisions.
+ * Tool to generate random numbers and random decisions. Instances can be
+ * shared by threads, but the sequence of numbers obtained by each thread 
+ * is then not reproducible.
  */
 
 public class Randomizer
@@ -96,7 +98,7 @@ public class Randomizer
      * Initializes this random number generator (RNG) using a random seed that 
      * is generated on-the-fly randomly.
      */
-    public void initialiseRNG()
+    public synchronized void initialiseRNG()
     {
         initialiseSeed();
         mt = new MersenneTwister(rndSeed);
@@ -108,7 +110,7 @@ public class Randomizer
      * Initialized this random number generator using the given seed.
      * @param seed the seed to be used.
      */
-    public void initialiseRNG(long seed)
+    public synchronized void initialiseRNG(long seed)
     {
         setSeed(seed);
         mt = new MersenneTwister(rndSeed);
@@ -120,7 +122,7 @@ public class Randomizer
      * Returns the random number generator. Ensures there is an initialized one.
      * @return the random number generator
      */
-    private MersenneTwister getRNG()
+    private synchronized MersenneTwister getRNG()
     {
         if (mt == null)
         {
@@ -167,7 +169,7 @@ public class Randomizer
      * 0.0 and 1.0 from this random number generator's sequence.
      * @return the next double between 0.0 and 1.0;
      */
-    public double nextDouble()
+    public synchronized double nextDouble()
     {
         double d = getRNG().nextDouble();
         if (debug)
@@ -184,7 +186,7 @@ public class Randomizer
      * @return the next normally distributed double between 0.0 and 1.0, with
      * standard deviation 1.0.
      */
-    public double nextNormalDouble()
+    public synchronized double nextNormalDouble()
     {
         double d = getRNG().nextGaussian();
         if (debug)
@@ -201,7 +203,7 @@ public class Randomizer
      * @param i the bound on the random number to be returned. Must be positive.
      * @return the next integer between 0 and the specified value.
      */
-    public int nextInt(int i)
+    public synchronized int nextInt(int i)
     {
         int r = getRNG().nextInt(i);
         if (debug)
@@ -216,7 +218,7 @@ public class Randomizer
      * this random number generator's sequence.
      * @return the next boolean.
      */
-    public boolean nextBoolean()
+    public synchronized boolean nextBoolean()
     {
         boolean r = getRNG().nextBoolean();
         if (debug)
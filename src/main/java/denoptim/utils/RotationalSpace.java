@@ -0,0 +1,197 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.Pattern;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.files.FileContentCache;
+
+/**
+ * Immutable definition of the rotational space, i.e., the SMARTS queries
+ * identifying rotatable bonds, as defined in a text file. Instances are
+ * obtained with {@link #getRotationalSpace(String)} and are shared by all
+ * the candidates and threads that identify rotatable bonds according to the
+ * same file, which is read again only after being edited (see 
+ * {@link FileContentCache}). Since compiled SMARTS queries are not 
+ * thread-safe, each thread compiles the queries once and keeps them.
+ */
+
+public class RotationalSpace
+{
+    /**
+     * Definitions of rotational spaces read from files.
+     */
+    private static final FileContentCache<RotationalSpace> DEFINITIONS =
+            new FileContentCache<RotationalSpace>(RotationalSpace::new);
+
+    /**
+     * Absolute pathname of the source file.
+     */
+    private final String pathname;
+
+    /**
+     * The SMARTS queries indexed by the name of the rotatable bond type.
+     */
+    private final Map<String,String> mapOfSMARTS;
+
+    /**
+     * The compiled SMARTS queries. Compiled patterns are not guaranteed to
+     * be thread-safe, so each thread has its own.
+     */
+    private final ThreadLocal<Map<String,Pattern>> compiled =
+            ThreadLocal.withInitial(() -> new HashMap<String,Pattern>());
+
+//------------------------------------------------------------------------------
+
+    private RotationalSpace(File file) throws DENOPTIMException
+    {
+        this.pathname = file.getAbsolutePath();
+
+        Map<String,String> smarts = new HashMap<String,String>();
+        BufferedReader br = null;
+        String line;
+        try
+        {
+            br = new BufferedReader(new FileReader(file));
+            while ((line = br.readLine()) != null)
+            {
+                if (line.trim().length() == 0)
+                    continue;
+
+                if (line.trim().startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2)
+                {
+                    throw new DENOPTIMException("Unable to understand "
+                                        + "rotational Space definition. "
+                                        + "Check line '"+ line +"' in file "
+                                        + pathname);
+                } else {
+                    String key = parts[0];
+                    if (smarts.keySet().contains(key))
+                    {
+                        throw new DENOPTIMException("Duplicate definition of "
+                                        + "rotatabe bond named '" + key + "'. "
+                                        + "Check line '"+ line +"' in file "
+                                        + pathname);
+                    }
+
+                    //Everything is OK, thus store this definition
+                    smarts.put(key,parts[1]);
+                }
+            }
+        }
+        catch (IOException nfe)
+        {
+            throw new DENOPTIMException(nfe);
+        }
+        finally
+        {
+            try
+            {
+                if (br != null)
+                {
+                    br.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+        this.mapOfSMARTS = Collections.unmodifiableMap(smarts);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the rotational space defined in the given file. Callers asking
+     * for the same unchanged file get the same instance.
+     * @param filename the pathname of the file defining the rotational space.
+     * @return the immutable definition of the rotational space.
+     * @throws DENOPTIMException if the file cannot be read or parsed.
+     */
+    public static RotationalSpace getRotationalSpace(String filename)
+            throws DENOPTIMException
+    {
+        if (filename == null)
+        {
+            throw new DENOPTIMException("Pointer to file is "
+              + " null! annot read definition of rotational space.");
+        }
+        File file = new File(filename);
+        if (!file.exists())
+        {
+            throw new DENOPTIMException("File '" + filename
+                    + "' does not exist! Cannot find definition of rotational "
+                    + "space.");
+        }
+        return DEFINITIONS.get(file);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the unmodifiable map of SMARTS queries indexed by the name of
+     * the rotatable bond type.
+     */
+    public Map<String,String> getSMARTS()
+    {
+        return mapOfSMARTS;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Matches the SMARTS queries defining rotatable bonds using the patterns
+     * compiled for the current thread.
+     * @param mol the molecule to search in. Implicit hydrogen counts and
+     * unset bond orders are altered, see {@link ManySMARTSQuery}.
+     * @return the matches.
+     */
+    public ManySMARTSQuery match(IAtomContainer mol)
+    {
+        return new ManySMARTSQuery(mol, mapOfSMARTS, compiled.get());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the absolute pathname of the file this definition comes from.
+     */
+    public String getPathname()
+    {
+        return pathname;
+    }
+
+//------------------------------------------------------------------------------
+
+}
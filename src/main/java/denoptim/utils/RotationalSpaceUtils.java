@@ -18,10 +18,6 @@
 
 package denoptim.utils;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -32,11 +28,9 @@ import org.openscience.cdk.graph.SpanningTree;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.isomorphism.Mappings;
 import org.openscience.cdk.silent.RingSet;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
@@ -51,9 +45,6 @@ import denoptim.exception.DENOPTIMException;
 
 public class RotationalSpaceUtils  
 {
-    private static final  IChemObjectBuilder builder = 
-            SilentChemObjectBuilder.getInstance();
-
 //------------------------------------------------------------------------------    
 
     /**
@@ -93,30 +84,33 @@ public class RotationalSpaceUtils
             rotatableBonds.addAll(getInterVertexBonds(mol));
         }
 
-        // We'll use SMARTS so get rid of pseudoatoms that can create problems
-	    // We'll use this modified IAtomContainer only when dealing with SMARTS
-        IAtomContainer locMol = builder.newAtomContainer();
-        try {
-            locMol = mol.clone();
-        } catch (Throwable t) {
-            throw new DENOPTIMException(t);
-        }
-        MoleculeUtils.removeRCA(locMol);
-
-        
         if (!defRotBndsFile.equals(""))
         {
             // Get definition of rotational space as list of SMARTS queries
-            Map<String,String> listQueries = getRotationalSpaceDefinition(
-                                                                   defRotBndsFile);
+            RotationalSpace rotSpace = RotationalSpace.getRotationalSpace(
+                    defRotBndsFile);
+            Map<String,String> listQueries = rotSpace.getSMARTS();
     
+            // We'll use SMARTS so get rid of pseudoatoms that can create 
+            // problems. We'll use this modified IAtomContainer only when 
+            // dealing with SMARTS. Note that the clone has the same atom
+            // order, so the indexes of the matches identify atoms in mol.
+            IAtomContainer locMol = null;
+            try {
+                locMol = mol.clone();
+            } catch (Throwable t) {
+                throw new DENOPTIMException(t);
+            }
+            MoleculeUtils.removeRCA(locMol);
+            
             // Get bonds matching one of the definitions of rotatable bonds
-            ManySMARTSQuery msq = new ManySMARTSQuery(locMol,listQueries);
+            ManySMARTSQuery msq = rotSpace.match(locMol);
             if (msq.hasProblems())
             {
-                String msg = "WARNING! Attempt to match rotatable bonds returned "
-                             + "an error! Selecting only fragment-fragment "
-                             + "bonds. Details: " + msq.getMessage();
+                String msg = "WARNING! Attempt to match rotatable bonds "
+                        + "returned an error! Selecting only "
+                        + "fragment-fragment bonds. Details: " 
+                        + msq.getMessage();
                 logger.log(Level.WARNING, msg);
             } else {
                 //Transform list of indeces
@@ -127,26 +121,23 @@ public class RotationalSpaceUtils
                     {
                         continue;
                     }
-        
+    
                     //Put all matches in one list
                     Mappings matches = msq.getMatchesOfSMARTS(name);
                     for (int[] singleMatch : matches)
                     {
-                        //Check assumption on number of atoms involved in each bond
+                        //Check assumption on number of atoms involved in 
+                        //each bond
                         if (singleMatch.length != 2)
                         {
-                            throw new Error("DENOPTIM can only deal with bonds "
-                                    + "involving 2 atoms. Check bond " 
+                            throw new Error("DENOPTIM can only deal with "
+                                    + "bonds involving 2 atoms. Check bond "
                                     + singleMatch);
                         }
-        
-        		//NOTE the index refers to the IAtomContainer locMol that is a
-        		//clone of mol and has the same atom order. Thus we use the
-        		//atom idenx to identify atoms in mol rather than locMol.
-                        
+    
                         int idAtmA = singleMatch[0];
                         int idAtmB = singleMatch[1];
-        
+    
                         // Compare with bonds already in the list
                         boolean alreadyThere = false;
                         for (ObjectPair op : rotatableBonds)
@@ -273,7 +264,8 @@ public class RotationalSpaceUtils
 //------------------------------------------------------------------------------    
     /**
      * Read a formatted file and return a map with all the SMARTS queries 
-     * identifying rotatable bonds
+     * identifying rotatable bonds. The file is parsed only once, see 
+     * {@link RotationalSpace}.
      *
      * @param filename the name of the text file to read
      * @throws DENOPTIMException
@@ -282,79 +274,8 @@ public class RotationalSpaceUtils
     public static Map<String,String> getRotationalSpaceDefinition(
                                 String filename) throws DENOPTIMException
     {
-        Map<String,String> mapOfSMARTS = new HashMap<String,String>();
-
-        //Read the file
-        if (filename.equals(null))
-        {
-            DENOPTIMException ex = new DENOPTIMException("Pointer to file is "
-              + " null! annot read definition of rotational space.");
-            throw ex;
-        }
-        File f = new File(filename);
-        if (!f.exists())
-        {
-            DENOPTIMException ex = new DENOPTIMException("File '" + filename
-                    + "' does not exist! Cannot find definition of rotational "
-	            + "space.");
-            throw ex;
-        }
-        BufferedReader br = null;
-        String line;
-        try
-        {
-            br = new BufferedReader(new FileReader(filename));
-            while ((line = br.readLine()) != null)
-            {
-                if (line.trim().length() == 0)
-                    continue;
-
-                if (line.trim().startsWith("#"))
-                    continue;
-
-                String[] parts = line.split("\\s+");
-                if (parts.length != 2)
-                {
-                    throw new DENOPTIMException("Unable to understand "
-                                        + "rotational Space definition. "
-                                        + "Check line '"+ line +"' in file "
-                                        + filename);
-                } else {
-                    String key = parts[0];
-                    String smarts = parts[1];
-                    if (mapOfSMARTS.keySet().contains(key))
-                    {
-                        throw new DENOPTIMException("Duplicate definition of "
-                                        + "rotatabe bond named '" + key + "'. "
-                                        + "Check line '"+ line +"' in file "
-                                        + filename);
-                    }
-
-                    //Everything is OK, thus store this definition
-                    mapOfSMARTS.put(key,smarts);
-                }
-            }
-        }
-        catch (IOException nfe)
-        {
-            throw new DENOPTIMException(nfe);
-        }
-        finally
-        {
-            try
-            {
-                if (br != null)
-                {
-                    br.close();
-                }
-            }
-            catch (IOException ioe)
-            {
-                throw new DENOPTIMException(ioe);
-            }
-        }
-
-        return mapOfSMARTS;
+        return new HashMap<String,String>(
+                RotationalSpace.getRotationalSpace(filename).getSMARTS());
     }
 
 //------------------------------------------------------------------------------
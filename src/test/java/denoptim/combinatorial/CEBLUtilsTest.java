@@ -0,0 +1,131 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.combinatorial;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for {@link CEBLUtils}.
+ */
+
+public class CEBLUtilsTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private CheckPoint makeCheckPoint(int level)
+    {
+        CheckPoint chk = new CheckPoint();
+        chk.setLevel(level);
+        chk.setRootId(level + 1);
+        chk.setSafelyCompletedGraphId(level + 2);
+        chk.setNextIds(new ArrayList<Integer>(Arrays.asList(level, 0, 1)));
+        return chk;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSerializeCheckPointReplacesFile() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "chk.json";
+        DenoptimIO.writeData(pathname, "not a checkpoint", false);
+
+        CEBLUtils.serializeCheckPoint(makeCheckPoint(3), pathname);
+
+        CheckPoint read = CEBLUtils.deserializeCheckpoint(pathname);
+        assertEquals(3, read.getLevel());
+        assertEquals(4, read.getRootId());
+        assertEquals(5, read.getLatestSafelyCompletedGraphId());
+        assertEquals(Arrays.asList(3, 0, 1), read.getNextIds());
+        assertFalse(new File(pathname + ".tmp").exists(),
+                "Temporary file left behind");
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Readers running while the checkpoint is being replaced must always find
+     * a complete checkpoint.
+     */
+    @Test
+    public void testCheckPointNeverPartiallyWritten() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "chk.json";
+        CEBLUtils.serializeCheckPoint(makeCheckPoint(0), pathname);
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread reader = new Thread(() -> {
+            int lastLevel = 0;
+            try
+            {
+                while (!done.get())
+                {
+                    CheckPoint read = CEBLUtils.deserializeCheckpoint(
+                            pathname);
+                    if (read == null || read.getNextIds() == null
+                            || read.getLevel() < lastLevel)
+                    {
+                        throw new IllegalStateException("Bad checkpoint "
+                                + "read: " + read);
+                    }
+                    lastLevel = read.getLevel();
+                }
+            } catch (Throwable t)
+            {
+                failure.set(t);
+            }
+        });
+        reader.start();
+
+        for (int i=1; i<300; i++)
+        {
+            CEBLUtils.serializeCheckPoint(makeCheckPoint(i), pathname);
+        }
+        done.set(true);
+        reader.join(10000);
+
+        assertNull(failure.get(), "Reader found an incomplete checkpoint");
+        CheckPoint last = CEBLUtils.deserializeCheckpoint(pathname);
+        assertNotNull(last);
+        assertEquals(299, last.getLevel());
+    }
+
+//------------------------------------------------------------------------------
+
+}
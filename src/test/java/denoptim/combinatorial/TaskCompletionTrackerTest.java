@@ -0,0 +1,134 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.combinatorial;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.fitness.FitnessParameters;
+import denoptim.graph.DGraph;
+import denoptim.programs.combinatorial.CEBLParameters;
+
+/**
+ * Unit test for {@link TaskCompletionTracker}.
+ */
+
+public class TaskCompletionTrackerTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private List<GraphBuildingTask> makeTasks(int num) throws Exception
+    {
+        CEBLParameters settings = new CEBLParameters();
+        settings.setParameters(new FitnessParameters());
+        List<GraphBuildingTask> tasks = new ArrayList<GraphBuildingTask>();
+        for (int i=0; i<num; i++)
+        {
+            tasks.add(new GraphBuildingTask(settings, new DGraph(), null, 0,
+                    tempDir.getAbsolutePath(), 0));
+        }
+        return tasks;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testOutOfOrderCompletion() throws Exception
+    {
+        TaskCompletionTracker tracker = new TaskCompletionTracker();
+        List<GraphBuildingTask> tasks = makeTasks(5);
+        int[] ids = new int[tasks.size()];
+        for (int i=0; i<tasks.size(); i++)
+        {
+            ids[i] = tracker.register(tasks.get(i));
+        }
+
+        // Completions ahead of the first task do not move the watermark
+        tracker.notifyCompleted(tasks.get(2), ids[2]);
+        tracker.notifyCompleted(tasks.get(4), ids[4]);
+        assertNull(tracker.getLatestSafelyCompletedTask());
+        assertFalse(tracker.allCompleted());
+
+        tracker.notifyCompleted(tasks.get(0), ids[0]);
+        assertTrue(tasks.get(0) == tracker.getLatestSafelyCompletedTask());
+
+        // Filling the gap moves the watermark across the completed tasks
+        tracker.notifyCompleted(tasks.get(1), ids[1]);
+        assertTrue(tasks.get(2) == tracker.getLatestSafelyCompletedTask());
+
+        // Repeated notifications change nothing
+        tracker.notifyCompleted(tasks.get(2), ids[2]);
+        tracker.notifyCompleted(tasks.get(4), ids[4]);
+        assertTrue(tasks.get(2) == tracker.getLatestSafelyCompletedTask());
+        assertFalse(tracker.allCompleted());
+
+        tracker.notifyCompleted(tasks.get(3), ids[3]);
+        assertTrue(tasks.get(4) == tracker.getLatestSafelyCompletedTask());
+        assertTrue(tracker.allCompleted());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testExceptionsAndReset() throws Exception
+    {
+        TaskCompletionTracker tracker = new TaskCompletionTracker();
+        List<GraphBuildingTask> tasks = makeTasks(3);
+        int id0 = tracker.register(tasks.get(0));
+        int id1 = tracker.register(tasks.get(1));
+
+        // A task that fails is never completed, so it holds the watermark
+        Exception first = new Exception("first");
+        tracker.notifyException(tasks.get(0), id0, first);
+        tracker.notifyException(tasks.get(1), id1, new Exception("second"));
+        tracker.notifyCompleted(tasks.get(1), id1);
+        assertTrue(tracker.hasException());
+        assertTrue(first == tracker.getException());
+        assertNull(tracker.getLatestSafelyCompletedTask());
+        assertFalse(tracker.allCompleted());
+
+        // Notifications from tasks registered before the reset are ignored
+        tracker.reset();
+        assertFalse(tracker.hasException());
+        assertTrue(tracker.allCompleted());
+        int id2 = tracker.register(tasks.get(2));
+        tracker.notifyCompleted(tasks.get(0), id0);
+        tracker.notifyException(tasks.get(1), id1, first);
+        assertNull(tracker.getLatestSafelyCompletedTask());
+        assertFalse(tracker.hasException());
+
+        tracker.notifyCompleted(tasks.get(2), id2);
+        assertTrue(tasks.get(2) == tracker.getLatestSafelyCompletedTask());
+        assertTrue(tracker.allCompleted());
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,133 @@
+package denoptim.fragmenter;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import denoptim.programs.fragmenter.CuttingRule;
+import denoptim.utils.ManySMARTSQuery;
+
+/**
+ * Unit test for the matcher of cutting rules.
+ */
+public class CuttingRulesMatcherTest
+{
+
+    /**
+     * Private builder of atom containers
+     */
+    private IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+
+//-----------------------------------------------------------------------------
+
+    @Test
+    public void testPreScreening() throws Exception
+    {
+        // H-C#C-O-H
+        IAtomContainer mol = builder.newAtomContainer();
+        mol.addAtom(new Atom("H")); // 0
+        mol.addAtom(new Atom("C")); // 1
+        mol.addAtom(new Atom("C")); // 2
+        mol.addAtom(new Atom("O")); // 3
+        mol.addAtom(new Atom("H")); // 4
+        mol.addBond(0, 1, IBond.Order.SINGLE);
+        mol.addBond(1, 2, IBond.Order.TRIPLE);
+        mol.addBond(2, 3, IBond.Order.SINGLE);
+        mol.addBond(3, 4, IBond.Order.SINGLE);
+
+        ArrayList<String> empty = new ArrayList<String>();
+        List<CuttingRule> rules = new ArrayList<CuttingRule>();
+        rules.add(new CuttingRule("RuleA","[#6]","[#8]","-",0,empty));
+        rules.add(new CuttingRule("RuleB","[#6]","[#6]","#",1,empty));
+        rules.add(new CuttingRule("RuleC","[#6]","[#6]","=",2,empty));
+        rules.add(new CuttingRule("RuleD","[#8]","[S,Se]","-",3,empty));
+        rules.add(new CuttingRule("RuleE","[$([#6]#[#6])]","[*]","-",4,empty));
+
+        CuttingRulesMatcher matcher = CuttingRulesMatcher.getInstance(rules);
+        assertSame(matcher, CuttingRulesMatcher.getInstance(rules));
+        assertSame(matcher, CuttingRulesMatcher.getInstance(
+                new ArrayList<CuttingRule>(rules)));
+
+        Map<String,String> candidates = matcher.getCandidateQueries(mol);
+        assertTrue(candidates.containsKey("RuleA"));
+        assertTrue(candidates.containsKey("RuleB"));
+        assertFalse(candidates.containsKey("RuleC"));
+        assertFalse(candidates.containsKey("RuleD"));
+        assertTrue(candidates.containsKey("RuleE"));
+
+        ManySMARTSQuery msq = matcher.match(mol);
+        assertFalse(msq.hasProblems());
+        assertEquals(1, msq.getNumMatchesOfQuery("RuleA"));
+        assertEquals(2, msq.getNumMatchesOfQuery("RuleB"));
+        assertEquals(0, msq.getNumMatchesOfQuery("RuleC"));
+        assertEquals(0, msq.getNumMatchesOfQuery("RuleD"));
+
+        // Reuse of compiled patterns gives the same result
+        msq = matcher.match(mol);
+        assertEquals(1, msq.getNumMatchesOfQuery("RuleA"));
+        assertEquals(2, msq.getNumMatchesOfQuery("RuleB"));
+    }
+
+//-----------------------------------------------------------------------------
+
+    @Test
+    public void testSharedInstanceAfterChangeOfRules() throws Exception
+    {
+        IAtomContainer mol = builder.newAtomContainer();
+        mol.addAtom(new Atom("C"));
+        mol.addAtom(new Atom("O"));
+        mol.addBond(0, 1, IBond.Order.SINGLE);
+
+        ArrayList<String> empty = new ArrayList<String>();
+        List<CuttingRule> rules = new ArrayList<CuttingRule>();
+        rules.add(new CuttingRule("RuleX","[#6]","[#8]","-",0,empty));
+        CuttingRulesMatcher matcherX = CuttingRulesMatcher.getInstance(rules);
+        assertTrue(matcherX.getCandidateQueries(mol).containsKey("RuleX"));
+
+        // Changing the list does not affect the matcher already given...
+        rules.set(0, new CuttingRule("RuleY","[#8]","[#6]","-",0,empty));
+        assertTrue(matcherX.getCandidateQueries(mol).containsKey("RuleX"));
+        assertFalse(matcherX.getCandidateQueries(mol).containsKey("RuleY"));
+
+        // ...and the changed list gets a matcher of its own content
+        CuttingRulesMatcher matcherY = CuttingRulesMatcher.getInstance(rules);
+        assertNotSame(matcherX, matcherY);
+        assertTrue(matcherY.getCandidateQueries(mol).containsKey("RuleY"));
+        assertFalse(matcherY.getCandidateQueries(mol).containsKey("RuleX"));
+        assertSame(matcherY, CuttingRulesMatcher.getInstance(rules));
+    }
+
+//-----------------------------------------------------------------------------
+
+}
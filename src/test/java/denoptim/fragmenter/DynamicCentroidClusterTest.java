@@ -1,5 +1,6 @@
 package denoptim.fragmenter;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
@@ -128,6 +129,45 @@ public class DynamicCentroidClusterTest
         assertTrue(nearest == cf2);
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testRemoveAll() throws Exception
+    {
+        List<ClusterableFragment> sample = new ArrayList<ClusterableFragment>();
+        for (int i=0; i<3; i++)
+        {
+            IAtomContainer mol = builder.newAtomContainer();
+            mol.addAtom(new Atom("C", new Point3d(0,0,0)));
+            mol.addAtom(new Atom("H", new Point3d(1+i,0,0)));
+            mol.addBond(0,1,IBond.Order.SINGLE);
+            Fragment frag = new Fragment(mol, BBType.UNDEFINED);
+            frag.addAP(0, APClass.make("A:0"), new Point3d(-1-i,0,0));
+            ClusterableFragment cf = new ClusterableFragment(frag);
+            cf.setNaturalNodeOrder();
+            sample.add(cf);
+        }
+        
+        DynamicCentroidCluster cluster = new DynamicCentroidCluster();
+        for (ClusterableFragment cf : sample)
+            cluster.addPoint(cf);
+        
+        List<ClusterableFragment> toRemove = 
+                new ArrayList<ClusterableFragment>();
+        toRemove.add(sample.get(0));
+        toRemove.add(sample.get(1));
+        cluster.removeAll(toRemove);
+        
+        assertEquals(2, toRemove.size());
+        assertEquals(1, cluster.getPoints().size());
+        assertTrue(cluster.getPoints().get(0) == sample.get(2));
+        
+        // The centroid follows the remaining member
+        DistanceAsRMSD measure = new DistanceAsRMSD();
+        assertTrue(measure.compute(cluster.getCentroid().getPoint(), 
+                sample.get(2).getPoint()) < 0.0001);
+    }
+    
 //------------------------------------------------------------------------------
 
 }
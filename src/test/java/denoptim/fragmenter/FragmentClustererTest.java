@@ -5,7 +5,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.vecmath.Matrix4d;
 import javax.vecmath.Point3d;
@@ -597,6 +599,50 @@ public class FragmentClustererTest
         */
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Members moved between clusters must end up in one cluster only.
+     */
+    @Test
+    public void testClustersAreDisjoint() throws Exception
+    {
+        double noise = 0.25;
+        List<ClusterableFragment> sample = new ArrayList<ClusterableFragment>();
+        for (int k=1; k<6; k++)
+        {
+            Point3d[] points = new Point3d[] {
+                    new Point3d(k,0,0), 
+                    new Point3d(0,0,0)};
+            for (int i=0; i<5; i++)
+            {
+                IAtomContainer mol = builder.newAtomContainer();
+                mol.addAtom(new Atom("C", getNoisyPoint(points[0],noise)));
+                Fragment frag = new Fragment(mol, BBType.UNDEFINED);
+                frag.addAP(0, APClass.make("A:0"), 
+                        getNoisyPoint(points[1],noise));
+                ClusterableFragment cf = new ClusterableFragment(frag);
+                cf.setNaturalNodeOrder();
+                sample.add(cf);
+            }
+        }
+        
+        FragmentClusterer fc = new FragmentClusterer(sample,
+                new FragmenterParameters());
+        fc.cluster();
+        
+        assertEquals(5,fc.getClusters().size());
+        Set<ClusterableFragment> members = new HashSet<ClusterableFragment>();
+        int numMembers = 0;
+        for (DynamicCentroidCluster cluster : fc.getClusters())
+        {
+            members.addAll(cluster.getPoints());
+            numMembers += cluster.getPoints().size();
+        }
+        assertEquals(sample.size(), numMembers);
+        assertEquals(sample.size(), members.size());
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
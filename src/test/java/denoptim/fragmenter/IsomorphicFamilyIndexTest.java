@@ -0,0 +1,138 @@
+package denoptim.fragmenter;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.silent.Bond;
+
+import denoptim.graph.APClass;
+import denoptim.graph.Edge.BondType;
+import denoptim.graph.Fragment;
+import denoptim.graph.Vertex;
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for {@link IsomorphicFamilyIndex}.
+ */
+
+public class IsomorphicFamilyIndexTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a linear chain of atoms with one AP on the given atom.
+     */
+    private Fragment makeChain(String[] elements, int apAtm) throws Exception
+    {
+        APClass apc = APClass.make("isoFam", 0, BondType.SINGLE);
+        Fragment frag = new Fragment();
+        IAtom prev = null;
+        for (int i=0; i<elements.length; i++)
+        {
+            IAtom atm = new Atom(elements[i],
+                    new Point3d(new double[]{1.5*i, 0.0, 0.0}));
+            frag.addAtom(atm);
+            if (prev != null)
+                frag.addBond(new Bond(prev, atm));
+            prev = atm;
+        }
+        frag.addAP(apAtm, apc, new Point3d(new double[]{1.5*apAtm, 1.0, 0.0}));
+        frag.projectAPsToProperties();
+        return frag;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testFamilies() throws Exception
+    {
+        // O-C-C-O with the AP on either O atom: isomorphic
+        Fragment fragA = makeChain(new String[]{"O", "C", "C", "O"}, 0);
+        Fragment fragB = makeChain(new String[]{"O", "C", "C", "O"}, 3);
+        // C-O-O-C with the AP on a C atom: same invariant, not isomorphic
+        Fragment fragC = makeChain(new String[]{"C", "O", "O", "C"}, 0);
+        assertEquals(fragA.getIsomorphismInvariant(),
+                fragC.getIsomorphismInvariant());
+
+        IsomorphicFamilyIndex index = new IsomorphicFamilyIndex();
+        IsomorphicFamilyIndex.MWSlot slot = index.getSlot("1");
+        assertSame(slot, index.getSlot("1"));
+        assertNull(slot.findIsomorph(fragA));
+
+        slot.add(fragA);
+        assertSame(fragA, slot.findIsomorph(fragB));
+        assertNull(slot.findIsomorph(fragC));
+
+        slot.add(fragC);
+        assertSame(fragC, slot.findIsomorph(
+                makeChain(new String[]{"C", "O", "O", "C"}, 3)));
+        assertSame(fragA, slot.findIsomorph(fragB));
+
+        // Slots do not see each other's fragments
+        assertNull(index.getSlot("2").findIsomorph(fragB));
+
+        index.clear();
+        assertNull(index.getSlot("1").findIsomorph(fragB));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testInitializeFromFile() throws Exception
+    {
+        Fragment fragA = makeChain(new String[]{"O", "C", "C", "O"}, 0);
+        Fragment fragC = makeChain(new String[]{"C", "O", "O", "C"}, 0);
+        File file = new File(tempDir, "unq.sdf");
+        DenoptimIO.writeVertexesToSDF(file,
+                new ArrayList<Vertex>(Arrays.asList(fragA, fragC)), false);
+
+        IsomorphicFamilyIndex.MWSlot slot =
+                new IsomorphicFamilyIndex().getSlot("1");
+        List<Vertex> imported = slot.initialize(file);
+        assertEquals(2, imported.size());
+        assertTrue(imported.contains(slot.findIsomorph(
+                makeChain(new String[]{"O", "C", "C", "O"}, 3))));
+        assertNotNull(slot.findIsomorph(fragC));
+
+        // The file is read only once
+        assertTrue(slot.initialize(file).isEmpty());
+    }
+
+//------------------------------------------------------------------------------
+
+}
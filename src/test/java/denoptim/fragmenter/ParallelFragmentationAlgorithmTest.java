@@ -1,6 +1,8 @@
 package denoptim.fragmenter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /*
@@ -23,6 +25,9 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -32,6 +37,7 @@ import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 import denoptim.constants.DENOPTIMConstants;
+import denoptim.fragmenter.StreamingFragmenterTask.StreamedResult;
 import denoptim.io.DenoptimIO;
 import denoptim.programs.fragmenter.FragmenterParameters;
 
@@ -109,5 +115,116 @@ public class ParallelFragmentationAlgorithmTest
         }
 	}
 
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testStreamingPreservesInputOrder() throws Exception
+    {
+        File workDir = new File(tempDir.getAbsolutePath() + SEP + "streaming");
+        assertTrue(workDir.mkdir());
+        String structureFile = workDir.getAbsolutePath() + SEP + "mols.sdf";
+        
+        ArrayList<IAtomContainer> mols = new ArrayList<IAtomContainer>();
+        for (int i=0; i<25; i++)
+        {
+            IAtomContainer mol = builder.newAtomContainer();
+            for (int j=0; j<(i % 4)+1; j++)
+            {
+                mol.addAtom(new Atom("C"));
+            }
+            mol.setTitle("mol"+i);
+            mols.add(mol);
+        }
+        DenoptimIO.writeSDFFile(structureFile, mols);
+        
+        FragmenterParameters settings = new FragmenterParameters();
+        settings.setWorkDirectory(workDir.getAbsolutePath());
+        settings.setStructuresFile(structureFile);
+        settings.setNumTasks(3);
+        settings.setPreserveInputOrder(true);
+        settings.setStreamInput(true);
+        settings.checkParameters();
+        settings.processParameters();
+        
+        ParallelFragmentationAlgorithm algorithm = 
+                new ParallelFragmentationAlgorithm(settings);
+        algorithm.run();
+        
+        File results = new File(FragmenterTask.getResultsFileName(settings));
+        assertTrue(results.exists());
+        List<IAtomContainer> output = DenoptimIO.readAllAtomContainers(results);
+        assertEquals(mols.size(), output.size());
+        for (int i=0; i<mols.size(); i++)
+        {
+            assertEquals("mol"+i, output.get(i).getTitle());
+        }
+        for (int i=0; i<3; i++)
+        {
+            assertFalse(new File(ParallelFragmentationAlgorithm
+                    .getStructureFileNameBatch(settings, i)).exists());
+        }
+    }
+    
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testWriterReplacesStaleOutput() throws Exception
+    {
+        File output = new File(tempDir.getAbsolutePath() + SEP 
+                + "staleResults.sdf");
+        List<IAtomContainer> stale = new ArrayList<IAtomContainer>();
+        for (int i=0; i<3; i++)
+        {
+            IAtomContainer mol = builder.newAtomContainer();
+            mol.addAtom(new Atom("O"));
+            mol.setTitle("stale"+i);
+            stale.add(mol);
+        }
+        DenoptimIO.writeSDFFile(output.getAbsolutePath(), stale);
+        
+        ArrayBlockingQueue<StreamedResult> queue = 
+                new ArrayBlockingQueue<StreamedResult>(10);
+        StreamedResult result = new StreamedResult(0);
+        IAtomContainer mol = builder.newAtomContainer();
+        mol.addAtom(new Atom("C"));
+        mol.setTitle("fresh");
+        result.structures.add(mol);
+        queue.put(result);
+        queue.put(StreamedResult.endOfStream());
+        
+        FragmenterResultsWriter writer = new FragmenterResultsWriter(queue, 1,
+                true, output, new AtomicBoolean(false));
+        writer.run();
+        
+        assertNull(writer.getException());
+        List<IAtomContainer> written = DenoptimIO.readAllAtomContainers(
+                output);
+        assertEquals(1, written.size());
+        assertEquals("fresh", written.get(0).getTitle());
+    }
+    
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testWriterStopsOnAbort() throws Exception
+    {
+        File output = new File(tempDir.getAbsolutePath() + SEP 
+                + "abortedResults.sdf");
+        ArrayBlockingQueue<StreamedResult> queue = 
+                new ArrayBlockingQueue<StreamedResult>(10);
+        AtomicBoolean abort = new AtomicBoolean(false);
+        
+        // Two producers, of which only one signals the end of its stream
+        queue.put(StreamedResult.endOfStream());
+        FragmenterResultsWriter writer = new FragmenterResultsWriter(queue, 2,
+                false, output, abort);
+        Thread writerThread = new Thread(writer);
+        writerThread.start();
+        
+        abort.set(true);
+        writerThread.join(10 * StreamingFragmenterTask.POLLINGTIME);
+        assertFalse(writerThread.isAlive());
+    }
+
 //------------------------------------------------------------------------------
 }
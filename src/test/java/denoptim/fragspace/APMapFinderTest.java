@@ -19,20 +19,26 @@
 package denoptim.fragspace;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
 import denoptim.exception.DENOPTIMException;
 import denoptim.graph.APClass;
 import denoptim.graph.APMapping;
+import denoptim.graph.AttachmentPoint;
 import denoptim.graph.DGraph;
 import denoptim.graph.Edge;
 import denoptim.graph.EmptyVertex;
+import denoptim.graph.SymmetricSet;
 import denoptim.graph.Vertex;
 import denoptim.graph.Vertex.BBType;
 
@@ -272,6 +278,167 @@ public class APMapFinderTest
         assertEquals(vG.getAP(0), apmf.getChosenAPMapping().get(vF.getAP(0)));
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testAPMappingEnumerator() throws Exception
+    {
+        prepare();
+        EmptyVertex vA = new EmptyVertex();
+        vA.setBuildingBlockType(BBType.FRAGMENT);
+        vA.addAP(APCA);
+        vA.addAP(APCA);
+
+        EmptyVertex vB = new EmptyVertex();
+        vB.setBuildingBlockType(BBType.FRAGMENT);
+        vB.addAP(APCA);
+        vB.addAP(APCA);
+        vB.addAP(APCA);
+        
+        List<AttachmentPoint> keys = vA.getAttachmentPoints();
+        Map<AttachmentPoint,List<AttachmentPoint>> possibilities = 
+                new HashMap<AttachmentPoint,List<AttachmentPoint>>();
+        for (AttachmentPoint ap : keys)
+        {
+            possibilities.put(ap, 
+                    new ArrayList<AttachmentPoint>(vB.getAttachmentPoints()));
+        }
+        
+        List<APMapping> found = new ArrayList<APMapping>();
+        APMappingEnumerator enumerator = new APMappingEnumerator(keys, 
+                possibilities, null, null, null);
+        assertTrue(enumerator.enumerate(null, (m) -> found.add(m)));
+        assertEquals(6, found.size());
+        assertEquals(vB.getAP(0), found.get(0).get(vA.getAP(0)));
+        assertEquals(vB.getAP(1), found.get(0).get(vA.getAP(1)));
+        
+        // Stop at the first mapping
+        found.clear();
+        assertFalse(enumerator.enumerate(null, (m) -> !found.add(m)));
+        assertEquals(1, found.size());
+        
+        // Only mappings including a given value
+        found.clear();
+        enumerator = new APMappingEnumerator(keys, possibilities, null, 
+                Arrays.asList(vB.getAP(2)), null);
+        enumerator.enumerate(null, (m) -> found.add(m));
+        assertEquals(4, found.size());
+        for (APMapping apm : found)
+        {
+            assertTrue(apm.containsValue(vB.getAP(2)));
+        }
+        
+        // Symmetric APs are interchangeable
+        ArrayList<SymmetricSet> symSets = new ArrayList<SymmetricSet>();
+        symSets.add(new SymmetricSet(new ArrayList<Integer>(
+                Arrays.asList(0, 1, 2))));
+        vB.setSymmetricAP(symSets);
+        found.clear();
+        enumerator = new APMappingEnumerator(keys, possibilities, null, null, 
+                null);
+        enumerator.enumerate(null, (m) -> found.add(m));
+        assertEquals(1, found.size());
+        assertEquals(vB.getAP(0), found.get(0).get(vA.getAP(0)));
+        assertEquals(vB.getAP(1), found.get(0).get(vA.getAP(1)));
+        assertTrue(enumerator.getSymmetrySkippedPairings() > 0);
+        assertFalse(enumerator.isTruncated());
+    }
+    
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testAPMappingEnumeratorJointRequirements() throws Exception
+    {
+        prepare();
+        EmptyVertex vA = new EmptyVertex();
+        vA.setBuildingBlockType(BBType.FRAGMENT);
+        for (int i=0; i<4; i++)
+            vA.addAP(APCA);
+
+        EmptyVertex vB = new EmptyVertex();
+        vB.setBuildingBlockType(BBType.FRAGMENT);
+        for (int i=0; i<4; i++)
+            vB.addAP(APCA);
+        
+        // Two needy values can only be paired with the last key, so no 
+        // mapping can include both. Each value is individually reachable.
+        List<AttachmentPoint> keys = vA.getAttachmentPoints();
+        Map<AttachmentPoint,List<AttachmentPoint>> possibilities = 
+                new HashMap<AttachmentPoint,List<AttachmentPoint>>();
+        for (int i=0; i<3; i++)
+        {
+            possibilities.put(vA.getAP(i), new ArrayList<AttachmentPoint>(
+                    Arrays.asList(null, vB.getAP(0), vB.getAP(1))));
+        }
+        possibilities.put(vA.getAP(3), new ArrayList<AttachmentPoint>(
+                Arrays.asList(null, vB.getAP(2), vB.getAP(3))));
+        
+        List<APMapping> found = new ArrayList<APMapping>();
+        APMappingEnumerator enumerator = new APMappingEnumerator(keys, 
+                possibilities, null, 
+                Arrays.asList(vB.getAP(2), vB.getAP(3)), null);
+        assertTrue(enumerator.enumerate(null, (m) -> found.add(m)));
+        assertEquals(0, found.size());
+        // The search is abandoned at the root
+        assertEquals(1, enumerator.getNumberOfVisitedNodes());
+        assertEquals(1, enumerator.getPrunedBranches());
+        
+        // Same for keys that must be mapped and compete for one value
+        possibilities.clear();
+        for (int i=0; i<4; i++)
+        {
+            possibilities.put(vA.getAP(i), new ArrayList<AttachmentPoint>(
+                    Arrays.asList(null, vB.getAP(0))));
+        }
+        enumerator = new APMappingEnumerator(keys, possibilities, 
+                Arrays.asList(vA.getAP(2), vA.getAP(3)), null, null);
+        assertTrue(enumerator.enumerate(null, (m) -> found.add(m)));
+        assertEquals(0, found.size());
+        assertEquals(1, enumerator.getNumberOfVisitedNodes());
+    }
+    
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testAPMappingEnumeratorBudget() throws Exception
+    {
+        prepare();
+        EmptyVertex vA = new EmptyVertex();
+        vA.setBuildingBlockType(BBType.FRAGMENT);
+        EmptyVertex vB = new EmptyVertex();
+        vB.setBuildingBlockType(BBType.FRAGMENT);
+        for (int i=0; i<6; i++)
+        {
+            vA.addAP(APCA);
+            vB.addAP(APCA);
+        }
+        
+        List<AttachmentPoint> keys = vA.getAttachmentPoints();
+        Map<AttachmentPoint,List<AttachmentPoint>> possibilities = 
+                new HashMap<AttachmentPoint,List<AttachmentPoint>>();
+        for (AttachmentPoint ap : keys)
+        {
+            possibilities.put(ap, 
+                    new ArrayList<AttachmentPoint>(vB.getAttachmentPoints()));
+        }
+        
+        List<APMapping> found = new ArrayList<APMapping>();
+        APMappingEnumerator enumerator = new APMappingEnumerator(keys, 
+                possibilities, null, null, null);
+        enumerator.setMaxNodes(50);
+        assertFalse(enumerator.enumerate(null, (m) -> found.add(m)));
+        assertTrue(enumerator.isTruncated());
+        assertEquals(51, enumerator.getNumberOfVisitedNodes());
+        assertTrue(found.size() > 0);
+        assertTrue(found.size() < 720);
+        
+        found.clear();
+        enumerator.setMaxNodes(0);
+        assertTrue(enumerator.enumerate(null, (m) -> found.add(m)));
+        assertFalse(enumerator.isTruncated());
+        assertEquals(720, found.size());
+    }
+    
 //------------------------------------------------------------------------------
     
 }
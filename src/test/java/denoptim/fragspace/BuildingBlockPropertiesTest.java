@@ -0,0 +1,328 @@
+package denoptim.fragspace;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.PseudoAtom;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.silent.Bond;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.graph.APClass;
+import denoptim.graph.DGraph;
+import denoptim.graph.Edge.BondType;
+import denoptim.graph.Fragment;
+import denoptim.graph.Ring;
+import denoptim.graph.Template;
+import denoptim.graph.Vertex;
+import denoptim.graph.Vertex.BBType;
+import denoptim.programs.denovo.GAParameters;
+import denoptim.utils.MoleculeUtils;
+
+/**
+ * Unit test for BuildingBlockProperties
+ */
+
+public class BuildingBlockPropertiesTest
+{
+
+//------------------------------------------------------------------------------
+
+    private Fragment makeFragment(APClass apc) throws Exception
+    {
+        // Cl-C(H)(H)-O with a dummy atom and two APs
+        Fragment frg = new Fragment();
+        Atom c = new Atom("C", new Point3d(new double[]{0.0, 0.0, 0.0}));
+        Atom cl = new Atom("Cl", new Point3d(new double[]{1.7, 0.0, 0.0}));
+        Atom o = new Atom("O", new Point3d(new double[]{-1.4, 0.0, 0.0}));
+        Atom h1 = new Atom("H", new Point3d(new double[]{0.0, 1.0, 0.0}));
+        Atom h2 = new Atom("H", new Point3d(new double[]{0.0, -1.0, 0.0}));
+        PseudoAtom du = new PseudoAtom("Du",
+                new Point3d(new double[]{0.0, 0.0, 1.0}));
+        frg.addAtom(c);
+        frg.addAtom(cl);
+        frg.addAtom(o);
+        frg.addAtom(h1);
+        frg.addAtom(h2);
+        frg.addAtom(du);
+        frg.addBond(new Bond(c, cl));
+        frg.addBond(new Bond(c, o));
+        frg.addBond(new Bond(c, h1));
+        frg.addBond(new Bond(c, h2));
+        frg.addBond(new Bond(c, du));
+        frg.addAPOnAtom(o, apc, new Point3d(new double[]{-2.4, 0.0, 0.0}));
+        frg.addAPOnAtom(o, apc, new Point3d(new double[]{-2.4, 1.0, 0.0}));
+        frg.projectAPsToProperties();
+        return frg;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testFromAtomContainerAndSum() throws Exception
+    {
+        APClass apc = APClass.make("bbProps", 0, BondType.SINGLE);
+        Fragment frg = makeFragment(apc);
+
+        BuildingBlockProperties props =
+                BuildingBlockProperties.fromAtomContainer(
+                        frg.getIAtomContainer());
+        assertEquals(3, props.getHeavyAtomCount());
+        assertEquals(2, props.getElementCount("H"));
+        assertEquals(1, props.getElementCount("Cl"));
+        assertEquals(0, props.getElementCount("Du"));
+        assertEquals(0, props.getRingCount());
+
+        // The dummy atom does not contribute to the weight, which is a lower
+        // bound of the molecular weight
+        Fragment noDu = makeFragment(apc);
+        noDu.removeAtom(noDu.getAtom(5));
+        double mw = MoleculeUtils.getMolecularWeight(noDu.getIAtomContainer());
+        assertTrue(props.getMolecularWeight() > 0.99 * mw);
+        assertTrue(props.getMolecularWeight() <= mw + 0.0001);
+
+        // Additivity over the vertexes of a graph
+        frg.setBuildingBlockType(BBType.FRAGMENT);
+        Fragment frg2 = makeFragment(apc);
+        frg2.setBuildingBlockType(BBType.FRAGMENT);
+        DGraph graph = new DGraph();
+        graph.addVertex(frg);
+        graph.appendVertexOnAP(frg.getAP(0), frg2.getAP(0));
+
+        HashMap<APClass,ArrayList<APClass>> cpMap =
+                new HashMap<APClass,ArrayList<APClass>>();
+        FragmentSpace fs = new FragmentSpace(new FragmentSpaceParameters(),
+                new ArrayList<Vertex>(),
+                new ArrayList<Vertex>(),
+                new ArrayList<Vertex>(),
+                cpMap, new HashMap<APClass,APClass>(),
+                new HashSet<APClass>(), cpMap);
+        BuildingBlockProperties sum = fs.estimateProperties(graph);
+        assertEquals(6, sum.getHeavyAtomCount());
+        assertEquals(4, sum.getElementCount("H"));
+        assertEquals(2, sum.getElementCount("Cl"));
+        assertEquals(2*props.getMolecularWeight(), sum.getMolecularWeight(),
+                0.001);
+        assertEquals(0, sum.getRingCount());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a fragment space where both the only scaffold and the only 
+     * fragment are made by {@link #makeFragment(APClass)}.
+     */
+    private FragmentSpace makeFragmentSpace(FragmentSpaceParameters fsp, 
+            APClass apc) throws Exception
+    {
+        HashMap<APClass,ArrayList<APClass>> cpMap =
+                new HashMap<APClass,ArrayList<APClass>>();
+        cpMap.put(apc, new ArrayList<APClass>(Arrays.asList(apc)));
+        return new FragmentSpace(fsp,
+                new ArrayList<Vertex>(Arrays.asList(makeFragment(apc))),
+                new ArrayList<Vertex>(Arrays.asList(makeFragment(apc))),
+                new ArrayList<Vertex>(),
+                cpMap, new HashMap<APClass,APClass>(),
+                new HashSet<APClass>(), cpMap);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a graph with a scaffold and a fragment taken from the library.
+     */
+    private DGraph makeGraph(FragmentSpace fs) throws Exception
+    {
+        DGraph graph = new DGraph();
+        Vertex scaff = Vertex.newVertexFromLibrary(0, BBType.SCAFFOLD, fs);
+        Vertex frag = Vertex.newVertexFromLibrary(0, BBType.FRAGMENT, fs);
+        graph.addVertex(scaff);
+        graph.appendVertexOnAP(scaff.getAP(0), frag.getAP(0));
+        return graph;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs {@link DGraph#checkConsistency} collecting the messages logged to
+     * explain any rejection.
+     */
+    private Object[] checkConsistency(DGraph graph, GAParameters settings,
+            List<String> messages) throws Exception
+    {
+        Logger logger = settings.getLogger();
+        Level oldLevel = logger.getLevel();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record)
+            {
+                messages.add(record.getMessage());
+            }
+            @Override
+            public void flush() {}
+            @Override
+            public void close() {}
+        };
+        logger.setLevel(Level.FINE);
+        logger.addHandler(handler);
+        try
+        {
+            return graph.checkConsistency(settings);
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(oldLevel);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testPreFilterInCheckConsistency() throws Exception
+    {
+        APClass apc = APClass.make("bbProps", 0, BondType.SINGLE);
+        FragmentSpaceParameters fsp = new FragmentSpaceParameters();
+        FragmentSpace fs = makeFragmentSpace(fsp, apc);
+        GAParameters settings = new GAParameters();
+        settings.setParameters(fsp);
+        List<String> messages = Collections.synchronizedList(
+                new ArrayList<String>());
+
+        // Rejected by the building blocks, i.e., before building the molecule
+        fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl 1");
+        assertNull(checkConsistency(makeGraph(fs), settings, messages));
+        assertTrue(messages.stream().anyMatch(
+                m -> m.contains("Max Cl atoms constraint violated by "
+                        + "building blocks")), "Messages: " + messages);
+
+        // The graph is at the limit: accepted by both checks
+        messages.clear();
+        fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl 2");
+        fsp.interpretKeyword("MAXRINGS=", "1");
+        assertNotNull(checkConsistency(makeGraph(fs), settings, messages), 
+                "Messages: " + messages);
+        assertFalse(messages.stream().anyMatch(
+                m -> m.contains("constraint violated")));
+
+        // A vertex with the ID of a library building block, but different
+        // atoms, is evaluated on its own atoms
+        messages.clear();
+        fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl 1");
+        DGraph graph = makeGraph(fs);
+        Fragment altered = (Fragment) graph.getVertexAtPosition(1);
+        assertEquals(0, altered.getBuildingBlockId());
+        IAtom cl = altered.getAtom(1);
+        cl.setSymbol("Br");
+        cl.setAtomicNumber(35);
+        BuildingBlockProperties props = fs.estimateProperties(graph);
+        assertEquals(1, props.getElementCount("Cl"));
+        assertEquals(1, props.getElementCount("Br"));
+        assertNotNull(checkConsistency(graph, settings, messages), 
+                "Messages: " + messages);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRingCount() throws Exception
+    {
+        APClass apc = APClass.make("bbProps", 0, BondType.SINGLE);
+        FragmentSpace fs = makeFragmentSpace(new FragmentSpaceParameters(), 
+                apc);
+
+        // Ring defined in the graph
+        DGraph graph = new DGraph();
+        Fragment v1 = makeFragment(apc);
+        Fragment v2 = makeFragment(apc);
+        Fragment v3 = makeFragment(apc);
+        graph.addVertex(v1);
+        graph.appendVertexOnAP(v1.getAP(0), v2.getAP(0));
+        graph.appendVertexOnAP(v1.getAP(1), v3.getAP(0));
+        BuildingBlockProperties noRing = fs.estimateProperties(graph);
+        assertEquals(0, noRing.getRingCount());
+        
+        graph.addRing(new Ring(new ArrayList<Vertex>(
+                Arrays.asList(v2, v1, v3))));
+        BuildingBlockProperties withRing = fs.estimateProperties(graph);
+        assertEquals(1, withRing.getRingCount());
+        assertEquals(0, withRing.getRotatableBondCount());
+        assertEquals(noRing.getHeavyAtomCount(), 
+                withRing.getHeavyAtomCount());
+
+        // Ring embedded in a template
+        Template template = new Template(BBType.FRAGMENT);
+        template.setInnerGraph(graph);
+        DGraph outer = new DGraph();
+        outer.addVertex(template);
+        BuildingBlockProperties fromTmpl = fs.estimateProperties(outer);
+        assertEquals(1, fromTmpl.getRingCount());
+        assertEquals(0, fromTmpl.getRotatableBondCount());
+        assertEquals(noRing.getHeavyAtomCount(), 
+                fromTmpl.getHeavyAtomCount());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testParseConstraints() throws Exception
+    {
+        FragmentSpaceParameters fsp = new FragmentSpaceParameters();
+        assertEquals(0, fsp.getMaxRings());
+        assertTrue(fsp.getMaxElementCounts().isEmpty());
+
+        fsp.interpretKeyword("MAXRINGS=", "3");
+        fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl 2");
+        fsp.interpretKeyword("MAXELEMENTCOUNT=", " N  4 ");
+        assertEquals(3, fsp.getMaxRings());
+        assertEquals(2, fsp.getMaxElementCounts().get("Cl"));
+        assertEquals(4, fsp.getMaxElementCounts().get("N"));
+
+        assertThrows(DENOPTIMException.class, 
+                () -> fsp.interpretKeyword("MAXRINGS=", "many"));
+        assertThrows(DENOPTIMException.class, 
+                () -> fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl"));
+        assertThrows(DENOPTIMException.class, 
+                () -> fsp.interpretKeyword("MAXELEMENTCOUNT=", "Xx 2"));
+        assertThrows(DENOPTIMException.class, 
+                () -> fsp.interpretKeyword("MAXELEMENTCOUNT=", "Cl two"));
+    }
+
+//------------------------------------------------------------------------------
+
+}
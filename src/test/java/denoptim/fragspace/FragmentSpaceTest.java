@@ -391,6 +391,45 @@ public class FragmentSpaceTest
         }
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testGetAPsCompatibleWithThese() throws Exception
+    {
+        FragmentSpaceParameters fsp = buildFragmentSpace();
+        FragmentSpace fs = fsp.getFragmentSpace();
+        assertTrue(fs.isDefined(),"FragmentSpace is defined");
+        Vertex src = fs.getFragmentLibrary().get(2);
+        ArrayList<AttachmentPoint> srcAPs = new ArrayList<AttachmentPoint>();
+        srcAPs.add(src.getAP(0));
+        srcAPs.add(src.getAP(1));
+        
+        ArrayList<AttachmentPoint> lst = fs.getAPsCompatibleWithThese(srcAPs);
+        
+        assertEquals(4,lst.size(),"Size of compatible APs list is wrong.");
+        for (AttachmentPoint ap : lst)
+        {
+            assertEquals(APC2, ap.getAPClass());
+            assertTrue(fs.getFragmentLibrary().contains(ap.getOwner()),
+                    "AP not from the library of fragments.");
+        }
+        
+        // Changes of the compatibility matrix are reflected in the results
+        HashMap<APClass,ArrayList<APClass>> cpMap = 
+                new HashMap<APClass,ArrayList<APClass>>();
+        ArrayList<APClass> lst1 = new ArrayList<APClass>();
+        lst1.add(APC3);
+        cpMap.put(APC1, lst1);
+        fs.setCompatibilityMatrix(cpMap);
+        
+        ArrayList<IdFragmentAndAP> ids = fs.getFragAPsCompatibleWithClass(APC1);
+        assertEquals(2,ids.size(),"Size of compatible APs list is wrong.");
+        for (IdFragmentAndAP id : ids)
+        {
+            assertEquals(APC3, fs.getAPClassForFragment(id));
+        }
+    }
+    
 //------------------------------------------------------------------------------
     
     @Test
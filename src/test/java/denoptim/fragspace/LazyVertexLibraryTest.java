@@ -0,0 +1,129 @@
+package denoptim.fragspace;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.silent.Bond;
+
+import denoptim.graph.APClass;
+import denoptim.graph.Edge.BondType;
+import denoptim.graph.Fragment;
+import denoptim.graph.Template;
+import denoptim.graph.Vertex;
+import denoptim.graph.Vertex.BBType;
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for LazyVertexLibrary
+ */
+
+public class LazyVertexLibraryTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testLazyLibrary() throws Exception
+    {
+        APClass apcA = APClass.make("lazyA", 0, BondType.SINGLE);
+        APClass apcB = APClass.make("lazyB", 1, BondType.SINGLE);
+
+        ArrayList<Vertex> vertexes = new ArrayList<Vertex>();
+        for (int i=0; i<3; i++)
+        {
+            Fragment frg = new Fragment();
+            Atom a1 = new Atom("C", new Point3d(new double[]{0.0, 1.1, i}));
+            Atom a2 = new Atom("N", new Point3d(new double[]{1.0, 1.1, i}));
+            frg.addAtom(a1);
+            frg.addAtom(a2);
+            frg.addBond(new Bond(a1, a2));
+            frg.addAPOnAtom(a1, apcA, new Point3d(new double[]{0.0, 2.2, i}));
+            for (int j=0; j<i; j++)
+            {
+                frg.addAPOnAtom(a2, apcB,
+                        new Point3d(new double[]{2.0, 0.1*j, i}));
+            }
+            frg.projectAPsToProperties();
+            frg.setBuildingBlockType(BBType.FRAGMENT);
+            frg.setBuildingBlockId(i);
+            vertexes.add(frg);
+        }
+        File file = new File(tempDir.getAbsolutePath() + File.separator
+                + "lib.sdf");
+        DenoptimIO.writeVertexesToSDF(file, vertexes, false);
+
+        LazyVertexLibrary lib = new LazyVertexLibrary(file, BBType.FRAGMENT,
+                1);
+        assertEquals(3, lib.size());
+        for (int i=0; i<3; i++)
+        {
+            assertEquals(i+1, lib.getNumberOfAPs(i));
+            assertEquals(apcA, lib.getAPClasses(i).get(0));
+            if (i>0)
+                assertEquals(apcB, lib.getAPClasses(i).get(1));
+            assertTrue(lib.getMolecularWeight(i) > 0);
+        }
+
+        // Read in reverse order to force eviction from the cache
+        for (int i=2; i>-1; i--)
+        {
+            Vertex v = lib.get(i);
+            assertEquals(i, v.getBuildingBlockId());
+            assertEquals(BBType.FRAGMENT, v.getBuildingBlockType());
+            StringBuilder sb = new StringBuilder();
+            assertTrue(vertexes.get(i).sameAs(v, sb),
+                    "Vertex " + i + ": " + sb.toString());
+        }
+
+        // Appended vertexes are kept in memory
+        Vertex extra = vertexes.get(0).clone();
+        lib.add(extra);
+        assertEquals(4, lib.size());
+        assertTrue(extra == lib.get(3));
+        assertEquals(1, lib.getNumberOfAPs(3));
+
+        // Templates are found without building the other vertexes
+        assertTrue(lib.getTemplateIndexes().isEmpty());
+        lib.add(new Template(BBType.FRAGMENT));
+        assertEquals(Arrays.asList(4), lib.getTemplateIndexes());
+
+        // Once closed, only vertexes in memory can be retrieved
+        lib.close();
+        lib.close();
+        assertTrue(extra == lib.get(3));
+        assertThrows(IllegalStateException.class, () -> lib.get(1));
+    }
+
+//------------------------------------------------------------------------------
+
+}
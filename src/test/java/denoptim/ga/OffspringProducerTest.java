@@ -0,0 +1,198 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.ga;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.fitness.FitnessParameters;
+import denoptim.graph.Candidate;
+import denoptim.graph.DGraph;
+import denoptim.logging.Monitor;
+import denoptim.programs.denovo.GAParameters;
+import denoptim.utils.SizeControlledSet;
+
+/**
+ * Unit test for {@link OffspringProducer}.
+ */
+
+public class OffspringProducerTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Producer that makes dummy offspring with unique identifiers.
+     */
+    private class DummyProducer extends OffspringProducer
+    {
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        public DummyProducer(int maxAttempts, int queueSize,
+                SizeControlledSet scs, GAParameters settings)
+        {
+            super(new ArrayList<Candidate>(), null, 0, maxAttempts,
+                    queueSize, scs, new Monitor(), settings);
+        }
+
+        @Override
+        protected Candidate buildOffspring()
+        {
+            int n = counter.getAndIncrement();
+            Candidate c = new Candidate("M"+n, new DGraph());
+            c.setUID("UID-"+n);
+            return c;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private GAParameters makeSettings()
+    {
+        GAParameters settings = new GAParameters();
+        settings.setParameters(new FitnessParameters());
+        return settings;
+    }
+
+//------------------------------------------------------------------------------
+
+    private SizeControlledSet makeSCS()
+    {
+        return new SizeControlledSet(100,
+                tempDir.getAbsolutePath() + SEP + "memory",
+                tempDir.getAbsolutePath() + SEP + "allUIDs");
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAttemptLimit() throws Exception
+    {
+        int maxAttempts = 10;
+        DummyProducer producer = new DummyProducer(maxAttempts, 2, makeSCS(),
+                makeSettings());
+        producer.start(4);
+
+        Set<String> taken = new HashSet<String>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!producer.isExhausted()
+                && System.currentTimeMillis() < deadline)
+        {
+            Candidate c = producer.takeCandidate(100, TimeUnit.MILLISECONDS);
+            if (c != null)
+                taken.add(c.getUID());
+        }
+
+        assertTrue(producer.isExhausted());
+        assertEquals(maxAttempts, taken.size());
+        assertEquals(maxAttempts, producer.getNumberOfAttempts());
+        assertNull(producer.takeCandidate(10, TimeUnit.MILLISECONDS));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testStopAndDrain() throws Exception
+    {
+        SizeControlledSet scs = makeSCS();
+        DummyProducer producer = new DummyProducer(1000, 3, scs,
+                makeSettings());
+        producer.start(2);
+
+        // Consumer-side registration, as done by the evolutionary algorithm
+        Set<String> taken = new HashSet<String>();
+        for (int i=0; i<4; i++)
+        {
+            Candidate c = producer.takeCandidate(5, TimeUnit.SECONDS);
+            assertNotNull(c);
+            assertTrue(scs.addNewUniqueEntry(c.getUID()));
+            taken.add(c.getUID());
+        }
+
+        producer.stop();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!producer.isExhausted()
+                && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(producer.isExhausted());
+        assertNull(producer.takeCandidate(10, TimeUnit.MILLISECONDS));
+        assertTrue(producer.getNumberOfAttempts() < 1000);
+
+        // Only the UIDs of the candidates that have been taken are recorded
+        for (int i=0; i<producer.getNumberOfAttempts(); i++)
+        {
+            String uid = "UID-" + i;
+            assertEquals(taken.contains(uid), scs.contains(uid),
+                    "Wrong record for " + uid);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSkipsKnownUIDs() throws Exception
+    {
+        SizeControlledSet scs = makeSCS();
+        for (int i=0; i<5; i++)
+        {
+            scs.addNewUniqueEntry("UID-" + i);
+        }
+        DummyProducer producer = new DummyProducer(8, 10, scs,
+                makeSettings());
+        producer.start(1);
+
+        Set<String> taken = new HashSet<String>();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!producer.isExhausted()
+                && System.currentTimeMillis() < deadline)
+        {
+            Candidate c = producer.takeCandidate(100, TimeUnit.MILLISECONDS);
+            if (c != null)
+                taken.add(c.getUID());
+        }
+        assertEquals(3, taken.size());
+        for (int i=0; i<5; i++)
+        {
+            assertFalse(taken.contains("UID-" + i));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 
@@ -153,5 +154,89 @@ public class APClassTest
         }
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testScope() throws Exception
+    {
+        APClass global = APClass.make("scopeTestGlobal",0);
+        APClass.Scope scope = new APClass.Scope();
+        try
+        {
+            scope.activate();
+            assertTrue(scope == APClass.Scope.getActive());
+            
+            // Global APClasses remain visible
+            assertTrue(global == APClass.make("scopeTestGlobal",0));
+            assertEquals(0, scope.getAPClasses().size());
+            
+            APClass scoped = APClass.make("scopeTestLocal",1);
+            assertTrue(scoped == APClass.make("scopeTestLocal",1));
+            assertEquals(1, scope.getAPClasses().size());
+            
+            // Threads created within the scope inherit it
+            APClass[] fromThread = new APClass[1];
+            Thread t = new Thread(() -> {
+                try
+                {
+                    fromThread[0] = APClass.make("scopeTestLocal",1);
+                } catch (DENOPTIMException e)
+                {
+                    e.printStackTrace();
+                }
+            });
+            t.start();
+            t.join();
+            assertTrue(scoped == fromThread[0]);
+        } finally {
+            APClass.Scope.deactivate();
+        }
+        
+        // Out of the scope, the scoped APClass is unknown
+        assertTrue(APClass.Scope.getActive() == null);
+        APClass unscoped = APClass.make("scopeTestLocal",1);
+        assertFalse(scope.getAPClasses().contains(unscoped));
+    }
+    
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testScopeInPreexistingThreads() throws Exception
+    {
+        // Threads created before the activation do not inherit the scope
+        ForkJoinPool pool = new ForkJoinPool(2);
+        pool.submit(() -> {}).get();
+        
+        APClass.Scope scope = new APClass.Scope();
+        APClass.Scope previous = APClass.Scope.setActive(scope);
+        try
+        {
+            assertTrue(previous == null);
+            APClass scoped = APClass.make("scopeTestPool",1);
+            
+            APClass.Scope fromPool = pool.submit(
+                    () -> APClass.Scope.getActive()).get();
+            assertTrue(fromPool != scope);
+            
+            // Work submitted to such threads activates the scope
+            APClass.Scope active = APClass.Scope.getActive();
+            APClass fromTask = pool.submit(() -> {
+                APClass.Scope prev = APClass.Scope.setActive(active);
+                try
+                {
+                    return APClass.make("scopeTestPool",1);
+                } finally {
+                    APClass.Scope.setActive(prev);
+                }
+            }).get();
+            assertTrue(scoped == fromTask);
+            assertEquals(1, scope.getAPClasses().size());
+        } finally {
+            APClass.Scope.setActive(previous);
+            pool.shutdown();
+        }
+        assertTrue(APClass.Scope.getActive() == null);
+    }
+    
 //------------------------------------------------------------------------------
 }
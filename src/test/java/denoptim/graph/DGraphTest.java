@@ -3603,6 +3603,44 @@ public class DGraphTest
         assertTrue(gisA.isIsostructuralTo(gisB));
     }
     
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testGetGraphUID() throws Exception
+    {
+        DGraph g1 = makeTestGraphA();
+        // Vertexes that do not come from a library cannot be identified
+        assertNull(g1.getGraphUID());
+        for (int i=0; i<g1.getVertexCount(); i++)
+        {
+            g1.getVertexAtPosition(i).setBuildingBlockId(i);
+        }
+        String uid1 = g1.getGraphUID();
+        assertTrue(uid1 != null);
+
+        // Independent on vertex IDs
+        DGraph g2 = g1.clone();
+        g2.renumberGraphVertices();
+        assertEquals(uid1, g2.getGraphUID());
+
+        // Sensitive to the building blocks
+        g2.getVertexAtPosition(3).setBuildingBlockId(42);
+        assertNotEquals(uid1, g2.getGraphUID());
+
+        // Sensitive to the APs used by the edges
+        DGraph g3 = g1.clone();
+        Vertex cap = g3.getVertexAtPosition(2);
+        g3.removeVertex(cap);
+        g3.appendVertexOnAP(g3.getVertexAtPosition(0).getAP(2),
+                cap.getAP(0));
+        assertNotEquals(uid1, g3.getGraphUID());
+
+        // Sensitive to rings
+        DGraph g4 = g1.clone();
+        g4.addRing(g4.getVertexAtPosition(2), g4.getVertexAtPosition(3));
+        assertNotEquals(uid1, g4.getGraphUID());
+    }
+    
 //------------------------------------------------------------------------------
 	
 }
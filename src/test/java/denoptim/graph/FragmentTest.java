@@ -26,11 +26,19 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.vecmath.Point3d;
 
 import org.junit.jupiter.api.Test;
 import org.openscience.cdk.Atom;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.silent.Bond;
 
@@ -227,6 +235,90 @@ public class FragmentTest
         assertEquals("PROVALUE",c.getProperty("PROPNAME"));
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testInstantiate() throws Exception
+    {   
+        Fragment v = makeFragment();
+        
+        Fragment c = v.instantiate();
+        Fragment c2 = c.clone();
+        
+        assertEquals(v.getAtomCount(), c.getAtomCount(), "Atom count");
+        assertEquals(v.getNumberOfAPs(), c.getNumberOfAPs(), "Number of APs");
+        assertEquals(v.getSymmetricAPSets().size(), 
+                c.getSymmetricAPSets().size(), "Number of SymAPs sets");
+        StringBuilder sb = new StringBuilder();
+        assertTrue(v.sameAs(c, sb), "Instance differs: " + sb.toString());
+        
+        // APs found on atoms are those of the instance
+        assertTrue(c.getAPsFromAtom(c.getAtom(2)).contains(
+                c.getAP(1)), "AP on atom of instance");
+        assertFalse(c.getAPsFromAtom(c.getAtom(2)).contains(
+                v.getAP(1)), "AP of original on atom of instance");
+        
+        // Changing the instance does not change the others
+        c.removeAtom(c.getAtom(0));
+        assertEquals(v.getAtomCount()-1, c.getAtomCount(), "Atom count");
+        assertEquals(v.getAtomCount(), c2.getAtomCount(), "Atom count");
+        assertEquals(v.getNumberOfAPs(), c2.getNumberOfAPs(), "Number of APs");
+        assertEquals(v.getNumberOfAPs()-1, c.getNumberOfAPs(), 
+                "Number of APs");
+        
+        // Changing the original does not change the others
+        v.removeAtom(v.getAtom(2));
+        assertEquals(v.getAtomCount()+1, c2.getAtomCount(), "Atom count");
+        assertEquals(4, c2.getNumberOfAPs(), "Number of APs");
+        assertEquals(3, c2.getAPCountOnAtom(2), "Size APs on atm2");
+    }
+    
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testConcurrentInstantiation() throws Exception
+    {   
+        Fragment v = makeFragment();
+        int numAtoms = v.getAtomCount();
+        
+        int numThreads = 4;
+        int numInstancesPerThread = 50;
+        List<Fragment> instances = Collections.synchronizedList(
+                new ArrayList<Fragment>());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t=0; t<numThreads; t++)
+        {
+            futures.add(executor.submit(() -> {
+                for (int i=0; i<numInstancesPerThread; i++)
+                {
+                    Fragment c = v.instantiate();
+                    // Triggers the copy of the shared atoms
+                    c.removeAtom(c.getAtom(0));
+                    instances.add(c);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures)
+        {
+            f.get();
+        }
+        executor.shutdown();
+        
+        assertEquals(numAtoms, v.getAtomCount(), "Atom count of original");
+        assertEquals(numThreads*numInstancesPerThread, instances.size());
+        Set<IAtom> atoms = new HashSet<IAtom>();
+        for (Fragment c : instances)
+        {
+            assertEquals(numAtoms-1, c.getAtomCount(), "Atom count");
+            for (IAtom atm : c.atoms())
+            {
+                assertTrue(atoms.add(atm), "Atom shared among instances");
+            }
+        }
+    }
+    
 //------------------------------------------------------------------------------
     
     public static Fragment makeFragmentA() throws DENOPTIMException
@@ -325,6 +417,13 @@ public class FragmentTest
         assertFalse(vB.isIsomorphicTo(vA));
         assertFalse(vA.isIsomorphicTo(vC));
         assertFalse(vB.isIsomorphicTo(vC));
+        
+        assertEquals(vA.getIsomorphismInvariant(),
+                makeFragmentA().getIsomorphismInvariant());
+        assertNotEquals(vA.getIsomorphismInvariant(),
+                vB.getIsomorphismInvariant());
+        assertNotEquals(vA.getIsomorphismInvariant(),
+                vC.getIsomorphismInvariant());
     }
     
 //------------------------------------------------------------------------------
@@ -339,6 +438,8 @@ public class FragmentTest
         assertTrue(vA.isIsomorphicTo(vA));
         assertTrue(vA.isIsomorphicTo(vB));
         assertTrue(vB.isIsomorphicTo(vA));
+        assertEquals(vA.getIsomorphismInvariant(),
+                vB.getIsomorphismInvariant());
     }
     
 //------------------------------------------------------------------------------
@@ -0,0 +1,81 @@
+package denoptim.graph.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.graph.DGraph;
+
+/**
+ * Unit test for ClosabilityCache
+ */
+
+public class ClosabilityCacheTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testGetFromAlternativeChainID() throws Exception
+    {
+        DGraph g = PathSubGraphTest.makeTestGraphA();
+        PathSubGraph path = new PathSubGraph(g.getVertexAtPosition(1),
+                g.getVertexAtPosition(5), g);
+
+        ClosabilityCache cache = new ClosabilityCache(10);
+        assertNull(cache.get(path));
+
+        // Store with the last alternative ID, i.e., not the chain ID
+        String altId = path.getAllAlternativeChainIDs().get(
+                path.getAllAlternativeChainIDs().size()-1);
+        RingClosingConformations rcc = new RingClosingConformations();
+        cache.put(altId, true, rcc);
+
+        ClosabilityCache.Verdict verdict = cache.get(path);
+        assertNotNull(verdict);
+        assertTrue(verdict.isClosable());
+        assertTrue(rcc == verdict.getRCCs());
+        assertEquals(altId, verdict.getChainId());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testBoundedSize() throws Exception
+    {
+        ClosabilityCache cache = new ClosabilityCache(3);
+        for (int i=0; i<10; i++)
+        {
+            cache.put("chain" + i, false, new RingClosingConformations());
+        }
+        assertEquals(3, cache.size());
+
+        ClosabilityCache disabled = new ClosabilityCache(0);
+        disabled.put("chain", false, new RingClosingConformations());
+        assertEquals(0, disabled.size());
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,127 @@
+package denoptim.graph.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for CyclicGraphHandler
+ */
+
+public class CyclicGraphHandlerTest
+{
+
+//------------------------------------------------------------------------------
+
+    private BitSet[] makeCompatibility(int size, int[][] pairs)
+    {
+        BitSet[] compat = new BitSet[size];
+        for (int i=0; i<size; i++)
+        {
+            compat[i] = new BitSet(size);
+        }
+        for (int[] pair : pairs)
+        {
+            compat[pair[0]].set(pair[1]);
+            compat[pair[1]].set(pair[0]);
+        }
+        return compat;
+    }
+
+//------------------------------------------------------------------------------
+
+    private Set<String> enumerate(BitSet[] compat)
+    {
+        Set<String> found = new HashSet<String>();
+        List<String> all = new ArrayList<String>();
+        CyclicGraphHandler.enumerateMaximalPairings(compat, 0,
+                new BitSet(compat.length), new ArrayList<int[]>(),
+                (pairs) -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int[] pair : pairs)
+                    {
+                        sb.append(pair[0]).append("-").append(pair[1])
+                            .append(" ");
+                    }
+                    all.add(sb.toString().trim());
+                    return true;
+                });
+        found.addAll(all);
+        // No duplicates
+        assertEquals(all.size(), found.size());
+        return found;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testEnumerateMaximalPairings() throws Exception
+    {
+        // Linear chain of compatibilities: 0-1-2-3
+        Set<String> found = enumerate(makeCompatibility(4,
+                new int[][] {{0,1},{1,2},{2,3}}));
+        assertEquals(2, found.size());
+        assertTrue(found.contains("0-1 2-3"));
+        assertTrue(found.contains("1-2"));
+
+        // All compatible with all
+        found = enumerate(makeCompatibility(3,
+                new int[][] {{0,1},{0,2},{1,2}}));
+        assertEquals(3, found.size());
+        assertTrue(found.contains("0-1"));
+        assertTrue(found.contains("0-2"));
+        assertTrue(found.contains("1-2"));
+
+        // Nothing compatible
+        found = enumerate(makeCompatibility(3, new int[][] {}));
+        assertEquals(0, found.size());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testEnumerationStoppedByConsumer() throws Exception
+    {
+        BitSet[] compat = makeCompatibility(4,
+                new int[][] {{0,1},{0,2},{0,3},{1,2},{1,3},{2,3}});
+        List<List<int[]>> found = new ArrayList<List<int[]>>();
+        boolean completed = CyclicGraphHandler.enumerateMaximalPairings(
+                compat, 0, new BitSet(compat.length), new ArrayList<int[]>(),
+                (pairs) -> {
+                    found.add(pairs);
+                    return false;
+                });
+        assertFalse(completed);
+        assertEquals(1, found.size());
+        assertEquals(2, found.get(0).size());
+    }
+
+//------------------------------------------------------------------------------
+
+}
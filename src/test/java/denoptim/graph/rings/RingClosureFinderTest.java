@@ -0,0 +1,372 @@
+package denoptim.graph.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.interfaces.IAtom;
+
+import denoptim.utils.MathUtils;
+
+/**
+ * Unit test for RingClosureFinder
+ */
+
+public class RingClosureFinderTest
+{
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Compares the verdicts with those of the original recursive scan on
+     * chains that can form 4-, 5-, and 6-membered rings.
+     */
+    @Test
+    public void testSameVerdictsAsRecursiveScan() throws Exception
+    {
+        RingClosureParameters settings = new RingClosureParameters();
+        settings.pathConfSearchStep = 30.0;
+        RingClosureParameters parSettings = new RingClosureParameters();
+        parSettings.pathConfSearchStep = 30.0;
+        parSettings.rotamerSearchThreads = 3;
+
+        int numClosable = 0;
+        int numNotClosable = 0;
+        for (boolean exhaustive : new boolean[] {false, true})
+        {
+            settings.exhaustiveConfSrch = exhaustive;
+            parSettings.exhaustiveConfSrch = exhaustive;
+            for (int sz=6; sz<9; sz++)
+            {
+                for (int k=0; k<4; k++)
+                {
+                    List<IAtom> path = makeChain(k, sz);
+                    String msg = "Chain " + k + " of size " + sz
+                            + " (exhaustive: " + exhaustive + ")";
+
+                    ArrayList<ArrayList<Double>> expectedConfs =
+                            new ArrayList<ArrayList<Double>>();
+                    boolean expected = legacyEvaluateClosability(path,
+                            makeRotatability(sz), makeDihRefs(path),
+                            expectedConfs, settings);
+
+                    ArrayList<ArrayList<Double>> confs =
+                            new ArrayList<ArrayList<Double>>();
+                    boolean actual = RingClosureFinder.evaluateClosability(
+                            path, makeRotatability(sz), makeDihRefs(path),
+                            confs, settings);
+
+                    assertEquals(expected, actual, msg);
+
+                    // Parallel search gives the same result
+                    ArrayList<ArrayList<Double>> parConfs =
+                            new ArrayList<ArrayList<Double>>();
+                    assertEquals(actual, RingClosureFinder.evaluateClosability(
+                            path, makeRotatability(sz), makeDihRefs(path),
+                            parConfs, parSettings), msg);
+                    assertEquals(confs, parConfs, msg);
+                    if (!exhaustive && expected)
+                    {
+                        // The same first closable conformation is found
+                        assertEquals(1, confs.size(), msg);
+                        assertEquals(expectedConfs.get(0).size(),
+                                confs.get(0).size(), msg);
+                        for (int i=0; i<confs.get(0).size(); i++)
+                        {
+                            assertEquals(expectedConfs.get(0).get(i),
+                                    confs.get(0).get(i), 0.000001, msg);
+                        }
+                    }
+                    if (expected)
+                        numClosable++;
+                    else
+                        numNotClosable++;
+                }
+            }
+        }
+        // Make sure both verdicts have been tested
+        assertTrue(numClosable > 0);
+        assertTrue(numNotClosable > 0);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a chain of points from internal coordinates. The first two and
+     * the last two points define the head and tail vectors, so the chain can
+     * close a ring of <code>sz-2</code> atoms.
+     */
+    private List<IAtom> makeChain(int k, int sz)
+    {
+        List<Point3d> pts = new ArrayList<Point3d>();
+        pts.add(new Point3d(0.0, 0.0, 0.0));
+        pts.add(new Point3d(1.5, 0.0, 0.0));
+        double a2 = Math.toRadians(100.0 + (k*7)%20);
+        pts.add(new Point3d(1.5 - 1.5*Math.cos(a2), 1.5*Math.sin(a2), 0.0));
+        for (int i=3; i<sz; i++)
+        {
+            double angle = 100.0 + ((k+i)*7)%20;
+            double torsion = ((k*37 + i*53)%360) - 180.0;
+            pts.add(placePoint(pts.get(i-3), pts.get(i-2), pts.get(i-1), 1.5,
+                    angle, torsion));
+        }
+        List<IAtom> path = new ArrayList<IAtom>();
+        for (Point3d p : pts)
+        {
+            path.add(new Atom("C", p));
+        }
+        return path;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Places a point D given the distance C-D, the angle B-C-D, and the
+     * dihedral A-B-C-D (degrees).
+     */
+    private Point3d placePoint(Point3d a, Point3d b, Point3d c, double dist,
+            double angle, double torsion)
+    {
+        double ang = Math.toRadians(angle);
+        double tor = Math.toRadians(torsion);
+        Vector3d bc = new Vector3d(c.x-b.x, c.y-b.y, c.z-b.z);
+        bc.normalize();
+        Vector3d ab = new Vector3d(b.x-a.x, b.y-a.y, b.z-a.z);
+        Vector3d n = new Vector3d();
+        n.cross(ab, bc);
+        n.normalize();
+        Vector3d m = new Vector3d();
+        m.cross(n, bc);
+        double x = -dist * Math.cos(ang);
+        double y = dist * Math.sin(ang) * Math.cos(tor);
+        double z = dist * Math.sin(ang) * Math.sin(tor);
+        return new Point3d(c.x + bc.x*x + m.x*y + n.x*z,
+                c.y + bc.y*x + m.y*y + n.y*z,
+                c.z + bc.z*x + m.z*y + n.z*z);
+    }
+
+//------------------------------------------------------------------------------
+
+    private ArrayList<Boolean> makeRotatability(int sz)
+    {
+        ArrayList<Boolean> rotatability = new ArrayList<Boolean>();
+        for (int i=0; i<sz-1; i++)
+        {
+            // Bonds to the head and tail points do not rotate
+            rotatability.add(i>0 && i<sz-2);
+        }
+        return rotatability;
+    }
+
+//------------------------------------------------------------------------------
+
+    private ArrayList<ArrayList<Point3d>> makeDihRefs(List<IAtom> path)
+    {
+        ArrayList<ArrayList<Point3d>> dihRefs =
+                new ArrayList<ArrayList<Point3d>>();
+        for (int i=3; i<path.size(); i++)
+        {
+            ArrayList<Point3d> refs = new ArrayList<Point3d>();
+            for (int j=i-3; j<=i; j++)
+            {
+                refs.add(path.get(j).getPoint3d());
+            }
+            dihRefs.add(refs);
+        }
+        return dihRefs;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Original implementation of
+     * {@link RingClosureFinder#evaluateClosability(List, ArrayList,
+     * ArrayList, ArrayList, RingClosureParameters)}
+     * used as reference.
+     */
+    private static boolean legacyEvaluateClosability(List<IAtom> path,
+            ArrayList<Boolean> rotatability,
+            ArrayList<ArrayList<Point3d>> dihRefs,
+            ArrayList<ArrayList<Double>> closableConfs,
+            RingClosureParameters settings)
+    {
+        int sz = path.size();
+        List<Point3d> ptsChain = new ArrayList<Point3d>();
+        for (int i=0; i<path.size(); i++)
+        {
+            ptsChain.add(new Point3d(path.get(i).getPoint3d()));
+        }
+        int h1 = 1;
+        int h2 = 0;
+        int t1 = sz - 2;
+        int t2 = sz - 1;
+        RingClosure rc = new RingClosure(path.get(h1).getPoint3d(),
+                path.get(h2).getPoint3d(),
+                path.get(t1).getPoint3d(),
+                path.get(t2).getPoint3d(),
+                settings);
+        ArrayList<Double> clsablConds = rc.getClosabilityConditions(
+                settings.getConfPathExtraTolerance());
+
+        ArrayList<Double> dihedrals = new ArrayList<Double>();
+        ArrayList<Double> dihIncement = new ArrayList<Double>();
+        for (int i=2; i<ptsChain.size(); i++)
+        {
+            double a = MathUtils.angle(ptsChain.get(i-2), ptsChain.get(i-1),
+                    ptsChain.get(i));
+            if (a >= settings.getLinearityLimit())
+            {
+                rotatability.set(i-1,false);
+            }
+            if (i==2)
+            {
+                dihedrals.add(0.0);
+                dihIncement.add(0.0);
+            } else {
+                ArrayList<Point3d> refPoints = dihRefs.get(i-3);
+                dihedrals.add(MathUtils.computeDihedralAngle(refPoints.get(0),
+                        refPoints.get(1), refPoints.get(2), refPoints.get(3)));
+                dihIncement.add(0.0);
+            }
+        }
+        dihedrals.add(0.0);
+        dihIncement.add(0.0);
+
+        legacyHasClosableRotamer(ptsChain, rotatability, dihedrals,
+                dihIncement, 0, settings.getPathConfSearchStep(),
+                h1, h2, t1, t2, clsablConds, closableConfs,
+                settings.doExhaustiveConfSrch(), settings.getLogger());
+
+        return closableConfs.size() > 0;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Original recursive scan of the torsional space used as reference.
+     */
+    private static boolean legacyHasClosableRotamer(List<Point3d> chain,
+            ArrayList<Boolean> rotatability,
+            ArrayList<Double> dihedrals,
+            ArrayList<Double> dihIncement,
+            int activeRot, double step,
+            int h1, int h2, int t1, int t2,
+            ArrayList<Double> clsablConds,
+            ArrayList<ArrayList<Double>> closableConfs,
+            boolean doExhaustiveSearch, Logger logger)
+    {
+        boolean res = false;
+        int totStp = (int) (360.0 / step);
+        if (!rotatability.get(activeRot))
+        {
+            totStp = 1;
+        }
+        for (int i=0; i<totStp; i++)
+        {
+            if (i != 0)
+            {
+                dihIncement.set(activeRot,dihIncement.get(activeRot) + step);
+                rotateBranch(chain, activeRot, step);
+            }
+
+            if (activeRot+1 < dihedrals.size())
+            {
+                res = legacyHasClosableRotamer(chain, rotatability, dihedrals,
+                        dihIncement, activeRot+1, step, h1, h2, t1, t2,
+                        clsablConds, closableConfs, doExhaustiveSearch,
+                        logger);
+            } else {
+                RingClosure rc = new RingClosure(chain.get(h1), chain.get(h2),
+                        chain.get(t1), chain.get(t2));
+                res = rc.isClosable(clsablConds, logger);
+                if (res)
+                {
+                    ArrayList<Double> conf = new ArrayList<Double>();
+                    for (int ib=0; ib<dihedrals.size(); ib++)
+                    {
+                        double tot = dihedrals.get(ib) + dihIncement.get(ib);
+                        if (tot > 180.0)
+                        {
+                            tot = tot - 360.0;
+                        }
+                        conf.add(tot);
+                    }
+                    closableConfs.add(conf);
+                }
+            }
+            if (!doExhaustiveSearch && res)
+            {
+                break;
+            }
+        }
+
+        // reset
+        if (rotatability.get(activeRot))
+        {
+            dihIncement.set(activeRot,
+                    dihIncement.get(activeRot)-step*(totStp-1));
+            rotateBranch(chain, activeRot, -step * (totStp - 1));
+        }
+        return res;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Rotates the points that lie after the given bond.
+     */
+    private static void rotateBranch(List<Point3d> chain, int activeRot,
+            double angle)
+    {
+        Point3d srcRotBnd = chain.get(activeRot);
+        Point3d endRotBnd = chain.get(activeRot+1);
+        Vector3d rotAxis = new Vector3d(endRotBnd.x - srcRotBnd.x,
+                endRotBnd.y - srcRotBnd.y,
+                endRotBnd.z - srcRotBnd.z);
+        rotAxis.normalize();
+        Matrix3d rotMat = new Matrix3d();
+        rotMat.set(new AxisAngle4d(rotAxis, Math.toRadians(angle)));
+        for (int ip = activeRot+2; ip<chain.size(); ip++)
+        {
+            Point3d pt = chain.get(ip);
+            Vector3d newVec = new Vector3d(pt.x - srcRotBnd.x,
+                    pt.y - srcRotBnd.y,
+                    pt.z - srcRotBnd.z);
+            rotMat.transform(newVec);
+            pt.x = newVec.x + srcRotBnd.x;
+            pt.y = newVec.y + srcRotBnd.y;
+            pt.z = newVec.z + srcRotBnd.z;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,188 @@
+package denoptim.graph.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for RingClosuresArchive
+ */
+
+public class RingClosuresArchiveTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private RingClosureParameters makeSettings()
+    {
+        RingClosureParameters settings = new RingClosureParameters();
+        settings.rccIndex = tempDir.getAbsolutePath() + File.separator
+                + "rccIndex.txt";
+        settings.rccFolder = tempDir.getAbsolutePath();
+        settings.serializeRCCs = true;
+        return settings;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testStoreAndReload() throws Exception
+    {
+        String closableChain = "1/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        String unclosableChain = "3/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        ArrayList<ArrayList<Double>> confs = new ArrayList<>();
+        confs.add(new ArrayList<Double>(Arrays.asList(10.0, 20.0)));
+        confs.add(new ArrayList<Double>(Arrays.asList(30.0, 40.0)));
+
+        RingClosuresArchive archive = new RingClosuresArchive(makeSettings());
+        archive.storeEntry(closableChain, true,
+                new RingClosingConformations(closableChain, confs));
+        archive.storeEntry(unclosableChain, false,
+                new RingClosingConformations());
+
+        assertTrue(archive.getClosabilityOfChain(closableChain));
+        assertFalse(archive.getClosabilityOfChain(unclosableChain));
+        assertEquals(1, archive.getCCFromTurningPointId(2).size());
+
+        // A new archive gets all from the files
+        RingClosuresArchive reloaded = new RingClosuresArchive(makeSettings());
+        assertTrue(reloaded.getClosabilityOfChain(closableChain));
+        assertFalse(reloaded.getClosabilityOfChain(unclosableChain));
+        RingClosingConformations rcc = reloaded.getRCCsOfChain(closableChain);
+        assertEquals(closableChain, rcc.getChainID());
+        assertEquals(confs, rcc.getListOfConformations());
+        assertEquals(0, reloaded.getRCCsOfChain(unclosableChain)
+                .getNumberOfConformations());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testImportFromConcurrentWriter() throws Exception
+    {
+        String chainA = "1/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        String chainB = "4/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        ArrayList<ArrayList<Double>> confs = new ArrayList<>();
+        confs.add(new ArrayList<Double>(Arrays.asList(10.0)));
+
+        // Two archives sharing the same files, as for two processes
+        RingClosuresArchive archiveOne = new RingClosuresArchive(
+                makeSettings());
+        RingClosuresArchive archiveTwo = new RingClosuresArchive(
+                makeSettings());
+
+        archiveOne.storeEntry(chainA, true,
+                new RingClosingConformations(chainA, confs));
+        archiveTwo.storeEntry(chainB, true,
+                new RingClosingConformations(chainB, confs));
+
+        // Storing in archiveTwo imported what was added by archiveOne
+        assertTrue(archiveTwo.getClosabilityOfChain(chainA));
+        assertEquals(chainA, archiveTwo.getRCCsOfChain(chainA).getChainID());
+        assertEquals(chainB, archiveTwo.getRCCsOfChain(chainB).getChainID());
+
+        // Storing a duplicate does not change the archive
+        archiveOne.storeEntry(chainB, false, new RingClosingConformations());
+        assertTrue(archiveOne.getClosabilityOfChain(chainB));
+
+        RingClosuresArchive reloaded = new RingClosuresArchive(makeSettings());
+        assertEquals(2, reloaded.getCCFromTurningPointId(2).size());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testMemoryOnlyArchive() throws Exception
+    {
+        String closableChain = "1/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        String unclosableChain = "3/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1";
+        ArrayList<ArrayList<Double>> confs = new ArrayList<>();
+        confs.add(new ArrayList<Double>(Arrays.asList(10.0)));
+
+        // Archive without settings, as the default one of 
+        // RingClosureParameters
+        RingClosuresArchive archive = new RingClosuresArchive();
+        archive.storeEntry(closableChain, true,
+                new RingClosingConformations(closableChain, confs));
+        archive.storeEntry(unclosableChain, false,
+                new RingClosingConformations());
+
+        assertTrue(archive.containsChainId(closableChain));
+        assertEquals(closableChain, 
+                archive.getRCCsOfChain(closableChain).getChainID());
+        assertEquals(0, archive.getRCCsOfChain(unclosableChain)
+                .getNumberOfConformations());
+        
+        RingClosureParameters settings = new RingClosureParameters();
+        assertFalse(settings.getRingClosuresArchive().containsChainId(
+                closableChain));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testEvictionOfUnsavedRCCs() throws Exception
+    {
+        RingClosureParameters settings = makeSettings();
+        settings.serializeRCCs = false;
+        settings.rccCacheSize = 2;
+        RingClosuresArchive archive = new RingClosuresArchive(settings);
+        
+        String[] chains = new String[] {
+                "1/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1",
+                "4/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1",
+                "5/FRAGMENT/ap0ap1_2/FRAGMENT/ap0ap1%1"};
+        ArrayList<ArrayList<Double>> confs = new ArrayList<>();
+        confs.add(new ArrayList<Double>(Arrays.asList(10.0)));
+        for (String chain : chains)
+        {
+            archive.storeEntry(chain, true,
+                    new RingClosingConformations(chain, confs));
+        }
+        
+        // Only as many RCCs as the size of the cache are kept in memory
+        assertFalse(archive.containsChainId(chains[0]));
+        assertTrue(archive.containsChainId(chains[1]));
+        assertTrue(archive.containsChainId(chains[2]));
+        
+        // Storing again puts back the RCCs without new index entries
+        archive.storeEntry(chains[0], true,
+                new RingClosingConformations(chains[0], confs));
+        assertTrue(archive.containsChainId(chains[0]));
+        assertEquals(chains[0], archive.getRCCsOfChain(chains[0])
+                .getChainID());
+        assertEquals(3, Files.readAllLines(
+                new File(settings.getRCCLibraryIndexFile()).toPath()).size());
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,85 @@
+package denoptim.integration.tinker;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for TinkerForceField
+ */
+
+public class TinkerForceFieldTest
+{
+    @TempDir
+    File tempDir;
+
+    private static final String NL = System.getProperty("line.separator");
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testParseAndShare() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "ff.prm";
+        DenoptimIO.writeData(pathname,
+                "forcefield   test" + NL
+                + NL
+                + "atom    1    H    \"Hydrogen\"    1    1.008    1" + NL
+                + "atom    2    C    \"Carbon\"      6   12.011    4" + NL
+                + "vdw     1    2.8860    0.0440" + NL
+                + "vdw     2    3.8510    0.1050" + NL, false);
+
+        TinkerForceField ff = TinkerForceField.getForceField(pathname);
+        assertEquals(2, ff.getAtomTypes().size());
+        assertEquals(6, ff.getAtomTypes().get(1).getAtomicNumber());
+        assertEquals("Carbon", ff.getAtomTypes().get(1).getLabel());
+        assertEquals(2, ff.getAtomTypesPerSymbol().get("C"));
+        assertEquals(2, ff.getRecords("VDW").size());
+        assertEquals("3.8510", ff.getRecords("vdw").get(1)[2]);
+        assertTrue(ff.getRecords("bond").isEmpty());
+
+        // Same file gives the same object
+        assertTrue(ff == TinkerForceField.getForceField(pathname));
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> ff.getAtomTypesPerSymbol().put("N", 3));
+
+        // Changed file is parsed again
+        DenoptimIO.writeData(pathname,
+                "atom    3    N    \"Nitrogen\"    7   14.007    3" + NL, true);
+        TinkerForceField ff2 = TinkerForceField.getForceField(pathname);
+        assertFalse(ff == ff2);
+        assertEquals(3, ff2.getAtomTypes().size());
+        assertEquals(3, ff2.getAtomTypesPerSymbol().get("N"));
+    }
+
+//------------------------------------------------------------------------------
+
+}
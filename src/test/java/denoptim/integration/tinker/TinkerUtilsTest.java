@@ -0,0 +1,96 @@
+package denoptim.integration.tinker;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Unit test for TinkerUtils
+ */
+
+public class TinkerUtilsTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSetICFromXYZ() throws Exception
+    {
+        double[] zero = new double[3];
+        ArrayList<TinkerAtom> atoms = new ArrayList<TinkerAtom>();
+        atoms.add(new TinkerAtom(1, "C", 1, zero,
+                new int[] {0, 0, 0, 0}, zero));
+        atoms.add(new TinkerAtom(2, "C", 1, zero,
+                new int[] {1, 0, 0, 0}, zero));
+        atoms.add(new TinkerAtom(3, "C", 1, zero,
+                new int[] {2, 1, 0, 0}, zero));
+        atoms.add(new TinkerAtom(4, "C", 1, zero,
+                new int[] {3, 2, 1, 0}, zero));
+        atoms.add(new TinkerAtom(5, "H", 2, zero,
+                new int[] {3, 2, 4, 1}, zero));
+        TinkerMolecule tmol = new TinkerMolecule("test", new ArrayList<int[]>(),
+                new ArrayList<int[]>(), atoms);
+
+        List<double[]> coords = Arrays.asList(
+                new double[] {0.0, 1.0, 0.0},
+                new double[] {0.0, 0.0, 0.0},
+                new double[] {1.5, 0.0, 0.0},
+                new double[] {1.5, 0.0, 1.0},
+                new double[] {2.5, 0.0, 0.0});
+        TinkerUtils.setICFromXYZ(tmol, coords);
+
+        assertEquals(1.0, tmol.getAtom(2).getDistAngle()[0], 0.0001);
+        assertEquals(1.5, tmol.getAtom(3).getDistAngle()[0], 0.0001);
+        assertEquals(90.0, tmol.getAtom(3).getDistAngle()[1], 0.0001);
+        assertEquals(90.0, tmol.getAtom(4).getDistAngle()[2], 0.0001);
+        // Chiral flag set: the third value is a bond angle
+        assertEquals(180.0, tmol.getAtom(5).getDistAngle()[1], 0.0001);
+        assertEquals(90.0, tmol.getAtom(5).getDistAngle()[2], 0.0001);
+        // Atom on the plane of its reference atoms: flag is unchanged
+        assertEquals(1, tmol.getAtom(5).getAtomNeighbours()[3]);
+        
+        // Mirror image: the torsion changes sign
+        List<double[]> mirrored = new ArrayList<double[]>(coords);
+        mirrored.set(3, new double[] {1.5, 0.0, -1.0});
+        mirrored.set(4, new double[] {2.2, -0.5, -0.3});
+        TinkerUtils.setICFromXYZ(tmol, mirrored);
+        assertEquals(-90.0, tmol.getAtom(4).getDistAngle()[2], 0.0001);
+        // The chirality flag follows the side of the atom
+        assertEquals(-1, tmol.getAtom(5).getAtomNeighbours()[3]);
+        
+        mirrored.set(4, new double[] {2.2, 0.5, -0.3});
+        TinkerUtils.setICFromXYZ(tmol, mirrored);
+        assertEquals(1, tmol.getAtom(5).getAtomNeighbours()[3]);
+
+        assertThrows(DENOPTIMException.class,
+                () -> TinkerUtils.setICFromXYZ(tmol, coords.subList(0, 2)));
+    }
+
+//------------------------------------------------------------------------------
+
+}
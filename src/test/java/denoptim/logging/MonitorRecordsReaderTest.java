@@ -0,0 +1,101 @@
+package denoptim.logging;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for MonitorRecordsReader
+ */
+
+public class MonitorRecordsReaderTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private void append(File file, String text) throws Exception
+    {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testUpdate() throws Exception
+    {
+        File file = new File(tempDir, "test.eaMonitor");
+        append(file, "RecordType MonitorName Generation A B \n"
+                + "DUMP Gen0 0 1 2 \n"
+                + "SUMMARY Gen0 0 3 4 \n"
+                + "SUMM");
+
+        MonitorRecordsReader reader = new MonitorRecordsReader(file);
+        assertNull(reader.getHeader());
+        assertTrue(reader.update());
+        assertEquals("RecordType MonitorName Generation A B ",
+                reader.getHeader());
+        List<String> records = reader.getSummaryRecords();
+        assertEquals(1, records.size());
+        assertEquals("SUMMARY Gen0 0 3 4 ", records.get(0));
+
+        // Nothing complete has been appended
+        assertFalse(reader.update());
+
+        // Completing the partial line and adding more records
+        append(file, "ARY Gen1 1 5 6 \r\n"
+                + "DUMP Gen2 2 7 8 \n"
+                + "SUMMARY Gen2 2 9 10 \n");
+        assertTrue(reader.update());
+        records = reader.getSummaryRecords();
+        assertEquals(3, records.size());
+        assertEquals("SUMMARY Gen1 1 5 6 ", records.get(1));
+        assertEquals("SUMMARY Gen2 2 9 10 ", records.get(2));
+
+        append(file, "DUMP Gen3 3 11 12 \n");
+        assertFalse(reader.update());
+        assertEquals(3, reader.getSummaryRecords().size());
+
+        // A replaced file that is shorter is read from the start
+        Files.write(file.toPath(), ("Header X \n"
+                + "SUMMARY G 0 1 \n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(reader.update());
+        assertEquals("Header X ", reader.getHeader());
+        records = reader.getSummaryRecords();
+        assertEquals(1, records.size());
+        assertEquals("SUMMARY G 0 1 ", records.get(0));
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,168 @@
+package denoptim.logging;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for Monitor
+ */
+
+public class MonitorTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testConcurrentCountsAndDumps() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "test.eaMonitor";
+        Monitor mnt = new Monitor("MonitorGen", 3, pathname, 10, true,
+                Logger.getLogger("MonitorTest"), 0);
+        mnt.printHeader(pathname);
+
+        // Dumps are taken while counters change
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread dumper = new Thread(() -> {
+            while (!done.get())
+            {
+                mnt.dumpIfNeeded();
+            }
+        });
+        dumper.start();
+
+        int nThreads = 4;
+        int nIncrements = 1000;
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i=0; i<nThreads; i++)
+        {
+            Thread t = new Thread(() -> {
+                for (int j=0; j<nIncrements; j++)
+                {
+                    mnt.increase(CounterID.NEWCANDIDATEATTEMPTS);
+                    mnt.increaseBy(CounterID.FITNESSEVALS, 2);
+                    mnt.decrease(CounterID.FITNESSEVALS);
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads)
+        {
+            t.join();
+        }
+        done.set(true);
+        dumper.join();
+        assertEquals(nThreads*nIncrements,
+                mnt.getValue(CounterID.NEWCANDIDATEATTEMPTS));
+        assertEquals(nThreads*nIncrements,
+                mnt.getValue(CounterID.FITNESSEVALS));
+
+        mnt.dumpIfNeeded();
+        mnt.printSummary();
+
+        List<String> lines = DenoptimIO.readList(pathname);
+        assertTrue(lines.get(0).startsWith("RecordType"));
+        assertTrue(lines.size() > 2, "Missing dump or summary");
+        String[] words = lines.get(0).trim().split("\\s+");
+        String summary = lines.get(lines.size()-1);
+        assertTrue(summary.startsWith("SUMMARY"));
+        String[] values = summary.trim().split("\\s+");
+        assertEquals(words.length, values.length);
+        assertEquals("3", values[2]);
+        for (int i=3; i<words.length; i++)
+        {
+            if (words[i].equals(CounterID.NEWCANDIDATEATTEMPTS.toString()))
+                assertEquals(String.valueOf(nThreads*nIncrements), values[i]);
+        }
+        for (int i=1; i<lines.size()-1; i++)
+        {
+            assertTrue(lines.get(i).startsWith("DUMP"));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * No dump can be written after the summary, even if a dump is being
+     * written when the summary is requested.
+     */
+    @Test
+    public void testNoDumpAfterSummary() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "test.eaMonitor";
+        Monitor mnt = new Monitor("MonitorGen", 1, pathname, 1, true,
+                Logger.getLogger("MonitorTest"), 0);
+        mnt.printHeader(pathname);
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread t = new Thread(() -> {
+            while (!done.get())
+            {
+                mnt.increase(CounterID.NEWCANDIDATEATTEMPTS);
+            }
+        });
+        Thread dumper = new Thread(() -> {
+            while (!done.get())
+            {
+                mnt.dumpIfNeeded();
+            }
+        });
+        t.start();
+        dumper.start();
+        while (DenoptimIO.readList(pathname).size() < 3)
+        {
+            Thread.sleep(1);
+        }
+        mnt.printSummary();
+
+        // Any further request of a dump must be ignored
+        mnt.increase(CounterID.NEWCANDIDATEATTEMPTS);
+        mnt.dumpIfNeeded();
+        done.set(true);
+        t.join();
+        dumper.join();
+
+        List<String> lines = DenoptimIO.readList(pathname);
+        assertTrue(lines.get(lines.size()-1).startsWith("SUMMARY"));
+        for (int i=1; i<lines.size()-1; i++)
+        {
+            assertTrue(lines.get(i).startsWith("DUMP"));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
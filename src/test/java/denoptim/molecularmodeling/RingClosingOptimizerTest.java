@@ -0,0 +1,140 @@
+package denoptim.molecularmodeling;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.integration.tinker.TinkerAtom;
+import denoptim.integration.tinker.TinkerMolecule;
+
+/**
+ * Unit test for RingClosingOptimizer
+ */
+
+public class RingClosingOptimizerTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testOptimize() throws Exception
+    {
+        // Chain 0-1-2-3 in trans conformation. Rotation around 1-2 moves 3.
+        double[] coords = new double[] {
+                0.0, 1.0, 0.0,
+                0.0, 0.0, 0.0,
+                1.5, 0.0, 0.0,
+                1.5, -1.0, 0.0};
+        int[][] axes = new int[][] {{1, 2}};
+        int[][] branches = new int[][] {{3}};
+        int[][] attractions = new int[][] {{0, 3}};
+        double[][] attractionParams = new double[][] {{1.0, 1.0}};
+        RingClosingOptimizer rco = new RingClosingOptimizer(coords, axes,
+                branches, attractions, attractionParams, new int[0][]);
+
+        double[] torsions = rco.optimize(3, 500, new Random(1L));
+        double[] c = rco.buildConformation(torsions);
+
+        // Best we can do is the cis conformation
+        assertEquals(1.5, c[9], 0.001);
+        assertEquals(1.0, c[10], 0.001);
+        assertEquals(0.0, c[11], 0.001);
+        assertTrue(rco.getEnergy(torsions) < rco.getEnergy(new double[1]));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testClashPenalty() throws Exception
+    {
+        // Same chain, but 3 cannot get closer than 2.0 to 0
+        double[] coords = new double[] {
+                0.0, 1.0, 0.0,
+                0.0, 0.0, 0.0,
+                1.5, 0.0, 0.0,
+                1.5, -1.0, 0.0};
+        int[][] axes = new int[][] {{1, 2}};
+        int[][] branches = new int[][] {{3}};
+        RingClosingOptimizer rco = new RingClosingOptimizer(coords, axes,
+                branches, new int[0][], new double[0][], new int[][] {{0, 3}});
+
+        assertEquals(0.0, rco.getEnergy(new double[] {0.0}), 0.000001);
+        double diff = RingClosingOptimizer.MINNONBONDDIST - 1.5;
+        assertEquals(diff*diff, rco.getEnergy(new double[] {Math.PI}),
+                0.000001);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSetInternalCoordinates() throws Exception
+    {
+        // Atom 5 is defined by two bond angles and a chirality flag
+        double[] zero = new double[3];
+        ArrayList<TinkerAtom> atoms = new ArrayList<TinkerAtom>();
+        atoms.add(new TinkerAtom(1, "C", 1, zero,
+                new int[] {0, 0, 0, 0}, zero));
+        atoms.add(new TinkerAtom(2, "C", 1, zero,
+                new int[] {1, 0, 0, 0}, zero));
+        atoms.add(new TinkerAtom(3, "C", 1, zero,
+                new int[] {2, 1, 0, 0}, zero));
+        atoms.add(new TinkerAtom(4, "C", 1, zero,
+                new int[] {3, 2, 1, 0}, zero));
+        atoms.add(new TinkerAtom(5, "H", 2, zero,
+                new int[] {3, 2, 4, 1}, zero));
+        TinkerMolecule tmol = new TinkerMolecule("test", new ArrayList<int[]>(),
+                new ArrayList<int[]>(), atoms);
+
+        double[] coords = new double[] {
+                0.0, 1.0, 0.0,
+                0.0, 0.0, 0.0,
+                1.5, 0.0, 0.0,
+                1.5, 0.0, 1.0,
+                2.2, 0.5, -0.3};
+        RingClosingOptimizer.setInternalCoordinates(tmol, coords);
+        assertEquals(90.0, tmol.getAtom(4).getDistAngle()[2], 0.0001);
+        assertEquals(1, tmol.getAtom(5).getAtomNeighbours()[3]);
+        double angleBefore = tmol.getAtom(5).getDistAngle()[2];
+
+        // Rotating only atom 4 moves atom 5 to the other side of the plane
+        // defined by its reference atoms.
+        RingClosingOptimizer rco = new RingClosingOptimizer(coords,
+                new int[][] {{1, 2}}, new int[][] {{3}}, new int[0][],
+                new double[0][], new int[0][]);
+        double[] rotated = rco.buildConformation(new double[] {Math.PI});
+        RingClosingOptimizer.setInternalCoordinates(tmol, rotated);
+
+        assertEquals(-90.0, tmol.getAtom(4).getDistAngle()[2], 0.0001);
+        assertEquals(-1, tmol.getAtom(5).getAtomNeighbours()[3]);
+        assertEquals(180.0 - angleBefore, tmol.getAtom(5).getDistAngle()[2],
+                0.0001);
+        // Bond lengths and bond angles are preserved by the rotation
+        assertEquals(1.5, tmol.getAtom(3).getDistAngle()[0], 0.0001);
+        assertEquals(90.0, tmol.getAtom(4).getDistAngle()[1], 0.0001);
+    }
+
+//------------------------------------------------------------------------------
+
+}
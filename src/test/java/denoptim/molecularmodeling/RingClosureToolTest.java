@@ -0,0 +1,240 @@
+package denoptim.molecularmodeling;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.graph.rings.RingClosure;
+import denoptim.programs.moldecularmodelbuilder.MMBuilderParameters;
+import denoptim.utils.ObjectPair;
+
+/**
+ * Unit test for {@link RingClosureTool}.
+ */
+
+public class RingClosureToolTest
+{
+    private static final String COMBIDX = "TestCombinationIndex";
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Ring closure with a given quality score.
+     */
+    private class FixedScoreRingClosure extends RingClosure
+    {
+        private final double score;
+
+        public FixedScoreRingClosure(double score)
+        {
+            super(new Point3d(), new Point3d(), new Point3d(), new Point3d());
+            this.score = score;
+        }
+
+        @Override
+        public double getRingClosureQuality()
+        {
+            return score;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a system with the given number of combinations of ring closing
+     * attractors, each requiring the closure of one ring.
+     */
+    private ChemicalObjectModel makeModel(int numCombs)
+    {
+        ChemicalObjectModel mol = new ChemicalObjectModel();
+        for (int i=0; i<numCombs; i++)
+        {
+            Set<ObjectPair> comb = new HashSet<ObjectPair>();
+            comb.add(new ObjectPair(null, null));
+            mol.getRCACombinations().add(comb);
+        }
+        return mol;
+    }
+
+//------------------------------------------------------------------------------
+
+    private RingClosureTool makeTool(int numThreads, int stopAfter,
+            double stopScore) throws Exception
+    {
+        MMBuilderParameters settings = new MMBuilderParameters();
+        settings.interpretKeyword("RCPARALLELATTEMPTS=",
+                String.valueOf(numThreads));
+        settings.interpretKeyword("RCSTOPAFTERCLOSED=",
+                String.valueOf(stopAfter));
+        settings.interpretKeyword("RCSTOPQUALITYSCORE=",
+                String.valueOf(stopScore));
+        return new RingClosureTool(settings);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Emulates a ring closing attempt: a negative score means the ring could
+     * not be closed.
+     */
+    private RingClosureTool.RingClosureAttempt makeAttempt(double[] scores,
+            long[] delays, Set<Integer> attempted)
+    {
+        return (molTo3d, iComb) -> {
+            attempted.add(iComb);
+            Thread.sleep(delays[iComb]);
+            molTo3d.getIAtomContainer().setProperty(COMBIDX, iComb);
+            if (scores[iComb] < 0)
+            {
+                molTo3d.getIAtomContainer().setProperty(
+                        DENOPTIMConstants.MOLERRORTAG, "not closed");
+            } else {
+                molTo3d.getNewRingClosures().add(
+                        new FixedScoreRingClosure(scores[iComb]));
+            }
+            return molTo3d;
+        };
+    }
+
+//------------------------------------------------------------------------------
+
+    private int getCombIdx(ChemicalObjectModel rcMol)
+    {
+        return rcMol.getIAtomContainer().getProperty(COMBIDX);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testStopAfterClosed() throws Exception
+    {
+        double[] scores = new double[] {-1.0, 5.0, 0.5, 0.8, 0.1};
+        long[] delays = new long[scores.length];
+        Set<Integer> attempted = ConcurrentHashMap.newKeySet();
+        RingClosureTool rct = makeTool(1, 2, 1.0);
+
+        ArrayList<ChemicalObjectModel> res = rct.attemptAllRingClosures(
+                makeModel(scores.length),
+                makeAttempt(scores, delays, attempted));
+
+        // Combination 1 is closed but not good enough to count
+        assertEquals(4, attempted.size());
+        assertFalse(attempted.contains(4));
+        assertEquals(4, res.size());
+        assertEquals(2, getCombIdx(res.get(0)));
+        assertEquals(3, getCombIdx(res.get(1)));
+        assertEquals(1, getCombIdx(res.get(2)));
+        assertEquals(0, getCombIdx(res.get(3)));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testNoEarlyStopByDefault() throws Exception
+    {
+        double[] scores = new double[] {-1.0, 5.0, 0.5, 0.8, 0.1};
+        long[] delays = new long[scores.length];
+        Set<Integer> attempted = ConcurrentHashMap.newKeySet();
+        RingClosureTool rct = new RingClosureTool(new MMBuilderParameters());
+
+        ArrayList<ChemicalObjectModel> res = rct.attemptAllRingClosures(
+                makeModel(scores.length),
+                makeAttempt(scores, delays, attempted));
+
+        assertEquals(scores.length, attempted.size());
+        assertEquals(scores.length, res.size());
+        assertEquals(4, getCombIdx(res.get(0)));
+        assertEquals(0, getCombIdx(res.get(res.size()-1)));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The best result must not depend on the order in which parallel
+     * attempts complete.
+     */
+    @Test
+    public void testParallelChoosesBest() throws Exception
+    {
+        int numCombs = 12;
+        double[] scores = new double[numCombs];
+        long[] delays = new long[numCombs];
+        for (int i=0; i<numCombs; i++)
+        {
+            scores[i] = 1.0 + i;
+            delays[i] = 5 * (numCombs - i);
+        }
+        scores[7] = -1.0;
+        Set<Integer> attempted = ConcurrentHashMap.newKeySet();
+        RingClosureTool rct = makeTool(4, 0, 1.0);
+
+        ArrayList<ChemicalObjectModel> res = rct.attemptAllRingClosures(
+                makeModel(numCombs),
+                makeAttempt(scores, delays, attempted));
+
+        assertEquals(numCombs, attempted.size());
+        assertEquals(numCombs, res.size());
+        assertEquals(0, getCombIdx(res.get(0)));
+        assertEquals(1, getCombIdx(res.get(1)));
+        assertEquals(7, getCombIdx(res.get(numCombs-1)));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testParallelStopAfterClosed() throws Exception
+    {
+        int numCombs = 20;
+        double[] scores = new double[numCombs];
+        long[] delays = new long[numCombs];
+        for (int i=0; i<numCombs; i++)
+        {
+            scores[i] = 10.0;
+            delays[i] = 100;
+        }
+        scores[0] = 0.1;
+        delays[0] = 0;
+        Set<Integer> attempted = ConcurrentHashMap.newKeySet();
+        RingClosureTool rct = makeTool(3, 1, 1.0);
+
+        ArrayList<ChemicalObjectModel> res = rct.attemptAllRingClosures(
+                makeModel(numCombs),
+                makeAttempt(scores, delays, attempted));
+
+        assertTrue(attempted.size() < numCombs, "Queued attempts have not "
+                + "been cancelled");
+        assertTrue(res.size() <= attempted.size());
+        assertEquals(0, getCombIdx(res.get(0)));
+    }
+
+//------------------------------------------------------------------------------
+
+}
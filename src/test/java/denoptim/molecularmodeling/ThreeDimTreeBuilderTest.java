@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.logging.Logger;
 
 import javax.vecmath.Point3d;
@@ -36,6 +37,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.silent.Bond;
 
+import denoptim.constants.DENOPTIMConstants;
 import denoptim.fragspace.FragmentSpace;
 import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.graph.APClass;
@@ -305,6 +307,159 @@ public class ThreeDimTreeBuilderTest
                 + "mol with empty scaffold and other nodes");
     }
     
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testAssemblyCache() throws Exception
+    {
+        APClass a0 = APClass.make("a",0,BondType.SINGLE);
+        APClass b0 = APClass.make("b",0,BondType.SINGLE);
+        
+        HashMap<APClass,ArrayList<APClass>> cpMap = 
+                new HashMap<APClass,ArrayList<APClass>>();
+        cpMap.put(a0, new ArrayList<APClass>(Arrays.asList(a0, b0)));
+        
+        Fragment frg1 = new Fragment();
+        IAtom a1 = new Atom("C", new Point3d(new double[]{0.0, 0.0, 0.0}));
+        IAtom a2 = new Atom("C", new Point3d(new double[]{1.0, 0.0, 0.0}));
+        frg1.addAtom(a1);
+        frg1.addAtom(a2);
+        frg1.addBond(new Bond(a1, a2));
+        frg1.addAP(0, a0, new Point3d(new double[]{0.0, 0.0, 1.0}));
+        frg1.addAP(1, a0, new Point3d(new double[]{1.0, 1.0, 1.0}));
+        frg1.projectAPsToProperties(); 
+        
+        Fragment frg2 = new Fragment();
+        IAtom a3 = new Atom("C", new Point3d(new double[]{0.0, 0.0, 0.0}));
+        IAtom a4 = new Atom("O", new Point3d(new double[]{1.0, 0.0, 0.0}));
+        frg2.addAtom(a3);
+        frg2.addAtom(a4);
+        frg2.addBond(new Bond(a3, a4));
+        frg2.addAP(0, a0, new Point3d(new double[]{0.0, 1.0, 1.0}));
+        frg2.addAP(1, b0, new Point3d(new double[]{1.0, 1.0, -1.0}));   
+        frg2.projectAPsToProperties(); 
+        
+        ArrayList<Vertex> scaff = new ArrayList<Vertex>();
+        scaff.add(frg1);
+        ArrayList<Vertex> frags = new ArrayList<Vertex>();
+        frags.add(frg2);
+        
+        FragmentSpaceParameters fsp = new FragmentSpaceParameters();
+        FragmentSpace fs = new FragmentSpace(fsp, scaff, frags, 
+                new ArrayList<Vertex>(), cpMap, new HashMap<APClass,APClass>(),
+                new HashSet<APClass>(), cpMap);
+        fs.setAPclassBasedApproach(true);
+        
+        ThreeDimAssemblyCache cache = new ThreeDimAssemblyCache(10);
+        Logger logger = Logger.getLogger("DummyLogger");
+        ThreeDimTreeBuilder t3d = new ThreeDimTreeBuilder(logger, 
+                new Randomizer());
+        t3d.setAssemblyCache(cache);
+        
+        Fragment bb = (Fragment) fs.getFragmentLibrary().get(0);
+        DGraph gA = makeChainGraph(fs, bb);
+        IAtomContainer molA = t3d.convertGraphTo3DAtomContainer(gA, true);
+        
+        // Only non-root vertexes are placed from cache
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getNumberOfHits());
+        assertEquals(2, cache.getNumberOfMisses());
+        assertVertexesMatchMolecule(gA, molA);
+        
+        DGraph gB = makeChainGraph(fs, bb);
+        IAtomContainer molB = t3d.convertGraphTo3DAtomContainer(gB, true);
+        
+        // Second build reuses the placements, and the vertexes get the 
+        // same geometry they have in the molecule
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getNumberOfHits());
+        assertEquals(2, cache.getNumberOfMisses());
+        assertVertexesMatchMolecule(gB, molB);
+        assertEquals(molA.getAtomCount(), molB.getAtomCount());
+        assertEquals(molA.getBondCount(), molB.getBondCount());
+        for (int i=0; i<molA.getAtomCount(); i++)
+        {
+            assertEquals(0.0, molA.getAtom(i).getPoint3d().distance(
+                    molB.getAtom(i).getPoint3d()), 0.0001);
+        }
+        
+        // Same building block ID, but different content
+        Fragment frg3 = new Fragment();
+        IAtom a5 = new Atom("C", new Point3d(new double[]{0.0, 0.0, 0.0}));
+        IAtom a6 = new Atom("N", new Point3d(new double[]{1.0, 0.0, 0.0}));
+        frg3.addAtom(a5);
+        frg3.addAtom(a6);
+        frg3.addBond(new Bond(a5, a6));
+        frg3.addAP(0, a0, new Point3d(new double[]{0.0, 1.0, 1.0}));
+        frg3.addAP(1, b0, new Point3d(new double[]{1.0, 1.0, -1.0}));   
+        frg3.projectAPsToProperties();
+        DGraph gC = makeChainGraph(fs, frg3);
+        IAtomContainer molC = t3d.convertGraphTo3DAtomContainer(gC, true);
+        
+        assertEquals(3, cache.getNumberOfHits());
+        assertEquals(3, cache.getNumberOfMisses());
+        assertVertexesMatchMolecule(gC, molC);
+        assertEquals("N", molC.getAtom(molC.getAtomCount()-1).getSymbol());
+        
+        ThreeDimAssemblyCache disabled = new ThreeDimAssemblyCache(0);
+        t3d.setAssemblyCache(disabled);
+        t3d.convertGraphTo3DAtomContainer(makeChainGraph(fs, bb), true);
+        assertEquals(0, disabled.size());
+        assertEquals(0, disabled.getNumberOfHits());
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Builds a chain of three vertexes where the last one is made from the 
+     * given fragment, but is given the building block ID of the fragment
+     * in the library.
+     */
+    private DGraph makeChainGraph(FragmentSpace fs, Fragment last) 
+            throws Exception
+    {
+        DGraph g = new DGraph();
+        Vertex v1 = Vertex.newVertexFromLibrary(1, 0, BBType.SCAFFOLD, fs);
+        Vertex v2 = Vertex.newVertexFromLibrary(2, 0, BBType.FRAGMENT, fs);
+        Vertex v3 = new Fragment(3, last.getIAtomContainer(), 
+                BBType.FRAGMENT);
+        v3.setBuildingBlockId(0);
+        g.addVertex(v1);
+        g.addVertex(v2);
+        g.addVertex(v3);
+        g.addEdge(new Edge(v1.getAP(1), v2.getAP(0), BondType.SINGLE));
+        g.addEdge(new Edge(v2.getAP(1), v3.getAP(0), BondType.SINGLE));
+        return g;
+    }
+    
+//------------------------------------------------------------------------------
+    
+    /**
+     * Checks that the atoms of each vertex are where the corresponding atoms
+     * of the molecule are.
+     */
+    private void assertVertexesMatchMolecule(DGraph g, IAtomContainer mol)
+    {
+        for (Vertex v : g.getVertexList())
+        {
+            List<IAtom> atmsInMol = new ArrayList<IAtom>();
+            for (IAtom atm : mol.atoms())
+            {
+                Object vid = atm.getProperty(DENOPTIMConstants.ATMPROPVERTEXID);
+                if (vid != null && ((Number) vid).intValue()==v.getVertexId())
+                    atmsInMol.add(atm);
+            }
+            Fragment frag = (Fragment) v;
+            assertEquals(frag.getAtomCount(), atmsInMol.size());
+            for (int i=0; i<frag.getAtomCount(); i++)
+            {
+                assertEquals(0.0, frag.getAtom(i).getPoint3d().distance(
+                        atmsInMol.get(i).getPoint3d()), 0.0001, 
+                        "Atom " + i + " of vertex " + v.getVertexId());
+            }
+        }
+    }
+    
 //------------------------------------------------------------------------------
     
 }
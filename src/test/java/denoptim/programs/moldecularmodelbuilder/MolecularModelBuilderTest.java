@@ -0,0 +1,193 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.programs.moldecularmodelbuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.graph.Candidate;
+import denoptim.graph.DGraph;
+
+/**
+ * Unit test for {@link MolecularModelBuilder}.
+ */
+
+public class MolecularModelBuilderTest
+{
+    @TempDir
+    File tempDir;
+
+    private final Logger logger = Logger.getLogger("DummyLogger");
+
+//------------------------------------------------------------------------------
+
+    private List<Candidate> makeCandidates(int num)
+    {
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int i=0; i<num; i++)
+        {
+            candidates.add(new Candidate("M" + i, new DGraph()));
+        }
+        return candidates;
+    }
+
+//------------------------------------------------------------------------------
+
+    private List<String> makeScratchDirs(int num)
+    {
+        List<String> dirs = new ArrayList<String>();
+        for (int i=0; i<num; i++)
+        {
+            File dir = new File(tempDir, "worker" + i);
+            assertTrue(dir.mkdirs());
+            dirs.add(dir.getAbsolutePath());
+        }
+        return dirs;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testOrderAndBoundedWindow() throws Exception
+    {
+        int numTasks = 3;
+        int maxInFlight = MolecularModelBuilder.INFLIGHTPERTASK * numTasks;
+        List<Candidate> candidates = makeCandidates(30);
+        List<String> written = Collections.synchronizedList(
+                new ArrayList<String>());
+        AtomicInteger started = new AtomicInteger(0);
+        AtomicInteger maxAhead = new AtomicInteger(0);
+
+        boolean res = MolecularModelBuilder.buildInParallel(candidates,
+                makeScratchDirs(numTasks),
+                (candidate, dir) -> {
+                    int ahead = started.incrementAndGet() - written.size();
+                    maxAhead.accumulateAndGet(ahead, Math::max);
+                    // Leave some garbage in the scratch folder
+                    String name = candidate.getName();
+                    assertTrue(new File(dir, name).createNewFile());
+                    Thread.sleep(Math.floorMod(name.hashCode(), 5) * 2);
+                    return new ArrayList<IAtomContainer>();
+                },
+                (candidate, models) -> written.add(candidate.getName()),
+                logger);
+
+        assertTrue(res);
+        assertEquals(candidates.size(), written.size());
+        for (int i=0; i<candidates.size(); i++)
+        {
+            assertEquals(candidates.get(i).getName(), written.get(i));
+        }
+        assertTrue(maxAhead.get() <= maxInFlight,
+                "Too many candidates in flight: " + maxAhead.get());
+        for (File dir : tempDir.listFiles())
+        {
+            assertEquals(0, dir.listFiles().length, "Scratch folder "
+                    + dir + " not emptied");
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testFailuresAreSkipped() throws Exception
+    {
+        List<Candidate> candidates = makeCandidates(10);
+        List<String> written = new ArrayList<String>();
+
+        boolean res = MolecularModelBuilder.buildInParallel(candidates,
+                makeScratchDirs(2),
+                (candidate, dir) -> {
+                    if (candidate.getName().equals("M4"))
+                        throw new DENOPTIMException("Expected failure");
+                    return new ArrayList<IAtomContainer>();
+                },
+                (candidate, models) -> written.add(candidate.getName()),
+                logger);
+
+        assertFalse(res);
+        assertEquals(9, written.size());
+        assertFalse(written.contains("M4"));
+        assertEquals("M5", written.get(4));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testInterruptStopsTasks() throws Exception
+    {
+        int numTasks = 2;
+        List<Candidate> candidates = makeCandidates(10);
+        CountDownLatch running = new CountDownLatch(numTasks);
+        CountDownLatch stopped = new CountDownLatch(numTasks);
+        AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+
+        Thread master = new Thread(() -> {
+            try
+            {
+                MolecularModelBuilder.buildInParallel(candidates,
+                        makeScratchDirs(numTasks),
+                        (candidate, dir) -> {
+                            running.countDown();
+                            try {
+                                Thread.sleep(60000);
+                            } catch (InterruptedException e) {
+                                stopped.countDown();
+                                throw e;
+                            }
+                            return new ArrayList<IAtomContainer>();
+                        },
+                        (candidate, models) -> {},
+                        logger);
+            } catch (Throwable t)
+            {
+                thrown.set(t);
+            }
+        });
+        master.start();
+
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        master.interrupt();
+        master.join(10000);
+
+        assertFalse(master.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+        assertTrue(stopped.await(10, TimeUnit.SECONDS),
+                "Tasks not interrupted");
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,174 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2022 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.Atom;
+import org.openscience.cdk.silent.AtomContainer;
+import org.openscience.cdk.silent.Bond;
+import org.openscience.cdk.silent.PseudoAtom;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.io.DenoptimIO;
+
+/**
+ * Unit test for RotationalSpace
+ */
+
+public class RotationalSpaceTest
+{
+    @TempDir
+    File tempDir;
+
+    private static final String NL = System.getProperty("line.separator");
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testParseAndShare() throws Exception
+    {
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "rotSpace.txt";
+        DenoptimIO.writeData(pathname,
+                "# comment" + NL
+                + NL
+                + "singleCC [C;!D1]-!@[C;!D1]" + NL
+                + "singleCN [C;!D1]-!@[N;!D1]" + NL, false);
+
+        RotationalSpace rs = RotationalSpace.getRotationalSpace(pathname);
+        assertEquals(2, rs.getSMARTS().size());
+        assertEquals("[C;!D1]-!@[N;!D1]", rs.getSMARTS().get("singleCN"));
+
+        // Same file gives the same object
+        assertTrue(rs == RotationalSpace.getRotationalSpace(pathname));
+        assertEquals(rs.getSMARTS(),
+                RotationalSpaceUtils.getRotationalSpaceDefinition(pathname));
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> rs.getSMARTS().put("other", "[*]~[*]"));
+
+        // Changed file is parsed again
+        DenoptimIO.writeData(pathname,
+                "singleCO [C;!D1]-!@[O;!D1]" + NL, true);
+        RotationalSpace rs2 = RotationalSpace.getRotationalSpace(pathname);
+        assertFalse(rs == rs2);
+        assertEquals(3, rs2.getSMARTS().size());
+
+        // Duplicate definitions are not acceptable
+        DenoptimIO.writeData(pathname,
+                "singleCO [C;!D1]-!@[O;!D1]" + NL, true);
+        assertThrows(DENOPTIMException.class,
+                () -> RotationalSpace.getRotationalSpace(pathname));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRotatableBondsNextToRCA() throws Exception
+    {
+        // The default definitions use recursive environments that require
+        // the RCA to be seen as a hydrogen
+        String pathname = tempDir.getAbsolutePath() + File.separator
+                + "rotatableBonds-1.0";
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(
+                "data/rotatableBonds-1.0"))
+        {
+            Files.copy(is, new File(pathname).toPath());
+        }
+
+        // H3C-CH2-ATP
+        IAtomContainer mol = new AtomContainer();
+        IAtom c1 = new Atom("C");
+        IAtom c2 = new Atom("C");
+        mol.addAtom(c1);
+        mol.addAtom(c2);
+        mol.addBond(new Bond(c1, c2));
+        for (int i=0; i<3; i++)
+        {
+            IAtom h = new Atom("H");
+            mol.addAtom(h);
+            mol.addBond(new Bond(c1, h));
+        }
+        for (int i=0; i<2; i++)
+        {
+            IAtom h = new Atom("H");
+            mol.addAtom(h);
+            mol.addBond(new Bond(c2, h));
+        }
+        IAtom rca = new PseudoAtom("ATP");
+        mol.addAtom(rca);
+        mol.addBond(new Bond(c2, rca));
+        Integer implHs = c1.getImplicitHydrogenCount();
+
+        List<ObjectPair> rotBnds = RotationalSpaceUtils.defineRotatableBonds(
+                mol, pathname, false, true, Logger.getLogger("RotSpaceTest"));
+
+        // Same result as matching a copy where RCAs are replaced by H
+        IAtomContainer locMol = mol.clone();
+        MoleculeUtils.removeRCA(locMol);
+        ManySMARTSQuery msq = new ManySMARTSQuery(locMol,
+                RotationalSpaceUtils.getRotationalSpaceDefinition(pathname));
+        assertFalse(msq.hasProblems());
+        Set<String> expected = new HashSet<String>();
+        for (String name : msq.getAllMatches().keySet())
+        {
+            for (int[] match : msq.getMatchesOfSMARTS(name))
+            {
+                expected.add(Math.min(match[0], match[1]) + "-"
+                        + Math.max(match[0], match[1]));
+            }
+        }
+        Set<String> actual = new HashSet<String>();
+        for (ObjectPair op : rotBnds)
+        {
+            int a1 = (Integer) op.getFirst();
+            int a2 = (Integer) op.getSecond();
+            actual.add(Math.min(a1, a2) + "-" + Math.max(a1, a2));
+        }
+        assertTrue(actual.contains("0-1"), "C-C bond next to RCA");
+        assertEquals(expected, actual);
+        assertEquals("true", mol.getBond(c1, c2).getProperty(
+                DENOPTIMConstants.BONDPROPROTATABLE));
+
+        // The given molecule is not changed
+        assertTrue(mol.getAtom(7) == rca);
+        assertEquals("ATP", MoleculeUtils.getSymbolOrLabel(mol.getAtom(7)));
+        assertEquals(implHs, c1.getImplicitHydrogenCount());
+    }
+
+//------------------------------------------------------------------------------
+
+}